@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia;
+
+
+public interface DoubleFormula {
+
+	// The orbit state is kept by the caller: z in state[0] and state[1], c
+	// in state[2] and state[3]. Julia iterations get both set, Mandelbrot
+	// iterations get c only and must set z
+	void initJuliaIteration(double[] state);
+	void initMandelbrotIteration(double[] state);
+	void iterate(double[] state);
+	boolean bailoutOccured(double[] state);
+
+}
@@ -30,6 +30,38 @@ public interface Formula {
 	Complex getZ();
 	Complex getC();
 	boolean bailoutOccured();
+
+	// Early exit for orbits found to be periodic, and so never escaping:
+	// point calculators may stop iterating as soon as this returns true
+	default boolean orbitCaptured() {
+		return false;
+	}
+
+	// Advances the orbit by up to maxIterations, stopping as soon as bailout
+	// occurs or the orbit is captured, and returns the iterations done.
+	// Implementations may skip over the intermediate points
+	default int iterate(int maxIterations) {
+		int i = 0;
+		while (i < maxIterations && !bailoutOccured() && !orbitCaptured()) {
+			iterate();
+			i++;
+		}
+		return i;
+	}
+
+	// Formulas with f(conj(z), conj(c)) = conj(f(z, c)), started at z = 0 by
+	// initMandelbrotIteration: Mandelbrot sets, and Julia sets of real points,
+	// are symmetric about the real axis
+	default boolean isConjugationSymmetric() {
+		return false;
+	}
+
+	// Formulas with f(-z, c) = f(z, c) or f(-z, c) = -f(z, c): Julia sets are
+	// symmetric about the origin
+	default boolean isPointSymmetric() {
+		return false;
+	}
+
 	void initJuliaIteration(Complex z);
 	void initMandelbrotIteration(Complex c);
 	void cacheConstants(NumberFactory numberFactory);
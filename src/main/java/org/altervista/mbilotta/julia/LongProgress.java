@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.altervista.mbilotta.julia;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+public abstract class LongProgress extends Progress {
+
+	// Counters of different producers lie 128 bytes apart, so that no two of
+	// them share a cache line or an adjacent-line prefetch pair
+	private static final int STRIDE = 16;
+
+	private final long initialValue;
+	private final long finalValue;
+	private final AtomicLongArray counters;
+	private final int slot;
+
+	public LongProgress(long initialValue, long finalValue, AtomicLongArray counters, int index) {
+		this(initialValue, finalValue, initialValue, counters, index);
+	}
+
+	public LongProgress(long initialValue, long finalValue, long value, AtomicLongArray counters, int index) {
+		super(initialValue, finalValue);
+		assert counters.length() >= (index + 1) * STRIDE;
+
+		this.initialValue = initialValue;
+		this.finalValue = finalValue;
+		this.counters = counters;
+		this.slot = index * STRIDE;
+		counters.set(slot, value);
+	}
+
+	public static AtomicLongArray createCounters(int numOfProducers) {
+		return new AtomicLongArray(numOfProducers * STRIDE);
+	}
+
+	protected abstract Object toObject(long value);
+
+	protected abstract long toLong(Object value);
+
+	public final long getInitialLongValue() {
+		return initialValue;
+	}
+
+	public final long getFinalLongValue() {
+		return finalValue;
+	}
+
+	public final long getLongValue() {
+		return counters.get(slot);
+	}
+
+	@Override
+	public Object getInitialValue() {
+		return toObject(initialValue);
+	}
+
+	@Override
+	public Object getFinalValue() {
+		return toObject(finalValue);
+	}
+
+	@Override
+	public Object getValue() {
+		return toObject(getLongValue());
+	}
+
+	@Override
+	public boolean isFinalValue() {
+		return getLongValue() == finalValue;
+	}
+
+	@Override
+	void setValue(Object value) {
+		assert value != null : "value is null";
+		setLongValue(toLong(value));
+	}
+
+	void setLongValue(long value) {
+		counters.lazySet(slot, value);
+	}
+}
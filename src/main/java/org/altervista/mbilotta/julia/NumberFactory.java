@@ -20,7 +20,10 @@
 
 package org.altervista.mbilotta.julia;
 
+import java.math.BigDecimal;
+
 import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.MutableComplex;
 import org.altervista.mbilotta.julia.math.Real;
 
 
@@ -36,8 +39,23 @@ public interface NumberFactory {
 	Real valueOf(String s);
 	Real valueOf(Decimal decimal);
 
+	// Exact: the decimal expansion of a double is finite, unlike the shortest
+	// string Double.toString picks. NaN and infinities have no expansion and
+	// are passed on as Double.toString spells them
+	default Real valueOf(double d) {
+		if (!Double.isFinite(d))
+			return valueOf(Double.toString(d));
+		return valueOf(new BigDecimal(d).toString());
+	}
+
 	Complex valueOf(int real, int imag);
 	Complex valueOf(Decimal real, Decimal imag);
 	Complex valueOf(Real real, Real imag);
 
+	// Accumulator for formulas that iterate in place. Factories may hand out
+	// implementations reusing their own scratch storage
+	default MutableComplex newMutableComplex(Complex value) {
+		return value.toMutable();
+	}
+
 }
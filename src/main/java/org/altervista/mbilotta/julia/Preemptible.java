@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia;
+
+
+// Implemented by worker threads that may be asked to step aside while more
+// urgent work runs. Producers offer to at chunk boundaries
+public interface Preemptible {
+
+	void yieldToUrgentWork() throws InterruptedException;
+}
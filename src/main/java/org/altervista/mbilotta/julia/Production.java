@@ -20,6 +20,10 @@
 
 package org.altervista.mbilotta.julia;
 
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.concurrent.Executor;
+
 import org.altervista.mbilotta.julia.math.Complex;
 import org.altervista.mbilotta.julia.math.CoordinateTransform;
 
@@ -117,6 +121,32 @@ public abstract class Production {
 			progress.setValue(value);
 		}
 
+		// Progress that is not a LongProgress goes through its boxed value
+		protected final long getLongProgressValue() {
+			if (progress instanceof LongProgress) {
+				return ((LongProgress) progress).getLongValue();
+			}
+			return toLongProgressValue(progress.getValue());
+		}
+
+		protected final void setLongProgressValue(long value) {
+			if (progress instanceof LongProgress) {
+				((LongProgress) progress).setLongValue(value);
+			} else {
+				progress.setValue(toProgressValue(value));
+			}
+		}
+
+		// Conversions used when the progress is boxed. Productions whose progress
+		// values are not Longs override both
+		protected long toLongProgressValue(Object value) {
+			return ((Number) value).longValue();
+		}
+
+		protected Object toProgressValue(long value) {
+			return value;
+		}
+
 		protected final Formula getFormula() {
 			return formula;
 		}
@@ -168,7 +198,32 @@ public abstract class Production {
 	public void resetSynchronizers() {
 	}
 
+	// The part of the image the user is looking at, in pixels: a null viewport
+	// stands for the whole image, a null focus for the center of the viewport.
+	// Productions free to choose the order of their work may start there. May
+	// be called at any time, from any thread
+	public void setFocus(Rectangle viewport, Point focus) {
+	}
+
+	// Checked by producers before every point: a preemptible worker parks here
+	// while more urgent work runs. Tells whether the producer must stop
+	protected static boolean shouldStop(Thread currentThread) {
+		if (currentThread instanceof Preemptible) {
+			try {
+				((Preemptible) currentThread).yieldToUrgentWork();
+			} catch (InterruptedException e) {
+				currentThread.interrupt();
+			}
+		}
+		return currentThread.isInterrupted();
+	}
+
 	public final void setMaxLogLength(int length) {
 		maxLogLength = length;
 	}
+
+	// The executor running the producers. Productions may submit helper
+	// tasks to it; by default they do not
+	public void setExecutor(Executor executor) {
+	}
 }
@@ -21,7 +21,7 @@
 package org.altervista.mbilotta.julia;
 
 
-public final class Progress {
+public class Progress {
 
 	private final Object initialValue;
 	private final Object finalValue;
@@ -53,7 +53,7 @@ public final class Progress {
 	}
 
 	public boolean isFinalValue() {
-		return value.equals(finalValue);
+		return getValue().equals(finalValue);
 	}
 
 	void setValue(Object value) {
@@ -64,8 +64,8 @@ public final class Progress {
 	@Override
 	public String toString() {
 		return getClass().getSimpleName() +
-				"[initialValue=" + initialValue +
-				", finalValue=" + finalValue +
-				", value=" + value + "]";
+				"[initialValue=" + getInitialValue() +
+				", finalValue=" + getFinalValue() +
+				", value=" + getValue() + "]";
 	}
 }
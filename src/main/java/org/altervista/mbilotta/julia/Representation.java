@@ -40,6 +40,33 @@ public interface Representation {
 			CoordinateTransform coordinateTransform,
 			Complex juliaSetPoint);
 
+	// previous is a complete image of the same formula and representation,
+	// rendered through previousTransform. Representations that can tell which
+	// of its points the new pixel grid shares take them over instead of
+	// computing them again
+	default Production createProduction(IntermediateImage iimg,
+			NumberFactory numberFactory,
+			Formula formula,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			IntermediateImage previous,
+			CoordinateTransform previousTransform) {
+		return createProduction(iimg, numberFactory, formula, coordinateTransform, juliaSetPoint);
+	}
+
+	// Second pass over the complete image iimg, taking more samples where
+	// neighbouring pixels differ by more than threshold in some color channel.
+	// Its intermediate image replaces iimg for consumers. Null if the
+	// representation cannot refine its images
+	default Production createSupersampling(IntermediateImage iimg,
+			NumberFactory numberFactory,
+			Formula formula,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			int threshold) {
+		return null;
+	}
+
 	Consumer createConsumer(IntermediateImage iimg);
 	Consumer createConsumer(IntermediateImage iimg, Consumer recyclableConsumer, boolean keepProgress);
 
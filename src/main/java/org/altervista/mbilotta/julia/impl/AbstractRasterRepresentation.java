@@ -36,14 +36,26 @@ import org.altervista.mbilotta.julia.math.CoordinateTransform;
 
 public abstract class AbstractRasterRepresentation implements Representation {
 	
+	private static final int PERIODICITY_EPSILON_DIVISOR = 1 << 10;
+
 	private int numOfSteps;
+	private ProductionMode productionMode;
+	private boolean periodicityChecking;
 
 	public AbstractRasterRepresentation() {
 		numOfSteps = 1;
+		productionMode = ProductionMode.RASTER_SCAN;
 	}
 
 	public AbstractRasterRepresentation(int numOfSteps) {
 		this.numOfSteps = numOfSteps;
+		this.productionMode = ProductionMode.RASTER_SCAN;
+	}
+
+	public AbstractRasterRepresentation(int numOfSteps, ProductionMode productionMode) {
+		assert productionMode != null;
+		this.numOfSteps = numOfSteps;
+		this.productionMode = productionMode;
 	}
 
 	protected abstract PointCalculator createPointCalculator(IntermediateImage iimg, NumberFactory numberFactory, CoordinateTransform coordinateTransform, boolean isJuliaSet);
@@ -53,8 +65,14 @@ public abstract class AbstractRasterRepresentation implements Representation {
 		PixelCalculator rv = null;
 		if (consumer instanceof RasterScanConsumer) {
 			rv = ((RasterScanConsumer) consumer).getPixelCalculator();
+		} else if (consumer instanceof TiledScanConsumer) {
+			rv = ((TiledScanConsumer) consumer).getPixelCalculator();
 		} else if (consumer instanceof ProgressiveRefinementConsumer) {
 			rv = ((ProgressiveRefinementConsumer) consumer).getPixelCalculator();
+		} else if (consumer instanceof TiledRefinementConsumer) {
+			rv = ((TiledRefinementConsumer) consumer).getPixelCalculator();
+		} else if (consumer instanceof SupersampledConsumer) {
+			rv = ((SupersampledConsumer) consumer).getPixelCalculator();
 		}
 		return rv;
 	}
@@ -68,7 +86,7 @@ public abstract class AbstractRasterRepresentation implements Representation {
 
 	protected void writeProgressValue(Object progressValue, ObjectOutputStream out)
 			throws IOException {
-		if (numOfSteps > 1) {
+		if (numOfSteps > 1 || productionMode != ProductionMode.RASTER_SCAN) {
 			out.writeObject(progressValue);
 		} else {
 			out.writeInt((Integer) progressValue);
@@ -87,16 +105,29 @@ public abstract class AbstractRasterRepresentation implements Representation {
 		out.writeInt(iimg.getHeight());
 		int numOfProducers = iimg.getNumOfProducers();
 		out.writeInt(numOfProducers);
-		Object[] progressValues = new Object[numOfProducers];
+		Object[] progressValues;
+		if (productionMode != ProductionMode.RASTER_SCAN) {
+			progressValues = TiledScan.getProgressValues(iimg);
+		} else {
+			progressValues = new Object[numOfProducers];
+			for (int i = 0; i < numOfProducers; i++) {
+				progressValues[i] = iimg.getProgressOf(i).getValue();
+			}
+		}
 		for (int i = 0; i < numOfProducers; i++) {
-			progressValues[i] = iimg.getProgressOf(i).getValue();
 			writeProgressValue(progressValues[i], out);
 		}
-		if (numOfSteps > 1) {
+		if (isProgressivelyRefined()) {
 			if (iimg instanceof ProgressivelyRefinedImage) {
 				out.writeInt(((ProgressivelyRefinedImage) iimg).getMinIterations());
 			}
-			ProgressiveRefinement.writePoints(out, progressValues, (RasterImage) iimg);
+			if (productionMode == ProductionMode.TILED_SCAN) {
+				TiledRefinement.writePoints(out, progressValues, (RasterImage) iimg);
+			} else {
+				ProgressiveRefinement.writePoints(out, progressValues, (RasterImage) iimg);
+			}
+		} else if (productionMode != ProductionMode.RASTER_SCAN) {
+			TiledScan.writePoints(out, progressValues, (RasterImage) iimg);
 		} else {
 			RasterScan.writePoints(out, progressValues, (RasterImage) iimg);
 		}
@@ -107,46 +138,234 @@ public abstract class AbstractRasterRepresentation implements Representation {
 			Formula formula,
 			CoordinateTransform coordinateTransform,
 			Complex juliaSetPoint) {
+		// One grid per production, shared by all producers and point calculators
+		coordinateTransform = coordinateTransform.withGrid(numberFactory, iimg.getWidth(), iimg.getHeight());
 		PointCalculator pointCalculator = createPointCalculator(iimg, numberFactory, coordinateTransform, juliaSetPoint != null);
+		Production rv = createProduction(iimg, numberFactory, formula, coordinateTransform, juliaSetPoint, pointCalculator);
+		// Perturbation iterates a perturbed formula and fixes glitches afterwards
+		if (pointCalculator.hasSymmetricPoints() && !(rv instanceof Perturbation)
+				&& (rv instanceof RasterScan || rv instanceof TiledScan)) {
+			Symmetry symmetry = Symmetry.create(iimg, formula, coordinateTransform, juliaSetPoint);
+			if (rv instanceof RasterScan) {
+				((RasterScan) rv).setSymmetry(symmetry);
+			} else {
+				((TiledScan) rv).setSymmetry(symmetry);
+			}
+		}
+		return rv;
+	}
+
+	private Production createProduction(IntermediateImage iimg,
+			NumberFactory numberFactory,
+			Formula formula,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			PointCalculator pointCalculator) {
+		if (productionMode == ProductionMode.PERTURBATION && formula instanceof PerturbationFormula) {
+			return new Perturbation(
+					numberFactory,
+					(PerturbationFormula) formula,
+					this,
+					coordinateTransform,
+					juliaSetPoint,
+					pointCalculator);
+		}
+		formula = adaptFormula(formula, numberFactory, coordinateTransform);
+
+		if (isProgressivelyRefined()) {
+			switch (productionMode) {
+			case TILED_SCAN:
+				return new TiledRefinement(
+						numberFactory,
+						formula,
+						this,
+						coordinateTransform,
+						juliaSetPoint,
+						pointCalculator);
+			case RASTER_SCAN:
+				return new ProgressiveRefinement(
+						numberFactory,
+						formula,
+						this,
+						coordinateTransform,
+						juliaSetPoint,
+						pointCalculator);
+			default: throw new AssertionError(productionMode);
+			}
+		}
 
-		return numOfSteps > 1 ?
-				new ProgressiveRefinement(
+		switch (productionMode) {
+		case BOUNDARY_TRACING:
+			if (iimg instanceof IntegerImage) {
+				return new BoundaryTracing(
 						numberFactory,
 						formula,
 						this,
 						coordinateTransform,
 						juliaSetPoint,
-						pointCalculator) :
-				new RasterScan(
+						pointCalculator);
+			}
+			// Contours are traced comparing integer points: fall back to a tiled scan
+			return createTiledScan(numberFactory, formula, coordinateTransform, juliaSetPoint, pointCalculator);
+		case MARIANI_SILVER:
+			if (iimg instanceof IntegerImage) {
+				return new MarianiSilver(
 						numberFactory,
 						formula,
 						this,
 						coordinateTransform,
 						juliaSetPoint,
 						pointCalculator);
+			}
+			// Subdivision compares integer points: fall back to a tiled scan
+			return createTiledScan(numberFactory, formula, coordinateTransform, juliaSetPoint, pointCalculator);
+		case PERTURBATION:
+			// The formula has no perturbed recurrence: scan at full precision
+			return createTiledScan(numberFactory, formula, coordinateTransform, juliaSetPoint, pointCalculator);
+		case TILED_SCAN:
+			return createTiledScan(numberFactory, formula, coordinateTransform, juliaSetPoint, pointCalculator);
+		case RASTER_SCAN:
+			return new RasterScan(
+					numberFactory,
+					formula,
+					this,
+					coordinateTransform,
+					juliaSetPoint,
+					pointCalculator);
+		default: throw new AssertionError(productionMode);
+		}
+	}
+
+	private Production createTiledScan(NumberFactory numberFactory,
+			Formula formula,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			PointCalculator pointCalculator) {
+		return new TiledScan(
+				numberFactory,
+				formula,
+				this,
+				coordinateTransform,
+				juliaSetPoint,
+				pointCalculator);
+	}
+
+	// Pans by whole pixels and zooms by small integer factors keep part of the
+	// pixel grid: those points are copied and only the rest is computed.
+	// Progressive refinement keeps more than the point values, so it starts over
+	@Override
+	public Production createProduction(IntermediateImage iimg,
+			NumberFactory numberFactory,
+			Formula formula,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			IntermediateImage previous,
+			CoordinateTransform previousTransform) {
+		Production rv = createProduction(iimg, numberFactory, formula, coordinateTransform, juliaSetPoint);
+		if (!isProgressivelyRefined() && (rv instanceof RasterScan || rv instanceof TiledScan)) {
+			PointReuse pointReuse = PointReuse.create(previous, previousTransform, iimg, coordinateTransform);
+			if (rv instanceof RasterScan) {
+				((RasterScan) rv).setPointReuse(pointReuse);
+			} else {
+				((TiledScan) rv).setPointReuse(pointReuse);
+			}
+		}
+		return rv;
+	}
+
+	@Override
+	public Production createSupersampling(IntermediateImage iimg,
+			NumberFactory numberFactory,
+			Formula formula,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			int threshold) {
+		assert iimg.isComplete();
+		return new Supersampling(
+				numberFactory,
+				adaptFormula(formula, numberFactory, coordinateTransform),
+				this,
+				coordinateTransform,
+				juliaSetPoint,
+				new SupersampledImage(iimg),
+				threshold);
+	}
+
+	private Formula adaptFormula(Formula formula, NumberFactory numberFactory, CoordinateTransform coordinateTransform) {
+		if (DoubleFormulaAdapter.isApplicable(formula, numberFactory)) {
+			// Nothing to lose by iterating on primitive doubles
+			return new DoubleFormulaAdapter(formula, numberFactory, periodicityChecking ?
+					coordinateTransform.getScaleRe().abs().doubleValue() / PERIODICITY_EPSILON_DIVISOR : 0);
+		} else if (periodicityChecking) {
+			// Orbits are captured well below pixel resolution
+			return new PeriodicityCheckingFormula(formula,
+					coordinateTransform.getScaleRe().abs().dividedBy(PERIODICITY_EPSILON_DIVISOR));
+		}
+		return formula;
 	}
 
 	public Consumer createConsumer(IntermediateImage iimg) {
 		PixelCalculator pixelCalculator = createPixelCalculator();
-		return numOfSteps > 1 ?
-				new ProgressiveRefinementConsumer(iimg, pixelCalculator) :
-				new RasterScanConsumer(iimg, pixelCalculator);
+		if (iimg instanceof SupersampledImage) {
+			return new SupersampledConsumer(iimg, pixelCalculator);
+		}
+		if (isProgressivelyRefined()) {
+			switch (productionMode) {
+			case TILED_SCAN: return new TiledRefinementConsumer(iimg, pixelCalculator);
+			case RASTER_SCAN: return new ProgressiveRefinementConsumer(iimg, pixelCalculator);
+			default: throw new AssertionError(productionMode);
+			}
+		}
+
+		switch (productionMode) {
+		case PERTURBATION:
+		case BOUNDARY_TRACING:
+		case MARIANI_SILVER:
+		case TILED_SCAN: return new TiledScanConsumer(iimg, pixelCalculator);
+		case RASTER_SCAN: return new RasterScanConsumer(iimg, pixelCalculator);
+		default: throw new AssertionError(productionMode);
+		}
 	}
 
 	public Consumer createConsumer(IntermediateImage iimg, Consumer recyclableConsumer, boolean keepProgress) {
 		PixelCalculator pixelCalculator = getPixelCalculator(recyclableConsumer);
 		pixelCalculator = pixelCalculator != null ? recyclePixelCalculator(pixelCalculator) : createPixelCalculator();
-		if (numOfSteps > 1) {
-			if (keepProgress && recyclableConsumer instanceof ProgressiveRefinementConsumer) {
-				return new ProgressiveRefinementConsumer(iimg, pixelCalculator, ((ProgressiveRefinementConsumer) recyclableConsumer).getProgressValue());
+		if (iimg instanceof SupersampledImage) {
+			return new SupersampledConsumer(iimg, pixelCalculator);
+		}
+		if (isProgressivelyRefined()) {
+			switch (productionMode) {
+			case TILED_SCAN:
+				if (keepProgress && recyclableConsumer instanceof TiledRefinementConsumer) {
+					TiledRefinementConsumer consumer = (TiledRefinementConsumer) recyclableConsumer;
+					return new TiledRefinementConsumer(iimg, pixelCalculator, consumer.getConsumedPasses(), consumer.getConsumedOffsets());
+				}
+				return new TiledRefinementConsumer(iimg, pixelCalculator);
+			case RASTER_SCAN:
+				if (keepProgress && recyclableConsumer instanceof ProgressiveRefinementConsumer) {
+					return new ProgressiveRefinementConsumer(iimg, pixelCalculator, ((ProgressiveRefinementConsumer) recyclableConsumer).getProgressValue());
+				}
+				return new ProgressiveRefinementConsumer(iimg, pixelCalculator);
+			default: throw new AssertionError(productionMode);
 			}
-			return new ProgressiveRefinementConsumer(iimg, pixelCalculator);
 		}
 
-		if (keepProgress && recyclableConsumer instanceof RasterScanConsumer) {
-			return new RasterScanConsumer(iimg, pixelCalculator, ((RasterScanConsumer) recyclableConsumer).getOffset());
+		switch (productionMode) {
+		case PERTURBATION:
+		case BOUNDARY_TRACING:
+		case MARIANI_SILVER:
+		case TILED_SCAN:
+			if (keepProgress && recyclableConsumer instanceof TiledScanConsumer) {
+				return new TiledScanConsumer(iimg, pixelCalculator, ((TiledScanConsumer) recyclableConsumer).getConsumedPixels());
+			}
+			return new TiledScanConsumer(iimg, pixelCalculator);
+		case RASTER_SCAN:
+			if (keepProgress && recyclableConsumer instanceof RasterScanConsumer) {
+				return new RasterScanConsumer(iimg, pixelCalculator, ((RasterScanConsumer) recyclableConsumer).getOffset());
+			}
+			return new RasterScanConsumer(iimg, pixelCalculator);
+		default: throw new AssertionError(productionMode);
 		}
-		return new RasterScanConsumer(iimg, pixelCalculator);
 	}
 
 	protected int getNumOfSteps() {
@@ -156,4 +375,31 @@ public abstract class AbstractRasterRepresentation implements Representation {
 	protected void setNumOfSteps(int numOfSteps) {
 		this.numOfSteps = numOfSteps;
 	}
+
+	// Only scans are refined progressively: the other modes replace
+	// progressive refinement altogether
+	protected boolean isProgressivelyRefined() {
+		return numOfSteps > 1
+				&& (productionMode == ProductionMode.RASTER_SCAN
+				|| productionMode == ProductionMode.TILED_SCAN);
+	}
+
+	// Public, so that every representation descriptor gets it as a parameter
+	public boolean isPeriodicityChecking() {
+		return periodicityChecking;
+	}
+
+	public void setPeriodicityChecking(boolean periodicityChecking) {
+		this.periodicityChecking = periodicityChecking;
+	}
+
+	// Public, so that every representation descriptor gets it as a parameter
+	public ProductionMode getProductionMode() {
+		return productionMode;
+	}
+
+	public void setProductionMode(ProductionMode productionMode) {
+		assert productionMode != null;
+		this.productionMode = productionMode;
+	}
 }
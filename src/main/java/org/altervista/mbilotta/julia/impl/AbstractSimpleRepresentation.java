@@ -36,24 +36,70 @@ public abstract class AbstractSimpleRepresentation extends AbstractRasterReprese
 		super(numOfSteps);
 	}
 
+	public AbstractSimpleRepresentation(int numOfSteps, ProductionMode productionMode) {
+		super(numOfSteps, productionMode);
+	}
+
 	protected abstract RasterImage createIntermediateImage(int width, int height, Progress[] progress);
 
 	public RasterImage createIntermediateImage(int width, int height, int numOfProducers) {
-		return getNumOfSteps() > 1 ?
-				createIntermediateImage(width, height, ProgressiveRefinement.createInitialProgress(width, height, numOfProducers, getNumOfSteps())) :
-				createIntermediateImage(width,	height, RasterScan.createInitialProgress(width, height, numOfProducers));
+		if (isProgressivelyRefined()) {
+			switch (getProductionMode()) {
+			case TILED_SCAN: return createIntermediateImage(width, height, TiledRefinement.createInitialProgress(width, height, numOfProducers, getNumOfSteps()));
+			case RASTER_SCAN: return createIntermediateImage(width, height, ProgressiveRefinement.createInitialProgress(width, height, numOfProducers, getNumOfSteps()));
+			default: throw new AssertionError(getProductionMode());
+			}
+		}
+
+		switch (getProductionMode()) {
+		case PERTURBATION:
+		case BOUNDARY_TRACING:
+		case MARIANI_SILVER:
+		case TILED_SCAN: return createIntermediateImage(width, height, TiledScan.createInitialProgress(width, height, numOfProducers));
+		case RASTER_SCAN: return createIntermediateImage(width, height, RasterScan.createInitialProgress(width, height, numOfProducers));
+		default: throw new AssertionError(getProductionMode());
+		}
 	}
 
 	protected RasterImage readIntermediateImageImpl(int width, int height, int numOfProducers, ObjectInputStream in)
 			throws ClassNotFoundException, IOException {
-		if (getNumOfSteps() > 1) {
-			RasterImage rv = createIntermediateImage(width, height, ProgressiveRefinement.readProgress(width, height, numOfProducers, getNumOfSteps(), in));
-			ProgressiveRefinement.readPoints(in, rv);
+		RasterImage rv;
+		if (isProgressivelyRefined()) {
+			switch (getProductionMode()) {
+			case TILED_SCAN:
+				rv = createIntermediateImage(width, height, TiledRefinement.readProgress(width, height, numOfProducers, getNumOfSteps(), in));
+				readMinIterations(in, rv);
+				TiledRefinement.readPoints(in, rv);
+				return rv;
+			case RASTER_SCAN:
+				rv = createIntermediateImage(width, height, ProgressiveRefinement.readProgress(width, height, numOfProducers, getNumOfSteps(), in));
+				readMinIterations(in, rv);
+				ProgressiveRefinement.readPoints(in, rv);
+				return rv;
+			default: throw new AssertionError(getProductionMode());
+			}
+		}
+
+		switch (getProductionMode()) {
+		case PERTURBATION:
+		case BOUNDARY_TRACING:
+		case MARIANI_SILVER:
+		case TILED_SCAN:
+			rv = createIntermediateImage(width, height, TiledScan.readProgress(width, height, numOfProducers, in));
+			TiledScan.readPoints(in, rv);
+			return rv;
+		case RASTER_SCAN:
+			rv = createIntermediateImage(width, height, RasterScan.readProgress(width, height, numOfProducers, in));
+			RasterScan.readPoints(in, rv);
 			return rv;
+		default: throw new AssertionError(getProductionMode());
 		}
+	}
 
-		RasterImage rv = createIntermediateImage(width, height, RasterScan.readProgress(width, height, numOfProducers, in));
-		RasterScan.readPoints(in, rv);
-		return rv;
+	// Written by writeIntermediateImage ahead of the points
+	private static void readMinIterations(ObjectInputStream in, RasterImage iimg) throws IOException {
+		if (iimg instanceof ProgressivelyRefinedImage) {
+			((ProgressivelyRefinedImage) iimg).offerMinIterations(in.readInt());
+		}
 	}
 }
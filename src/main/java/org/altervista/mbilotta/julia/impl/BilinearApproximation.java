@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+
+final class BilinearApproximation {
+
+	private static final double EPSILON = 0x1p-53;
+	private static final int CHUNK_SIZE = 4096;
+
+	private final int start;
+	private final int end;
+	private final double[][] aRe;
+	private final double[][] aIm;
+	private final double[][] bRe;
+	private final double[][] bIm;
+	private final double[][] radius;
+
+	// Level k holds the approximations of 2^k steps, starting at the
+	// multiples of 2^k past start. Each level is built from the one below
+	// it, its entries in parallel on executor, if not null
+	public BilinearApproximation(PerturbationFormula formula, double[] re, double[] im, int start, int end, double dcMax, Executor executor) {
+		assert start < end;
+		this.start = start;
+		this.end = end;
+
+		int size = end - start;
+		int numOfLevels = 32 - Integer.numberOfLeadingZeros(size);
+		aRe = new double[numOfLevels][];
+		aIm = new double[numOfLevels][];
+		bRe = new double[numOfLevels][];
+		bIm = new double[numOfLevels][];
+		radius = new double[numOfLevels][];
+
+		allocateLevel(0, size);
+		forEach(size, executor, j -> {
+			double[] coefficients = new double[4];
+			formula.linearize(re[start + j], im[start + j], coefficients);
+			aRe[0][j] = coefficients[0];
+			aIm[0][j] = coefficients[1];
+			bRe[0][j] = coefficients[2];
+			bIm[0][j] = coefficients[3];
+			radius[0][j] = validate(j, 0, formula.getLinearRadius(re[start + j], im[start + j], EPSILON));
+		});
+
+		for (int k = 1; k < numOfLevels; k++) {
+			int level = k;
+			allocateLevel(level, size >> level);
+			forEach(size >> level, executor, j -> merge(level, j, dcMax));
+		}
+	}
+
+	// Steps dz along the entry of the highest level that starts at n, is
+	// no longer than maxSkip and admits dz. Returns the steps skipped
+	public int apply(int n, int maxSkip, double[] delta, int exponent) {
+		int offset = n - start;
+		if (offset < 0 || n >= end) {
+			return 0;
+		}
+
+		double magnitude = delta[0] * delta[0] + delta[1] * delta[1];
+		int k = Math.min(radius.length - 1, offset == 0 ? 31 : Integer.numberOfTrailingZeros(offset));
+		for ( ; k > 0; k--) {
+			int length = 1 << k;
+			if (length > maxSkip || n + length > end) {
+				continue;
+			}
+
+			int j = offset >> k;
+			double r = Math.scalb(radius[k][j], -exponent);
+			if (magnitude < r * r) {
+				double re = delta[0];
+				double im = delta[1];
+				delta[0] = aRe[k][j] * re - aIm[k][j] * im + bRe[k][j] * delta[2] - bIm[k][j] * delta[3];
+				delta[1] = aRe[k][j] * im + aIm[k][j] * re + bRe[k][j] * delta[3] + bIm[k][j] * delta[2];
+				return length;
+			}
+		}
+		return 0;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getEnd() {
+		return end;
+	}
+
+	// Applying x and then y: A = Ay Ax, B = Ay Bx + By. The radius of y is
+	// shrunk by what x may contribute: r = min(rx, (ry - |Bx| |dc|) / |Ax|)
+	private void merge(int k, int j, double dcMax) {
+		int x = j << 1;
+		int y = x + 1;
+		double[] aRe = this.aRe[k - 1];
+		double[] aIm = this.aIm[k - 1];
+		double[] bRe = this.bRe[k - 1];
+		double[] bIm = this.bIm[k - 1];
+		double[] radius = this.radius[k - 1];
+
+		this.aRe[k][j] = aRe[y] * aRe[x] - aIm[y] * aIm[x];
+		this.aIm[k][j] = aRe[y] * aIm[x] + aIm[y] * aRe[x];
+		this.bRe[k][j] = aRe[y] * bRe[x] - aIm[y] * bIm[x] + bRe[y];
+		this.bIm[k][j] = aRe[y] * bIm[x] + aIm[y] * bRe[x] + bIm[y];
+		double r = (radius[y] - Math.hypot(bRe[x], bIm[x]) * dcMax) / Math.hypot(aRe[x], aIm[x]);
+		this.radius[k][j] = validate(j, k, Math.min(radius[x], Math.max(0, r)));
+	}
+
+	// Entries whose coefficients overflowed are never applied
+	private double validate(int j, int k, double r) {
+		boolean finite = Double.isFinite(aRe[k][j]) && Double.isFinite(aIm[k][j])
+				&& Double.isFinite(bRe[k][j]) && Double.isFinite(bIm[k][j]);
+		return finite && r > 0 ? r : 0;
+	}
+
+	private void allocateLevel(int k, int length) {
+		aRe[k] = new double[length];
+		aIm[k] = new double[length];
+		bRe[k] = new double[length];
+		bIm[k] = new double[length];
+		radius[k] = new double[length];
+	}
+
+	// Chunks are claimed by the caller and by helpers submitted to executor.
+	// The caller only waits for the chunks helpers have claimed, so helpers
+	// queued behind busy threads cost nothing: they find no work left
+	private static void forEach(int length, Executor executor, IntConsumer action) {
+		int numOfChunks = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		if (executor == null || numOfChunks < 2) {
+			for (int j = 0; j < length; j++) {
+				action.accept(j);
+			}
+			return;
+		}
+
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger done = new AtomicInteger();
+		Runnable worker = () -> {
+			int chunk;
+			while ((chunk = next.getAndIncrement()) < numOfChunks) {
+				try {
+					int end = Math.min(length, (chunk + 1) * CHUNK_SIZE);
+					for (int j = chunk * CHUNK_SIZE; j < end; j++) {
+						action.accept(j);
+					}
+				} finally {
+					if (done.incrementAndGet() == numOfChunks) {
+						synchronized (done) {
+							done.notifyAll();
+						}
+					}
+				}
+			}
+		};
+
+		int numOfHelpers = Math.min(numOfChunks, Runtime.getRuntime().availableProcessors()) - 1;
+		try {
+			for (int i = 0; i < numOfHelpers; i++) {
+				executor.execute(worker);
+			}
+		} catch (RejectedExecutionException e) {
+			// Helpers are optional: the caller does what is left
+		}
+		worker.run();
+
+		// Entries being written by helpers must not be read before they are
+		// done: interruption is deferred
+		boolean interrupted = false;
+		synchronized (done) {
+			while (done.get() < numOfChunks) {
+				try {
+					done.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
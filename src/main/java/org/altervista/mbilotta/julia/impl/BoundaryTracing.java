@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.altervista.mbilotta.julia.impl;
+
+import java.util.BitSet;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Progress;
+import org.altervista.mbilotta.julia.Representation;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+
+
+public class BoundaryTracing extends TiledScan {
+
+	private static final int PROBE_SPACING = 8;
+	private static final int MAX_ISLANDS = 16;
+	private static final int MAX_DEPTH = 64;
+
+	private static final int FILLED = -1;
+	private static final int INTERRUPTED = -2;
+
+	private static final int[] DX = { 1, 0, -1, 0 };
+	private static final int[] DY = { 0, 1, 0, -1 };
+	private static final int UP = 3;
+
+	// A point is claimed by the producer that is about to compute or fill it,
+	// and done as soon as its value is in the image. Only the claiming
+	// producer writes it: the others wait for it to be done
+	private final ConcurrentBitmap claimed;
+	private final ConcurrentBitmap done;
+
+	protected class Producer extends TiledScan.Producer {
+
+		private final IntegerImage iimg;
+		private final int width;
+		private final int height;
+		private final BitSet visited;
+		private int[] queue = new int[256];
+		private boolean interrupted;
+
+		public Producer(Progress progress) {
+			super(progress);
+			iimg = (IntegerImage) getIntermediateImage();
+			width = iimg.getWidth();
+			height = iimg.getHeight();
+			visited = new BitSet(width * height);
+		}
+
+		@Override
+		protected boolean computeTile() {
+			TileGrid tileGrid = getTileGrid();
+			int tile = getTile();
+			int length = tileGrid.getNumOfPixels(tile);
+			if (getTileOffset() == length) {
+				return true;
+			}
+
+			int tileX = tileGrid.getTileX(tile);
+			int tileY = tileGrid.getTileY(tile);
+			int xEnd = tileX + tileGrid.getTileWidth(tile);
+			int yEnd = tileY + tileGrid.getTileHeight(tile);
+			interrupted = false;
+			for (int y = tileY; y < yEnd; y++) {
+				for (int x = tileX; x < xEnd; x++) {
+					if (done.get(y * width + x)) {
+						continue;
+					}
+
+					int value = getPoint(x, y);
+					boolean seed = x == 0 || getPoint(x - 1, y) != value;
+					if (interrupted) return false;
+					if (seed && !traceAndFill(x, y, value, 0)) return false;
+				}
+			}
+			setTileOffset(length);
+			return true;
+		}
+
+		private boolean traceAndFill(int x, int y, int value, int depth) {
+			// Follows the cracks around the 4-connected region of (x, y), keeping
+			// the outside on the left. Both sides of every crack get computed, so
+			// the region cannot be left through its contour without meeting a
+			// point of a different value. Contours around holes turn the other way
+			int cx = x;
+			int cy = y;
+			int d = UP;
+			int turns = 0;
+			long maxSteps = 4l * width * height + 4;
+			do {
+				int fx = cx + DX[d];
+				int fy = cy + DY[d];
+				if (!contains(fx, fy, value)) {
+					d = (d + 1) & 3;
+					turns++;
+				} else {
+					int l = (d + 3) & 3;
+					int flx = fx + DX[l];
+					int fly = fy + DY[l];
+					if (!contains(flx, fly, value)) {
+						cx = fx;
+						cy = fy;
+					} else {
+						cx = flx;
+						cy = fly;
+						d = l;
+						turns--;
+					}
+				}
+				if (interrupted) return false;
+			} while ((cx != x || cy != y || d != UP) && --maxSteps > 0);
+
+			if (turns != 4) {
+				return true;
+			}
+
+			// Every island found is traced and filled in turn, so that its contour
+			// fences it off from the next attempt
+			for (int i = 0; i < MAX_ISLANDS; i++) {
+				int island = fill(x, y, value);
+				if (island == FILLED) return true;
+				if (island == INTERRUPTED) return false;
+				if (depth == MAX_DEPTH) return true;
+
+				int ix = island % width;
+				int iy = island / width;
+				while (ix > 0 && getPoint(ix - 1, iy) != value) {
+					ix--;
+				}
+				if (interrupted) return false;
+				if (ix == 0) return true;
+				if (!traceAndFill(ix, iy, getPoint(ix, iy), depth + 1)) return false;
+			}
+			return true;
+		}
+
+		// The contour points are all done: meeting a different value next to a
+		// point that is not, or at one of the probes computed on a sparse grid,
+		// reveals an island. Returns the index of a point of the island, if any
+		private int fill(int x, int y, int value) {
+			int start = y * width + x;
+			int min = start;
+			int max = start;
+			int head = 0;
+			int tail = 0;
+			int island = FILLED;
+			queue[tail++] = start;
+			visited.set(start);
+			while (head != tail && island == FILLED) {
+				int index = queue[head];
+				head = (head + 1) & (queue.length - 1);
+				int px = index % width;
+				int py = index / width;
+				boolean interior = !done.get(index);
+				for (int d = 0; d < 4 && island == FILLED; d++) {
+					int nx = px + DX[d];
+					int ny = py + DY[d];
+					if (nx < 0 || nx >= width || ny < 0 || ny >= height) {
+						continue;
+					}
+					int neighbor = ny * width + nx;
+					if (visited.get(neighbor)) {
+						continue;
+					}
+
+					visited.set(neighbor);
+					min = Math.min(min, neighbor);
+					max = Math.max(max, neighbor);
+					if (done.get(neighbor)) {
+						if (iimg.getPoint(nx, ny) != value) {
+							if (interior) island = neighbor;
+							continue;
+						}
+					} else if (nx % PROBE_SPACING == 0 && ny % PROBE_SPACING == 0) {
+						int probe = getPoint(nx, ny);
+						if (interrupted) {
+							visited.clear(min, max + 1);
+							return INTERRUPTED;
+						}
+						if (probe != value) {
+							island = neighbor;
+							continue;
+						}
+					}
+
+					queue[tail] = neighbor;
+					tail = (tail + 1) & (queue.length - 1);
+					if (tail == head) {
+						head = growQueue(head);
+						tail = queue.length >> 1;
+					}
+				}
+			}
+
+			if (island == FILLED) {
+				for (int i = visited.nextSetBit(min); i >= 0 && i <= max; i = visited.nextSetBit(i + 1)) {
+					if (!done.get(i) && claimed.set(i)) {
+						iimg.setPoint(i % width, i / width, value);
+						done.set(i);
+					}
+				}
+			}
+			visited.clear(min, max + 1);
+			return island;
+		}
+
+		private int growQueue(int head) {
+			int[] newQueue = new int[queue.length << 1];
+			int length = queue.length - head;
+			System.arraycopy(queue, head, newQueue, 0, length);
+			System.arraycopy(queue, 0, newQueue, length, head);
+			queue = newQueue;
+			return 0;
+		}
+
+		private boolean contains(int x, int y, int value) {
+			return x >= 0 && x < width && y >= 0 && y < height && getPoint(x, y) == value;
+		}
+
+		private int getPoint(int x, int y) {
+			int index = y * width + x;
+			if (!done.get(index)) {
+				if (interrupted || shouldStop(Thread.currentThread())) {
+					interrupted = true;
+					return 0;
+				}
+				if (claimed.set(index)) {
+					try {
+						if (!reusePoint(x, y)) {
+							getPointCalculator().computePoint(x, y, getCoordinateTransform(), getFormula());
+							pointComputed(x, y);
+						}
+					} finally {
+						done.set(index);
+					}
+				} else if (!awaitPoint(index)) {
+					return 0;
+				}
+			}
+			return iimg.getPoint(x, y);
+		}
+
+		// Another producer is computing or filling the point: a single point
+		// takes no longer than its iterations
+		private boolean awaitPoint(int index) {
+			Thread currentThread = Thread.currentThread();
+			while (!done.get(index)) {
+				if (shouldStop(currentThread)) {
+					interrupted = true;
+					return false;
+				}
+				Thread.yield();
+			}
+			return true;
+		}
+
+		// The failed point is done already, so only that point is skipped: the
+		// tile stays unfinished until resuming computes the rest of it
+		@Override
+		public void handleException(Throwable t) {
+			super.handleException(t);
+			visited.clear();
+		}
+	}
+
+	public BoundaryTracing(NumberFactory numberFactory,
+			Formula formula,
+			Representation representation,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			PointCalculator pointCalculator) {
+
+		super(numberFactory,
+			formula,
+			representation,
+			coordinateTransform,
+			juliaSetPoint,
+			pointCalculator);
+
+		IntegerImage iimg = (IntegerImage) pointCalculator.getIntermediateImage();
+		int width = iimg.getWidth();
+		claimed = new ConcurrentBitmap(width * iimg.getHeight());
+		done = new ConcurrentBitmap(width * iimg.getHeight());
+
+		TileGrid tileGrid = getTileGrid();
+		int[] tileProgress = getTileProgress(getProgressValues(iimg), tileGrid);
+		for (int tile = 0; tile < tileProgress.length; tile++) {
+			if (tileProgress[tile] == tileGrid.getNumOfPixels(tile)) {
+				int tileX = tileGrid.getTileX(tile);
+				int tileY = tileGrid.getTileY(tile);
+				int xEnd = tileX + tileGrid.getTileWidth(tile);
+				int yEnd = tileY + tileGrid.getTileHeight(tile);
+				for (int y = tileY; y < yEnd; y++) {
+					for (int x = tileX; x < xEnd; x++) {
+						claimed.set(y * width + x);
+						done.set(y * width + x);
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public Producer createProducer(Progress progress) {
+		return new Producer(progress);
+	}
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Just enough of the class file format for straight-line methods: without
+// branches no stack map frames are needed
+final class ClassFileWriter {
+
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+
+	private static final int JAVA_8 = 52;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+	private final Map<String, Integer> constantIndices = new HashMap<>();
+	private int constantPoolCount = 1;
+
+	private final int thisClass;
+	private final int superClass;
+	private final int[] interfaces;
+	private final List<Code> methods = new ArrayList<>();
+
+	ClassFileWriter(String name, String superName, String... interfaceNames) {
+		thisClass = classConstant(name);
+		superClass = classConstant(superName);
+		interfaces = new int[interfaceNames.length];
+		for (int i = 0; i < interfaceNames.length; i++) {
+			interfaces[i] = classConstant(interfaceNames[i]);
+		}
+	}
+
+	Code addMethod(int access, String name, String descriptor, int argumentSlots) {
+		Code rv = new Code(access, utf8Constant(name), utf8Constant(descriptor), argumentSlots);
+		methods.add(rv);
+		return rv;
+	}
+
+	byte[] toByteArray() {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			int codeName = utf8Constant("Code");
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(JAVA_8);
+			out.writeShort(constantPoolCount);
+			constantPoolBytes.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(interfaces.length);
+			for (int i : interfaces) {
+				out.writeShort(i);
+			}
+			out.writeShort(0);
+			out.writeShort(methods.size());
+			for (Code method : methods) {
+				method.writeTo(out, codeName);
+			}
+			out.writeShort(0);
+			out.flush();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private int utf8Constant(String value) {
+		Integer rv = constantIndices.get("U" + value);
+		if (rv == null) {
+			try {
+				constantPool.writeByte(CONSTANT_UTF8);
+				constantPool.writeUTF(value);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			rv = constantPoolCount++;
+			constantIndices.put("U" + value, rv);
+		}
+		return rv;
+	}
+
+	private int classConstant(String name) {
+		int nameIndex = utf8Constant(name);
+		return constant("C" + name, CONSTANT_CLASS, nameIndex, -1, 1);
+	}
+
+	private int doubleConstant(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		return constant("D" + bits, CONSTANT_DOUBLE, (int) (bits >>> 32), (int) bits, 2);
+	}
+
+	private int methodConstant(String owner, String name, String descriptor, boolean isInterface) {
+		int classIndex = classConstant(owner);
+		int nameIndex = utf8Constant(name);
+		int descriptorIndex = utf8Constant(descriptor);
+		int nameAndType = constant("N" + name + descriptor, CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex, 1);
+		return constant((isInterface ? "I" : "M") + owner + "." + name + descriptor,
+				isInterface ? CONSTANT_INTERFACE_METHODREF : CONSTANT_METHODREF,
+				classIndex, nameAndType, 1);
+	}
+
+	// Entries made of one or two u2 (or two u4 for doubles), taking one or
+	// two slots of the pool
+	private int constant(String key, int tag, int first, int second, int slots) {
+		Integer rv = constantIndices.get(key);
+		if (rv == null) {
+			try {
+				constantPool.writeByte(tag);
+				if (tag == CONSTANT_DOUBLE) {
+					constantPool.writeInt(first);
+					constantPool.writeInt(second);
+				} else {
+					constantPool.writeShort(first);
+					if (second >= 0) {
+						constantPool.writeShort(second);
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			rv = constantPoolCount;
+			constantPoolCount += slots;
+			constantIndices.put(key, rv);
+		}
+		return rv;
+	}
+
+	// Emits instructions keeping track of the operand stack depth and of the
+	// local variables in use
+	final class Code {
+
+		private static final int ICONST_0 = 0x03;
+		private static final int DCONST_0 = 0x0e;
+		private static final int BIPUSH = 0x10;
+		private static final int SIPUSH = 0x11;
+		private static final int LDC2_W = 0x14;
+		private static final int DLOAD = 0x18;
+		private static final int ALOAD = 0x19;
+		private static final int DALOAD = 0x31;
+		private static final int AALOAD = 0x32;
+		private static final int DSTORE = 0x39;
+		private static final int ASTORE = 0x3a;
+		private static final int DASTORE = 0x52;
+		private static final int DADD = 0x63;
+		private static final int DSUB = 0x67;
+		private static final int DMUL = 0x6b;
+		private static final int DDIV = 0x6f;
+		private static final int DNEG = 0x77;
+		private static final int ARETURN = 0xb0;
+		private static final int RETURN = 0xb1;
+		private static final int INVOKESPECIAL = 0xb7;
+		private static final int INVOKESTATIC = 0xb8;
+		private static final int INVOKEINTERFACE = 0xb9;
+		private static final int CHECKCAST = 0xc0;
+		private static final int WIDE = 0xc4;
+
+		private final int access;
+		private final int name;
+		private final int descriptor;
+		private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+		private int stack;
+		private int maxStack;
+		private int maxLocals;
+
+		private Code(int access, int name, int descriptor, int argumentSlots) {
+			this.access = access;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.maxLocals = argumentSlots;
+		}
+
+		void aload(int slot) {
+			local(ALOAD, slot, 1);
+			push(1);
+		}
+
+		void astore(int slot) {
+			local(ASTORE, slot, 1);
+			push(-1);
+		}
+
+		void dload(int slot) {
+			local(DLOAD, slot, 2);
+			push(2);
+		}
+
+		void dstore(int slot) {
+			local(DSTORE, slot, 2);
+			push(-2);
+		}
+
+		void iconst(int value) {
+			if (value >= -1 && value <= 5) {
+				code.write(ICONST_0 + value);
+			} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				code.write(BIPUSH);
+				code.write(value);
+			} else {
+				assert value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+				code.write(SIPUSH);
+				u2(value);
+			}
+			push(1);
+		}
+
+		void dconst(double value) {
+			if (Double.doubleToRawLongBits(value) == 0 || value == 1) {
+				code.write(DCONST_0 + (int) value);
+			} else {
+				code.write(LDC2_W);
+				u2(doubleConstant(value));
+			}
+			push(2);
+		}
+
+
+		void daload() {
+			code.write(DALOAD);
+			push(0);
+		}
+
+		void dastore() {
+			code.write(DASTORE);
+			push(-4);
+		}
+
+		void aaload() {
+			code.write(AALOAD);
+			push(-1);
+		}
+
+		void dadd() {
+			code.write(DADD);
+			push(-2);
+		}
+
+		void dsub() {
+			code.write(DSUB);
+			push(-2);
+		}
+
+		void dmul() {
+			code.write(DMUL);
+			push(-2);
+		}
+
+		void ddiv() {
+			code.write(DDIV);
+			push(-2);
+		}
+
+		void dneg() {
+			code.write(DNEG);
+		}
+
+		void checkcast(String type) {
+			code.write(CHECKCAST);
+			u2(classConstant(type));
+		}
+
+		// Stack effects are given in slots: arguments popped (receiver
+		// included) and result pushed
+		void invokestatic(String owner, String name, String descriptor, int argumentSlots, int resultSlots) {
+			code.write(INVOKESTATIC);
+			u2(methodConstant(owner, name, descriptor, false));
+			push(resultSlots - argumentSlots);
+		}
+
+		void invokespecial(String owner, String name, String descriptor, int argumentSlots, int resultSlots) {
+			code.write(INVOKESPECIAL);
+			u2(methodConstant(owner, name, descriptor, false));
+			push(resultSlots - argumentSlots);
+		}
+
+		void invokeinterface(String owner, String name, String descriptor, int argumentSlots, int resultSlots) {
+			code.write(INVOKEINTERFACE);
+			u2(methodConstant(owner, name, descriptor, true));
+			code.write(argumentSlots);
+			code.write(0);
+			push(resultSlots - argumentSlots);
+		}
+
+		void areturn() {
+			code.write(ARETURN);
+			push(-1);
+		}
+
+		void vreturn() {
+			code.write(RETURN);
+		}
+
+		private void local(int opcode, int slot, int size) {
+			if (slot > 0xff) {
+				code.write(WIDE);
+				code.write(opcode);
+				u2(slot);
+			} else {
+				code.write(opcode);
+				code.write(slot);
+			}
+			maxLocals = Math.max(maxLocals, slot + size);
+		}
+
+		private void push(int slots) {
+			stack += slots;
+			assert stack >= 0;
+			maxStack = Math.max(maxStack, stack);
+		}
+
+		private void u2(int value) {
+			code.write(value >>> 8);
+			code.write(value);
+		}
+
+		private void writeTo(DataOutputStream out, int codeName) throws IOException {
+			assert stack == 0;
+			byte[] bytes = code.toByteArray();
+			out.writeShort(access);
+			out.writeShort(name);
+			out.writeShort(descriptor);
+			out.writeShort(1);
+			out.writeShort(codeName);
+			out.writeInt(12 + bytes.length);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			out.writeShort(0);
+			out.writeShort(0);
+		}
+	}
+}
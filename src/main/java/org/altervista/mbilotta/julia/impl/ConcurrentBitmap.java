@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.altervista.mbilotta.julia.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+
+public final class ConcurrentBitmap {
+
+	private final AtomicIntegerArray words;
+	private final int size;
+
+	public ConcurrentBitmap(int size) {
+		this.words = new AtomicIntegerArray((size + 31) >>> 5);
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean get(int index) {
+		return (words.get(index >>> 5) & (1 << index)) != 0;
+	}
+
+	// Returns false if the bit was already set
+	public boolean set(int index) {
+		int i = index >>> 5;
+		int mask = 1 << index;
+		int word;
+		do {
+			word = words.get(i);
+			if ((word & mask) != 0) {
+				return false;
+			}
+		} while (!words.compareAndSet(i, word, word | mask));
+		return true;
+	}
+
+	public void clear(int index) {
+		int i = index >>> 5;
+		int mask = 1 << index;
+		int word;
+		do {
+			word = words.get(i);
+			if ((word & mask) == 0) {
+				return;
+			}
+		} while (!words.compareAndSet(i, word, word & ~mask));
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import org.altervista.mbilotta.julia.DoubleFormula;
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+public final class DoubleFormulaAdapter implements Formula {
+
+	// 2^-53: half an ulp of 1
+	private static final String HALF_ULP_OF_ONE = "1.1102230246251565E-16";
+
+	private final Formula formula;
+	private final DoubleFormula doubleFormula;
+	private final NumberFactory numberFactory;
+	private final double epsilonSquared;
+
+	private final double[] state = new double[4];
+	private Complex c;
+
+	private double checkpointRe;
+	private double checkpointIm;
+	private int iterations;
+	private int nextCheckpoint;
+	private boolean orbitCaptured;
+
+	// Iterations run on the primitive state, the Complex values are only
+	// built when asked for. A positive epsilon enables periodicity checking
+	public DoubleFormulaAdapter(Formula formula, NumberFactory numberFactory, double epsilon) {
+		assert formula instanceof DoubleFormula;
+		this.formula = formula;
+		this.doubleFormula = (DoubleFormula) formula;
+		this.numberFactory = numberFactory;
+		this.epsilonSquared = epsilon * epsilon;
+	}
+
+	// Doubles can stand in for any number factory at most as precise
+	public static boolean isApplicable(Formula formula, NumberFactory numberFactory) {
+		if (formula instanceof DoubleFormula) {
+			Real one = numberFactory.one();
+			return one.plus(numberFactory.valueOf(HALF_ULP_OF_ONE)).eq(one);
+		}
+		return false;
+	}
+
+	@Override
+	public void setC(Complex c) {
+		formula.setC(c);
+		this.c = c;
+		state[2] = c.re().doubleValue();
+		state[3] = c.im().doubleValue();
+	}
+
+	@Override
+	public void iterate() {
+		doubleFormula.iterate(state);
+		if (epsilonSquared > 0 && !orbitCaptured) {
+			checkPeriodicity();
+		}
+	}
+
+	@Override
+	public int iterate(int maxIterations) {
+		DoubleFormula doubleFormula = this.doubleFormula;
+		double[] state = this.state;
+		int i = 0;
+		if (epsilonSquared > 0) {
+			while (i < maxIterations && !orbitCaptured && !doubleFormula.bailoutOccured(state)) {
+				doubleFormula.iterate(state);
+				checkPeriodicity();
+				i++;
+			}
+		} else {
+			while (i < maxIterations && !doubleFormula.bailoutOccured(state)) {
+				doubleFormula.iterate(state);
+				i++;
+			}
+		}
+		return i;
+	}
+
+	@Override
+	public Complex getZ() {
+		return numberFactory.valueOf(toReal(state[0]), toReal(state[1]));
+	}
+
+	@Override
+	public Complex getC() {
+		return c;
+	}
+
+	@Override
+	public boolean bailoutOccured() {
+		return doubleFormula.bailoutOccured(state);
+	}
+
+	@Override
+	public boolean orbitCaptured() {
+		return orbitCaptured;
+	}
+
+	@Override
+	public void initJuliaIteration(Complex z) {
+		state[0] = z.re().doubleValue();
+		state[1] = z.im().doubleValue();
+		doubleFormula.initJuliaIteration(state);
+		startOrbit();
+	}
+
+	@Override
+	public void initMandelbrotIteration(Complex c) {
+		this.c = c;
+		state[2] = c.re().doubleValue();
+		state[3] = c.im().doubleValue();
+		doubleFormula.initMandelbrotIteration(state);
+		startOrbit();
+	}
+
+	@Override
+	public void cacheConstants(NumberFactory numberFactory) {
+		formula.cacheConstants(numberFactory);
+	}
+
+	@Override
+	public DoubleFormulaAdapter newInstance() {
+		return new DoubleFormulaAdapter(formula.newInstance(), numberFactory, Math.sqrt(epsilonSquared));
+	}
+
+	public Formula getFormula() {
+		return formula;
+	}
+
+	// The factory has double precision: the shortest string that reads back
+	// as d is exact, and far shorter than its decimal expansion
+	private Real toReal(double d) {
+		return numberFactory.valueOf(Double.toString(d));
+	}
+
+	private void startOrbit() {
+		checkpointRe = state[0];
+		checkpointIm = state[1];
+		iterations = 0;
+		nextCheckpoint = 1;
+		orbitCaptured = false;
+	}
+
+	// Same scheme as PeriodicityCheckingFormula, on the primitive state
+	private void checkPeriodicity() {
+		double dRe = state[0] - checkpointRe;
+		double dIm = state[1] - checkpointIm;
+		iterations++;
+		if (dRe * dRe + dIm * dIm < epsilonSquared) {
+			orbitCaptured = true;
+		} else if (iterations == nextCheckpoint) {
+			checkpointRe = state[0];
+			checkpointIm = state[1];
+			if (nextCheckpoint <= Integer.MAX_VALUE >> 1) {
+				nextCheckpoint <<= 1;
+			}
+		}
+	}
+}
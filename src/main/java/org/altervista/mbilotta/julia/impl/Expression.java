@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+
+
+final class Expression {
+
+	enum Kind {
+		NUMBER, PI, E, I, Z, C,
+		ADD, SUB, MUL, DIV, NEG, POW,
+		EXP, LOG, SIN, COS, CONJ
+	}
+
+	private final Kind kind;
+	private final String literal;
+	private final Expression left;
+	private final Expression right;
+	private final boolean constant;
+	private final boolean real;
+
+	private Expression(Kind kind, String literal, Expression left, Expression right) {
+		this.kind = kind;
+		this.literal = literal;
+		this.left = left;
+		this.right = right;
+
+		switch (kind) {
+		case NUMBER: case PI: case E:
+			constant = true;
+			real = true;
+			break;
+		case I:
+			constant = true;
+			real = false;
+			break;
+		case Z: case C:
+			constant = false;
+			real = false;
+			break;
+		// The logarithm of a negative real is not real
+		case LOG:
+			constant = left.constant;
+			real = false;
+			break;
+		default:
+			constant = left.constant && (right == null || right.constant);
+			real = left.real && (right == null || right.real) && (kind != Kind.POW || isIntegerExponent(right));
+		}
+	}
+
+	Kind getKind() {
+		return kind;
+	}
+
+	Expression getLeft() {
+		return left;
+	}
+
+	Expression getRight() {
+		return right;
+	}
+
+	// Free of z and c
+	boolean isConstant() {
+		return constant;
+	}
+
+	// A constant with no imaginary part
+	boolean isReal() {
+		return constant && real;
+	}
+
+	// Takes conj(z) and conj(c) to the conjugate value. Logarithms and
+	// non-integer powers are left out: their branch cut lies on the negative
+	// real axis, where conjugation does not commute with them
+	boolean commutesWithConjugation() {
+		if (constant)
+			return isReal();
+
+		switch (kind) {
+		case Z: case C:
+			return true;
+		case ADD: case SUB: case MUL: case DIV:
+			return left.commutesWithConjugation() && right.commutesWithConjugation();
+		case NEG: case EXP: case SIN: case COS: case CONJ:
+			return left.commutesWithConjugation();
+		case POW:
+			return isIntegerExponent(right) && left.commutesWithConjugation();
+		case LOG:
+			return false;
+		default: throw new AssertionError(kind);
+		}
+	}
+
+	enum Parity {
+		EVEN, ODD, NONE
+	}
+
+	// Parity as a function of z
+	Parity getParity() {
+		if (constant)
+			return Parity.EVEN;
+
+		Parity l = left != null ? left.getParity() : null;
+		Parity r = right != null ? right.getParity() : null;
+		switch (kind) {
+		case Z:
+			return Parity.ODD;
+		case C:
+			return Parity.EVEN;
+		case ADD: case SUB:
+			return l == r ? l : Parity.NONE;
+		case MUL: case DIV:
+			if (l == Parity.NONE || r == Parity.NONE)
+				return Parity.NONE;
+			return l == r ? Parity.EVEN : Parity.ODD;
+		case NEG: case SIN: case CONJ:
+			return l;
+		case COS:
+			return l == Parity.NONE ? Parity.NONE : Parity.EVEN;
+		case EXP: case LOG:
+			return l == Parity.EVEN ? Parity.EVEN : Parity.NONE;
+		case POW:
+			if (l == Parity.EVEN && r == Parity.EVEN)
+				return Parity.EVEN;
+			if (l == Parity.ODD && isIntegerExponent(right))
+				return right.doubleValue() % 2 == 0 ? Parity.EVEN : Parity.ODD;
+			return Parity.NONE;
+		default: throw new AssertionError(kind);
+		}
+	}
+
+	double doubleValue() {
+		assert isReal();
+		switch (kind) {
+		case NUMBER: return Double.parseDouble(literal);
+		case PI: return Math.PI;
+		case E: return Math.E;
+		case ADD: return left.doubleValue() + right.doubleValue();
+		case SUB: return left.doubleValue() - right.doubleValue();
+		case MUL: return left.doubleValue() * right.doubleValue();
+		case DIV: return left.doubleValue() / right.doubleValue();
+		case NEG: return -left.doubleValue();
+		case POW: return Math.pow(left.doubleValue(), right.doubleValue());
+		case EXP: return Math.exp(left.doubleValue());
+		case SIN: return Math.sin(left.doubleValue());
+		case COS: return Math.cos(left.doubleValue());
+		case CONJ: return left.doubleValue();
+		default: throw new AssertionError(kind);
+		}
+	}
+
+	// Evaluates a constant at the precision of numberFactory
+	Complex evaluate(NumberFactory numberFactory) {
+		assert isConstant();
+		switch (kind) {
+		case NUMBER: return numberFactory.valueOf(numberFactory.valueOf(literal), numberFactory.zero());
+		case PI: return numberFactory.valueOf(numberFactory.pi(), numberFactory.zero());
+		case E: return numberFactory.valueOf(numberFactory.e(), numberFactory.zero());
+		case I: return numberFactory.i();
+		case ADD: return left.evaluate(numberFactory).plus(right.evaluate(numberFactory));
+		case SUB: return left.evaluate(numberFactory).minus(right.evaluate(numberFactory));
+		case MUL: return left.evaluate(numberFactory).times(right.evaluate(numberFactory));
+		case DIV: return left.evaluate(numberFactory).dividedBy(right.evaluate(numberFactory));
+		case NEG: return left.evaluate(numberFactory).negate();
+		case POW:
+			if (isIntegerExponent(right)) {
+				return left.evaluate(numberFactory).toThe((int) right.doubleValue());
+			}
+			return left.evaluate(numberFactory).pow(right.evaluate(numberFactory));
+		case EXP: return left.evaluate(numberFactory).exp();
+		case LOG: return left.evaluate(numberFactory).ln();
+		case SIN: return left.evaluate(numberFactory).sin();
+		case COS: return left.evaluate(numberFactory).cos();
+		case CONJ: return left.evaluate(numberFactory).conj();
+		default: throw new AssertionError(kind);
+		}
+	}
+
+	// Powers are unrolled up to this exponent
+	static final int MAX_UNROLLED_EXPONENT = 1024;
+
+	static boolean isIntegerExponent(Expression exponent) {
+		if (exponent.isReal()) {
+			double value = exponent.doubleValue();
+			return value == Math.rint(value) && Math.abs(value) <= MAX_UNROLLED_EXPONENT;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		switch (kind) {
+		case NUMBER: return literal;
+		case PI: return "pi";
+		case E: return "e";
+		case I: return "i";
+		case Z: return "z";
+		case C: return "c";
+		case ADD: return "(" + left + " + " + right + ")";
+		case SUB: return "(" + left + " - " + right + ")";
+		case MUL: return "(" + left + " * " + right + ")";
+		case DIV: return "(" + left + " / " + right + ")";
+		case NEG: return "-" + left;
+		case POW: return "(" + left + "^" + right + ")";
+		default: return kind.name().toLowerCase() + "(" + left + ")";
+		}
+	}
+
+	// expression := term (('+' | '-') term)*
+	// term := unary (('*' | '/') unary)*
+	// unary := '-' unary | power
+	// power := primary ('^' unary)?
+	// primary := number | name | function '(' expression ')' | '(' expression ')'
+	static Expression parse(String string) {
+		Parser parser = new Parser(string);
+		Expression rv = parser.parseExpression();
+		parser.skipWhitespace();
+		if (parser.position < string.length()) {
+			throw parser.error("unexpected '" + string.charAt(parser.position) + "'");
+		}
+		return rv;
+	}
+
+	private static final class Parser {
+
+		final String string;
+		int position;
+
+		Parser(String string) {
+			this.string = string;
+		}
+
+		Expression parseExpression() {
+			Expression rv = parseTerm();
+			while (true) {
+				if (accept('+')) {
+					rv = new Expression(Kind.ADD, null, rv, parseTerm());
+				} else if (accept('-')) {
+					rv = new Expression(Kind.SUB, null, rv, parseTerm());
+				} else {
+					return rv;
+				}
+			}
+		}
+
+		Expression parseTerm() {
+			Expression rv = parseUnary();
+			while (true) {
+				if (accept('*')) {
+					rv = new Expression(Kind.MUL, null, rv, parseUnary());
+				} else if (accept('/')) {
+					rv = new Expression(Kind.DIV, null, rv, parseUnary());
+				} else {
+					return rv;
+				}
+			}
+		}
+
+		Expression parseUnary() {
+			if (accept('-')) {
+				return new Expression(Kind.NEG, null, parseUnary(), null);
+			}
+			Expression rv = parsePrimary();
+			if (accept('^')) {
+				rv = new Expression(Kind.POW, null, rv, parseUnary());
+			}
+			return rv;
+		}
+
+		Expression parsePrimary() {
+			skipWhitespace();
+			if (position == string.length()) {
+				throw error("unexpected end of expression");
+			}
+
+			char ch = string.charAt(position);
+			if (accept('(')) {
+				Expression rv = parseExpression();
+				expect(')');
+				return rv;
+			}
+			if (Character.isDigit(ch) || ch == '.') {
+				return parseNumber();
+			}
+			if (Character.isLetter(ch)) {
+				int start = position;
+				while (position < string.length() && Character.isLetterOrDigit(string.charAt(position))) {
+					position++;
+				}
+				String name = string.substring(start, position);
+				switch (name) {
+				case "z": return new Expression(Kind.Z, null, null, null);
+				case "c": return new Expression(Kind.C, null, null, null);
+				case "i": return new Expression(Kind.I, null, null, null);
+				case "pi": return new Expression(Kind.PI, null, null, null);
+				case "e": return new Expression(Kind.E, null, null, null);
+				case "exp": return parseFunction(Kind.EXP);
+				case "log": case "ln": return parseFunction(Kind.LOG);
+				case "sin": return parseFunction(Kind.SIN);
+				case "cos": return parseFunction(Kind.COS);
+				case "conj": return parseFunction(Kind.CONJ);
+				default:
+					position = start;
+					throw error("unknown name '" + name + "'");
+				}
+			}
+			throw error("unexpected '" + ch + "'");
+		}
+
+		Expression parseFunction(Kind kind) {
+			expect('(');
+			Expression argument = parseExpression();
+			expect(')');
+			return new Expression(kind, null, argument, null);
+		}
+
+		Expression parseNumber() {
+			int start = position;
+			while (position < string.length() && Character.isDigit(string.charAt(position))) {
+				position++;
+			}
+			if (position < string.length() && string.charAt(position) == '.') {
+				position++;
+				while (position < string.length() && Character.isDigit(string.charAt(position))) {
+					position++;
+				}
+			}
+			if (position < string.length() && (string.charAt(position) == 'e' || string.charAt(position) == 'E')) {
+				int mark = position++;
+				if (position < string.length() && (string.charAt(position) == '+' || string.charAt(position) == '-')) {
+					position++;
+				}
+				if (position < string.length() && Character.isDigit(string.charAt(position))) {
+					while (position < string.length() && Character.isDigit(string.charAt(position))) {
+						position++;
+					}
+				} else {
+					position = mark;
+				}
+			}
+
+			String literal = string.substring(start, position);
+			if (literal.equals(".")) {
+				position = start;
+				throw error("malformed number");
+			}
+			return new Expression(Kind.NUMBER, literal, null, null);
+		}
+
+		void skipWhitespace() {
+			while (position < string.length() && Character.isWhitespace(string.charAt(position))) {
+				position++;
+			}
+		}
+
+		boolean accept(char ch) {
+			skipWhitespace();
+			if (position < string.length() && string.charAt(position) == ch) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		void expect(char ch) {
+			if (!accept(ch)) {
+				throw error("'" + ch + "' expected");
+			}
+		}
+
+		IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + position + " of \"" + string + "\"");
+		}
+	}
+}
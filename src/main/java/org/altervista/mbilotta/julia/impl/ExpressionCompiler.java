@@ -0,0 +1,537 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.altervista.mbilotta.julia.math.Complex;
+
+
+public final class ExpressionCompiler {
+
+	// Implemented by the generated classes: state holds z and c as in
+	// DoubleFormula, constants as laid out by compileComplex
+	public interface DoubleRecurrence {
+		void iterate(double[] state);
+	}
+
+	public interface ComplexRecurrence {
+		Complex iterate(Complex z, Complex c, Object[] constants);
+	}
+
+	private static final String PACKAGE = "org/altervista/mbilotta/julia/impl/";
+	private static final String OBJECT = "java/lang/Object";
+	private static final String MATH = "java/lang/Math";
+	private static final String COMPLEX = "org/altervista/mbilotta/julia/math/Complex";
+	private static final String REAL = "org/altervista/mbilotta/julia/math/Real";
+	private static final String COMPLEX_DESCRIPTOR = "L" + COMPLEX + ";";
+	private static final String REAL_DESCRIPTOR = "L" + REAL + ";";
+
+	private static final AtomicInteger serialNumber = new AtomicInteger();
+
+	private ExpressionCompiler() {
+	}
+
+	// Each expression gets its own loader, so that classes of expressions no
+	// longer in use can be unloaded
+	private static final class Loader extends ClassLoader {
+
+		Loader() {
+			super(ExpressionCompiler.class.getClassLoader());
+		}
+
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name.replace('/', '.'), bytes, 0, bytes.length);
+		}
+	}
+
+	static DoubleRecurrence compileDouble(Expression expression) {
+		String name = PACKAGE + "DoubleRecurrence$" + serialNumber.incrementAndGet();
+		ClassFileWriter writer = new ClassFileWriter(name, OBJECT, PACKAGE + "ExpressionCompiler$DoubleRecurrence");
+		addConstructor(writer);
+		ClassFileWriter.Code code = writer.addMethod(ClassFileWriter.ACC_PUBLIC, "iterate", "([D)V", 2);
+		DoubleGenerator generator = new DoubleGenerator(code);
+		generator.generateBody(expression);
+		return newInstance(name, writer, DoubleRecurrence.class);
+	}
+
+	// Maximal constant subexpressions are appended to constants: the one at
+	// index k is expected as a Complex at constants[2 * k] and, if real, also
+	// as a Real at constants[2 * k + 1]
+	static ComplexRecurrence compileComplex(Expression expression, List<Expression> constants) {
+		String name = PACKAGE + "ComplexRecurrence$" + serialNumber.incrementAndGet();
+		ClassFileWriter writer = new ClassFileWriter(name, OBJECT, PACKAGE + "ExpressionCompiler$ComplexRecurrence");
+		addConstructor(writer);
+		ClassFileWriter.Code code = writer.addMethod(ClassFileWriter.ACC_PUBLIC, "iterate",
+				"(" + COMPLEX_DESCRIPTOR + COMPLEX_DESCRIPTOR + "[L" + OBJECT + ";)" + COMPLEX_DESCRIPTOR, 4);
+		ComplexGenerator generator = new ComplexGenerator(code, constants);
+		generator.generateBody(expression);
+		return newInstance(name, writer, ComplexRecurrence.class);
+	}
+
+	private static void addConstructor(ClassFileWriter writer) {
+		ClassFileWriter.Code code = writer.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1);
+		code.aload(0);
+		code.invokespecial(OBJECT, "<init>", "()V", 1, 0);
+		code.vreturn();
+	}
+
+	private static <T> T newInstance(String name, ClassFileWriter writer, Class<T> type) {
+		try {
+			Class<?> generated = new Loader().define(name, writer.toByteArray());
+			return type.cast(generated.getConstructor().newInstance());
+		} catch (ReflectiveOperationException | LinkageError e) {
+			throw new IllegalStateException("Generated class " + name + " is broken", e);
+		}
+	}
+
+	// Operands are either compile time constants or locals, so that constant
+	// parts fold away and real operands skip their zero imaginary parts
+	private static final class Operand {
+
+		final boolean constant;
+		final double value;
+		final int slot;
+
+		Operand(double value) {
+			this.constant = true;
+			this.value = value;
+			this.slot = -1;
+		}
+
+		Operand(int slot) {
+			this.constant = false;
+			this.value = Double.NaN;
+			this.slot = slot;
+		}
+
+		boolean is(double value) {
+			return constant && this.value == value;
+		}
+	}
+
+	private static final class DoubleGenerator {
+
+		private static final Operand ZERO = new Operand(0.0);
+		private static final Operand ONE = new Operand(1.0);
+
+		private final ClassFileWriter.Code code;
+		private int nextSlot = 2;
+
+		DoubleGenerator(ClassFileWriter.Code code) {
+			this.code = code;
+		}
+
+		void generateBody(Expression expression) {
+			Operand zRe = loadState(0);
+			Operand zIm = loadState(1);
+			Operand cRe = loadState(2);
+			Operand cIm = loadState(3);
+			Operand[] z = generate(expression, new Operand[] { zRe, zIm }, new Operand[] { cRe, cIm });
+			storeState(0, z[0]);
+			storeState(1, z[1]);
+			code.vreturn();
+		}
+
+		private Operand[] generate(Expression e, Operand[] z, Operand[] c) {
+			switch (e.getKind()) {
+			case NUMBER: case PI: case E:
+				return new Operand[] { new Operand(e.doubleValue()), ZERO };
+			case I: return new Operand[] { ZERO, ONE };
+			case Z: return z;
+			case C: return c;
+			case ADD: return add(generate(e.getLeft(), z, c), generate(e.getRight(), z, c));
+			case SUB: return sub(generate(e.getLeft(), z, c), generate(e.getRight(), z, c));
+			case MUL: return mul(generate(e.getLeft(), z, c), generate(e.getRight(), z, c));
+			case DIV: return div(generate(e.getLeft(), z, c), generate(e.getRight(), z, c));
+			case NEG: return neg(generate(e.getLeft(), z, c));
+			case POW:
+				if (Expression.isIntegerExponent(e.getRight())) {
+					return pow(generate(e.getLeft(), z, c), (int) e.getRight().doubleValue());
+				}
+				return exp(mul(generate(e.getRight(), z, c), log(generate(e.getLeft(), z, c))));
+			case EXP: return exp(generate(e.getLeft(), z, c));
+			case LOG: return log(generate(e.getLeft(), z, c));
+			case SIN: {
+				Operand[] a = generate(e.getLeft(), z, c);
+				return new Operand[] {
+					mul(call("sin", a[0]), call("cosh", a[1])),
+					mul(call("cos", a[0]), call("sinh", a[1]))
+				};
+			}
+			case COS: {
+				Operand[] a = generate(e.getLeft(), z, c);
+				return new Operand[] {
+					mul(call("cos", a[0]), call("cosh", a[1])),
+					neg(mul(call("sin", a[0]), call("sinh", a[1])))
+				};
+			}
+			case CONJ: {
+				Operand[] a = generate(e.getLeft(), z, c);
+				return new Operand[] { a[0], neg(a[1]) };
+			}
+			default: throw new AssertionError(e.getKind());
+			}
+		}
+
+		private Operand[] add(Operand[] a, Operand[] b) {
+			return new Operand[] { add(a[0], b[0]), add(a[1], b[1]) };
+		}
+
+		private Operand[] sub(Operand[] a, Operand[] b) {
+			return new Operand[] { sub(a[0], b[0]), sub(a[1], b[1]) };
+		}
+
+		private Operand[] neg(Operand[] a) {
+			return new Operand[] { neg(a[0]), neg(a[1]) };
+		}
+
+		private Operand[] mul(Operand[] a, Operand[] b) {
+			return new Operand[] {
+				sub(mul(a[0], b[0]), mul(a[1], b[1])),
+				add(mul(a[0], b[1]), mul(a[1], b[0]))
+			};
+		}
+
+		private Operand[] square(Operand[] a) {
+			Operand reIm = mul(a[0], a[1]);
+			return new Operand[] {
+				sub(mul(a[0], a[0]), mul(a[1], a[1])),
+				add(reIm, reIm)
+			};
+		}
+
+		private Operand[] div(Operand[] a, Operand[] b) {
+			if (b[1].is(0)) {
+				return new Operand[] { div(a[0], b[0]), div(a[1], b[0]) };
+			}
+			Operand denominator = add(mul(b[0], b[0]), mul(b[1], b[1]));
+			return new Operand[] {
+				div(add(mul(a[0], b[0]), mul(a[1], b[1])), denominator),
+				div(sub(mul(a[1], b[0]), mul(a[0], b[1])), denominator)
+			};
+		}
+
+		// Square and multiply, with a reciprocal for negative exponents
+		private Operand[] pow(Operand[] a, int n) {
+			if (n < 0) {
+				return div(new Operand[] { ONE, ZERO }, pow(a, -n));
+			}
+			Operand[] rv = new Operand[] { ONE, ZERO };
+			Operand[] base = a;
+			while (n > 0) {
+				if ((n & 1) != 0) {
+					rv = rv[0].is(1) && rv[1].is(0) ? base : mul(rv, base);
+				}
+				n >>= 1;
+				if (n > 0) {
+					base = square(base);
+				}
+			}
+			return rv;
+		}
+
+		private Operand[] exp(Operand[] a) {
+			Operand modulus = call("exp", a[0]);
+			return new Operand[] { mul(modulus, call("cos", a[1])), mul(modulus, call("sin", a[1])) };
+		}
+
+		private Operand[] log(Operand[] a) {
+			return new Operand[] { call("log", call("hypot", a[0], a[1])), call("atan2", a[1], a[0]) };
+		}
+
+		private Operand add(Operand a, Operand b) {
+			if (a.constant && b.constant) return new Operand(a.value + b.value);
+			if (a.is(0)) return b;
+			if (b.is(0)) return a;
+			load(a);
+			load(b);
+			code.dadd();
+			return store();
+		}
+
+		private Operand sub(Operand a, Operand b) {
+			if (a.constant && b.constant) return new Operand(a.value - b.value);
+			if (b.is(0)) return a;
+			if (a.is(0)) return neg(b);
+			load(a);
+			load(b);
+			code.dsub();
+			return store();
+		}
+
+		private Operand mul(Operand a, Operand b) {
+			if (a.constant && b.constant) return new Operand(a.value * b.value);
+			if (a.is(0) || b.is(0)) return ZERO;
+			if (a.is(1)) return b;
+			if (b.is(1)) return a;
+			if (a.is(-1)) return neg(b);
+			if (b.is(-1)) return neg(a);
+			load(a);
+			load(b);
+			code.dmul();
+			return store();
+		}
+
+		private Operand div(Operand a, Operand b) {
+			if (a.constant && b.constant) return new Operand(a.value / b.value);
+			if (b.is(1)) return a;
+			load(a);
+			load(b);
+			code.ddiv();
+			return store();
+		}
+
+		private Operand neg(Operand a) {
+			if (a.constant) return new Operand(-a.value);
+			load(a);
+			code.dneg();
+			return store();
+		}
+
+		private Operand call(String function, Operand a) {
+			if (a.constant) return new Operand(fold(function, a.value));
+			load(a);
+			code.invokestatic(MATH, function, "(D)D", 2, 2);
+			return store();
+		}
+
+		private Operand call(String function, Operand a, Operand b) {
+			if (a.constant && b.constant) {
+				return new Operand(function.equals("hypot") ? Math.hypot(a.value, b.value) : Math.atan2(a.value, b.value));
+			}
+			load(a);
+			load(b);
+			code.invokestatic(MATH, function, "(DD)D", 4, 2);
+			return store();
+		}
+
+		private static double fold(String function, double value) {
+			switch (function) {
+			case "exp": return Math.exp(value);
+			case "log": return Math.log(value);
+			case "sin": return Math.sin(value);
+			case "cos": return Math.cos(value);
+			case "sinh": return Math.sinh(value);
+			case "cosh": return Math.cosh(value);
+			default: throw new AssertionError(function);
+			}
+		}
+
+		private Operand loadState(int index) {
+			code.aload(1);
+			code.iconst(index);
+			code.daload();
+			return store();
+		}
+
+		private void storeState(int index, Operand value) {
+			code.aload(1);
+			code.iconst(index);
+			load(value);
+			code.dastore();
+		}
+
+		private void load(Operand a) {
+			if (a.constant) {
+				code.dconst(a.value);
+			} else {
+				code.dload(a.slot);
+			}
+		}
+
+		private Operand store() {
+			Operand rv = new Operand(nextSlot);
+			code.dstore(nextSlot);
+			nextSlot += 2;
+			return rv;
+		}
+	}
+
+	// Values are Complex locals or entries of the constants array. Real and
+	// small integer constants are passed as such to the Complex methods
+	private static final class ComplexGenerator {
+
+		private static final String UNARY = "()" + COMPLEX_DESCRIPTOR;
+		private static final String BY_COMPLEX = "(" + COMPLEX_DESCRIPTOR + ")" + COMPLEX_DESCRIPTOR;
+		private static final String BY_REAL = "(" + REAL_DESCRIPTOR + ")" + COMPLEX_DESCRIPTOR;
+		private static final String BY_INT = "(I)" + COMPLEX_DESCRIPTOR;
+
+		private final ClassFileWriter.Code code;
+		private final List<Expression> constants;
+		private int nextSlot = 4;
+
+		ComplexGenerator(ClassFileWriter.Code code, List<Expression> constants) {
+			this.code = code;
+			this.constants = constants;
+		}
+
+		private final class Value {
+
+			final int slot;
+			final Expression constant;
+			final int index;
+
+			Value(int slot) {
+				this.slot = slot;
+				this.constant = null;
+				this.index = -1;
+			}
+
+			Value(Expression constant) {
+				this.slot = -1;
+				this.constant = constant;
+				this.index = constants.size();
+				constants.add(constant);
+			}
+
+			boolean isInt() {
+				if (constant != null && constant.isReal()) {
+					double value = constant.doubleValue();
+					return value == Math.rint(value) && Math.abs(value) <= Short.MAX_VALUE;
+				}
+				return false;
+			}
+		}
+
+		void generateBody(Expression expression) {
+			Value z = generate(expression);
+			loadComplex(z);
+			code.areturn();
+		}
+
+		private Value generate(Expression e) {
+			if (e.isConstant()) {
+				return new Value(e);
+			}
+			switch (e.getKind()) {
+			case Z: return new Value(1);
+			case C: return new Value(2);
+			case ADD: return commutative("plus", generate(e.getLeft()), generate(e.getRight()));
+			case MUL: return commutative("times", generate(e.getLeft()), generate(e.getRight()));
+			case SUB: {
+				Value a = generate(e.getLeft());
+				Value b = generate(e.getRight());
+				if (a.constant != null) {
+					return binary("plus", unary("negate", b), a);
+				}
+				return binary("minus", a, b);
+			}
+			case DIV: {
+				Value a = generate(e.getLeft());
+				Value b = generate(e.getRight());
+				if (a.constant != null) {
+					return a.isInt() && a.constant.doubleValue() == 1 ?
+							unary("reciprocal", b) :
+							binary("times", unary("reciprocal", b), a);
+				}
+				return binary("dividedBy", a, b);
+			}
+			case NEG: return unary("negate", generate(e.getLeft()));
+			case POW: {
+				Value a = generate(e.getLeft());
+				if (Expression.isIntegerExponent(e.getRight())) {
+					int n = (int) e.getRight().doubleValue();
+					Value rv = pow(a, Math.abs(n));
+					return n < 0 ? unary("reciprocal", rv) : rv;
+				}
+				return binary("pow", a, generate(e.getRight()));
+			}
+			case EXP: return unary("exp", generate(e.getLeft()));
+			case LOG: return unary("ln", generate(e.getLeft()));
+			case SIN: return unary("sin", generate(e.getLeft()));
+			case COS: return unary("cos", generate(e.getLeft()));
+			case CONJ: return unary("conj", generate(e.getLeft()));
+			default: throw new AssertionError(e.getKind());
+			}
+		}
+
+		private Value pow(Value a, int n) {
+			if (n == 0) {
+				return new Value(Expression.parse("1"));
+			}
+			Value rv = null;
+			Value base = a;
+			while (n > 0) {
+				if ((n & 1) != 0) {
+					rv = rv == null ? base : binary("times", rv, base);
+				}
+				n >>= 1;
+				if (n > 0) {
+					base = unary("square", base);
+				}
+			}
+			return rv;
+		}
+
+		private Value commutative(String method, Value a, Value b) {
+			return a.constant != null ? binary(method, b, a) : binary(method, a, b);
+		}
+
+		// a is never a constant here
+		private Value binary(String method, Value a, Value b) {
+			loadComplex(a);
+			if (b.isInt() && !method.equals("pow")) {
+				code.iconst((int) b.constant.doubleValue());
+				code.invokeinterface(COMPLEX, method, BY_INT, 2, 1);
+			} else if (b.constant != null && b.constant.isReal() && !method.equals("pow")) {
+				loadReal(b);
+				code.invokeinterface(COMPLEX, method, BY_REAL, 2, 1);
+			} else {
+				loadComplex(b);
+				code.invokeinterface(COMPLEX, method, BY_COMPLEX, 2, 1);
+			}
+			return store();
+		}
+
+		private Value unary(String method, Value a) {
+			loadComplex(a);
+			code.invokeinterface(COMPLEX, method, UNARY, 1, 1);
+			return store();
+		}
+
+		private void loadComplex(Value a) {
+			if (a.constant == null) {
+				code.aload(a.slot);
+			} else {
+				code.aload(3);
+				code.iconst(2 * a.index);
+				code.aaload();
+				code.checkcast(COMPLEX);
+			}
+		}
+
+		private void loadReal(Value a) {
+			code.aload(3);
+			code.iconst(2 * a.index + 1);
+			code.aaload();
+			code.checkcast(REAL);
+		}
+
+		private Value store() {
+			Value rv = new Value(nextSlot);
+			code.astore(nextSlot);
+			nextSlot++;
+			return rv;
+		}
+	}
+}
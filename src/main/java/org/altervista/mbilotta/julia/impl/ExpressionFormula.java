@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.altervista.mbilotta.julia.DoubleFormula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+public final class ExpressionFormula extends AbstractFormula<ExpressionFormula> implements DoubleFormula {
+
+	private String expression;
+	private double bailoutRadius;
+
+	// Compiled once per expression and shared by all instances
+	private ExpressionCompiler.DoubleRecurrence doubleRecurrence;
+	private ExpressionCompiler.ComplexRecurrence complexRecurrence;
+	private List<Expression> constantExpressions;
+	private boolean conjugationSymmetric;
+	private boolean pointSymmetric;
+
+	private double bailoutRadiusSquared;
+	private Object[] constants;
+	private Real bailoutRadiusSquaredReal;
+	private Complex zero;
+
+	public ExpressionFormula() {
+		setExpression("z^2 + c");
+		setBailoutRadius(2);
+	}
+
+	private ExpressionFormula(ExpressionFormula other) {
+		expression = other.expression;
+		bailoutRadius = other.bailoutRadius;
+		bailoutRadiusSquared = other.bailoutRadiusSquared;
+		doubleRecurrence = other.doubleRecurrence;
+		complexRecurrence = other.complexRecurrence;
+		constantExpressions = other.constantExpressions;
+		conjugationSymmetric = other.conjugationSymmetric;
+		pointSymmetric = other.pointSymmetric;
+	}
+
+	public String getExpression() {
+		return expression;
+	}
+
+	public void setExpression(String expression) {
+		Expression parsed = Expression.parse(expression);
+		List<Expression> constantExpressions = new ArrayList<>();
+		complexRecurrence = ExpressionCompiler.compileComplex(parsed, constantExpressions);
+		doubleRecurrence = ExpressionCompiler.compileDouble(parsed);
+		this.constantExpressions = constantExpressions;
+		this.conjugationSymmetric = parsed.commutesWithConjugation();
+		this.pointSymmetric = parsed.getParity() != Expression.Parity.NONE;
+		this.expression = expression;
+	}
+
+	public static boolean validateExpression(String expression) {
+		try {
+			Expression.parse(expression);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	public double getBailoutRadius() {
+		return bailoutRadius;
+	}
+
+	public void setBailoutRadius(double bailoutRadius) {
+		this.bailoutRadius = bailoutRadius;
+		this.bailoutRadiusSquared = bailoutRadius * bailoutRadius;
+	}
+
+	public static boolean validateBailoutRadius(double bailoutRadius) {
+		return bailoutRadius > 0;
+	}
+
+	@Override
+	public void cacheConstants(NumberFactory numberFactory) {
+		int size = constantExpressions.size();
+		constants = new Object[2 * size];
+		for (int k = 0; k < size; k++) {
+			Expression constant = constantExpressions.get(k);
+			Complex value = constant.evaluate(numberFactory);
+			constants[2 * k] = value;
+			if (constant.isReal()) {
+				constants[2 * k + 1] = value.re();
+			}
+		}
+		bailoutRadiusSquaredReal = numberFactory.valueOf(bailoutRadius).square();
+		zero = numberFactory.valueOf(0, 0);
+	}
+
+	@Override
+	public void iterate() {
+		z = complexRecurrence.iterate(z, c, constants);
+	}
+
+	@Override
+	public boolean bailoutOccured() {
+		return z.absSquared().gt(bailoutRadiusSquaredReal);
+	}
+
+	@Override
+	public boolean isConjugationSymmetric() {
+		return conjugationSymmetric;
+	}
+
+	@Override
+	public boolean isPointSymmetric() {
+		return pointSymmetric;
+	}
+
+	@Override
+	public void initJuliaIteration(Complex z) {
+		this.z = z;
+	}
+
+	@Override
+	public void initMandelbrotIteration(Complex c) {
+		this.c = c;
+		this.z = zero;
+	}
+
+	@Override
+	public void initJuliaIteration(double[] state) {
+	}
+
+	@Override
+	public void initMandelbrotIteration(double[] state) {
+		state[0] = 0;
+		state[1] = 0;
+	}
+
+	@Override
+	public void iterate(double[] state) {
+		doubleRecurrence.iterate(state);
+	}
+
+	// Orbits that went NaN bail out as well
+	@Override
+	public boolean bailoutOccured(double[] state) {
+		return !(state[0] * state[0] + state[1] * state[1] <= bailoutRadiusSquared);
+	}
+
+	@Override
+	public ExpressionFormula newInstance() {
+		return new ExpressionFormula(this);
+	}
+}
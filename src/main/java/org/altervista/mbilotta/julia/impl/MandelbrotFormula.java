@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import org.altervista.mbilotta.julia.DoubleFormula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+// z^2 + c, written out for every iteration strategy the productions know:
+// arbitrary precision, primitive doubles and perturbation
+public final class MandelbrotFormula extends AbstractFormula<MandelbrotFormula>
+		implements PerturbationFormula, DoubleFormula {
+
+	private double bailoutRadius;
+	private double bailoutRadiusSquared;
+	private Real bailoutRadiusSquaredReal;
+	private Complex zero;
+
+	public MandelbrotFormula() {
+		setBailoutRadius(2);
+	}
+
+	private MandelbrotFormula(MandelbrotFormula other) {
+		bailoutRadius = other.bailoutRadius;
+		bailoutRadiusSquared = other.bailoutRadiusSquared;
+	}
+
+	public double getBailoutRadius() {
+		return bailoutRadius;
+	}
+
+	public void setBailoutRadius(double bailoutRadius) {
+		this.bailoutRadius = bailoutRadius;
+		this.bailoutRadiusSquared = bailoutRadius * bailoutRadius;
+	}
+
+	public static boolean validateBailoutRadius(double bailoutRadius) {
+		return bailoutRadius > 0;
+	}
+
+	@Override
+	public void cacheConstants(NumberFactory numberFactory) {
+		bailoutRadiusSquaredReal = numberFactory.valueOf(bailoutRadius).square();
+		zero = numberFactory.valueOf(0, 0);
+	}
+
+	@Override
+	public void iterate() {
+		z = z.square().plus(c);
+	}
+
+	@Override
+	public boolean bailoutOccured() {
+		return z.absSquared().gt(bailoutRadiusSquaredReal);
+	}
+
+	@Override
+	public boolean isConjugationSymmetric() {
+		return true;
+	}
+
+	@Override
+	public boolean isPointSymmetric() {
+		return true;
+	}
+
+	@Override
+	public void initJuliaIteration(Complex z) {
+		this.z = z;
+	}
+
+	@Override
+	public void initMandelbrotIteration(Complex c) {
+		this.c = c;
+		this.z = zero;
+	}
+
+	@Override
+	public void initJuliaIteration(double[] state) {
+	}
+
+	@Override
+	public void initMandelbrotIteration(double[] state) {
+		state[0] = 0;
+		state[1] = 0;
+	}
+
+	@Override
+	public void iterate(double[] state) {
+		double re = state[0];
+		double im = state[1];
+		state[0] = re * re - im * im + state[2];
+		state[1] = 2 * re * im + state[3];
+	}
+
+	// Orbits that went NaN bail out as well
+	@Override
+	public boolean bailoutOccured(double[] state) {
+		return !(state[0] * state[0] + state[1] * state[1] <= bailoutRadiusSquared);
+	}
+
+	// dz' = 2 Z dz + dz^2 + dc, in units of scale
+	@Override
+	public void iterateDelta(double zRe, double zIm, double[] delta, double scale) {
+		double re = delta[0];
+		double im = delta[1];
+		delta[0] = 2 * (zRe * re - zIm * im) + (re * re - im * im) * scale + delta[2];
+		delta[1] = 2 * (zRe * im + zIm * re) + 2 * re * im * scale + delta[3];
+	}
+
+	@Override
+	public boolean bailoutOccured(double re, double im) {
+		return !(re * re + im * im <= bailoutRadiusSquared);
+	}
+
+	@Override
+	public void linearize(double zRe, double zIm, double[] coefficients) {
+		coefficients[0] = 2 * zRe;
+		coefficients[1] = 2 * zIm;
+		coefficients[2] = 1;
+		coefficients[3] = 0;
+	}
+
+	// dz^2 stays below epsilon |2 Z dz| as long as |dz| < 2 epsilon |Z|
+	@Override
+	public double getLinearRadius(double zRe, double zIm, double epsilon) {
+		return 2 * epsilon * Math.hypot(zRe, zIm);
+	}
+
+	@Override
+	public MandelbrotFormula newInstance() {
+		return new MandelbrotFormula(this);
+	}
+}
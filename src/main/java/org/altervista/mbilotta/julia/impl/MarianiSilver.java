@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.altervista.mbilotta.julia.impl;
+
+import java.util.Arrays;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Progress;
+import org.altervista.mbilotta.julia.Representation;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+
+
+public class MarianiSilver extends TiledScan {
+
+	private static final int MIN_RECTANGLE_SIZE = 4;
+
+	protected class Producer extends TiledScan.Producer {
+
+		private final IntegerImage iimg;
+		private final boolean[] computed;
+		private int tileX;
+		private int tileY;
+		private int tileWidth;
+		private boolean interrupted;
+		// Tile whose computed flags still hold, and the point being computed
+		private int partialTile = -1;
+		private int pending;
+
+		public Producer(Progress progress) {
+			super(progress);
+			iimg = (IntegerImage) getIntermediateImage();
+			int tileSize = getTileGrid().getTileSize();
+			computed = new boolean[tileSize * tileSize];
+		}
+
+		@Override
+		protected boolean computeTile() {
+			TileGrid tileGrid = getTileGrid();
+			int tile = getTile();
+			int length = tileGrid.getNumOfPixels(tile);
+			if (getTileOffset() == length) {
+				return true;
+			}
+
+			tileX = tileGrid.getTileX(tile);
+			tileY = tileGrid.getTileY(tile);
+			tileWidth = tileGrid.getTileWidth(tile);
+			if (tile != partialTile) {
+				Arrays.fill(computed, false);
+				partialTile = tile;
+			}
+			interrupted = false;
+			if (!computeRectangle(tileX, tileY, tileX + tileWidth - 1, tileY + tileGrid.getTileHeight(tile) - 1)) {
+				return false;
+			}
+			partialTile = -1;
+			setTileOffset(length);
+			return true;
+		}
+
+		// Bounds are inclusive: adjacent rectangles share their common edge,
+		// which is then computed only once
+		private boolean computeRectangle(int x0, int y0, int x1, int y1) {
+			int value = computePoint(x0, y0);
+			boolean uniform = true;
+			for (int x = x0; x <= x1; x++) {
+				uniform &= computePoint(x, y0) == value;
+				uniform &= computePoint(x, y1) == value;
+			}
+			for (int y = y0 + 1; y < y1; y++) {
+				uniform &= computePoint(x0, y) == value;
+				uniform &= computePoint(x1, y) == value;
+			}
+			if (interrupted) return false;
+
+			if (uniform) {
+				for (int y = y0 + 1; y < y1; y++) {
+					for (int x = x0 + 1; x < x1; x++) {
+						iimg.setPoint(x, y, value);
+						computed[(y - tileY) * tileWidth + x - tileX] = true;
+					}
+				}
+				return true;
+			}
+
+			int width = x1 - x0;
+			int height = y1 - y0;
+			if (width < MIN_RECTANGLE_SIZE || height < MIN_RECTANGLE_SIZE) {
+				for (int y = y0 + 1; y < y1; y++) {
+					for (int x = x0 + 1; x < x1; x++) {
+						computePoint(x, y);
+					}
+				}
+				return !interrupted;
+			}
+
+			if (width >= height) {
+				int xm = x0 + width / 2;
+				return computeRectangle(x0, y0, xm, y1) && computeRectangle(xm, y0, x1, y1);
+			}
+			int ym = y0 + height / 2;
+			return computeRectangle(x0, y0, x1, ym) && computeRectangle(x0, ym, x1, y1);
+		}
+
+		private int computePoint(int x, int y) {
+			int index = (y - tileY) * tileWidth + x - tileX;
+			if (!computed[index]) {
+				if (interrupted || shouldStop(Thread.currentThread())) {
+					interrupted = true;
+					return 0;
+				}
+				if (!reusePoint(x, y)) {
+					pending = index;
+					getPointCalculator().computePoint(x, y, getCoordinateTransform(), getFormula());
+					pointComputed(x, y);
+				}
+				computed[index] = true;
+			}
+			return iimg.getPoint(x, y);
+		}
+
+		// Only the failed point is skipped: the tile resumes from the points
+		// already computed and stays unfinished until then
+		@Override
+		public void handleException(Throwable t) {
+			super.handleException(t);
+			computed[pending] = true;
+		}
+	}
+
+	public MarianiSilver(NumberFactory numberFactory,
+			Formula formula,
+			Representation representation,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			PointCalculator pointCalculator) {
+
+		super(numberFactory,
+			formula,
+			representation,
+			coordinateTransform,
+			juliaSetPoint,
+			pointCalculator);
+
+		assert pointCalculator.getIntermediateImage() instanceof IntegerImage;
+	}
+
+	@Override
+	public Producer createProducer(Progress progress) {
+		return new Producer(progress);
+	}
+}
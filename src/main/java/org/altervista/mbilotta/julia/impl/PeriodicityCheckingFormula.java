@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+public final class PeriodicityCheckingFormula implements Formula {
+
+	private final Formula formula;
+	private final Real epsilonSquared;
+
+	private Complex checkpoint;
+	private int iterations;
+	private int nextCheckpoint;
+	private boolean orbitCaptured;
+
+	public PeriodicityCheckingFormula(Formula formula, Real epsilon) {
+		assert formula != null;
+		assert epsilon != null;
+		this.formula = formula;
+		this.epsilonSquared = epsilon.square();
+	}
+
+	private PeriodicityCheckingFormula(PeriodicityCheckingFormula other) {
+		this.formula = other.formula.newInstance();
+		this.epsilonSquared = other.epsilonSquared;
+	}
+
+	@Override
+	public void setC(Complex c) {
+		formula.setC(c);
+	}
+
+	// Checkpoints are moved at doubling intervals (Brent), so that a cycle of
+	// any period is eventually compared against a point of itself
+	@Override
+	public void iterate() {
+		formula.iterate();
+		if (orbitCaptured) {
+			return;
+		}
+
+		Complex z = formula.getZ();
+		iterations++;
+		if (z.minus(checkpoint).absSquared().lt(epsilonSquared)) {
+			orbitCaptured = true;
+		} else if (iterations == nextCheckpoint) {
+			checkpoint = z;
+			if (nextCheckpoint <= Integer.MAX_VALUE >> 1) {
+				nextCheckpoint <<= 1;
+			}
+		}
+	}
+
+	@Override
+	public Complex getZ() {
+		return formula.getZ();
+	}
+
+	@Override
+	public Complex getC() {
+		return formula.getC();
+	}
+
+	@Override
+	public boolean bailoutOccured() {
+		return formula.bailoutOccured();
+	}
+
+	@Override
+	public boolean orbitCaptured() {
+		return orbitCaptured;
+	}
+
+	@Override
+	public void initJuliaIteration(Complex z) {
+		formula.initJuliaIteration(z);
+		startOrbit();
+	}
+
+	@Override
+	public void initMandelbrotIteration(Complex c) {
+		formula.initMandelbrotIteration(c);
+		startOrbit();
+	}
+
+	@Override
+	public void cacheConstants(NumberFactory numberFactory) {
+		formula.cacheConstants(numberFactory);
+	}
+
+	@Override
+	public PeriodicityCheckingFormula newInstance() {
+		return new PeriodicityCheckingFormula(this);
+	}
+
+	public Formula getFormula() {
+		return formula;
+	}
+
+	private void startOrbit() {
+		checkpoint = formula.getZ();
+		iterations = 0;
+		nextCheckpoint = 1;
+		orbitCaptured = false;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Progress;
+import org.altervista.mbilotta.julia.Representation;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+
+
+public class Perturbation extends TiledScan {
+
+	private static final int MAX_REFERENCES_PER_TILE = 8;
+
+	private final PerturbationFormula formula;
+	private final ReferenceOrbit reference;
+	private final int scaleExponent;
+	private final double dcMax;
+	private final AtomicBoolean stored = new AtomicBoolean();
+
+	protected class Producer extends TiledScan.Producer {
+
+		private final PerturbedFormula perturbedFormula;
+		private final int[] glitches;
+		// Points of failedTile that threw, skipped when the tile is resumed
+		private final boolean[] failed;
+		private int failedTile = -1;
+		private int pending;
+
+		public Producer(Progress progress) {
+			super(progress);
+			perturbedFormula = new PerturbedFormula((PerturbationFormula) getFormula(), getNumberFactory(), scaleExponent);
+			int tileSize = getTileGrid().getTileSize();
+			glitches = new int[tileSize * tileSize];
+			failed = new boolean[tileSize * tileSize];
+		}
+
+		// An interrupted or failed production may leave the orbit short of
+		// what the image needs: it is stored only once the image is complete,
+		// by the single producer that sees it so first
+		@Override
+		protected void start() {
+			super.start();
+			if (getIntermediateImage().isComplete() && stored.compareAndSet(false, true)) {
+				reference.store();
+			}
+		}
+
+		// Glitched points are rebased on secondary references taken inside
+		// the tile. The few left over are computed at full precision
+		@Override
+		protected boolean computeTile() {
+			TileGrid tileGrid = getTileGrid();
+			int tile = getTile();
+			int length = tileGrid.getNumOfPixels(tile);
+			if (getTileOffset() == length) {
+				return true;
+			}
+
+			int tileX = tileGrid.getTileX(tile);
+			int tileY = tileGrid.getTileY(tile);
+			int tileWidth = tileGrid.getTileWidth(tile);
+			CoordinateTransform coordinateTransform = getCoordinateTransform();
+			PointCalculator pointCalculator = getPointCalculator();
+			Thread currentThread = Thread.currentThread();
+			if (tile != failedTile) {
+				Arrays.fill(failed, false);
+				failedTile = tile;
+			}
+
+			perturbedFormula.setReference(reference);
+			int numOfGlitches = 0;
+			for (int i = 0; i < length; i++) {
+				if (shouldStop(currentThread)) return false;
+				if (failed[i] || reusePoint(tileX + i % tileWidth, tileY + i / tileWidth)) continue;
+				pending = i;
+				pointCalculator.computePoint(tileX + i % tileWidth, tileY + i / tileWidth, coordinateTransform, perturbedFormula);
+				if (perturbedFormula.isGlitched()) {
+					glitches[numOfGlitches++] = i;
+				}
+			}
+
+			for (int r = 0; r < MAX_REFERENCES_PER_TILE && numOfGlitches > 0; r++) {
+				int i = glitches[numOfGlitches / 2];
+				Complex point = coordinateTransform.toComplex(tileX + i % tileWidth, tileY + i / tileWidth);
+				perturbedFormula.setReference(new ReferenceOrbit(formula, getNumberFactory(), point, getJuliaSetPoint(), dcMax));
+				int remaining = 0;
+				for (int k = 0; k < numOfGlitches; k++) {
+					if (shouldStop(currentThread)) return false;
+					i = glitches[k];
+					pending = i;
+					pointCalculator.computePoint(tileX + i % tileWidth, tileY + i / tileWidth, coordinateTransform, perturbedFormula);
+					if (perturbedFormula.isGlitched()) {
+						glitches[remaining++] = i;
+					}
+				}
+				numOfGlitches = remaining;
+			}
+
+			Formula formula = getFormula();
+			for (int k = 0; k < numOfGlitches; k++) {
+				if (shouldStop(currentThread)) return false;
+				int i = glitches[k];
+				pending = i;
+				pointCalculator.computePoint(tileX + i % tileWidth, tileY + i / tileWidth, coordinateTransform, formula);
+			}
+			setTileOffset(length);
+			return true;
+		}
+
+		// Only the failed point is skipped: resuming recomputes the rest of
+		// the tile, which stays unfinished until then
+		@Override
+		public void handleException(Throwable t) {
+			super.handleException(t);
+			failed[pending] = true;
+		}
+	}
+
+	public Perturbation(NumberFactory numberFactory,
+			PerturbationFormula formula,
+			Representation representation,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			PointCalculator pointCalculator) {
+
+		super(numberFactory,
+			formula,
+			representation,
+			coordinateTransform,
+			juliaSetPoint,
+			pointCalculator);
+
+		this.formula = formula;
+		// References lie within the image: no dc exceeds its diagonal
+		this.dcMax = juliaSetPoint != null ? 0 :
+			coordinateTransform.getScaleRe().abs().doubleValue() * Math.hypot(getImageWidth(), getImageHeight());
+		Complex center = coordinateTransform.toComplex(getImageWidth() / 2, getImageHeight() / 2);
+		this.reference = new ReferenceOrbit(formula, numberFactory, center, juliaSetPoint, dcMax);
+		this.scaleExponent = Math.min(0, coordinateTransform.getScaleRe().getBinaryExponent());
+	}
+
+	public void setReferenceOrbitCache(ReferenceOrbitCache cache) {
+		reference.setCache(cache);
+	}
+
+	@Override
+	public void setExecutor(Executor executor) {
+		reference.setExecutor(executor);
+	}
+
+	@Override
+	public Producer createProducer(Progress progress) {
+		return new Producer(progress);
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import org.altervista.mbilotta.julia.Formula;
+
+
+public interface PerturbationFormula extends Formula {
+
+	// Advances the delta orbit along the reference orbit, whose current point
+	// is (zRe, zIm). Deltas are kept as mantissas of a common scale:
+	// dz = (delta[0], delta[1]) * scale, dc = (delta[2], delta[3]) * scale.
+	// The new dz must be stored back into delta[0] and delta[1]
+	void iterateDelta(double zRe, double zIm, double[] delta, double scale);
+	boolean bailoutOccured(double re, double im);
+
+	// Linear part of the recurrence at (zRe, zIm), dz' = A dz + B dc, stored
+	// as (A.re, A.im, B.re, B.im), and the radius of dz within which the rest
+	// stays below epsilon times it. A radius of 0 disables the approximation.
+	// Both are called concurrently and must not depend on the instance state
+	void linearize(double zRe, double zIm, double[] coefficients);
+	double getLinearRadius(double zRe, double zIm, double epsilon);
+
+	@Override
+	PerturbationFormula newInstance();
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+
+
+final class PerturbedFormula implements Formula {
+
+	private static final double GLITCH_TOLERANCE = 1e-6;
+
+	private final PerturbationFormula formula;
+	private final NumberFactory numberFactory;
+	private final int scaleExponent;
+
+	private ReferenceOrbit reference;
+	private BilinearApproximation approximation;
+	private double[] re;
+	private double[] im;
+	private int length;
+
+	private final double[] delta = new double[4];
+	private int exponent;
+	private double scale;
+	private int n;
+	private Complex z0;
+	private Complex c;
+	private boolean bailoutOccured;
+	private boolean glitched;
+
+	// Deltas are stored as double mantissas of 2^exponent, starting from
+	// scaleExponent: this extends their range well beyond 1e-308
+	public PerturbedFormula(PerturbationFormula formula, NumberFactory numberFactory, int scaleExponent) {
+		this.formula = formula;
+		this.numberFactory = numberFactory;
+		this.scaleExponent = scaleExponent;
+	}
+
+	public void setReference(ReferenceOrbit reference) {
+		this.reference = reference;
+		approximation = null;
+		length = 0;
+	}
+
+	public boolean isGlitched() {
+		return glitched;
+	}
+
+	@Override
+	public void setC(Complex c) {
+		formula.setC(c);
+	}
+
+	@Override
+	public void iterate() {
+		if (n + 1 >= length) {
+			length = reference.extend(n + 2);
+			re = reference.getRe();
+			im = reference.getIm();
+			if (n + 1 >= length) {
+				// The reference escaped first: this orbit must follow another one
+				glitched = true;
+				return;
+			}
+		}
+
+		formula.iterateDelta(re[n], im[n], delta, scale);
+		n++;
+		rescale();
+		checkOrbit();
+	}
+
+	// Runs of iterations are skipped along the approximation tables of the
+	// reference, whenever dz is small enough for them
+	@Override
+	public int iterate(int maxIterations) {
+		int i = 0;
+		while (i < maxIterations && !bailoutOccured && !glitched) {
+			if (approximation == null || n < approximation.getStart() || n >= approximation.getEnd()) {
+				approximation = reference.getApproximation(n);
+			}
+			int skip = approximation == null ? 0 : approximation.apply(n, maxIterations - i, delta, exponent);
+			if (skip > 0) {
+				n += skip;
+				i += skip;
+				rescale();
+				checkOrbit();
+			} else {
+				iterate();
+				i++;
+			}
+		}
+		return i;
+	}
+
+	@Override
+	public Complex getZ() {
+		if (n == 0) {
+			return z0;
+		}
+		return numberFactory.valueOf(
+				numberFactory.valueOf(re[n]).plus(numberFactory.valueOf(delta[0]).scalb(exponent)),
+				numberFactory.valueOf(im[n]).plus(numberFactory.valueOf(delta[1]).scalb(exponent)));
+	}
+
+	@Override
+	public Complex getC() {
+		return c;
+	}
+
+	@Override
+	public boolean bailoutOccured() {
+		return bailoutOccured;
+	}
+
+	// Glitched orbits are recomputed anyway: point calculators honouring
+	// the early exit do not waste iterations on them
+	@Override
+	public boolean orbitCaptured() {
+		return glitched;
+	}
+
+	@Override
+	public void initJuliaIteration(Complex z) {
+		formula.initJuliaIteration(z);
+		c = formula.getC();
+		start(null);
+	}
+
+	@Override
+	public void initMandelbrotIteration(Complex c) {
+		formula.initMandelbrotIteration(c);
+		this.c = c;
+		start(c.minus(reference.getPoint()));
+	}
+
+	@Override
+	public void cacheConstants(NumberFactory numberFactory) {
+		formula.cacheConstants(numberFactory);
+	}
+
+	@Override
+	public PerturbedFormula newInstance() {
+		PerturbedFormula rv = new PerturbedFormula(formula.newInstance(), numberFactory, scaleExponent);
+		rv.setReference(reference);
+		return rv;
+	}
+
+	private void start(Complex dc) {
+		z0 = formula.getZ();
+		Complex dz = z0.minus(reference.getZ0());
+		delta[0] = dz.re().scalb(-scaleExponent).doubleValue();
+		delta[1] = dz.im().scalb(-scaleExponent).doubleValue();
+		if (dc != null) {
+			delta[2] = dc.re().scalb(-scaleExponent).doubleValue();
+			delta[3] = dc.im().scalb(-scaleExponent).doubleValue();
+		} else {
+			delta[2] = 0;
+			delta[3] = 0;
+		}
+		exponent = scaleExponent;
+		scale = Math.scalb(1.0, exponent);
+		n = 0;
+		bailoutOccured = false;
+		glitched = false;
+		rescale();
+	}
+
+	private void checkOrbit() {
+		double zRe = re[n] + delta[0] * scale;
+		double zIm = im[n] + delta[1] * scale;
+		bailoutOccured = formula.bailoutOccured(zRe, zIm);
+		if (zRe * zRe + zIm * zIm < GLITCH_TOLERANCE * (re[n] * re[n] + im[n] * im[n])) {
+			glitched = true;
+		}
+	}
+
+	// Mantissas are kept within unit magnitude until the scale reaches 1, so
+	// that the growing delta cannot overflow them
+	private void rescale() {
+		if (exponent < 0) {
+			double m = Math.max(Math.abs(delta[0]), Math.abs(delta[1]));
+			if (m > 1) {
+				int shift = Math.min(Math.getExponent(m) + 1, -exponent);
+				for (int i = 0; i < delta.length; i++) {
+					delta[i] = Math.scalb(delta[i], -shift);
+				}
+				exponent += shift;
+				scale = Math.scalb(1.0, exponent);
+			}
+		}
+	}
+}
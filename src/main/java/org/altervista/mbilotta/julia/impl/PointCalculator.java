@@ -30,4 +30,11 @@ public interface PointCalculator {
 	IntermediateImage getIntermediateImage();
 	PointCalculator newInstance();
 
+	// Points depending on the orbit only through |z|, as escape times do, are
+	// the same at pixels mapped onto each other by a symmetry of the formula:
+	// productions may then copy them instead of computing them twice
+	default boolean hasSymmetricPoints() {
+		return false;
+	}
+
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+// Maps the pixels of a new image onto the points of an old one whose pixel
+// grid it shares: same grid shifted by whole pixels (a pan), or the old grid
+// taken every k pixels (zoom out by k) or every k-th pixel of the new grid
+// landing on it (zoom in by k)
+public final class PointReuse {
+
+	// In old pixels: grids closer than this are candidates. Only the columns
+	// and rows whose coordinates then turn out exactly equal are reused
+	private static final double TOLERANCE = 1e-3;
+	private static final int MAX_FACTOR = 8;
+
+	private final RasterImage source;
+	private final RasterImage target;
+	private final boolean integer;
+	// Per new column (row), the old one at the very same coordinate, or -1
+	private final int[] sourceColumns;
+	private final int[] sourceRows;
+
+	private PointReuse(RasterImage source, RasterImage target, int[] sourceColumns, int[] sourceRows) {
+		this.source = source;
+		this.target = target;
+		this.integer = source instanceof IntegerImage;
+		this.sourceColumns = sourceColumns;
+		this.sourceRows = sourceRows;
+	}
+
+	// Null unless the grids are aligned and share some points. Only plain
+	// integer and float images are taken: subclasses may keep more than the
+	// point values. Both transforms must come from the same number factory
+	public static PointReuse create(IntermediateImage source, CoordinateTransform sourceTransform,
+			IntermediateImage target, CoordinateTransform targetTransform) {
+		Class<?> imageClass = source.getClass();
+		if (imageClass != target.getClass() || (imageClass != IntegerImage.class && imageClass != FloatImage.class)
+				|| !source.isComplete())
+			return null;
+
+		Real scaleRe = sourceTransform.getScaleRe();
+		Real scaleIm = sourceTransform.getScaleIm();
+		double stepX = targetTransform.getScaleRe().dividedBy(scaleRe).doubleValue();
+		double stepY = targetTransform.getScaleIm().dividedBy(scaleIm).doubleValue();
+		if (!(stepX > 0) || Math.abs(stepX - stepY) > TOLERANCE * Math.min(stepX, 1))
+			return null;
+
+		// Old x times den equals new x times num plus offsetX, likewise for y
+		int num, den;
+		if (Math.abs(stepX - Math.rint(stepX)) < TOLERANCE && Math.rint(stepX) >= 1) {
+			num = (int) Math.min(Math.rint(stepX), MAX_FACTOR + 1);
+			den = 1;
+		} else if (Math.abs(1 / stepX - Math.rint(1 / stepX)) < TOLERANCE) {
+			num = 1;
+			den = (int) Math.min(Math.rint(1 / stepX), MAX_FACTOR + 1);
+		} else {
+			return null;
+		}
+		if (num > MAX_FACTOR || den > MAX_FACTOR)
+			return null;
+
+		// Old pixel coordinates of the new pixel (0, 0), scaled by den
+		double u = targetTransform.toRe(0).minus(sourceTransform.toRe(0)).dividedBy(scaleRe).doubleValue() * den;
+		double v = targetTransform.toIm(0).minus(sourceTransform.toIm(0)).dividedBy(scaleIm).doubleValue() * den;
+		if (Math.abs(u - Math.rint(u)) > TOLERANCE * den || Math.abs(v - Math.rint(v)) > TOLERANCE * den)
+			return null;
+
+		// Pixel grids far apart would overflow below and share nothing anyway
+		long width = source.getWidth() + (long) target.getWidth();
+		long height = source.getHeight() + (long) target.getHeight();
+		if (Math.abs(u) > width * MAX_FACTOR || Math.abs(v) > height * MAX_FACTOR)
+			return null;
+
+		int[] sourceColumns = map(sourceTransform, targetTransform, num, den, (int) Math.rint(u),
+				source.getWidth(), target.getWidth(), true);
+		int[] sourceRows = map(sourceTransform, targetTransform, num, den, (int) Math.rint(v),
+				source.getHeight(), target.getHeight(), false);
+		if (sourceColumns == null || sourceRows == null)
+			return null;
+
+		return new PointReuse((RasterImage) source, (RasterImage) target, sourceColumns, sourceRows);
+	}
+
+	// Null if no column (row) has an old one at the same coordinate. These are
+	// compared in the factory's own arithmetic: points computed at a coordinate
+	// off by an ulp may escape at another iteration
+	private static int[] map(CoordinateTransform sourceTransform, CoordinateTransform targetTransform,
+			int num, int den, int offset, int sourceLength, int length, boolean columns) {
+		int[] rv = new int[length];
+		boolean any = false;
+		for (int i = 0; i < length; i++) {
+			rv[i] = -1;
+			long j = (long) i * num + offset;
+			if (Math.floorMod(j, den) != 0)
+				continue;
+
+			j = Math.floorDiv(j, den);
+			if (j < 0 || j >= sourceLength)
+				continue;
+
+			Real coordinate = columns ? targetTransform.toRe(i) : targetTransform.toIm(i);
+			if (coordinate.eq(columns ? sourceTransform.toRe((int) j) : sourceTransform.toIm((int) j))) {
+				rv[i] = (int) j;
+				any = true;
+			}
+		}
+		return any ? rv : null;
+	}
+
+	// Copies the old point under (x, y), if any, to the new image
+	public boolean copyPoint(int x, int y) {
+		int sx = sourceColumns[x];
+		int sy = sourceRows[y];
+		if (sx < 0 || sy < 0)
+			return false;
+
+		if (integer) {
+			((IntegerImage) target).setPoint(x, y, ((IntegerImage) source).getPoint(sx, sy));
+		} else {
+			((FloatImage) target).setPoint(x, y, ((FloatImage) source).getPoint(sx, sy));
+		}
+		return true;
+	}
+}
@@ -26,9 +26,11 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.altervista.mbilotta.julia.Formula;
 import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.LongProgress;
 import org.altervista.mbilotta.julia.NumberFactory;
 import org.altervista.mbilotta.julia.Printer;
 import org.altervista.mbilotta.julia.Production;
@@ -41,6 +43,8 @@ import org.altervista.mbilotta.julia.math.CoordinateTransform;
 
 public class ProgressiveRefinement extends Production {
 
+	private static final int PUBLICATION_INTERVAL = 64;
+
 	private final ProgressiveRefinementPointCalculator pointCalculator;
 	protected final CyclicBarrier cyclicBarrier;
 
@@ -96,10 +100,6 @@ public class ProgressiveRefinement extends Production {
 			this.chunkSize = chunkSize;
 		}
 
-		private int getTurn() {
-			return turn;
-		}
-
 		public int getOffsetX() {
 			return offsetX;
 		}
@@ -148,13 +148,160 @@ public class ProgressiveRefinement extends Production {
 		}
 	}
 
+	// Enumerates the chunks of all passes in the order they are visited. Every
+	// pass is followed by an extra position, reached by a producer that has
+	// visited the whole pass but has not yet moved past the barrier
+	static final class ChunkSequence {
+
+		private final int width;
+		private final int height;
+		private final int numOfSteps;
+		private final int[] columns;
+		private final long[] passStart;
+
+		public ChunkSequence(int width, int height, int numOfSteps) {
+			this.width = width;
+			this.height = height;
+			this.numOfSteps = numOfSteps;
+			this.columns = new int[numOfSteps];
+			this.passStart = new long[numOfSteps + 1];
+			for (int pass = 0; pass < numOfSteps; pass++) {
+				int chunkSize = getChunkSize(pass);
+				columns[pass] = (width + chunkSize - 1) / chunkSize;
+				long rows = (height + chunkSize - 1) / chunkSize;
+				passStart[pass + 1] = passStart[pass] + rows * columns[pass] + 1;
+			}
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		public int getNumOfSteps() {
+			return numOfSteps;
+		}
+
+		public int getChunkSize(int pass) {
+			return 1 << (numOfSteps - 1 - pass);
+		}
+
+		public int getPass(int chunkSize) {
+			return numOfSteps - 1 - Integer.numberOfTrailingZeros(chunkSize);
+		}
+
+		public int getPass(long position) {
+			int pass = numOfSteps - 1;
+			while (position < passStart[pass]) {
+				pass--;
+			}
+			return pass;
+		}
+
+		public long getPassStart(int pass) {
+			return passStart[pass];
+		}
+
+		public long getPassEnd(int pass) {
+			return passStart[pass + 1] - 1;
+		}
+
+		public int getColumns(int pass) {
+			return columns[pass];
+		}
+
+		public long getFinalPosition() {
+			return getPassEnd(numOfSteps - 1);
+		}
+
+		public long getPosition(int offsetX, int offsetY, int chunkSize) {
+			int pass = getPass(chunkSize);
+			if (offsetY >= height) {
+				return getPassEnd(pass);
+			}
+			return passStart[pass] + (long) (offsetY / chunkSize) * columns[pass] + offsetX / chunkSize;
+		}
+
+		public long getPosition(ProgressValue progressValue) {
+			return getPosition(progressValue.getOffsetX(), progressValue.getOffsetY(), progressValue.getChunkSize());
+		}
+
+		public ProgressValue getProgressValue(long position, int turn) {
+			int pass = getPass(position);
+			int chunkSize = getChunkSize(pass);
+			if (position == getPassEnd(pass)) {
+				return new ProgressValue(turn, 0, height, chunkSize);
+			}
+			long index = position - passStart[pass];
+			return new ProgressValue(turn,
+					(int) (index % columns[pass]) * chunkSize,
+					(int) (index / columns[pass]) * chunkSize,
+					chunkSize);
+		}
+
+		// Pass-end positions do not advance the turn of a producer
+		public int getTurn(long position, int producerIndex, int numOfProducers) {
+			return (int) ((producerIndex + position - getPass(position)) % numOfProducers);
+		}
+	}
+
+	private static final class PositionProgress extends LongProgress {
+
+		private final ChunkSequence sequence;
+		private final int producerIndex;
+		private final int numOfProducers;
+
+		public PositionProgress(ChunkSequence sequence, int producerIndex, int numOfProducers, long position, AtomicLongArray counters) {
+			super(0, sequence.getFinalPosition(), position, counters, producerIndex);
+			this.sequence = sequence;
+			this.producerIndex = producerIndex;
+			this.numOfProducers = numOfProducers;
+		}
+
+		protected Object toObject(long value) {
+			return sequence.getProgressValue(value, sequence.getTurn(value, producerIndex, numOfProducers));
+		}
+
+		protected long toLong(Object value) {
+			return sequence.getPosition((ProgressValue) value);
+		}
+	}
+
 	protected class Producer extends Production.Producer {
 
 		private final ProgressiveRefinementPointCalculator pointCalculator;
+		private final ChunkSequence sequence;
+		private final int producerIndex;
+		private long position;
 
 		public Producer(Progress progress) {
 			super(progress);
 			pointCalculator = ProgressiveRefinement.this.pointCalculator.newInstance();
+			if (progress instanceof PositionProgress) {
+				sequence = ((PositionProgress) progress).sequence;
+				producerIndex = ((PositionProgress) progress).producerIndex;
+			} else {
+				// Any other progress holds ProgressValues: the sequence is
+				// rebuilt from the initial chunk size
+				IntermediateImage iimg = getIntermediateImage();
+				int initialChunkSize = ((ProgressValue) progress.getInitialValue()).getChunkSize();
+				sequence = new ChunkSequence(iimg.getWidth(), iimg.getHeight(),
+						Integer.numberOfTrailingZeros(initialChunkSize) + 1);
+				producerIndex = indexOf(progress, iimg);
+			}
+		}
+
+		@Override
+		protected long toLongProgressValue(Object value) {
+			return sequence.getPosition((ProgressValue) value);
+		}
+
+		@Override
+		protected Object toProgressValue(long value) {
+			return sequence.getProgressValue(value, sequence.getTurn(value, producerIndex, getNumOfProducers()));
 		}
 
 		protected void start() {
@@ -164,14 +311,16 @@ public class ProgressiveRefinement extends Production {
 			Formula formula = getFormula();
 			CoordinateTransform coordinateTransform = getCoordinateTransform();
 			ProgressiveRefinementPointCalculator pointCalculator = getPointCalculator();
+			ChunkSequence sequence = this.sequence;
 			int numOfProducers = getNumOfProducers();
 
-			ProgressValue progressValue = (ProgressValue) getProgressValue();
-			int turn = progressValue.getTurn();
+			position = getLongProgressValue();
+			ProgressValue progressValue = sequence.getProgressValue(position, 0);
+			int turn = sequence.getTurn(position, producerIndex, numOfProducers);
 			int chunkSize = progressValue.getChunkSize();
 
 			Thread currentThread = Thread.currentThread();
-			boolean doSetProgress = false;
+			int unpublished = 0;
 			int x = progressValue.getOffsetX();
 			int y = progressValue.getOffsetY();
 			boolean stepNotEmpty = y < height;
@@ -183,44 +332,44 @@ public class ProgressiveRefinement extends Production {
 				if (stepNotEmpty) pointCalculator.stepStarting(chunkSize);
 				for ( ; y < height; y += chunkSize) {
 					for ( ; x < width; x += chunkSize) {
-						if (doSetProgress) {
-							setProgressValue(new ProgressValue(turn, x, y, chunkSize));
-							doSetProgress = false;
-						}
-
 						if (turn == 0) {
-							if (currentThread.isInterrupted()) {
+							if (shouldStop(currentThread)) {
+								setLongProgressValue(position);
 								pointCalculator.stepInterrupted(chunkSize);
 								return;
 							}
 							printer.println("x=", x, ", y=", y);
 							pointCalculator.computePoint(x, y, coordinateTransform, formula);
-							doSetProgress = true;
+							if (++unpublished == PUBLICATION_INTERVAL) {
+								setLongProgressValue(position + 1);
+								unpublished = 0;
+							}
 						}
 						turn = (turn + 1) % numOfProducers;
+						position++;
 					}
 					x = 0;
 				}
 				if (stepNotEmpty) pointCalculator.stepFinished(chunkSize);
 				else stepNotEmpty = true;
 
+				setLongProgressValue(position);
+				unpublished = 0;
 				if (chunkSize > 1) {
 					if (cyclicBarrier != null) {
 						try {
 							cyclicBarrier.await();
 						} catch (BrokenBarrierException | InterruptedException e) {
-							setProgressValue(new ProgressValue(turn, 0, height, chunkSize));
 							return;
 						}
 					}
 					chunkSize >>= 1;
 					y = 0;
+					position++;
 				} else {
 					break;
 				}
 			}
-
-			setProgressValue(new ProgressValue(turn, 0, height, 1));
 		}
 
 		protected final ProgressiveRefinementPointCalculator getPointCalculator() {
@@ -230,50 +379,7 @@ public class ProgressiveRefinement extends Production {
 		@Override
 		public void handleException(Throwable t) {
 			super.handleException(t);
-			IntermediateImage iimg = getIntermediateImage();
-			int width = iimg.getWidth();
-			int height = iimg.getHeight();
-			int numOfProducers = getNumOfProducers();
-
-			ProgressValue progressValue = (ProgressValue) getProgressValue();
-			int turn = progressValue.getTurn();
-			int chunkSize = progressValue.getChunkSize();
-
-			boolean doSetProgress = false;
-			int x = progressValue.getOffsetX();
-			int y = progressValue.getOffsetY();
-			while (true) {
-
-				for ( ; y < height; y += chunkSize) {
-					for ( ; x < width; x += chunkSize) {
-						if (doSetProgress) {
-							setProgressValue(new ProgressValue(turn, x, y, chunkSize));
-							return;
-						}
-
-						if (turn == 0) {
-							doSetProgress = true;
-						}
-						turn = (turn + 1) % numOfProducers;
-					}
-					x = 0;
-				}
-
-				if (chunkSize > 1) {
-					if (cyclicBarrier != null) {
-						if (doSetProgress) {
-							setProgressValue(new ProgressValue(turn, 0, height, chunkSize));
-						}
-						return;
-					}
-					chunkSize >>= 1;
-					y = 0;
-				} else {
-					break;
-				}
-			}
-
-			setProgressValue(new ProgressValue(turn, 0, height, 1));
+			setLongProgressValue(position + 1);
 		}
 	}
 
@@ -319,6 +425,16 @@ public class ProgressiveRefinement extends Production {
 		return new Producer(progress);
 	}
 
+	private static int indexOf(Progress progress, IntermediateImage iimg) {
+		int numOfProducers = iimg.getNumOfProducers();
+		for (int i = 0; i < numOfProducers; i++) {
+			if (iimg.getProgressOf(i) == progress) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("progress");
+	}
+
 	@Override
 	public void resetSynchronizers() {
 		if (cyclicBarrier != null) {
@@ -328,11 +444,10 @@ public class ProgressiveRefinement extends Production {
 
 	public static Progress[] createInitialProgress(int imgWidth, int imgHeight, int numOfProducers, int numOfSteps) {
 		Progress[] rv = new Progress[numOfProducers];
-		int initialChunkSize = 1 << (numOfSteps - 1);
+		ChunkSequence sequence = new ChunkSequence(imgWidth, imgHeight, numOfSteps);
+		AtomicLongArray counters = LongProgress.createCounters(numOfProducers);
 		for (int i = 0; i < numOfProducers; i++) {
-			rv[i] = new Progress(
-					new ProgressValue(i, 0, 0, initialChunkSize),
-					new ProgressValue(i, 0, imgHeight, 1));
+			rv[i] = new PositionProgress(sequence, i, numOfProducers, 0, counters);
 		}
 		return rv;
 	}
@@ -340,12 +455,11 @@ public class ProgressiveRefinement extends Production {
 	public static Progress[] readProgress(int imgWidth, int imgHeight, int numOfProducers, int numOfSteps, ObjectInputStream in)
 			throws ClassNotFoundException, IOException {
 		Progress[] rv = new Progress[numOfProducers];
-		int initialChunkSize = 1 << (numOfSteps - 1);
+		ChunkSequence sequence = new ChunkSequence(imgWidth, imgHeight, numOfSteps);
+		AtomicLongArray counters = LongProgress.createCounters(numOfProducers);
 		for (int i = 0; i < numOfProducers; i++) {
-			rv[i] = new Progress(
-					new ProgressValue(i, 0, 0, initialChunkSize),
-					new ProgressValue(i, 0, imgHeight, 1),
-					Utilities.readNonNull(in, "value", ProgressValue.class));
+			ProgressValue value = Utilities.readNonNull(in, "value", ProgressValue.class);
+			rv[i] = new PositionProgress(sequence, i, numOfProducers, sequence.getPosition(value), counters);
 		}
 		return rv;
 	}
@@ -365,7 +479,7 @@ public class ProgressiveRefinement extends Production {
 		Thread currentThread = Thread.currentThread();
 		for (int y = 0; y < iimg.getHeight(); y += chunkSize) {
 			for (int x = 0; x < iimg.getWidth(); x += chunkSize) {
-				if (currentThread.isInterrupted()) return;
+				if (shouldStop(currentThread)) return;
 				iimg.readPoint(x, y, in);
 			}
 		}
@@ -385,7 +499,7 @@ public class ProgressiveRefinement extends Production {
 		Thread currentThread = Thread.currentThread();
 		for (int y = 0; y < iimg.getHeight(); y += chunkSize) {
 			for (int x = 0; x < iimg.getWidth(); x += chunkSize) {
-				if (currentThread.isInterrupted()) return;
+				if (shouldStop(currentThread)) return;
 				iimg.writePoint(x, y, out);
 			}
 		}
@@ -27,12 +27,16 @@ import java.awt.image.WritableRaster;
 
 import org.altervista.mbilotta.julia.Consumer;
 import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.LongProgress;
+import org.altervista.mbilotta.julia.Progress;
+import org.altervista.mbilotta.julia.impl.ProgressiveRefinement.ChunkSequence;
 import org.altervista.mbilotta.julia.impl.ProgressiveRefinement.ProgressValue;
 
 
 public class ProgressiveRefinementConsumer extends Consumer {
 
 	private final PixelCalculator calculator;
+	private final ChunkSequence sequence;
 
 	private ProgressValue value;
 
@@ -47,6 +51,8 @@ public class ProgressiveRefinementConsumer extends Consumer {
 	public ProgressiveRefinementConsumer(IntermediateImage iimg, PixelCalculator calculator, ProgressValue value) {
 		super(iimg);
 		this.calculator = calculator;
+		this.sequence = new ChunkSequence(iimg.getWidth(), iimg.getHeight(),
+				Integer.numberOfTrailingZeros(getInitialChunkSize(iimg)) + 1);
 		this.value = value;
 	}
 
@@ -110,30 +116,26 @@ public class ProgressiveRefinementConsumer extends Consumer {
 		int numOfProducers = iimg.getNumOfProducers();
 		assert percentagesRv == null || percentagesRv.length == numOfProducers;
 
-		int numOfPasses = Integer.numberOfTrailingZeros(getInitialChunkSize(iimg)) + 1;
-		long passLength = (long)iimg.getWidth() * iimg.getHeight();
-		long fullLength = passLength * numOfPasses;
-		ProgressValue min = null;
+		int numOfPasses = sequence.getNumOfSteps();
+		long min = Long.MAX_VALUE;
 		for (int i = 0; i < numOfProducers; i++) {
-			ProgressValue value = (ProgressValue) iimg.getProgressOf(i).getValue();
-			if (min == null || value.compareTo(min) < 0) {
-				min = value;
+			Progress progress = iimg.getProgressOf(i);
+			long position = progress instanceof LongProgress ?
+					((LongProgress) progress).getLongValue() :
+					sequence.getPosition((ProgressValue) progress.getValue());
+			if (position < min) {
+				min = position;
 			}
 
 			if (percentagesRv != null) {
-				int currentPass = numOfPasses - Integer.numberOfTrailingZeros(value.getChunkSize()) - 1;
-				long currentProgress = currentPass * passLength + computeStepProgress(value);
-				percentagesRv[i] = (int)((100 * currentProgress) / fullLength);
+				int currentPass = sequence.getPass(position);
+				long passStart = sequence.getPassStart(currentPass);
+				long passLength = sequence.getPassEnd(currentPass) - passStart;
+				percentagesRv[i] = (int) ((100 * currentPass + (100 * (position - passStart)) / passLength) / numOfPasses);
 			}
 		}
 
-		return min;
-	}
-
-	private long computeStepProgress(ProgressValue value) {
-		int chunkW = Math.min(iimg.getWidth() - value.getOffsetX(), value.getChunkSize());
-		int chunkH = Math.min(iimg.getHeight() - value.getOffsetY(), value.getChunkSize());
-		return (long)value.getOffsetY() * iimg.getWidth() + (chunkW * chunkH) * value.getOffsetX();
+		return sequence.getProgressValue(min, 0);
 	}
 
 	private static void fillChunk(WritableRaster raster, int x, int y, int chunkSize, Object inData) {
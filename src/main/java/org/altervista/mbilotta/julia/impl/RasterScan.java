@@ -23,9 +23,11 @@ package org.altervista.mbilotta.julia.impl;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.altervista.mbilotta.julia.Formula;
 import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.LongProgress;
 import org.altervista.mbilotta.julia.NumberFactory;
 import org.altervista.mbilotta.julia.Production;
 import org.altervista.mbilotta.julia.Progress;
@@ -35,38 +37,70 @@ import org.altervista.mbilotta.julia.math.CoordinateTransform;
 
 
 public class RasterScan extends Production {
-	
+
+	private static final int PUBLICATION_INTERVAL = 64;
+
 	private final PointCalculator pointCalculator;
+	private PointReuse pointReuse;
+	private Symmetry symmetry;
+
+	private static final class OffsetProgress extends LongProgress {
+
+		public OffsetProgress(int initialOffset, int finalOffset, int offset, AtomicLongArray counters, int index) {
+			super(initialOffset, finalOffset, offset, counters, index);
+		}
+
+		protected Object toObject(long value) {
+			return (int) value;
+		}
+
+		protected long toLong(Object value) {
+			return (Integer) value;
+		}
+	}
 
 	protected class Producer extends Production.Producer {
 
 		private final PointCalculator pointCalculator;
+		private int offset;
 
 		public Producer(Progress progress) {
 			super(progress);
 			pointCalculator = RasterScan.this.pointCalculator.newInstance();
 		}
 
+		@Override
+		protected Object toProgressValue(long value) {
+			return (int) value;
+		}
+
 		protected void start() {
 			IntermediateImage iimg = getIntermediateImage();
 			int width = iimg.getWidth();
 			Formula formula = getFormula();
 			CoordinateTransform coordinateTransform = getCoordinateTransform();
 			PointCalculator pointCalculator = getPointCalculator();
-			int offset = (Integer) getProgressValue();
 			int stride = iimg.getNumOfProducers();
 			int length = width * iimg.getHeight();
+			offset = (int) getLongProgressValue();
 
 			Thread currentThread = Thread.currentThread();
-			for (int i = offset; i < length && !currentThread.isInterrupted(); ) {
-				int x = i % width;
-				int y = i / width;
-				pointCalculator.computePoint(x, y, coordinateTransform, formula);
-
-				i += stride;
-				setProgressValue(i);
+			int unpublished = 0;
+			while (offset < length && !shouldStop(currentThread)) {
+				int x = offset % width;
+				int y = offset / width;
+				if (!reusePoint(x, y)) {
+					pointCalculator.computePoint(x, y, coordinateTransform, formula);
+					pointComputed(x, y);
+				}
+
+				offset += stride;
+				if (++unpublished == PUBLICATION_INTERVAL) {
+					setLongProgressValue(offset);
+					unpublished = 0;
+				}
 			}
-			
+			setLongProgressValue(offset);
 		}
 
 		protected final PointCalculator getPointCalculator() {
@@ -76,8 +110,7 @@ public class RasterScan extends Production {
 		@Override
 		public void handleException(Throwable t) {
 			super.handleException(t);
-			int offset = (Integer) getProgressValue();
-			setProgressValue(offset + getIntermediateImage().getNumOfProducers());
+			setLongProgressValue(offset + getIntermediateImage().getNumOfProducers());
 		}
 	}
 
@@ -103,17 +136,43 @@ public class RasterScan extends Production {
 		return new Producer(progress);
 	}
 
+	// Points shared with a previous image are copied from it, not computed
+	public final void setPointReuse(PointReuse pointReuse) {
+		this.pointReuse = pointReuse;
+	}
+
+	// Points of pixels a symmetry of the formula maps onto computed ones are
+	// copied as well
+	public final void setSymmetry(Symmetry symmetry) {
+		this.symmetry = symmetry;
+	}
+
+	protected final boolean reusePoint(int x, int y) {
+		if (pointReuse != null && pointReuse.copyPoint(x, y)) {
+			pointComputed(x, y);
+			return true;
+		}
+		return symmetry != null && symmetry.copyPoint(x, y);
+	}
+
+	protected final void pointComputed(int x, int y) {
+		if (symmetry != null) {
+			symmetry.pointComputed(x, y);
+		}
+	}
+
 	public static Progress[] createInitialProgress(int imgWidth, int imgHeight, int numOfProducers) {
 		Progress[] rv = new Progress[numOfProducers];
+		AtomicLongArray counters = LongProgress.createCounters(numOfProducers);
 		int arrayLength = imgWidth * imgHeight;
 		int remainder = arrayLength % numOfProducers;
 		int lastFrameIndex = arrayLength - remainder;
 		int endFrameIndex = numOfProducers + lastFrameIndex;
 		int i = 0;
 		for ( ; i < remainder; i++)
-			rv[i] = new Progress(i, i + endFrameIndex);
+			rv[i] = new OffsetProgress(i, i + endFrameIndex, i, counters, i);
 		for ( ; i < numOfProducers; i++)
-			rv[i] = new Progress(i, i + lastFrameIndex);
+			rv[i] = new OffsetProgress(i, i + lastFrameIndex, i, counters, i);
 
 		return rv;
 	}
@@ -121,15 +180,16 @@ public class RasterScan extends Production {
 	public static Progress[] readProgress(int imgWidth, int imgHeight, int numOfProducers, ObjectInputStream in)
 			throws IOException {
 		Progress[] rv = new Progress[numOfProducers];
+		AtomicLongArray counters = LongProgress.createCounters(numOfProducers);
 		int arrayLength = imgWidth * imgHeight;
 		int remainder = arrayLength % numOfProducers;
 		int lastFrameIndex = arrayLength - remainder;
 		int endFrameIndex = numOfProducers + lastFrameIndex;
 		int i = 0;
 		for ( ; i < remainder; i++)
-			rv[i] = new Progress(i, i + endFrameIndex, in.readInt());
+			rv[i] = new OffsetProgress(i, i + endFrameIndex, in.readInt(), counters, i);
 		for ( ; i < numOfProducers; i++)
-			rv[i] = new Progress(i, i + lastFrameIndex, in.readInt());
+			rv[i] = new OffsetProgress(i, i + lastFrameIndex, in.readInt(), counters, i);
 
 		return rv;
 	}
@@ -142,7 +202,7 @@ public class RasterScan extends Production {
 		for (int i = 0; i < numOfProducers; i++) {
 			int end = (Integer) iimg.getProgressOf(i).getValue();
 			for (int j = i; j < end; j += numOfProducers) {
-				if (currentThread.isInterrupted()) return;
+				if (shouldStop(currentThread)) return;
 				int x = j % width;
 				int y = j / width;
 				iimg.readPoint(x, y, in);
@@ -158,7 +218,7 @@ public class RasterScan extends Production {
 		for (int i = 0; i < numOfProducers; i++) {
 			int end = (Integer) progressValues[i];
 			for (int j = i; j < end; j += numOfProducers) {
-				if (currentThread.isInterrupted()) return;
+				if (shouldStop(currentThread)) return;
 				int x = j % width;
 				int y = j / width;
 				iimg.writePoint(x, y, out);
@@ -27,6 +27,7 @@ import java.awt.image.WritableRaster;
 
 import org.altervista.mbilotta.julia.Consumer;
 import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.LongProgress;
 import org.altervista.mbilotta.julia.Progress;
 
 
@@ -82,9 +83,19 @@ public class RasterScanConsumer extends Consumer {
 		int min = Integer.MAX_VALUE;
 		for (int i = 0; i < numOfProducers; i++) {
 			Progress progress = iimg.getProgressOf(i);
-			int initialOffset = (Integer) progress.getInitialValue();
-			int finalOffset = (Integer) progress.getFinalValue();
-			int offset = (Integer) progress.getValue();
+			int initialOffset;
+			int finalOffset;
+			int offset;
+			if (progress instanceof LongProgress) {
+				LongProgress longProgress = (LongProgress) progress;
+				initialOffset = (int) longProgress.getInitialLongValue();
+				finalOffset = (int) longProgress.getFinalLongValue();
+				offset = (int) longProgress.getLongValue();
+			} else {
+				initialOffset = (Integer) progress.getInitialValue();
+				finalOffset = (Integer) progress.getFinalValue();
+				offset = (Integer) progress.getValue();
+			}
 			if (offset < min) {
 				min = offset;
 			}
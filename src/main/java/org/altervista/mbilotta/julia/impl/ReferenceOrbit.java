@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+
+
+final class ReferenceOrbit {
+
+	private static final int CHUNK_SIZE = 1024;
+
+	private final PerturbationFormula formula;
+	private final NumberFactory numberFactory;
+	private final Complex point;
+	private final Complex juliaSetPoint;
+	private final Complex z0;
+	private final double dcMax;
+	private final List<BilinearApproximation> approximations = new ArrayList<>();
+	private double[] re;
+	private double[] im;
+	private int length;
+	private boolean ended;
+
+	private ReferenceOrbitCache cache;
+	private Executor executor;
+	private boolean loaded;
+	private int storedLength;
+
+	// The orbit is computed at full precision, in growing chunks, as the
+	// perturbed orbits following it need more points. Each chunk gets its
+	// approximation table, valid for any dc up to dcMax
+	public ReferenceOrbit(PerturbationFormula prototype, NumberFactory numberFactory, Complex point, Complex juliaSetPoint, double dcMax) {
+		this.numberFactory = numberFactory;
+		formula = prototype.newInstance();
+		formula.cacheConstants(numberFactory);
+		if (juliaSetPoint != null) {
+			formula.setC(juliaSetPoint);
+			formula.initJuliaIteration(point);
+		} else {
+			formula.initMandelbrotIteration(point);
+		}
+		this.point = point;
+		this.juliaSetPoint = juliaSetPoint;
+		this.z0 = formula.getZ();
+		this.dcMax = dcMax;
+		re = new double[CHUNK_SIZE];
+		im = new double[CHUNK_SIZE];
+		re[0] = z0.re().doubleValue();
+		im[0] = z0.im().doubleValue();
+		length = 1;
+	}
+
+	public synchronized void setCache(ReferenceOrbitCache cache) {
+		this.cache = cache;
+	}
+
+	public synchronized void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	public synchronized int extend(int minLength) {
+		if (!loaded) {
+			load();
+		}
+		if (length >= minLength) {
+			return length;
+		}
+
+		Thread currentThread = Thread.currentThread();
+		int initialLength = length;
+		int target = Math.max(minLength, length + Math.max(CHUNK_SIZE, length >> 3));
+		while (length < target && !ended) {
+			if (formula.bailoutOccured()) {
+				ended = true;
+				break;
+			}
+			if (currentThread.isInterrupted()) {
+				break;
+			}
+			if (length == re.length) {
+				re = Arrays.copyOf(re, length << 1);
+				im = Arrays.copyOf(im, length << 1);
+			}
+			formula.iterate();
+			Complex z = formula.getZ();
+			re[length] = z.re().doubleValue();
+			im[length] = z.im().doubleValue();
+			length++;
+		}
+		if (length > initialLength) {
+			approximations.add(new BilinearApproximation(formula, re, im, initialLength - 1, length - 1, dcMax, executor));
+		}
+		return length;
+	}
+
+	// Cached points come as a whole: a single table covers them all. The
+	// formula resumes from the last point stored with them, as precise as its
+	// decimal value: no cached point is iterated through again
+	private void load() {
+		loaded = true;
+		if (cache != null) {
+			ReferenceOrbitCache.Orbit orbit = cache.get(point, juliaSetPoint);
+			if (orbit != null && orbit.getLength() > length) {
+				length = orbit.getLength();
+				re = Arrays.copyOf(orbit.getRe(), Math.max(length, CHUNK_SIZE));
+				im = Arrays.copyOf(orbit.getIm(), Math.max(length, CHUNK_SIZE));
+				ended = orbit.hasEnded();
+				if (!ended) {
+					formula.initJuliaIteration(numberFactory.valueOf(orbit.getLastRe(), orbit.getLastIm()));
+				}
+				storedLength = length;
+				approximations.add(new BilinearApproximation(formula, re, im, 0, length - 1, dcMax, executor));
+			}
+		}
+	}
+
+	public synchronized void store() {
+		if (cache != null && length > storedLength) {
+			Complex z = ended ? null : formula.getZ();
+			cache.put(point, juliaSetPoint, new ReferenceOrbitCache.Orbit(
+					Arrays.copyOf(re, length),
+					Arrays.copyOf(im, length),
+					ended,
+					z != null ? z.re().decimalValue() : null,
+					z != null ? z.im().decimalValue() : null));
+			storedLength = length;
+		}
+	}
+
+	public synchronized BilinearApproximation getApproximation(int n) {
+		int low = 0;
+		int high = approximations.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			BilinearApproximation approximation = approximations.get(mid);
+			if (n < approximation.getStart()) {
+				high = mid - 1;
+			} else if (n >= approximation.getEnd()) {
+				low = mid + 1;
+			} else {
+				return approximation;
+			}
+		}
+		return null;
+	}
+
+	public synchronized double[] getRe() {
+		return re;
+	}
+
+	public synchronized double[] getIm() {
+		return im;
+	}
+
+	public Complex getPoint() {
+		return point;
+	}
+
+	public Complex getZ0() {
+		return z0;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import org.altervista.mbilotta.julia.Decimal;
+import org.altervista.mbilotta.julia.math.Complex;
+
+
+public interface ReferenceOrbitCache {
+
+	// Orbits are identified by their starting point and, for Julia sets, by
+	// the Julia set point. The caller is in charge of telling apart formulas
+	// and precisions
+	Orbit get(Complex point, Complex juliaSetPoint);
+	void put(Complex point, Complex juliaSetPoint, Orbit orbit);
+
+	public static final class Orbit {
+
+		private final double[] re;
+		private final double[] im;
+		private final boolean ended;
+		private final Decimal lastRe;
+		private final Decimal lastIm;
+
+		// The last point, at full precision, lets an orbit that has not ended
+		// be extended without iterating again through the cached points
+		public Orbit(double[] re, double[] im, boolean ended, Decimal lastRe, Decimal lastIm) {
+			assert re.length == im.length;
+			assert ended || (lastRe != null && lastIm != null);
+			this.re = re;
+			this.im = im;
+			this.ended = ended;
+			this.lastRe = lastRe;
+			this.lastIm = lastIm;
+		}
+
+		public double[] getRe() {
+			return re;
+		}
+
+		public double[] getIm() {
+			return im;
+		}
+
+		public int getLength() {
+			return re.length;
+		}
+
+		// An orbit that ended escaped: no more points can be asked for it
+		public boolean hasEnded() {
+			return ended;
+		}
+
+		public Decimal getLastRe() {
+			return lastRe;
+		}
+
+		public Decimal getLastIm() {
+			return lastIm;
+		}
+	}
+}
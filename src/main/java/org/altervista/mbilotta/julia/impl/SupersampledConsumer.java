@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.altervista.mbilotta.julia.Consumer;
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.Progress;
+
+
+// Paints the rows of a SupersampledImage as they are refined: the refined
+// pixels take their averaged colors, the others are computed from the source
+public class SupersampledConsumer extends Consumer {
+
+	private final PixelCalculator calculator;
+
+	// Per producer, the first row not painted yet
+	private final int[] consumedRows;
+
+	public SupersampledConsumer(IntermediateImage iimg, PixelCalculator calculator) {
+		super(iimg);
+		assert iimg instanceof SupersampledImage;
+		this.calculator = calculator;
+		int numOfProducers = iimg.getNumOfProducers();
+		this.consumedRows = new int[numOfProducers];
+		for (int i = 0; i < numOfProducers; i++) {
+			consumedRows[i] = (Integer) iimg.getProgressOf(i).getInitialValue();
+		}
+	}
+
+	public Rectangle[] consume(BufferedImage fimg, int[] percentagesRv) {
+		int numOfProducers = iimg.getNumOfProducers();
+		assert percentagesRv == null || percentagesRv.length == numOfProducers;
+
+		List<Rectangle> rv = new ArrayList<>(numOfProducers);
+		for (int i = 0; i < numOfProducers; i++) {
+			Progress progress = iimg.getProgressOf(i);
+			int start = consumedRows[i];
+			int end = (Integer) progress.getValue();
+			if (end > start) {
+				consumeImpl(fimg, start, end);
+				rv.add(new Rectangle(0, start, iimg.getWidth(), end - start));
+				consumedRows[i] = end;
+			}
+
+			if (percentagesRv != null) {
+				int initialRow = (Integer) progress.getInitialValue();
+				int finalRow = (Integer) progress.getFinalValue();
+				percentagesRv[i] = finalRow > initialRow ? (100 * (end - initialRow)) / (finalRow - initialRow) : 100;
+			}
+		}
+		return rv.toArray(new Rectangle[rv.size()]);
+	}
+
+	public void consume(BufferedImage fimg) {
+		for (int i = 0; i < consumedRows.length; i++) {
+			consumeImpl(fimg, (Integer) iimg.getProgressOf(i).getInitialValue(), consumedRows[i]);
+		}
+	}
+
+	public int getTransparency() {
+		return calculator.getTransparency();
+	}
+
+	public Rectangle[] getAvailableRegions() {
+		Rectangle[] rv = new Rectangle[consumedRows.length];
+		for (int i = 0; i < consumedRows.length; i++) {
+			int initialRow = (Integer) iimg.getProgressOf(i).getInitialValue();
+			rv[i] = new Rectangle(0, initialRow, iimg.getWidth(), consumedRows[i] - initialRow);
+		}
+		return rv;
+	}
+
+	private void consumeImpl(BufferedImage fimg, int start, int end) {
+		SupersampledImage image = (SupersampledImage) iimg;
+		IntermediateImage source = image.getSource();
+		int width = iimg.getWidth();
+		WritableRaster raster = fimg.getRaster();
+		ColorModel colorModel = fimg.getColorModel();
+		Object cmOutData = colorModel.getDataElements(0, null);
+		for (int y = start; y < end; y++) {
+			int[] refinedPixels = image.getRefinedPixels(y);
+			int[] refinedColors = image.getRefinedColors(y);
+			int j = 0;
+			for (int x = 0; x < width; x++) {
+				int rgb;
+				if (refinedPixels != null && j < refinedPixels.length && refinedPixels[j] == x) {
+					rgb = refinedColors[j++];
+				} else {
+					rgb = calculator.computePixel(x, y, source);
+				}
+				raster.setDataElements(x, y, colorModel.getDataElements(rgb, cmOutData));
+			}
+		}
+	}
+
+	public final PixelCalculator getPixelCalculator() {
+		return calculator;
+	}
+}
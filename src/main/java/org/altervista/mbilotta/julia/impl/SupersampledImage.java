@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.Progress;
+
+
+// A complete image plus the antialiased colors of the pixels Supersampling
+// took extra samples at. Producer i refines the rows from getStartRow(i) to
+// getStartRow(i + 1), its progress being the next row to do
+public final class SupersampledImage extends IntermediateImage {
+
+	private final IntermediateImage source;
+	// Per row, the refined pixels in ascending order and their colors. A row
+	// is written once by its producer before its progress moves past it
+	private final int[][] refinedPixels;
+	private final int[][] refinedColors;
+
+	public SupersampledImage(IntermediateImage source) {
+		super(source.getWidth(), source.getHeight(), createInitialProgress(source.getHeight(), source.getNumOfProducers()));
+		assert source.isComplete();
+		this.source = source;
+		this.refinedPixels = new int[height][];
+		this.refinedColors = new int[height][];
+	}
+
+	private static Progress[] createInitialProgress(int height, int numOfProducers) {
+		Progress[] rv = new Progress[numOfProducers];
+		for (int i = 0; i < numOfProducers; i++) {
+			rv[i] = new Progress(getStartRow(height, numOfProducers, i), getStartRow(height, numOfProducers, i + 1));
+		}
+		return rv;
+	}
+
+	private static int getStartRow(int height, int numOfProducers, int i) {
+		return (int) ((long) height * i / numOfProducers);
+	}
+
+	public int getStartRow(int i) {
+		return getStartRow(height, getNumOfProducers(), i);
+	}
+
+	public IntermediateImage getSource() {
+		return source;
+	}
+
+	void setRow(int y, int[] pixels, int[] colors) {
+		refinedPixels[y] = pixels;
+		refinedColors[y] = colors;
+	}
+
+	// Null if the row has no refined pixels or was not refined yet
+	public int[] getRefinedPixels(int y) {
+		return refinedPixels[y];
+	}
+
+	public int[] getRefinedColors(int y) {
+		return refinedColors[y];
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.awt.Transparency;
+import java.util.Arrays;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Production;
+import org.altervista.mbilotta.julia.Progress;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+// Second pass over a complete image: pixels whose color differs from that of
+// a neighbour by more than a threshold in some channel get four more samples
+// on a rotated grid, averaged with the pixel itself in linear light. Aliasing
+// only shows along such edges, so this costs a fraction of rendering the whole
+// image at a higher resolution
+public class Supersampling extends Production {
+
+	// Rows whose samples are computed together, in images this tall
+	private static final int BAND_HEIGHT = 16;
+	// In eighths of a pixel
+	private static final int[][] SAMPLE_OFFSETS = { { -3, -1 }, { 1, -3 }, { 3, 1 }, { -1, 3 } };
+	private static final float[] TO_LINEAR = new float[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			double c = i / 255.0;
+			TO_LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+		}
+	}
+
+	private final AbstractRasterRepresentation representation;
+	private final int threshold;
+
+	protected class Producer extends Production.Producer {
+
+		private final int endRow;
+		private final PixelCalculator pixelCalculator;
+		private final IntermediateImage[] samples;
+		private final PointCalculator[] pointCalculators;
+		private final int[] sampleColors;
+
+		public Producer(Progress progress) {
+			super(progress);
+			endRow = (Integer) progress.getFinalValue();
+			pixelCalculator = representation.createPixelCalculator();
+			samples = new IntermediateImage[SAMPLE_OFFSETS.length];
+			pointCalculators = new PointCalculator[SAMPLE_OFFSETS.length];
+			for (int i = 0; i < SAMPLE_OFFSETS.length; i++) {
+				samples[i] = representation.createIntermediateImage(getImageWidth(), BAND_HEIGHT, 1);
+				pointCalculators[i] = representation.createPointCalculator(samples[i],
+						getNumberFactory(), getCoordinateTransform(), getJuliaSetPoint() != null);
+			}
+			sampleColors = new int[SAMPLE_OFFSETS.length + 1];
+		}
+
+		protected void start() {
+			SupersampledImage iimg = getSupersampledImage();
+			IntermediateImage source = iimg.getSource();
+			int width = iimg.getWidth();
+			int height = iimg.getHeight();
+			boolean opaque = pixelCalculator.getTransparency() == Transparency.OPAQUE;
+			Formula formula = getFormula();
+			Thread currentThread = Thread.currentThread();
+
+			int bandStart = (Integer) getProgressValue();
+			while (bandStart < endRow) {
+				int bandEnd = Math.min(bandStart + BAND_HEIGHT, endRow);
+
+				// Colors of the band plus the rows bordering it
+				int first = Math.max(bandStart - 1, 0);
+				int last = Math.min(bandEnd, height - 1);
+				int[][] colors = new int[last - first + 1][width];
+				for (int y = first; y <= last; y++) {
+					for (int x = 0; x < width; x++) {
+						colors[y - first][x] = pixelCalculator.computePixel(x, y, source);
+					}
+				}
+
+				int[][] pixels = new int[bandEnd - bandStart][];
+				for (int y = bandStart; y < bandEnd; y++) {
+					pixels[y - bandStart] = findEdges(colors, y - first, width);
+				}
+
+				for (int i = 0; i < SAMPLE_OFFSETS.length; i++) {
+					CoordinateTransform coordinateTransform = getSampleTransform(SAMPLE_OFFSETS[i], bandStart);
+					for (int y = bandStart; y < bandEnd; y++) {
+						for (int x : pixels[y - bandStart]) {
+							if (shouldStop(currentThread)) return;
+							pointCalculators[i].computePoint(x, y - bandStart, coordinateTransform, formula);
+						}
+					}
+				}
+
+				for (int y = bandStart; y < bandEnd; y++) {
+					int[] rowPixels = pixels[y - bandStart];
+					int[] rowColors = new int[rowPixels.length];
+					for (int j = 0; j < rowPixels.length; j++) {
+						int x = rowPixels[j];
+						sampleColors[0] = colors[y - first][x];
+						for (int i = 0; i < SAMPLE_OFFSETS.length; i++) {
+							sampleColors[i + 1] = pixelCalculator.computePixel(x, y - bandStart, samples[i]);
+						}
+						rowColors[j] = average(sampleColors, opaque);
+					}
+					iimg.setRow(y, rowPixels, rowColors);
+				}
+				setProgressValue(bandEnd);
+				bandStart = bandEnd;
+			}
+		}
+
+		private int[] findEdges(int[][] colors, int row, int width) {
+			int[] center = colors[row];
+			int[] above = row > 0 ? colors[row - 1] : null;
+			int[] below = row < colors.length - 1 ? colors[row + 1] : null;
+			int[] rv = new int[width];
+			int count = 0;
+			for (int x = 0; x < width; x++) {
+				int c = center[x];
+				if ((x > 0 && differ(c, center[x - 1])) ||
+						(x < width - 1 && differ(c, center[x + 1])) ||
+						(above != null && differ(c, above[x])) ||
+						(below != null && differ(c, below[x]))) {
+					rv[count++] = x;
+				}
+			}
+			return Arrays.copyOf(rv, count);
+		}
+
+		// Transform taking pixel (x, y) of a band starting at row bandStart to
+		// the sample at offset of pixel (x, bandStart + y)
+		private CoordinateTransform getSampleTransform(int[] offset, int bandStart) {
+			CoordinateTransform coordinateTransform = getCoordinateTransform();
+			NumberFactory numberFactory = getNumberFactory();
+			Real zero = numberFactory.zero();
+			return new CoordinateTransform(
+					coordinateTransform.toRe(numberFactory.valueOf(offset[0]).dividedBy(8)),
+					coordinateTransform.toIm(numberFactory.valueOf(8 * bandStart + offset[1]).dividedBy(8)),
+					zero, zero,
+					coordinateTransform.getScaleRe(), coordinateTransform.getScaleIm())
+					.withGrid(numberFactory, getImageWidth(), BAND_HEIGHT);
+		}
+	}
+
+	public Supersampling(NumberFactory numberFactory,
+			Formula formula,
+			AbstractRasterRepresentation representation,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			SupersampledImage iimg,
+			int threshold) {
+
+		super(numberFactory,
+			formula,
+			representation,
+			coordinateTransform,
+			juliaSetPoint,
+			iimg);
+
+		this.representation = representation;
+		this.threshold = threshold;
+	}
+
+	public Producer createProducer(Progress progress) {
+		return new Producer(progress);
+	}
+
+	public final SupersampledImage getSupersampledImage() {
+		return (SupersampledImage) getIntermediateImage();
+	}
+
+	private boolean differ(int a, int b) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			if (Math.abs((a >>> shift & 0xff) - (b >>> shift & 0xff)) > threshold)
+				return true;
+		}
+		return false;
+	}
+
+	// Colors are averaged weighted by alpha, so that transparent samples do
+	// not darken the others
+	private static int average(int[] colors, boolean opaque) {
+		double r = 0, g = 0, b = 0, a = 0;
+		for (int color : colors) {
+			double alpha = opaque ? 1 : (color >>> 24) / 255.0;
+			r += alpha * TO_LINEAR[color >>> 16 & 0xff];
+			g += alpha * TO_LINEAR[color >>> 8 & 0xff];
+			b += alpha * TO_LINEAR[color & 0xff];
+			a += alpha;
+		}
+		if (a == 0)
+			return 0;
+
+		return (int) Math.round(255 * a / colors.length) << 24 |
+				toSrgb(r / a) << 16 |
+				toSrgb(g / a) << 8 |
+				toSrgb(b / a);
+	}
+
+	private static int toSrgb(double linear) {
+		double c = linear <= 0.0031308 ? 12.92 * linear : 1.055 * Math.pow(linear, 1 / 2.4) - 0.055;
+		return (int) Math.round(255 * Math.max(0, Math.min(c, 1)));
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+// Maps pixels onto the ones their formula gives the same points at: the
+// mirror about the real axis for conjugation symmetric formulas, the mirror
+// through the origin for point symmetric Julia sets, and both of them when
+// both apply. Whichever of two such pixels comes first is computed, the other
+// copies it. Only pixels whose mirror is on the pixel grid are paired
+public final class Symmetry {
+
+	// In pixels: mirrors closer than this to the grid are on it. Coordinates
+	// are rounded, so the exact mirror of a pixel is mostly off by an ulp
+	private static final double TOLERANCE = 1e-6;
+
+	private final RasterImage image;
+	private final boolean integer;
+	// Per column (row), the one at the opposite real (imaginary) part, or -1
+	private final int[] mirroredColumns;
+	private final int[] mirroredRows;
+	// Per symmetry, whether it flips columns and rows
+	private final boolean[] flipsX;
+	private final boolean[] flipsY;
+	private final ConcurrentBitmap computed;
+
+	private Symmetry(RasterImage image, int[] mirroredColumns, int[] mirroredRows, boolean[] flipsX, boolean[] flipsY) {
+		this.image = image;
+		this.integer = image instanceof IntegerImage;
+		this.mirroredColumns = mirroredColumns;
+		this.mirroredRows = mirroredRows;
+		this.flipsX = flipsX;
+		this.flipsY = flipsY;
+		this.computed = new ConcurrentBitmap(image.getWidth() * image.getHeight());
+	}
+
+	// Null unless the formula has a symmetry applying to the image and some
+	// of its pixels are paired. Only plain integer and float images are taken:
+	// subclasses may keep more than the point values
+	public static Symmetry create(IntermediateImage iimg,
+			Formula formula,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint) {
+		Class<?> imageClass = iimg.getClass();
+		if (imageClass != IntegerImage.class && imageClass != FloatImage.class)
+			return null;
+
+		boolean realAxis = formula.isConjugationSymmetric() &&
+				(juliaSetPoint == null || juliaSetPoint.im().eq(0));
+		boolean origin = juliaSetPoint != null && formula.isPointSymmetric();
+		if (!realAxis && !origin)
+			return null;
+
+		int[] mirroredRows = mirror(coordinateTransform, iimg.getHeight(), false);
+		int[] mirroredColumns = origin ? mirror(coordinateTransform, iimg.getWidth(), true) : null;
+		if (mirroredRows == null && mirroredColumns == null)
+			return null;
+
+		boolean[] flipsX, flipsY;
+		if (realAxis && origin) {
+			flipsX = new boolean[] { false, true, true };
+			flipsY = new boolean[] { true, true, false };
+		} else if (realAxis) {
+			flipsX = new boolean[] { false };
+			flipsY = new boolean[] { true };
+		} else {
+			flipsX = new boolean[] { true };
+			flipsY = new boolean[] { true };
+		}
+		return new Symmetry((RasterImage) iimg, mirroredColumns, mirroredRows, flipsX, flipsY);
+	}
+
+	// Null if no column (row) has a mirror on the grid
+	private static int[] mirror(CoordinateTransform coordinateTransform, int length, boolean columns) {
+		int[] rv = new int[length];
+		boolean any = false;
+		for (int i = 0; i < length; i++) {
+			Real opposite = (columns ? coordinateTransform.toRe(i) : coordinateTransform.toIm(i)).negate();
+			double j = (columns ? coordinateTransform.toX(opposite) : coordinateTransform.toY(opposite)).doubleValue();
+			int k = (int) Math.rint(j);
+			if (k >= 0 && k < length && Math.abs(j - k) < TOLERANCE) {
+				rv[i] = k;
+				any = true;
+			} else {
+				rv[i] = -1;
+			}
+		}
+		return any ? rv : null;
+	}
+
+	// Copies the point of a computed pixel mapped onto (x, y), if any
+	public boolean copyPoint(int x, int y) {
+		int width = image.getWidth();
+		for (int i = 0; i < flipsX.length; i++) {
+			int sx = x, sy = y;
+			if (flipsX[i]) {
+				if (mirroredColumns == null || (sx = mirroredColumns[x]) < 0)
+					continue;
+			}
+			if (flipsY[i]) {
+				if (mirroredRows == null || (sy = mirroredRows[y]) < 0)
+					continue;
+			}
+			if ((sx != x || sy != y) && computed.get(sy * width + sx)) {
+				if (integer) {
+					((IntegerImage) image).setPoint(x, y, ((IntegerImage) image).getPoint(sx, sy));
+				} else {
+					((FloatImage) image).setPoint(x, y, ((FloatImage) image).getPoint(sx, sy));
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// To be called once the point at (x, y) is final
+	public void pointComputed(int x, int y) {
+		computed.set(y * image.getWidth() + x);
+	}
+}
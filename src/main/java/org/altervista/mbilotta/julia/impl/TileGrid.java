@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+
+public final class TileGrid {
+
+	public static final int MIN_TILE_SIZE = 16;
+	public static final int MAX_TILE_SIZE = 64;
+	private static final int TILES_PER_PRODUCER = 32;
+
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final int numOfTilesX;
+	private final int numOfTilesY;
+
+	public TileGrid(int width, int height, int tileSize) {
+		assert tileSize > 0;
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.numOfTilesX = (width + tileSize - 1) / tileSize;
+		this.numOfTilesY = (height + tileSize - 1) / tileSize;
+	}
+
+	public static TileGrid create(int width, int height, int numOfProducers) {
+		return new TileGrid(width, height, computeTileSize(width, height, numOfProducers));
+	}
+
+	// Tiles are never narrower than a few cache lines, so producers working on
+	// adjacent tiles share them only along tile edges
+	public static int computeTileSize(int width, int height, int numOfProducers) {
+		long minNumOfTiles = (long) TILES_PER_PRODUCER * numOfProducers;
+		int tileSize = MAX_TILE_SIZE;
+		while (tileSize > MIN_TILE_SIZE &&
+				(long) ((width + tileSize - 1) / tileSize) * ((height + tileSize - 1) / tileSize) < minNumOfTiles) {
+			tileSize >>= 1;
+		}
+		return tileSize;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	public int getNumOfTilesX() {
+		return numOfTilesX;
+	}
+
+	public int getNumOfTilesY() {
+		return numOfTilesY;
+	}
+
+	public int getNumOfTiles() {
+		return numOfTilesX * numOfTilesY;
+	}
+
+	public int getTileX(int tile) {
+		return (tile % numOfTilesX) * tileSize;
+	}
+
+	public int getTileY(int tile) {
+		return (tile / numOfTilesX) * tileSize;
+	}
+
+	public int getTileWidth(int tile) {
+		return Math.min(tileSize, width - getTileX(tile));
+	}
+
+	public int getTileHeight(int tile) {
+		return Math.min(tileSize, height - getTileY(tile));
+	}
+
+	public int getNumOfPixels(int tile) {
+		return getTileWidth(tile) * getTileHeight(tile);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() +
+				"[width=" + width +
+				", height=" + height +
+				", tileSize=" + tileSize + "]";
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+
+// Order in which the tiles of a grid are claimed: those meeting the viewport
+// first, then the others, each group spiralling out from the tile under the
+// focus
+public final class TileSchedule {
+
+	private TileSchedule() {
+	}
+
+	// Copy of order (null meaning grid order) with the positions from start on
+	// rearranged. Earlier positions may have been claimed and are left alone
+	public static int[] reorder(int[] order, int start, TileGrid tileGrid, Rectangle viewport, Point focus) {
+		int numOfTiles = tileGrid.getNumOfTiles();
+		int[] rv = new int[numOfTiles];
+		for (int i = 0; i < numOfTiles; i++) {
+			rv[i] = order == null ? i : order[i];
+		}
+		if (start >= numOfTiles - 1)
+			return rv;
+
+		Rectangle bounds = new Rectangle(0, 0, tileGrid.getWidth(), tileGrid.getHeight());
+		Rectangle visible = viewport == null ? bounds : bounds.intersection(viewport);
+		if (visible.isEmpty()) {
+			visible = bounds;
+		}
+		if (focus == null) {
+			focus = new Point((int) visible.getCenterX(), (int) visible.getCenterY());
+		}
+		int tileSize = tileGrid.getTileSize();
+		int focusX = Math.max(0, Math.min(focus.x, tileGrid.getWidth() - 1)) / tileSize;
+		int focusY = Math.max(0, Math.min(focus.y, tileGrid.getHeight() - 1)) / tileSize;
+
+		// Visibility, then ring around the focus tile, then angle within the
+		// ring, packed with the tile in the low bits so that sorting keys sorts
+		// tiles
+		long[] keys = new long[numOfTiles - start];
+		Rectangle tileBounds = new Rectangle();
+		for (int i = start; i < numOfTiles; i++) {
+			int tile = rv[i];
+			tileBounds.setBounds(tileGrid.getTileX(tile), tileGrid.getTileY(tile),
+					tileGrid.getTileWidth(tile), tileGrid.getTileHeight(tile));
+			int dx = tileBounds.x / tileSize - focusX;
+			int dy = tileBounds.y / tileSize - focusY;
+			long hidden = tileBounds.intersects(visible) ? 0 : 1;
+			long ring = Math.max(Math.abs(dx), Math.abs(dy));
+			long angle = (long) ((Math.atan2(dy, dx) + Math.PI) * 1000);
+			keys[i - start] = hidden << 62 | ring << 45 | angle << 32 | tile;
+		}
+		Arrays.sort(keys);
+		for (int i = start; i < numOfTiles; i++) {
+			rv[i] = (int) keys[i - start];
+		}
+		return rv;
+	}
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Production;
+import org.altervista.mbilotta.julia.Progress;
+import org.altervista.mbilotta.julia.Representation;
+import org.altervista.mbilotta.julia.Utilities;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+
+
+public class TiledRefinement extends Production {
+
+	private final ProgressiveRefinementPointCalculator pointCalculator;
+	private final TileGrid tileGrid;
+	private final int numOfPasses;
+
+	public static final class ProgressValue implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] cursors;
+		private final int pass;
+		private final int tile;
+		private final int offset;
+
+		public ProgressValue(int[] cursors) {
+			this(cursors, -1, -1, 0);
+		}
+
+		public ProgressValue(int[] cursors, int pass, int tile, int offset) {
+			this.cursors = cursors.clone();
+			this.pass = pass;
+			this.tile = tile;
+			this.offset = offset;
+		}
+
+		public int getNumOfPasses() {
+			return cursors.length;
+		}
+
+		public int getCursor(int pass) {
+			return cursors[pass];
+		}
+
+		public int[] getCursors() {
+			return cursors.clone();
+		}
+
+		public boolean hasBlock() {
+			return tile >= 0;
+		}
+
+		public int getPass() {
+			return pass;
+		}
+
+		public int getTile() {
+			return tile;
+		}
+
+		public int getOffset() {
+			return offset;
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getCanonicalName() +
+					"[cursors=" + Arrays.toString(cursors) +
+					", pass=" + pass +
+					", tile=" + tile +
+					", offset=" + offset + "]";
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+
+			if (obj instanceof ProgressValue) {
+				ProgressValue progressValue = (ProgressValue) obj;
+				return Arrays.equals(cursors, progressValue.cursors) &&
+						pass == progressValue.pass &&
+						tile == progressValue.tile &&
+						offset == progressValue.offset;
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((Arrays.hashCode(cursors) * 31 + pass) * 31 + tile) * 31 + offset;
+		}
+
+		private void readObject(ObjectInputStream in)
+				throws ClassNotFoundException, IOException {
+			in.defaultReadObject();
+			if (cursors == null || cursors.length == 0) {
+				throw new InvalidObjectException("cursors");
+			}
+			if (tile >= 0 && (pass < 0 || pass >= cursors.length || offset < 0)) {
+				throw new InvalidObjectException(toString());
+			}
+		}
+	}
+
+	protected class Producer extends Production.Producer {
+
+		private final ProgressiveRefinementPointCalculator pointCalculator;
+		private int[] cursors;
+		private int pass;
+		private int tile;
+		private int offset;
+
+		public Producer(Progress progress) {
+			super(progress);
+			pointCalculator = TiledRefinement.this.pointCalculator.newInstance();
+		}
+
+		protected void start() {
+			ProgressValue progressValue = (ProgressValue) getProgressValue();
+			cursors = progressValue.getCursors();
+			pass = progressValue.getPass();
+			tile = progressValue.getTile();
+			offset = progressValue.getOffset();
+
+			if (tile >= 0 && !computeBlock()) {
+				return;
+			}
+
+			while (claimBlock()) {
+				if (!computeBlock()) {
+					return;
+				}
+			}
+		}
+
+		private boolean computeBlock() {
+			Formula formula = getFormula();
+			CoordinateTransform coordinateTransform = getCoordinateTransform();
+			ProgressiveRefinementPointCalculator pointCalculator = getPointCalculator();
+			TileGrid tileGrid = getTileGrid();
+
+			int chunkSize = getChunkSize(pass);
+			int tileX = tileGrid.getTileX(tile);
+			int tileY = tileGrid.getTileY(tile);
+			int columns = (tileGrid.getTileWidth(tile) + chunkSize - 1) / chunkSize;
+			int length = getNumOfPoints(tileGrid, tile, chunkSize);
+
+			Thread currentThread = Thread.currentThread();
+			pointCalculator.stepStarting(chunkSize);
+			while (offset < length) {
+				int y = tileY + (offset / columns) * chunkSize;
+				int xEnd = tileX + columns * chunkSize;
+				for (int x = tileX + (offset % columns) * chunkSize; x < xEnd; x += chunkSize) {
+					if (shouldStop(currentThread)) {
+						pointCalculator.stepInterrupted(chunkSize);
+						return false;
+					}
+					pointCalculator.computePoint(x, y, coordinateTransform, formula);
+					offset++;
+				}
+				setProgressValue(new ProgressValue(cursors, pass, tile, offset));
+			}
+			pointCalculator.stepFinished(chunkSize);
+			return true;
+		}
+
+		// Releases the block just computed and claims the next one, coarsest pass first
+		private boolean claimBlock() {
+			IntermediateImage iimg = getIntermediateImage();
+			int numOfTiles = tileGrid.getNumOfTiles();
+			synchronized (iimg) {
+				cursors = getCursors(getProgressValues(iimg), numOfPasses);
+				setProgressValue(new ProgressValue(cursors));
+				iimg.notifyAll();
+
+				while (true) {
+					Object[] progressValues = getProgressValues(iimg);
+					cursors = getCursors(progressValues, numOfPasses);
+					int[] completedPrefixes = getCompletedPrefixes(progressValues, cursors);
+					if (cursors[numOfPasses - 1] == numOfTiles) {
+						setProgressValue(new ProgressValue(cursors));
+						return false;
+					}
+
+					for (int p = 0; p < numOfPasses; p++) {
+						if (isReady(p, cursors[p], completedPrefixes)) {
+							pass = p;
+							tile = cursors[p];
+							offset = 0;
+							cursors[p]++;
+							setProgressValue(new ProgressValue(cursors, pass, tile, offset));
+							return true;
+						}
+					}
+
+					setProgressValue(new ProgressValue(cursors));
+					try {
+						iimg.wait();
+					} catch (InterruptedException e) {
+						return false;
+					}
+				}
+			}
+		}
+
+		protected final ProgressiveRefinementPointCalculator getPointCalculator() {
+			return pointCalculator;
+		}
+
+		@Override
+		public void handleException(Throwable t) {
+			super.handleException(t);
+			if (tile >= 0) {
+				setProgressValue(new ProgressValue(cursors, pass, tile, offset + 1));
+			}
+		}
+	}
+
+	public TiledRefinement(NumberFactory numberFactory,
+			Formula formula,
+			Representation representation,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			PointCalculator pointCalculator) {
+		this(numberFactory,
+			formula,
+			representation,
+			coordinateTransform,
+			juliaSetPoint,
+			pointCalculator instanceof ProgressiveRefinementPointCalculator ?
+					(ProgressiveRefinementPointCalculator) pointCalculator :
+					new ProgressiveRefinement.PointCalculatorAdapter(pointCalculator));
+	}
+
+	public TiledRefinement(NumberFactory numberFactory,
+			Formula formula,
+			Representation representation,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			ProgressiveRefinementPointCalculator pointCalculator) {
+
+		super(numberFactory,
+			formula,
+			representation,
+			coordinateTransform,
+			juliaSetPoint,
+			pointCalculator.getIntermediateImage());
+
+		assert pointCalculator != null;
+		this.pointCalculator = pointCalculator;
+
+		IntermediateImage iimg = pointCalculator.getIntermediateImage();
+		this.numOfPasses = ((ProgressValue) iimg.getProgressOf(0).getInitialValue()).getNumOfPasses();
+		this.tileGrid = createTileGrid(iimg.getWidth(), iimg.getHeight(), iimg.getNumOfProducers(), numOfPasses);
+	}
+
+	public Producer createProducer(Progress progress) {
+		return new Producer(progress);
+	}
+
+	public final TileGrid getTileGrid() {
+		return tileGrid;
+	}
+
+	public final int getNumOfPasses() {
+		return numOfPasses;
+	}
+
+	private int getChunkSize(int pass) {
+		return 1 << (numOfPasses - 1 - pass);
+	}
+
+	// A block of pass p reads the points computed by pass p - 1 in the 8
+	// neighboring tiles. Pass 1 waits for the whole pass 0 instead, since the
+	// coarsest pass gathers the minimum number of iterations of the image
+	private boolean isReady(int pass, int tile, int[] completedPrefixes) {
+		int numOfTiles = tileGrid.getNumOfTiles();
+		if (tile >= numOfTiles)
+			return false;
+		if (pass == 0)
+			return true;
+		if (pass == 1)
+			return completedPrefixes[0] == numOfTiles;
+		return completedPrefixes[pass - 1] >= Math.min(tile + tileGrid.getNumOfTilesX() + 2, numOfTiles);
+	}
+
+	public static TileGrid createTileGrid(int imgWidth, int imgHeight, int numOfProducers, int numOfSteps) {
+		int tileSize = Math.max(TileGrid.computeTileSize(imgWidth, imgHeight, numOfProducers), 1 << (numOfSteps - 1));
+		return new TileGrid(imgWidth, imgHeight, tileSize);
+	}
+
+	public static int getNumOfPoints(TileGrid tileGrid, int tile, int chunkSize) {
+		int columns = (tileGrid.getTileWidth(tile) + chunkSize - 1) / chunkSize;
+		int rows = (tileGrid.getTileHeight(tile) + chunkSize - 1) / chunkSize;
+		return columns * rows;
+	}
+
+	public static Progress[] createInitialProgress(int imgWidth, int imgHeight, int numOfProducers, int numOfSteps) {
+		Progress[] rv = new Progress[numOfProducers];
+		ProgressValue initialValue = createInitialValue(numOfSteps);
+		ProgressValue finalValue = createFinalValue(imgWidth, imgHeight, numOfProducers, numOfSteps);
+		for (int i = 0; i < numOfProducers; i++) {
+			rv[i] = new Progress(initialValue, finalValue);
+		}
+		return rv;
+	}
+
+	public static Progress[] readProgress(int imgWidth, int imgHeight, int numOfProducers, int numOfSteps, ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		Progress[] rv = new Progress[numOfProducers];
+		ProgressValue initialValue = createInitialValue(numOfSteps);
+		ProgressValue finalValue = createFinalValue(imgWidth, imgHeight, numOfProducers, numOfSteps);
+		for (int i = 0; i < numOfProducers; i++) {
+			ProgressValue value = Utilities.readNonNull(in, "value", ProgressValue.class);
+			if (value.getNumOfPasses() != numOfSteps) {
+				throw new InvalidObjectException("value=" + value);
+			}
+			rv[i] = new Progress(initialValue, finalValue, value);
+		}
+		return rv;
+	}
+
+	private static ProgressValue createInitialValue(int numOfSteps) {
+		return new ProgressValue(new int[numOfSteps]);
+	}
+
+	private static ProgressValue createFinalValue(int imgWidth, int imgHeight, int numOfProducers, int numOfSteps) {
+		int[] cursors = new int[numOfSteps];
+		Arrays.fill(cursors, createTileGrid(imgWidth, imgHeight, numOfProducers, numOfSteps).getNumOfTiles());
+		return new ProgressValue(cursors);
+	}
+
+	public static Object[] getProgressValues(IntermediateImage iimg) {
+		return TiledScan.getProgressValues(iimg);
+	}
+
+	private static int[] getCursors(Object[] progressValues, int numOfPasses) {
+		int[] rv = new int[numOfPasses];
+		for (Object value : progressValues) {
+			ProgressValue progressValue = (ProgressValue) value;
+			for (int p = 0; p < numOfPasses; p++) {
+				rv[p] = Math.max(rv[p], progressValue.getCursor(p));
+			}
+		}
+		return rv;
+	}
+
+	private static int[] getCompletedPrefixes(Object[] progressValues, int[] cursors) {
+		int[] rv = cursors.clone();
+		for (Object value : progressValues) {
+			ProgressValue progressValue = (ProgressValue) value;
+			if (progressValue.hasBlock()) {
+				int pass = progressValue.getPass();
+				rv[pass] = Math.min(rv[pass], progressValue.getTile());
+			}
+		}
+		return rv;
+	}
+
+	public static void getTileProgress(Object[] progressValues, int numOfPasses, int[] completedPassesRv, int[] offsetsRv) {
+		int[] cursors = getCursors(progressValues, numOfPasses);
+		for (int tile = 0; tile < completedPassesRv.length; tile++) {
+			int completedPasses = 0;
+			while (completedPasses < numOfPasses && tile < cursors[completedPasses]) {
+				completedPasses++;
+			}
+			completedPassesRv[tile] = completedPasses;
+			offsetsRv[tile] = 0;
+		}
+		for (Object value : progressValues) {
+			ProgressValue progressValue = (ProgressValue) value;
+			if (progressValue.hasBlock()) {
+				int tile = progressValue.getTile();
+				completedPassesRv[tile] = progressValue.getPass();
+				offsetsRv[tile] = progressValue.getOffset();
+			}
+		}
+	}
+
+	public static void readPoints(ObjectInputStream in, RasterImage iimg)
+			throws IOException, ClassNotFoundException {
+		Object[] progressValues = getProgressValues(iimg);
+		int numOfPasses = ((ProgressValue) progressValues[0]).getNumOfPasses();
+		TileGrid tileGrid = createTileGrid(iimg.getWidth(), iimg.getHeight(), iimg.getNumOfProducers(), numOfPasses);
+		int numOfTiles = tileGrid.getNumOfTiles();
+		int[] completedPasses = new int[numOfTiles];
+		int[] offsets = new int[numOfTiles];
+		getTileProgress(progressValues, numOfPasses, completedPasses, offsets);
+
+		Thread currentThread = Thread.currentThread();
+		for (int tile = 0; tile < numOfTiles; tile++) {
+			int tileX = tileGrid.getTileX(tile);
+			int tileY = tileGrid.getTileY(tile);
+			int parentChunkSize = 0;
+			if (completedPasses[tile] > 0) {
+				parentChunkSize = 1 << (numOfPasses - completedPasses[tile]);
+				int columns = (tileGrid.getTileWidth(tile) + parentChunkSize - 1) / parentChunkSize;
+				int length = getNumOfPoints(tileGrid, tile, parentChunkSize);
+				for (int i = 0; i < length; i++) {
+					if (shouldStop(currentThread)) return;
+					iimg.readPoint(tileX + (i % columns) * parentChunkSize, tileY + (i / columns) * parentChunkSize, in);
+				}
+			}
+			if (offsets[tile] > 0) {
+				int chunkSize = 1 << (numOfPasses - 1 - completedPasses[tile]);
+				int columns = (tileGrid.getTileWidth(tile) + chunkSize - 1) / chunkSize;
+				for (int i = 0; i < offsets[tile]; i++) {
+					int x = tileX + (i % columns) * chunkSize;
+					int y = tileY + (i / columns) * chunkSize;
+					if (parentChunkSize == 0 || x % parentChunkSize != 0 || y % parentChunkSize != 0) {
+						if (shouldStop(currentThread)) return;
+						iimg.readPoint(x, y, in);
+					}
+				}
+			}
+		}
+	}
+
+	public static void writePoints(ObjectOutputStream out, Object[] progressValues, RasterImage iimg)
+			throws IOException {
+		int numOfPasses = ((ProgressValue) progressValues[0]).getNumOfPasses();
+		TileGrid tileGrid = createTileGrid(iimg.getWidth(), iimg.getHeight(), iimg.getNumOfProducers(), numOfPasses);
+		int numOfTiles = tileGrid.getNumOfTiles();
+		int[] completedPasses = new int[numOfTiles];
+		int[] offsets = new int[numOfTiles];
+		getTileProgress(progressValues, numOfPasses, completedPasses, offsets);
+
+		Thread currentThread = Thread.currentThread();
+		for (int tile = 0; tile < numOfTiles; tile++) {
+			int tileX = tileGrid.getTileX(tile);
+			int tileY = tileGrid.getTileY(tile);
+			int parentChunkSize = 0;
+			if (completedPasses[tile] > 0) {
+				parentChunkSize = 1 << (numOfPasses - completedPasses[tile]);
+				int columns = (tileGrid.getTileWidth(tile) + parentChunkSize - 1) / parentChunkSize;
+				int length = getNumOfPoints(tileGrid, tile, parentChunkSize);
+				for (int i = 0; i < length; i++) {
+					if (shouldStop(currentThread)) return;
+					iimg.writePoint(tileX + (i % columns) * parentChunkSize, tileY + (i / columns) * parentChunkSize, out);
+				}
+			}
+			if (offsets[tile] > 0) {
+				int chunkSize = 1 << (numOfPasses - 1 - completedPasses[tile]);
+				int columns = (tileGrid.getTileWidth(tile) + chunkSize - 1) / chunkSize;
+				for (int i = 0; i < offsets[tile]; i++) {
+					int x = tileX + (i % columns) * chunkSize;
+					int y = tileY + (i / columns) * chunkSize;
+					if (parentChunkSize == 0 || x % parentChunkSize != 0 || y % parentChunkSize != 0) {
+						if (shouldStop(currentThread)) return;
+						iimg.writePoint(x, y, out);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.altervista.mbilotta.julia.impl;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.altervista.mbilotta.julia.Consumer;
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.impl.TiledRefinement.ProgressValue;
+
+
+public class TiledRefinementConsumer extends Consumer {
+
+	private final PixelCalculator calculator;
+	private final TileGrid tileGrid;
+	private final int numOfPasses;
+	private final int[] consumedPasses;
+	private final int[] consumedOffsets;
+	private final long numOfPoints;
+
+	public TiledRefinementConsumer(IntermediateImage iimg, PixelCalculator calculator) {
+		this(iimg, calculator, null, null);
+	}
+
+	public TiledRefinementConsumer(IntermediateImage iimg, PixelCalculator calculator, int[] consumedPasses, int[] consumedOffsets) {
+		super(iimg);
+		this.calculator = calculator;
+		this.numOfPasses = ((ProgressValue) iimg.getProgressOf(0).getInitialValue()).getNumOfPasses();
+		this.tileGrid = TiledRefinement.createTileGrid(iimg.getWidth(), iimg.getHeight(), iimg.getNumOfProducers(), numOfPasses);
+		int numOfTiles = tileGrid.getNumOfTiles();
+		this.consumedPasses = consumedPasses != null ? consumedPasses.clone() : new int[numOfTiles];
+		this.consumedOffsets = consumedOffsets != null ? consumedOffsets.clone() : new int[numOfTiles];
+		assert this.consumedPasses.length == numOfTiles && this.consumedOffsets.length == numOfTiles;
+
+		long numOfPoints = 0;
+		for (int tile = 0; tile < numOfTiles; tile++) {
+			for (int pass = 0; pass < numOfPasses; pass++) {
+				numOfPoints += TiledRefinement.getNumOfPoints(tileGrid, tile, getChunkSize(pass));
+			}
+		}
+		this.numOfPoints = numOfPoints;
+	}
+
+	public Rectangle[] consume(BufferedImage fimg, int[] percentagesRv) {
+		int numOfTiles = tileGrid.getNumOfTiles();
+		int[] completedPasses = new int[numOfTiles];
+		int[] offsets = new int[numOfTiles];
+		TiledRefinement.getTileProgress(TiledRefinement.getProgressValues(iimg), numOfPasses, completedPasses, offsets);
+
+		List<Rectangle> rv = new ArrayList<>();
+		long computedPoints = 0;
+		for (int tile = 0; tile < numOfTiles; tile++) {
+			if (completedPasses[tile] != consumedPasses[tile] || offsets[tile] != consumedOffsets[tile]) {
+				consumedPasses[tile] = completedPasses[tile];
+				consumedOffsets[tile] = offsets[tile];
+				consumeImpl(fimg, tile);
+				rv.add(getTileBounds(tile));
+			}
+
+			if (percentagesRv != null) {
+				for (int pass = 0; pass < completedPasses[tile]; pass++) {
+					computedPoints += TiledRefinement.getNumOfPoints(tileGrid, tile, getChunkSize(pass));
+				}
+				computedPoints += offsets[tile];
+			}
+		}
+
+		if (percentagesRv != null) {
+			assert percentagesRv.length == iimg.getNumOfProducers();
+			int percentage = numOfPoints == 0 ? 100 : (int) ((100 * computedPoints) / numOfPoints);
+			Arrays.fill(percentagesRv, percentage);
+		}
+
+		return rv.toArray(new Rectangle[rv.size()]);
+	}
+
+	public void consume(BufferedImage fimg) {
+		for (int tile = 0; tile < consumedPasses.length; tile++) {
+			consumeImpl(fimg, tile);
+		}
+	}
+
+	public int getTransparency() {
+		return calculator.getTransparency();
+	}
+
+	public Rectangle[] getAvailableRegions() {
+		List<Rectangle> rv = new ArrayList<>();
+		int chunkSize = getChunkSize(0);
+		for (int tile = 0; tile < consumedPasses.length; tile++) {
+			if (consumedPasses[tile] > 0) {
+				rv.add(getTileBounds(tile));
+			} else if (consumedOffsets[tile] > 0) {
+				Rectangle bounds = getTileBounds(tile);
+				int columns = (bounds.width + chunkSize - 1) / chunkSize;
+				int height = Math.min(bounds.height, (consumedOffsets[tile] / columns) * chunkSize);
+				if (height > 0) {
+					bounds.height = height;
+					rv.add(bounds);
+				}
+			}
+		}
+		return rv.toArray(new Rectangle[rv.size()]);
+	}
+
+	private int getChunkSize(int pass) {
+		return 1 << (numOfPasses - 1 - pass);
+	}
+
+	private Rectangle getTileBounds(int tile) {
+		return new Rectangle(
+				tileGrid.getTileX(tile), tileGrid.getTileY(tile),
+				tileGrid.getTileWidth(tile), tileGrid.getTileHeight(tile));
+	}
+
+	private void consumeImpl(BufferedImage fimg, int tile) {
+		int completedPasses = consumedPasses[tile];
+		if (completedPasses > 0) {
+			int chunkSize = getChunkSize(completedPasses - 1);
+			consumeImpl(fimg, tile, chunkSize, TiledRefinement.getNumOfPoints(tileGrid, tile, chunkSize));
+		}
+		if (consumedOffsets[tile] > 0) {
+			consumeImpl(fimg, tile, getChunkSize(completedPasses), consumedOffsets[tile]);
+		}
+	}
+
+	private void consumeImpl(BufferedImage fimg, int tile, int chunkSize, int length) {
+		WritableRaster raster = fimg.getRaster();
+		ColorModel colorModel = fimg.getColorModel();
+		Object cmOutData = colorModel.getDataElements(0, null);
+		int tileX = tileGrid.getTileX(tile);
+		int tileY = tileGrid.getTileY(tile);
+		int tileXEnd = tileX + tileGrid.getTileWidth(tile);
+		int tileYEnd = tileY + tileGrid.getTileHeight(tile);
+		int columns = (tileXEnd - tileX + chunkSize - 1) / chunkSize;
+		for (int i = 0; i < length; i++) {
+			int x = tileX + (i % columns) * chunkSize;
+			int y = tileY + (i / columns) * chunkSize;
+			int rgb = calculator.computePixel(x, y, iimg);
+			cmOutData = colorModel.getDataElements(rgb, cmOutData);
+			int xEnd = Math.min(x + chunkSize, tileXEnd);
+			int yEnd = Math.min(y + chunkSize, tileYEnd);
+			for (int yChunk = y; yChunk < yEnd; yChunk++) {
+				for (int xChunk = x; xChunk < xEnd; xChunk++) {
+					raster.setDataElements(xChunk, yChunk, cmOutData);
+				}
+			}
+		}
+	}
+
+	public final PixelCalculator getPixelCalculator() {
+		return calculator;
+	}
+
+	public int[] getConsumedPasses() {
+		return consumedPasses.clone();
+	}
+
+	public int[] getConsumedOffsets() {
+		return consumedOffsets.clone();
+	}
+}
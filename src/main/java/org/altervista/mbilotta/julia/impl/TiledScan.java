@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Production;
+import org.altervista.mbilotta.julia.Progress;
+import org.altervista.mbilotta.julia.Representation;
+import org.altervista.mbilotta.julia.Utilities;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+
+
+public class TiledScan extends Production {
+
+	private static final long TARGET_CLAIM_NANOS = 50_000_000l;
+
+	private final PointCalculator pointCalculator;
+	private final TileGrid tileGrid;
+	private PointReuse pointReuse;
+	private Symmetry symmetry;
+
+	// Guarded by the intermediate image (see claimTiles and getProgressValues).
+	// Tiles are claimed in schedule order: position p is tile order[p]
+	private int nextTile;
+	private int[] order;
+
+	public static final class ProgressValue implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int tile;
+		private final int end;
+		private final int offset;
+		// Schedule the positions above refer to, null for grid order. Left out
+		// of equality: it tells which tiles are meant, not how far one got.
+		// Absent from files written before schedules, hence grid order
+		private final int[] order;
+
+		public ProgressValue(int tile, int end, int offset) {
+			this(tile, end, offset, null);
+		}
+
+		public ProgressValue(int tile, int end, int offset, int[] order) {
+			this.tile = tile;
+			this.end = end;
+			this.offset = offset;
+			this.order = order;
+		}
+
+		// Schedule position, see getOrder
+		public int getTile() {
+			return tile;
+		}
+
+		public int getEnd() {
+			return end;
+		}
+
+		public int getOffset() {
+			return offset;
+		}
+
+		public int[] getOrder() {
+			return order;
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getCanonicalName() +
+					"[tile=" + tile +
+					", end=" + end +
+					", offset=" + offset + "]";
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+
+			if (obj instanceof ProgressValue) {
+				ProgressValue progressValue = (ProgressValue) obj;
+				return tile == progressValue.tile &&
+						end == progressValue.end &&
+						offset == progressValue.offset;
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * tile + end) * 31 + offset;
+		}
+	}
+
+	protected class Producer extends Production.Producer {
+
+		private final PointCalculator pointCalculator;
+		private long nanosPerTile;
+		private int[] order;
+		private int tile;
+		private int end;
+		private int offset;
+
+		public Producer(Progress progress) {
+			super(progress);
+			pointCalculator = TiledScan.this.pointCalculator.newInstance();
+		}
+
+		protected void start() {
+			ProgressValue progressValue = (ProgressValue) getProgressValue();
+			order = progressValue.getOrder();
+			tile = progressValue.getTile();
+			end = progressValue.getEnd();
+			offset = progressValue.getOffset();
+
+			while (true) {
+				for ( ; tile < end; tile++, offset = 0) {
+					boolean wholeTile = offset == 0;
+					long startTime = System.nanoTime();
+					if (!computeTile()) {
+						return;
+					}
+					if (wholeTile) {
+						long elapsedTime = System.nanoTime() - startTime;
+						nanosPerTile = nanosPerTile == 0 ? elapsedTime : (3 * nanosPerTile + elapsedTime) >> 2;
+					}
+				}
+
+				if (!claimTiles()) {
+					return;
+				}
+			}
+		}
+
+		protected boolean computeTile() {
+			Formula formula = getFormula();
+			CoordinateTransform coordinateTransform = getCoordinateTransform();
+			PointCalculator pointCalculator = getPointCalculator();
+			TileGrid tileGrid = getTileGrid();
+
+			int tile = getTile();
+			int tileX = tileGrid.getTileX(tile);
+			int tileY = tileGrid.getTileY(tile);
+			int tileWidth = tileGrid.getTileWidth(tile);
+			int length = tileGrid.getNumOfPixels(tile);
+			Thread currentThread = Thread.currentThread();
+			while (offset < length) {
+				int y = tileY + offset / tileWidth;
+				int xEnd = tileX + tileWidth;
+				for (int x = tileX + offset % tileWidth; x < xEnd; x++) {
+					if (shouldStop(currentThread)) return false;
+					if (!reusePoint(x, y)) {
+						pointCalculator.computePoint(x, y, coordinateTransform, formula);
+						pointComputed(x, y);
+					}
+					offset++;
+				}
+				setProgressValue(new ProgressValue(this.tile, end, offset, order));
+			}
+			return true;
+		}
+
+		// Grid index of the tile being computed
+		protected final int getTile() {
+			return order == null ? tile : order[tile];
+		}
+
+		protected final int getTileOffset() {
+			return offset;
+		}
+
+		protected final void setTileOffset(int offset) {
+			this.offset = offset;
+			setProgressValue(new ProgressValue(tile, end, offset, order));
+		}
+
+		private boolean claimTiles() {
+			int numOfTiles = tileGrid.getNumOfTiles();
+			synchronized (getIntermediateImage()) {
+				int start = nextTile;
+				order = TiledScan.this.order;
+				if (start >= numOfTiles) {
+					setProgressValue(new ProgressValue(numOfTiles, numOfTiles, 0, order));
+					return false;
+				}
+
+				int remaining = numOfTiles - start;
+				int count = Math.max(1, remaining / (2 * getNumOfProducers()));
+				if (nanosPerTile > 0) {
+					count = (int) Math.min(count, Math.max(1l, TARGET_CLAIM_NANOS / nanosPerTile));
+				} else {
+					count = 1;
+				}
+
+				tile = start;
+				end = start + count;
+				offset = 0;
+				nextTile = end;
+				setProgressValue(new ProgressValue(tile, end, offset, order));
+				return true;
+			}
+		}
+
+		protected final PointCalculator getPointCalculator() {
+			return pointCalculator;
+		}
+
+		@Override
+		public void handleException(Throwable t) {
+			super.handleException(t);
+			setTileOffset(offset + 1);
+		}
+	}
+
+	public TiledScan(NumberFactory numberFactory,
+			Formula formula,
+			Representation representation,
+			CoordinateTransform coordinateTransform,
+			Complex juliaSetPoint,
+			PointCalculator pointCalculator) {
+
+		super(numberFactory,
+			formula,
+			representation,
+			coordinateTransform,
+			juliaSetPoint,
+			pointCalculator.getIntermediateImage());
+
+		assert pointCalculator != null;
+		this.pointCalculator = pointCalculator;
+
+		IntermediateImage iimg = pointCalculator.getIntermediateImage();
+		this.tileGrid = TileGrid.create(iimg.getWidth(), iimg.getHeight(), iimg.getNumOfProducers());
+		Object[] progressValues = getProgressValues(iimg);
+		this.nextTile = getClaimedEnd(progressValues);
+		this.order = TileSchedule.reorder(getOrder(progressValues), nextTile, tileGrid, null, null);
+	}
+
+	public Producer createProducer(Progress progress) {
+		return new Producer(progress);
+	}
+
+	public final TileGrid getTileGrid() {
+		return tileGrid;
+	}
+
+	// Tiles not claimed yet are rescheduled
+	@Override
+	public void setFocus(Rectangle viewport, Point focus) {
+		synchronized (getIntermediateImage()) {
+			order = TileSchedule.reorder(order, nextTile, tileGrid, viewport, focus);
+		}
+	}
+
+	// Points shared with a previous image are copied from it, not computed
+	public final void setPointReuse(PointReuse pointReuse) {
+		this.pointReuse = pointReuse;
+	}
+
+	// Points of pixels a symmetry of the formula maps onto computed ones are
+	// copied as well
+	public final void setSymmetry(Symmetry symmetry) {
+		this.symmetry = symmetry;
+	}
+
+	protected final boolean reusePoint(int x, int y) {
+		if (pointReuse != null && pointReuse.copyPoint(x, y)) {
+			pointComputed(x, y);
+			return true;
+		}
+		return symmetry != null && symmetry.copyPoint(x, y);
+	}
+
+	protected final void pointComputed(int x, int y) {
+		if (symmetry != null) {
+			symmetry.pointComputed(x, y);
+		}
+	}
+
+	public static Progress[] createInitialProgress(int imgWidth, int imgHeight, int numOfProducers) {
+		Progress[] rv = new Progress[numOfProducers];
+		int numOfTiles = TileGrid.create(imgWidth, imgHeight, numOfProducers).getNumOfTiles();
+		for (int i = 0; i < numOfProducers; i++) {
+			rv[i] = new Progress(
+					new ProgressValue(0, 0, 0),
+					new ProgressValue(numOfTiles, numOfTiles, 0));
+		}
+		return rv;
+	}
+
+	public static Progress[] readProgress(int imgWidth, int imgHeight, int numOfProducers, ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		Progress[] rv = new Progress[numOfProducers];
+		int numOfTiles = TileGrid.create(imgWidth, imgHeight, numOfProducers).getNumOfTiles();
+		for (int i = 0; i < numOfProducers; i++) {
+			rv[i] = new Progress(
+					new ProgressValue(0, 0, 0),
+					new ProgressValue(numOfTiles, numOfTiles, 0),
+					Utilities.readNonNull(in, "value", ProgressValue.class));
+		}
+		return rv;
+	}
+
+	// Tiles are claimed while holding the lock of iimg: taking the snapshot
+	// under the same lock guarantees that no claimed tile goes unnoticed
+	public static Object[] getProgressValues(IntermediateImage iimg) {
+		int numOfProducers = iimg.getNumOfProducers();
+		Object[] rv = new Object[numOfProducers];
+		synchronized (iimg) {
+			for (int i = 0; i < numOfProducers; i++) {
+				rv[i] = iimg.getProgressOf(i).getValue();
+			}
+		}
+		return rv;
+	}
+
+	private static int getClaimedEnd(Object[] progressValues) {
+		int rv = 0;
+		for (Object progressValue : progressValues) {
+			rv = Math.max(rv, ((ProgressValue) progressValue).getEnd());
+		}
+		return rv;
+	}
+
+	// Rescheduling never touches claimed positions, so the schedule of the
+	// latest claim agrees with all the others on them
+	private static int[] getOrder(Object[] progressValues) {
+		int[] rv = null;
+		int end = -1;
+		for (Object value : progressValues) {
+			ProgressValue progressValue = (ProgressValue) value;
+			if (progressValue.getOrder() != null && progressValue.getEnd() > end) {
+				rv = progressValue.getOrder();
+				end = progressValue.getEnd();
+			}
+		}
+		return rv;
+	}
+
+	// Pixels computed so far in each tile of the grid
+	public static int[] getTileProgress(Object[] progressValues, TileGrid tileGrid) {
+		int[] order = getOrder(progressValues);
+		int[] rv = new int[tileGrid.getNumOfTiles()];
+		int claimedEnd = getClaimedEnd(progressValues);
+		for (int position = 0; position < claimedEnd; position++) {
+			int tile = order == null ? position : order[position];
+			rv[tile] = tileGrid.getNumOfPixels(tile);
+		}
+		for (Object value : progressValues) {
+			ProgressValue progressValue = (ProgressValue) value;
+			int position = progressValue.getTile();
+			int end = progressValue.getEnd();
+			if (position < end) {
+				int tile = order == null ? position : order[position];
+				rv[tile] = Math.min(progressValue.getOffset(), rv[tile]);
+				while (++position < end) {
+					rv[order == null ? position : order[position]] = 0;
+				}
+			}
+		}
+		return rv;
+	}
+
+	public static void readPoints(ObjectInputStream in, RasterImage iimg)
+			throws IOException, ClassNotFoundException {
+		TileGrid tileGrid = TileGrid.create(iimg.getWidth(), iimg.getHeight(), iimg.getNumOfProducers());
+		int[] tileProgress = getTileProgress(getProgressValues(iimg), tileGrid);
+		Thread currentThread = Thread.currentThread();
+		for (int tile = 0; tile < tileProgress.length; tile++) {
+			int tileX = tileGrid.getTileX(tile);
+			int tileY = tileGrid.getTileY(tile);
+			int tileWidth = tileGrid.getTileWidth(tile);
+			for (int i = 0; i < tileProgress[tile]; i++) {
+				if (shouldStop(currentThread)) return;
+				iimg.readPoint(tileX + i % tileWidth, tileY + i / tileWidth, in);
+			}
+		}
+	}
+
+	public static void writePoints(ObjectOutputStream out, Object[] progressValues, RasterImage iimg)
+			throws IOException {
+		TileGrid tileGrid = TileGrid.create(iimg.getWidth(), iimg.getHeight(), iimg.getNumOfProducers());
+		int[] tileProgress = getTileProgress(progressValues, tileGrid);
+		Thread currentThread = Thread.currentThread();
+		for (int tile = 0; tile < tileProgress.length; tile++) {
+			int tileX = tileGrid.getTileX(tile);
+			int tileY = tileGrid.getTileY(tile);
+			int tileWidth = tileGrid.getTileWidth(tile);
+			for (int i = 0; i < tileProgress[tile]; i++) {
+				if (shouldStop(currentThread)) return;
+				iimg.writePoint(tileX + i % tileWidth, tileY + i / tileWidth, out);
+			}
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.altervista.mbilotta.julia.Consumer;
+import org.altervista.mbilotta.julia.IntermediateImage;
+
+
+public class TiledScanConsumer extends Consumer {
+
+	private final PixelCalculator calculator;
+	private final TileGrid tileGrid;
+	private final int[] consumedPixels;
+	private int firstIncompleteTile;
+
+	public TiledScanConsumer(IntermediateImage iimg, PixelCalculator calculator) {
+		this(iimg, calculator, null);
+	}
+
+	public TiledScanConsumer(IntermediateImage iimg, PixelCalculator calculator, int[] consumedPixels) {
+		super(iimg);
+		this.calculator = calculator;
+		this.tileGrid = TileGrid.create(iimg.getWidth(), iimg.getHeight(), iimg.getNumOfProducers());
+		this.consumedPixels = consumedPixels != null ?
+				consumedPixels.clone() : new int[tileGrid.getNumOfTiles()];
+		assert this.consumedPixels.length == tileGrid.getNumOfTiles();
+		updateFirstIncompleteTile();
+	}
+
+	public Rectangle[] consume(BufferedImage fimg, int[] percentagesRv) {
+		int[] tileProgress = TiledScan.getTileProgress(TiledScan.getProgressValues(iimg), tileGrid);
+		List<Rectangle> rv = new ArrayList<>();
+		for (int tile = firstIncompleteTile; tile < tileProgress.length; tile++) {
+			int tileWidth = tileGrid.getTileWidth(tile);
+			int startRow = consumedPixels[tile] / tileWidth;
+			int endRow = tileProgress[tile] / tileWidth;
+			if (endRow > startRow) {
+				consumeImpl(fimg, tile, startRow, endRow);
+				consumedPixels[tile] = endRow * tileWidth;
+				rv.add(new Rectangle(
+						tileGrid.getTileX(tile), tileGrid.getTileY(tile) + startRow,
+						tileWidth, endRow - startRow));
+			}
+		}
+		updateFirstIncompleteTile();
+
+		if (percentagesRv != null) {
+			assert percentagesRv.length == iimg.getNumOfProducers();
+			long computedPixels = 0;
+			for (int tile = 0; tile < tileProgress.length; tile++) {
+				computedPixels += tileProgress[tile];
+			}
+			long numOfPixels = (long) iimg.getWidth() * iimg.getHeight();
+			int percentage = numOfPixels == 0 ? 100 : (int) ((100 * computedPixels) / numOfPixels);
+			Arrays.fill(percentagesRv, percentage);
+		}
+
+		return rv.toArray(new Rectangle[rv.size()]);
+	}
+
+	public void consume(BufferedImage fimg) {
+		for (int tile = 0; tile < consumedPixels.length; tile++) {
+			consumeImpl(fimg, tile, 0, consumedPixels[tile] / tileGrid.getTileWidth(tile));
+		}
+	}
+
+	public int getTransparency() {
+		return calculator.getTransparency();
+	}
+
+	public Rectangle[] getAvailableRegions() {
+		List<Rectangle> rv = new ArrayList<>();
+		int numOfTilesX = tileGrid.getNumOfTilesX();
+		int fullRowsHeight = Math.min(iimg.getHeight(), (firstIncompleteTile / numOfTilesX) * tileGrid.getTileSize());
+		if (fullRowsHeight > 0) {
+			rv.add(new Rectangle(0, 0, iimg.getWidth(), fullRowsHeight));
+		}
+		for (int tile = firstIncompleteTile - firstIncompleteTile % numOfTilesX; tile < consumedPixels.length; tile++) {
+			int tileWidth = tileGrid.getTileWidth(tile);
+			int rows = consumedPixels[tile] / tileWidth;
+			if (rows > 0) {
+				rv.add(new Rectangle(tileGrid.getTileX(tile), tileGrid.getTileY(tile), tileWidth, rows));
+			}
+		}
+		return rv.toArray(new Rectangle[rv.size()]);
+	}
+
+	private void updateFirstIncompleteTile() {
+		while (firstIncompleteTile < consumedPixels.length &&
+				consumedPixels[firstIncompleteTile] == tileGrid.getNumOfPixels(firstIncompleteTile)) {
+			firstIncompleteTile++;
+		}
+	}
+
+	private void consumeImpl(BufferedImage fimg, int tile, int startRow, int endRow) {
+		WritableRaster raster = fimg.getRaster();
+		ColorModel colorModel = fimg.getColorModel();
+		Object cmOutData = colorModel.getDataElements(0, null);
+		int tileX = tileGrid.getTileX(tile);
+		int tileY = tileGrid.getTileY(tile);
+		int xEnd = tileX + tileGrid.getTileWidth(tile);
+		int yEnd = tileY + endRow;
+		for (int y = tileY + startRow; y < yEnd; y++) {
+			for (int x = tileX; x < xEnd; x++) {
+				int rgb = calculator.computePixel(x, y, iimg);
+				raster.setDataElements(x, y, colorModel.getDataElements(rgb, cmOutData));
+			}
+		}
+	}
+
+	public final PixelCalculator getPixelCalculator() {
+		return calculator;
+	}
+
+	public int[] getConsumedPixels() {
+		return consumedPixels.clone();
+	}
+}
@@ -63,4 +63,9 @@ public interface Complex {
 
 	boolean eq(Complex c);
 
+	// A mutable copy of this value, see MutableComplex
+	default MutableComplex toMutable() {
+		return new ComplexAccumulator(this);
+	}
+
 }
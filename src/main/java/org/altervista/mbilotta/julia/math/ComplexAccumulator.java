@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math;
+
+
+// Fallback for Complex implementations with no mutable counterpart: still
+// allocates on every operation, but lets formulas use a single API
+final class ComplexAccumulator implements MutableComplex {
+
+	private Complex value;
+
+	ComplexAccumulator(Complex value) {
+		this.value = value;
+	}
+
+	@Override
+	public MutableComplex set(Complex c) {
+		value = c;
+		return this;
+	}
+
+	@Override
+	public MutableComplex set(MutableComplex c) {
+		value = c.toComplex();
+		return this;
+	}
+
+	@Override
+	public MutableComplex addInPlace(Complex c) {
+		value = value.plus(c);
+		return this;
+	}
+
+	@Override
+	public MutableComplex addInPlace(MutableComplex c) {
+		value = value.plus(c.toComplex());
+		return this;
+	}
+
+	@Override
+	public MutableComplex subtractInPlace(Complex c) {
+		value = value.minus(c);
+		return this;
+	}
+
+	@Override
+	public MutableComplex subtractInPlace(MutableComplex c) {
+		value = value.minus(c.toComplex());
+		return this;
+	}
+
+	@Override
+	public MutableComplex multiplyInPlace(Complex c) {
+		value = value.times(c);
+		return this;
+	}
+
+	@Override
+	public MutableComplex multiplyInPlace(MutableComplex c) {
+		value = value.times(c.toComplex());
+		return this;
+	}
+
+	@Override
+	public MutableComplex squareInPlace() {
+		value = value.square();
+		return this;
+	}
+
+	@Override
+	public MutableComplex negateInPlace() {
+		value = value.negate();
+		return this;
+	}
+
+	@Override
+	public MutableComplex fma(Complex a, Complex b) {
+		value = value.times(a).plus(b);
+		return this;
+	}
+
+	@Override
+	public MutableComplex squareAddInPlace(Complex c) {
+		value = value.square().plus(c);
+		return this;
+	}
+
+	@Override
+	public boolean absSquaredGreaterThan(Real r) {
+		return value.absSquared().gt(r);
+	}
+
+	@Override
+	public Complex toComplex() {
+		return value;
+	}
+
+	@Override
+	public MutableComplex copy() {
+		return new ComplexAccumulator(value);
+	}
+
+	@Override
+	public String toString() {
+		return value.toString();
+	}
+}
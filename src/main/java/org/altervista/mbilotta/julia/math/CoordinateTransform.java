@@ -20,6 +20,8 @@
 
 package org.altervista.mbilotta.julia.math;
 
+import org.altervista.mbilotta.julia.NumberFactory;
+
 
 public final class CoordinateTransform {
 
@@ -28,6 +30,12 @@ public final class CoordinateTransform {
 	private final Real scaleRe;
 	private final Real scaleIm;
 
+	// Coordinates of every column and row of the image, when a grid was
+	// requested. Read-only once built, so producers share them freely
+	private final NumberFactory numberFactory;
+	private final Real[] reGrid;
+	private final Real[] imGrid;
+
 	public CoordinateTransform(Real re0, Real im0, Real re1, Real im1,
 			Real x0, Real y0, Real x1, Real y1) {
 		this(re0, im0, x0, y0,
@@ -43,13 +51,51 @@ public final class CoordinateTransform {
 		this.y0 = y0;
 		this.scaleRe = scaleRe;
 		this.scaleIm = scaleIm;
+		this.numberFactory = null;
+		this.reGrid = null;
+		this.imGrid = null;
+	}
+
+	private CoordinateTransform(CoordinateTransform transform, NumberFactory numberFactory, int width, int height) {
+		this.re0 = transform.re0;
+		this.im0 = transform.im0;
+		this.x0 = transform.x0;
+		this.y0 = transform.y0;
+		this.scaleRe = transform.scaleRe;
+		this.scaleIm = transform.scaleIm;
+		this.numberFactory = numberFactory;
+		this.reGrid = new Real[width];
+		this.imGrid = new Real[height];
+		for (int x = 0; x < width; x++) {
+			reGrid[x] = transform.toRe(x);
+		}
+		for (int y = 0; y < height; y++) {
+			imGrid[y] = transform.toIm(y);
+		}
+	}
+
+	// Same transform, with the W + H coordinates of a width x height image
+	// computed once: toRe, toIm and toComplex on its pixels then do no
+	// arithmetic at all
+	public CoordinateTransform withGrid(NumberFactory numberFactory, int width, int height) {
+		if (reGrid != null && reGrid.length == width && imGrid.length == height)
+			return this;
+		return new CoordinateTransform(this, numberFactory, width, height);
+	}
+
+	public boolean hasGrid() {
+		return reGrid != null;
 	}
 
 	public Real toRe(int x) {
+		if (reGrid != null && x >= 0 && x < reGrid.length)
+			return reGrid[x];
 		return re0.plus(scaleRe.times(x0.minus(x).negate()));
 	}
 
 	public Real toIm(int y) {
+		if (imGrid != null && y >= 0 && y < imGrid.length)
+			return imGrid[y];
 		return im0.plus(scaleIm.times(y0.minus(y).negate()));
 	}
 
@@ -62,6 +108,8 @@ public final class CoordinateTransform {
 	}
 
 	public Complex toComplex(int x, int y) {
+		if (reGrid != null && x >= 0 && x < reGrid.length && y >= 0 && y < imGrid.length)
+			return numberFactory.valueOf(reGrid[x], imGrid[y]);
 		return toRe(x).plus(toIm(y).i());
 	}
 
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math;
+
+
+public interface MutableComplex {
+
+	// In-place counterparts of the Complex operations: each one overwrites
+	// this value and returns it, so that a whole iteration step chains without
+	// allocating intermediate Complex objects
+	MutableComplex set(Complex c);
+	MutableComplex set(MutableComplex c);
+
+	MutableComplex addInPlace(Complex c);
+	MutableComplex addInPlace(MutableComplex c);
+	MutableComplex subtractInPlace(Complex c);
+	MutableComplex subtractInPlace(MutableComplex c);
+	MutableComplex multiplyInPlace(Complex c);
+	MutableComplex multiplyInPlace(MutableComplex c);
+	MutableComplex squareInPlace();
+	MutableComplex negateInPlace();
+
+	// this * a + b
+	MutableComplex fma(Complex a, Complex b);
+
+	// this^2 + c
+	MutableComplex squareAddInPlace(Complex c);
+
+	boolean absSquaredGreaterThan(Real r);
+
+	Complex toComplex();
+	MutableComplex copy();
+
+}
@@ -20,6 +20,9 @@
 
 package org.altervista.mbilotta.julia.math;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
 import org.altervista.mbilotta.julia.Decimal;
 
 
@@ -39,6 +42,40 @@ public interface Real extends Comparable<Real>, Complex {
 
 	Real toThe(int n);
 
+	// this * 2^n. Implementations with a binary representation should do it
+	// exactly, without going through powers of 2 they may not represent
+	default Real scalb(int n) {
+		Real rv = this;
+		for (; n > 30; n -= 30) {
+			rv = rv.times(1 << 30);
+		}
+		for (; n < -30; n += 30) {
+			rv = rv.dividedBy(1 << 30);
+		}
+		return n >= 0 ? rv.times(1 << n) : rv.dividedBy(1 << -n);
+	}
+
+	// Exponent of the leading binary digit, as Math.getExponent gives it for
+	// doubles, but not limited to their range
+	default int getBinaryExponent() {
+		double d = Math.abs(doubleValue());
+		if (d >= Double.MIN_NORMAL && d <= Double.MAX_VALUE) {
+			return Math.getExponent(d);
+		}
+
+		BigDecimal v = decimalValue().bigDecimalValue().abs();
+		if (v.signum() == 0) {
+			return Double.MIN_EXPONENT - 1;
+		}
+		BigInteger unscaled = v.unscaledValue();
+		if (v.scale() <= 0) {
+			return unscaled.multiply(BigInteger.TEN.pow(-v.scale())).bitLength() - 1;
+		}
+		BigInteger divisor = BigInteger.TEN.pow(v.scale());
+		int shift = Math.max(0, divisor.bitLength() - unscaled.bitLength() + 1);
+		return unscaled.shiftLeft(shift).divide(divisor).bitLength() - 1 - shift;
+	}
+
 	Complex i();
 	Real reciprocal();
 	Real signum();
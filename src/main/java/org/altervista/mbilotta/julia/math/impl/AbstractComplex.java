@@ -24,6 +24,7 @@ import java.util.Objects;
 
 import org.altervista.mbilotta.julia.Decimal;
 import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.MutableComplex;
 import org.altervista.mbilotta.julia.math.Real;
 
 
@@ -402,6 +403,11 @@ public abstract class AbstractComplex<V> implements Complex {
 		return eq(getReal(), re(c)) && eq(getImag(), im(c));
 	}
 
+	@Override
+	public MutableComplex toMutable() {
+		return new Mutable(getReal(), getImag());
+	}
+
 	public Decimal decimalValue() {
 		return toDecimal(getReal());
 	}
@@ -508,6 +514,149 @@ public abstract class AbstractComplex<V> implements Complex {
 	}
 	protected abstract int compare(V a, V b);
 
+	// Keeps the two components and updates them with the V arithmetic of the
+	// enclosing instance, with no Complex wrapper per step. Subclasses whose V
+	// is itself mutable can override it to work on scratch buffers
+	protected class Mutable implements MutableComplex {
+
+		protected V re;
+		protected V im;
+
+		protected Mutable(V re, V im) {
+			this.re = re;
+			this.im = im;
+		}
+
+		@Override
+		public MutableComplex set(Complex c) {
+			re = re(c);
+			im = im(c);
+			return this;
+		}
+
+		@Override
+		public MutableComplex set(MutableComplex c) {
+			if (c instanceof AbstractComplex.Mutable) {
+				Mutable m = cast(c);
+				re = m.re;
+				im = m.im;
+				return this;
+			}
+			return set(c.toComplex());
+		}
+
+		@Override
+		public MutableComplex addInPlace(Complex c) {
+			re = add(re, re(c));
+			im = add(im, im(c));
+			return this;
+		}
+
+		@Override
+		public MutableComplex addInPlace(MutableComplex c) {
+			if (c instanceof AbstractComplex.Mutable) {
+				Mutable m = cast(c);
+				re = add(re, m.re);
+				im = add(im, m.im);
+				return this;
+			}
+			return addInPlace(c.toComplex());
+		}
+
+		@Override
+		public MutableComplex subtractInPlace(Complex c) {
+			re = subtract(re, re(c));
+			im = subtract(im, im(c));
+			return this;
+		}
+
+		@Override
+		public MutableComplex subtractInPlace(MutableComplex c) {
+			if (c instanceof AbstractComplex.Mutable) {
+				Mutable m = cast(c);
+				re = subtract(re, m.re);
+				im = subtract(im, m.im);
+				return this;
+			}
+			return subtractInPlace(c.toComplex());
+		}
+
+		@Override
+		public MutableComplex multiplyInPlace(Complex c) {
+			return multiplyInPlace(re(c), im(c));
+		}
+
+		@Override
+		public MutableComplex multiplyInPlace(MutableComplex c) {
+			if (c instanceof AbstractComplex.Mutable) {
+				Mutable m = cast(c);
+				return multiplyInPlace(m.re, m.im);
+			}
+			return multiplyInPlace(c.toComplex());
+		}
+
+		private MutableComplex multiplyInPlace(V re2, V im2) {
+			V re1 = re, im1 = im;
+			re = multiplySub(re1, re2, im1, im2);
+			im = multiplyAdd(re2, im1, re1, im2);
+			return this;
+		}
+
+		@Override
+		public MutableComplex squareInPlace() {
+			V re1 = re, im1 = im;
+			re = multiplySub(re1, re1, im1, im1);
+			im = multiplyAdd(re1, im1, im1, re1);
+			return this;
+		}
+
+		@Override
+		public MutableComplex negateInPlace() {
+			re = negate(re);
+			im = negate(im);
+			return this;
+		}
+
+		@Override
+		public MutableComplex fma(Complex a, Complex b) {
+			multiplyInPlace(re(a), im(a));
+			return addInPlace(b);
+		}
+
+		@Override
+		public MutableComplex squareAddInPlace(Complex c) {
+			V re1 = re, im1 = im;
+			re = add(multiplySub(re1, re1, im1, im1), re(c));
+			im = add(multiplyAdd(re1, im1, im1, re1), im(c));
+			return this;
+		}
+
+		@Override
+		public boolean absSquaredGreaterThan(Real r) {
+			return gt(multiplyAdd(re, re, im, im), re(r));
+		}
+
+		@Override
+		public Complex toComplex() {
+			return complex(re, im);
+		}
+
+		@Override
+		public MutableComplex copy() {
+			return new Mutable(re, im);
+		}
+
+		@SuppressWarnings("unchecked")
+		private Mutable cast(MutableComplex c) {
+			return (Mutable) c;
+		}
+
+		@Override
+		public String toString() {
+			return "(" + AbstractComplex.this.toString(re) + ", " + AbstractComplex.this.toString(im) + ")";
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(getReal(), getImag());
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import org.altervista.mbilotta.julia.Decimal;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.MutableComplex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+public abstract class AbstractDoubleDoubleComplex extends AbstractComplex<DoubleDouble> {
+
+	private final DoubleDouble re;
+
+	protected AbstractDoubleDoubleComplex(DoubleDouble v) {
+		this.re = v;
+	}
+
+	@Override
+	protected final DoubleDouble getReal() {
+		return re;
+	}
+
+	@Override
+	protected DoubleDouble getImag() {
+		return DoubleDouble.ZERO;
+	}
+
+	@Override
+	public MutableComplex toMutable() {
+		return new DoubleDoubleMutableComplex(getReal(), getImag());
+	}
+
+	@Override
+	protected DoubleDouble re(int i) {
+		return new DoubleDouble(i);
+	}
+
+	@Override
+	protected final DoubleDouble re(Complex c) {
+		return ((AbstractDoubleDoubleComplex) c).getReal();
+	}
+
+	@Override
+	protected final DoubleDouble im(Complex c) {
+		return ((AbstractDoubleDoubleComplex) c).getImag();
+	}
+
+	@Override
+	protected Real real(DoubleDouble v) {
+		return new DoubleDoubleReal(v);
+	}
+
+	@Override
+	protected Complex complex(DoubleDouble re, DoubleDouble im) {
+		return new DoubleDoubleComplex(re, im);
+	}
+
+	@Override
+	protected DoubleDouble add(DoubleDouble a, DoubleDouble b) {
+		return a.add(b);
+	}
+
+	@Override
+	protected DoubleDouble multiply(DoubleDouble a, DoubleDouble b) {
+		return a.multiply(b);
+	}
+
+	@Override
+	protected DoubleDouble subtract(DoubleDouble a, DoubleDouble b) {
+		return a.subtract(b);
+	}
+
+	@Override
+	protected DoubleDouble divide(DoubleDouble a, DoubleDouble b) {
+		return a.divide(b);
+	}
+
+	@Override
+	protected DoubleDouble reciprocal(DoubleDouble x) {
+		return x.reciprocal();
+	}
+
+	@Override
+	protected DoubleDouble abs(DoubleDouble x) {
+		return x.abs();
+	}
+
+	@Override
+	protected DoubleDouble signum(DoubleDouble x) {
+		return new DoubleDouble(x.signum());
+	}
+
+	@Override
+	protected DoubleDouble hypot(DoubleDouble x, DoubleDouble y) {
+		return x.hypot(y);
+	}
+
+	@Override
+	protected DoubleDouble negate(DoubleDouble x) {
+		return x.negate();
+	}
+
+	@Override
+	protected DoubleDouble ln(DoubleDouble x) {
+		return x.ln();
+	}
+
+	@Override
+	protected DoubleDouble exp(DoubleDouble x) {
+		return x.exp();
+	}
+
+	@Override
+	protected DoubleDouble sin(DoubleDouble x) {
+		return x.sin();
+	}
+
+	@Override
+	protected DoubleDouble cos(DoubleDouble x) {
+		return x.cos();
+	}
+
+	@Override
+	protected DoubleDouble atan(DoubleDouble x) {
+		return x.atan();
+	}
+
+	@Override
+	protected DoubleDouble atan2(DoubleDouble y, DoubleDouble x) {
+		return DoubleDouble.atan2(y, x);
+	}
+
+	@Override
+	protected DoubleDouble sqrt(DoubleDouble x) {
+		return x.sqrt();
+	}
+
+	@Override
+	protected DoubleDouble nthPow(DoubleDouble x, int n) {
+		return x.pow(n);
+	}
+
+	@Override
+	protected DoubleDouble pow(DoubleDouble x, DoubleDouble r) {
+		return x.pow(r);
+	}
+
+	@Override
+	protected DoubleDouble zero() {
+		return DoubleDouble.ZERO;
+	}
+
+	@Override
+	protected DoubleDouble one() {
+		return DoubleDouble.ONE;
+	}
+
+	@Override
+	protected Decimal toDecimal(DoubleDouble x) {
+		return new Decimal(x.bigDecimalValue().toString());
+	}
+
+	@Override
+	protected double toDouble(DoubleDouble x) {
+		return x.doubleValue();
+	}
+
+	@Override
+	protected float toFloat(DoubleDouble x) {
+		return (float) x.doubleValue();
+	}
+
+	@Override
+	protected int toInt(DoubleDouble x) {
+		return x.bigDecimalValue().intValue();
+	}
+
+	@Override
+	protected int compare(DoubleDouble a, DoubleDouble b) {
+		return a.compareTo(b);
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import org.altervista.mbilotta.julia.Decimal;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.MutableComplex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+public abstract class AbstractFixedPointComplex extends AbstractComplex<FixedPoint> {
+
+	private final FixedPoint re;
+
+	protected AbstractFixedPointComplex(FixedPoint v) {
+		this.re = v;
+	}
+
+	@Override
+	protected final FixedPoint getReal() {
+		return re;
+	}
+
+	@Override
+	protected FixedPoint getImag() {
+		return FixedPoint.zero(re.limbs());
+	}
+
+	public final int getLimbs() {
+		return re.limbs();
+	}
+
+	@Override
+	public MutableComplex toMutable() {
+		return new FixedPointMutableComplex(getReal(), getImag());
+	}
+
+	@Override
+	protected FixedPoint re(int i) {
+		return FixedPoint.valueOf(i, re.limbs());
+	}
+
+	@Override
+	protected final FixedPoint re(Complex c) {
+		return ((AbstractFixedPointComplex) c).getReal();
+	}
+
+	@Override
+	protected final FixedPoint im(Complex c) {
+		return ((AbstractFixedPointComplex) c).getImag();
+	}
+
+	@Override
+	protected Real real(FixedPoint v) {
+		return new FixedPointReal(v);
+	}
+
+	@Override
+	protected Complex complex(FixedPoint re, FixedPoint im) {
+		return new FixedPointComplex(re, im);
+	}
+
+	@Override
+	protected FixedPoint add(FixedPoint a, FixedPoint b) {
+		return a.add(b);
+	}
+
+	@Override
+	protected FixedPoint multiply(FixedPoint a, FixedPoint b) {
+		return a.multiply(b);
+	}
+
+	@Override
+	protected FixedPoint subtract(FixedPoint a, FixedPoint b) {
+		return a.subtract(b);
+	}
+
+	@Override
+	protected FixedPoint divide(FixedPoint a, FixedPoint b) {
+		return a.divide(b);
+	}
+
+	@Override
+	protected FixedPoint reciprocal(FixedPoint x) {
+		return x.reciprocal();
+	}
+
+	@Override
+	protected FixedPoint abs(FixedPoint x) {
+		return x.abs();
+	}
+
+	@Override
+	protected FixedPoint signum(FixedPoint x) {
+		return FixedPoint.valueOf(x.signum(), x.limbs());
+	}
+
+	@Override
+	protected FixedPoint hypot(FixedPoint x, FixedPoint y) {
+		return x.hypot(y);
+	}
+
+	@Override
+	protected FixedPoint negate(FixedPoint x) {
+		return x.negate();
+	}
+
+	@Override
+	protected FixedPoint ln(FixedPoint x) {
+		return x.ln();
+	}
+
+	@Override
+	protected FixedPoint exp(FixedPoint x) {
+		return x.exp();
+	}
+
+	@Override
+	protected FixedPoint sin(FixedPoint x) {
+		return x.sin();
+	}
+
+	@Override
+	protected FixedPoint cos(FixedPoint x) {
+		return x.cos();
+	}
+
+	@Override
+	protected FixedPoint atan(FixedPoint x) {
+		return x.atan();
+	}
+
+	@Override
+	protected FixedPoint atan2(FixedPoint y, FixedPoint x) {
+		return FixedPoint.atan2(y, x);
+	}
+
+	@Override
+	protected FixedPoint sqrt(FixedPoint x) {
+		return x.sqrt();
+	}
+
+	@Override
+	protected FixedPoint nthPow(FixedPoint x, int n) {
+		return x.pow(n);
+	}
+
+	@Override
+	protected FixedPoint pow(FixedPoint x, FixedPoint r) {
+		return x.pow(r);
+	}
+
+	@Override
+	protected FixedPoint zero() {
+		return FixedPoint.zero(re.limbs());
+	}
+
+	@Override
+	protected FixedPoint one() {
+		return FixedPoint.valueOf(1, re.limbs());
+	}
+
+	@Override
+	protected Decimal toDecimal(FixedPoint x) {
+		return new Decimal(x.toString());
+	}
+
+	@Override
+	protected double toDouble(FixedPoint x) {
+		return x.doubleValue();
+	}
+
+	@Override
+	protected float toFloat(FixedPoint x) {
+		return (float) x.doubleValue();
+	}
+
+	@Override
+	protected int toInt(FixedPoint x) {
+		return x.intValue();
+	}
+
+	@Override
+	protected int compare(FixedPoint a, FixedPoint b) {
+		return a.compareTo(b);
+	}
+}
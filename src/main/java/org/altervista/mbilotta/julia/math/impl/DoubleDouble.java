@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+
+// An unevaluated sum hi + lo of two doubles with |lo| <= ulp(hi) / 2, good
+// for about 106 bits. Arithmetic relies on error-free transformations
+// (Dekker, Knuth), transcendental functions refine their double counterparts
+public final class DoubleDouble implements Comparable<DoubleDouble> {
+
+	public static final DoubleDouble ZERO = new DoubleDouble(0);
+	public static final DoubleDouble ONE = new DoubleDouble(1);
+	public static final DoubleDouble TWO = new DoubleDouble(2);
+	public static final DoubleDouble PI = new DoubleDouble(3.141592653589793116e+00, 1.224646799147353207e-16);
+	public static final DoubleDouble E = new DoubleDouble(2.718281828459045091e+00, 1.445646891729250158e-16);
+
+	static final DoubleDouble TWO_PI = new DoubleDouble(6.283185307179586232e+00, 2.449293598294706414e-16);
+	static final DoubleDouble HALF_PI = new DoubleDouble(1.570796326794896558e+00, 6.123233995736766036e-17);
+	static final DoubleDouble LN2 = new DoubleDouble(6.931471805599452862e-01, 2.319046813846299558e-17);
+
+	static final MathContext MATH_CONTEXT = new MathContext(32);
+
+	private static final double SPLITTER = 134217729.0;
+	private static final double EPSILON = 4.93038065763132e-32;
+	private static final int EXP_SQUARINGS = 10;
+
+	private final double hi;
+	private final double lo;
+
+	public DoubleDouble(double value) {
+		this.hi = value;
+		this.lo = 0;
+	}
+
+	public DoubleDouble(double hi, double lo) {
+		this.hi = hi;
+		this.lo = lo;
+	}
+
+	public static DoubleDouble valueOf(BigDecimal value) {
+		double hi = value.doubleValue();
+		if (Double.isInfinite(hi)) {
+			return new DoubleDouble(hi);
+		}
+		return new DoubleDouble(hi, value.subtract(new BigDecimal(hi)).doubleValue());
+	}
+
+	public static DoubleDouble valueOf(String value) {
+		return valueOf(new BigDecimal(value));
+	}
+
+	public double hi() {
+		return hi;
+	}
+
+	public double lo() {
+		return lo;
+	}
+
+	public double doubleValue() {
+		return hi + lo;
+	}
+
+	public BigDecimal bigDecimalValue() {
+		return new BigDecimal(hi).add(new BigDecimal(lo)).round(MATH_CONTEXT);
+	}
+
+	public DoubleDouble add(DoubleDouble b) {
+		double s = hi + b.hi;
+		double bb = s - hi;
+		double e = (hi - (s - bb)) + (b.hi - bb);
+		double t = lo + b.lo;
+		bb = t - lo;
+		double f = (lo - (t - bb)) + (b.lo - bb);
+		e += t;
+		double h = s + e;
+		e = e - (h - s);
+		e += f;
+		s = h + e;
+		return new DoubleDouble(s, e - (s - h));
+	}
+
+	public DoubleDouble add(double b) {
+		double s = hi + b;
+		double bb = s - hi;
+		double e = (hi - (s - bb)) + (b - bb) + lo;
+		double h = s + e;
+		return new DoubleDouble(h, e - (h - s));
+	}
+
+	public DoubleDouble subtract(DoubleDouble b) {
+		return add(b.negate());
+	}
+
+	public DoubleDouble multiply(DoubleDouble b) {
+		double p = hi * b.hi;
+		double e = twoProductError(hi, b.hi, p) + (hi * b.lo + lo * b.hi);
+		double s = p + e;
+		return new DoubleDouble(s, e - (s - p));
+	}
+
+	public DoubleDouble multiply(double b) {
+		double p = hi * b;
+		double e = twoProductError(hi, b, p) + lo * b;
+		double s = p + e;
+		return new DoubleDouble(s, e - (s - p));
+	}
+
+	public DoubleDouble square() {
+		double p = hi * hi;
+		double e = twoProductError(hi, hi, p) + 2 * hi * lo;
+		double s = p + e;
+		return new DoubleDouble(s, e - (s - p));
+	}
+
+	// Long division, one double digit at a time
+	public DoubleDouble divide(DoubleDouble b) {
+		double q1 = hi / b.hi;
+		DoubleDouble r = subtract(b.multiply(q1));
+		double q2 = r.hi / b.hi;
+		r = r.subtract(b.multiply(q2));
+		double q3 = r.hi / b.hi;
+		double s = q1 + q2;
+		return new DoubleDouble(s, q2 - (s - q1)).add(q3);
+	}
+
+	public DoubleDouble divide(double b) {
+		double q1 = hi / b;
+		double p = q1 * b;
+		double e = twoProductError(q1, b, p);
+		double q2 = ((hi - p) - e + lo) / b;
+		double s = q1 + q2;
+		return new DoubleDouble(s, q2 - (s - q1));
+	}
+
+	public DoubleDouble reciprocal() {
+		return ONE.divide(this);
+	}
+
+	public DoubleDouble negate() {
+		return new DoubleDouble(-hi, -lo);
+	}
+
+	public DoubleDouble abs() {
+		return hi < 0 || (hi == 0 && lo < 0) ? negate() : this;
+	}
+
+	public int signum() {
+		return hi != 0 ? (int) Math.signum(hi) : (int) Math.signum(lo);
+	}
+
+	public DoubleDouble scalb(int n) {
+		return new DoubleDouble(Math.scalb(hi, n), Math.scalb(lo, n));
+	}
+
+	public DoubleDouble pow(int n) {
+		if (n < 0) {
+			return pow(-n).reciprocal();
+		}
+		DoubleDouble rv = ONE;
+		DoubleDouble base = this;
+		while (n > 0) {
+			if ((n & 1) != 0) {
+				rv = rv.multiply(base);
+			}
+			n >>>= 1;
+			if (n > 0) {
+				base = base.square();
+			}
+		}
+		return rv;
+	}
+
+	// One Newton step doubles the precision of Math.sqrt
+	public DoubleDouble sqrt() {
+		if (hi <= 0) {
+			return hi == 0 ? ZERO : new DoubleDouble(Double.NaN);
+		}
+		double y = Math.sqrt(hi);
+		DoubleDouble y2 = new DoubleDouble(y).square();
+		return new DoubleDouble(y).add(subtract(y2).hi * (0.5 / y));
+	}
+
+	public DoubleDouble hypot(DoubleDouble b) {
+		return square().add(b.square()).sqrt();
+	}
+
+	// exp(x) = 2^k * exp(r)^(2^EXP_SQUARINGS), with a Taylor series on the
+	// small reduced argument
+	public DoubleDouble exp() {
+		if (hi > 709.79) {
+			return new DoubleDouble(Double.POSITIVE_INFINITY);
+		}
+		if (hi < -745.2) {
+			return ZERO;
+		}
+		double k = Math.rint(hi / LN2.hi);
+		DoubleDouble r = subtract(LN2.multiply(k)).scalb(-EXP_SQUARINGS);
+
+		DoubleDouble sum = r;
+		DoubleDouble term = r;
+		for (int n = 2; Math.abs(term.hi) > EPSILON * Math.abs(sum.hi); n++) {
+			term = term.multiply(r).divide(n);
+			sum = sum.add(term);
+		}
+		for (int i = 0; i < EXP_SQUARINGS; i++) {
+			sum = sum.multiply(sum.add(2));
+		}
+		return sum.add(1).scalb((int) k);
+	}
+
+	// Newton on exp(y) = x from the double logarithm
+	public DoubleDouble ln() {
+		if (hi <= 0) {
+			return new DoubleDouble(hi == 0 ? Double.NEGATIVE_INFINITY : Double.NaN);
+		}
+		DoubleDouble y = new DoubleDouble(Math.log(hi));
+		return y.add(multiply(y.negate().exp())).add(-1);
+	}
+
+	public DoubleDouble sin() {
+		DoubleDouble[] sinCos = sinCos();
+		return sinCos[0];
+	}
+
+	public DoubleDouble cos() {
+		DoubleDouble[] sinCos = sinCos();
+		return sinCos[1];
+	}
+
+	// Reduced to [-pi/4, pi/4] around a multiple of pi/2, then Taylor
+	public DoubleDouble[] sinCos() {
+		DoubleDouble x = subtract(TWO_PI.multiply(Math.rint(hi / TWO_PI.hi)));
+		double j = Math.rint(x.hi / HALF_PI.hi);
+		DoubleDouble r = x.subtract(HALF_PI.multiply(j));
+
+		DoubleDouble sin = r;
+		DoubleDouble cos = ONE;
+		DoubleDouble term = r;
+		for (int n = 2; Math.abs(term.hi) > EPSILON; n += 2) {
+			term = term.multiply(r).divide(-n);
+			cos = cos.add(term);
+			term = term.multiply(r).divide(n + 1);
+			sin = sin.add(term);
+		}
+
+		switch ((int) j & 3) {
+		case 0: return new DoubleDouble[] { sin, cos };
+		case 1: return new DoubleDouble[] { cos, sin.negate() };
+		case 2: return new DoubleDouble[] { sin.negate(), cos.negate() };
+		case 3: return new DoubleDouble[] { cos.negate(), sin };
+		default: throw new AssertionError(j);
+		}
+	}
+
+	public DoubleDouble atan() {
+		return atan2(this, ONE);
+	}
+
+	// Newton on the angle of the normalized point, from the double atan2
+	public static DoubleDouble atan2(DoubleDouble y, DoubleDouble x) {
+		if (x.hi == 0 && y.hi == 0) {
+			return ZERO;
+		}
+		DoubleDouble z = new DoubleDouble(Math.atan2(y.hi, x.hi));
+		DoubleDouble r = x.hypot(y);
+		DoubleDouble xn = x.divide(r);
+		DoubleDouble yn = y.divide(r);
+		DoubleDouble[] sinCos = z.sinCos();
+		if (Math.abs(xn.hi) > Math.abs(yn.hi)) {
+			return z.add(yn.subtract(sinCos[0]).divide(sinCos[1]));
+		}
+		return z.subtract(xn.subtract(sinCos[1]).divide(sinCos[0]));
+	}
+
+	public DoubleDouble pow(DoubleDouble r) {
+		return r.multiply(ln()).exp();
+	}
+
+	@Override
+	public int compareTo(DoubleDouble b) {
+		int rv = Double.compare(hi, b.hi);
+		return rv != 0 ? rv : Double.compare(lo, b.lo);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof DoubleDouble) {
+			DoubleDouble b = (DoubleDouble) o;
+			return hi == b.hi && lo == b.lo;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Double.hashCode(hi) * 31 + Double.hashCode(lo);
+	}
+
+	@Override
+	public String toString() {
+		if (Double.isNaN(hi) || Double.isInfinite(hi)) {
+			return Double.toString(hi);
+		}
+		return bigDecimalValue().toString();
+	}
+
+	// Error of the rounded product p = a * b, from Dekker's split
+	static double twoProductError(double a, double b, double p) {
+		double t = SPLITTER * a;
+		double ah = t - (t - a);
+		double al = a - ah;
+		t = SPLITTER * b;
+		double bh = t - (t - b);
+		double bl = b - bh;
+		return ((ah * bh - p) + ah * bl + al * bh) + al * bl;
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+
+public final class DoubleDoubleComplex extends AbstractDoubleDoubleComplex {
+
+	private final DoubleDouble im;
+
+	public DoubleDoubleComplex(DoubleDouble re, DoubleDouble im) {
+		super(re);
+		this.im = im;
+	}
+
+	@Override
+	protected DoubleDouble getImag() {
+		return im;
+	}
+}
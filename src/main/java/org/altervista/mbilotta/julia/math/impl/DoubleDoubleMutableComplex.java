@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.MutableComplex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+// Keeps both double-double components in primitive fields: no allocation at
+// all while iterating. Results of the helpers go through th and tl
+final class DoubleDoubleMutableComplex implements MutableComplex {
+
+	private double reHi;
+	private double reLo;
+	private double imHi;
+	private double imLo;
+
+	private double th;
+	private double tl;
+
+	DoubleDoubleMutableComplex(DoubleDouble re, DoubleDouble im) {
+		reHi = re.hi();
+		reLo = re.lo();
+		imHi = im.hi();
+		imLo = im.lo();
+	}
+
+	private DoubleDoubleMutableComplex(DoubleDoubleMutableComplex other) {
+		reHi = other.reHi;
+		reLo = other.reLo;
+		imHi = other.imHi;
+		imLo = other.imLo;
+	}
+
+	@Override
+	public MutableComplex set(Complex c) {
+		DoubleDouble re = re(c), im = im(c);
+		reHi = re.hi();
+		reLo = re.lo();
+		imHi = im.hi();
+		imLo = im.lo();
+		return this;
+	}
+
+	@Override
+	public MutableComplex set(MutableComplex c) {
+		if (c instanceof DoubleDoubleMutableComplex) {
+			DoubleDoubleMutableComplex m = (DoubleDoubleMutableComplex) c;
+			reHi = m.reHi;
+			reLo = m.reLo;
+			imHi = m.imHi;
+			imLo = m.imLo;
+			return this;
+		}
+		return set(c.toComplex());
+	}
+
+	@Override
+	public MutableComplex addInPlace(Complex c) {
+		DoubleDouble re = re(c), im = im(c);
+		return addComponents(re.hi(), re.lo(), im.hi(), im.lo());
+	}
+
+	@Override
+	public MutableComplex addInPlace(MutableComplex c) {
+		if (c instanceof DoubleDoubleMutableComplex) {
+			DoubleDoubleMutableComplex m = (DoubleDoubleMutableComplex) c;
+			return addComponents(m.reHi, m.reLo, m.imHi, m.imLo);
+		}
+		return addInPlace(c.toComplex());
+	}
+
+	@Override
+	public MutableComplex subtractInPlace(Complex c) {
+		DoubleDouble re = re(c), im = im(c);
+		return addComponents(-re.hi(), -re.lo(), -im.hi(), -im.lo());
+	}
+
+	@Override
+	public MutableComplex subtractInPlace(MutableComplex c) {
+		if (c instanceof DoubleDoubleMutableComplex) {
+			DoubleDoubleMutableComplex m = (DoubleDoubleMutableComplex) c;
+			return addComponents(-m.reHi, -m.reLo, -m.imHi, -m.imLo);
+		}
+		return subtractInPlace(c.toComplex());
+	}
+
+	@Override
+	public MutableComplex multiplyInPlace(Complex c) {
+		DoubleDouble re = re(c), im = im(c);
+		return multiplyComponents(re.hi(), re.lo(), im.hi(), im.lo());
+	}
+
+	@Override
+	public MutableComplex multiplyInPlace(MutableComplex c) {
+		if (c instanceof DoubleDoubleMutableComplex) {
+			DoubleDoubleMutableComplex m = (DoubleDoubleMutableComplex) c;
+			return multiplyComponents(m.reHi, m.reLo, m.imHi, m.imLo);
+		}
+		return multiplyInPlace(c.toComplex());
+	}
+
+	@Override
+	public MutableComplex squareInPlace() {
+		square();
+		return this;
+	}
+
+	@Override
+	public MutableComplex negateInPlace() {
+		reHi = -reHi;
+		reLo = -reLo;
+		imHi = -imHi;
+		imLo = -imLo;
+		return this;
+	}
+
+	@Override
+	public MutableComplex fma(Complex a, Complex b) {
+		multiplyInPlace(a);
+		return addInPlace(b);
+	}
+
+	@Override
+	public MutableComplex squareAddInPlace(Complex c) {
+		square();
+		return addInPlace(c);
+	}
+
+	@Override
+	public boolean absSquaredGreaterThan(Real r) {
+		mul(reHi, reLo, reHi, reLo);
+		double h = th, l = tl;
+		mul(imHi, imLo, imHi, imLo);
+		add(h, l, th, tl);
+		DoubleDouble bound = re(r);
+		return th > bound.hi() || (th == bound.hi() && tl > bound.lo());
+	}
+
+	@Override
+	public Complex toComplex() {
+		return new DoubleDoubleComplex(new DoubleDouble(reHi, reLo), new DoubleDouble(imHi, imLo));
+	}
+
+	@Override
+	public MutableComplex copy() {
+		return new DoubleDoubleMutableComplex(this);
+	}
+
+	@Override
+	public String toString() {
+		return toComplex().toString();
+	}
+
+	private MutableComplex addComponents(double bReHi, double bReLo, double bImHi, double bImLo) {
+		add(reHi, reLo, bReHi, bReLo);
+		reHi = th;
+		reLo = tl;
+		add(imHi, imLo, bImHi, bImLo);
+		imHi = th;
+		imLo = tl;
+		return this;
+	}
+
+	private MutableComplex multiplyComponents(double bReHi, double bReLo, double bImHi, double bImLo) {
+		mul(reHi, reLo, bReHi, bReLo);
+		double h1 = th, l1 = tl;
+		mul(imHi, imLo, bImHi, bImLo);
+		double h2 = th, l2 = tl;
+		mul(reHi, reLo, bImHi, bImLo);
+		double h3 = th, l3 = tl;
+		mul(imHi, imLo, bReHi, bReLo);
+		add(h3, l3, th, tl);
+		imHi = th;
+		imLo = tl;
+		add(h1, l1, -h2, -l2);
+		reHi = th;
+		reLo = tl;
+		return this;
+	}
+
+	private void square() {
+		mul(reHi, reLo, reHi, reLo);
+		double h1 = th, l1 = tl;
+		mul(imHi, imLo, imHi, imLo);
+		double h2 = th, l2 = tl;
+		mul(reHi, reLo, imHi, imLo);
+		imHi = 2 * th;
+		imLo = 2 * tl;
+		add(h1, l1, -h2, -l2);
+		reHi = th;
+		reLo = tl;
+	}
+
+	// Same algorithms as DoubleDouble.add and DoubleDouble.multiply
+	private void add(double ah, double al, double bh, double bl) {
+		double s = ah + bh;
+		double bb = s - ah;
+		double e = (ah - (s - bb)) + (bh - bb);
+		double t = al + bl;
+		bb = t - al;
+		double f = (al - (t - bb)) + (bl - bb);
+		e += t;
+		double h = s + e;
+		e = e - (h - s);
+		e += f;
+		th = h + e;
+		tl = e - (th - h);
+	}
+
+	private void mul(double ah, double al, double bh, double bl) {
+		double p = ah * bh;
+		double e = DoubleDouble.twoProductError(ah, bh, p) + (ah * bl + al * bh);
+		th = p + e;
+		tl = e - (th - p);
+	}
+
+	private static DoubleDouble re(Complex c) {
+		return ((AbstractDoubleDoubleComplex) c).getReal();
+	}
+
+	private static DoubleDouble im(Complex c) {
+		return ((AbstractDoubleDoubleComplex) c).getImag();
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import org.altervista.mbilotta.julia.Decimal;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+// About 32 significant digits at roughly a tenth of the speed of doubles:
+// the step between hardware doubles and BigDecimal for medium zooms
+public final class DoubleDoubleNumberFactory implements NumberFactory {
+
+	private static final Real ZERO = new DoubleDoubleReal(DoubleDouble.ZERO);
+	private static final Real ONE = new DoubleDoubleReal(DoubleDouble.ONE);
+	private static final Real PI = new DoubleDoubleReal(DoubleDouble.PI);
+	private static final Real E = new DoubleDoubleReal(DoubleDouble.E);
+	private static final Complex I = new DoubleDoubleComplex(DoubleDouble.ZERO, DoubleDouble.ONE);
+
+	@Override
+	public Real zero() {
+		return ZERO;
+	}
+
+	@Override
+	public Real one() {
+		return ONE;
+	}
+
+	@Override
+	public Real pi() {
+		return PI;
+	}
+
+	@Override
+	public Real e() {
+		return E;
+	}
+
+	@Override
+	public Complex i() {
+		return I;
+	}
+
+	@Override
+	public Real valueOf(int i) {
+		return new DoubleDoubleReal(new DoubleDouble(i));
+	}
+
+	@Override
+	public Real valueOf(double d) {
+		return new DoubleDoubleReal(new DoubleDouble(d));
+	}
+
+	@Override
+	public Real valueOf(String s) {
+		return new DoubleDoubleReal(DoubleDouble.valueOf(s));
+	}
+
+	@Override
+	public Real valueOf(Decimal decimal) {
+		return new DoubleDoubleReal(DoubleDouble.valueOf(decimal.bigDecimalValue()));
+	}
+
+	@Override
+	public Complex valueOf(int real, int imag) {
+		return new DoubleDoubleComplex(new DoubleDouble(real), new DoubleDouble(imag));
+	}
+
+	@Override
+	public Complex valueOf(Decimal real, Decimal imag) {
+		return new DoubleDoubleComplex(
+				DoubleDouble.valueOf(real.bigDecimalValue()),
+				DoubleDouble.valueOf(imag.bigDecimalValue()));
+	}
+
+	@Override
+	public Complex valueOf(Real real, Real imag) {
+		return new DoubleDoubleComplex(
+				((AbstractDoubleDoubleComplex) real).getReal(),
+				((AbstractDoubleDoubleComplex) imag).getReal());
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+public final class DoubleDoubleReal extends AbstractDoubleDoubleComplex implements Real {
+
+	public DoubleDoubleReal(DoubleDouble v) {
+		super(v);
+	}
+
+	@Override
+	public Real plus(int i) {
+		return new DoubleDoubleReal(getReal().add(i));
+	}
+
+	@Override
+	public Real plus(Real r) {
+		return new DoubleDoubleReal(getReal().add(re(r)));
+	}
+
+	@Override
+	public Real minus(int i) {
+		return new DoubleDoubleReal(getReal().add(-(double) i));
+	}
+
+	@Override
+	public Real minus(Real r) {
+		return new DoubleDoubleReal(getReal().subtract(re(r)));
+	}
+
+	@Override
+	public Real times(int i) {
+		return new DoubleDoubleReal(getReal().multiply(i));
+	}
+
+	@Override
+	public Real times(Real r) {
+		return new DoubleDoubleReal(getReal().multiply(re(r)));
+	}
+
+	@Override
+	public Real dividedBy(int i) {
+		return new DoubleDoubleReal(getReal().divide(i));
+	}
+
+	@Override
+	public Real dividedBy(Real r) {
+		return new DoubleDoubleReal(getReal().divide(re(r)));
+	}
+
+	@Override
+	public Real toThe(int n) {
+		return new DoubleDoubleReal(getReal().pow(n));
+	}
+
+	@Override
+	public Real scalb(int n) {
+		return new DoubleDoubleReal(getReal().scalb(n));
+	}
+
+	@Override
+	public Real reciprocal() {
+		return new DoubleDoubleReal(getReal().reciprocal());
+	}
+
+	@Override
+	public Real negate() {
+		return new DoubleDoubleReal(getReal().negate());
+	}
+
+	@Override
+	public Real conj() {
+		return this;
+	}
+
+	@Override
+	public Real exp() {
+		return new DoubleDoubleReal(getReal().exp());
+	}
+
+	@Override
+	public Real sin() {
+		return new DoubleDoubleReal(getReal().sin());
+	}
+
+	@Override
+	public Real cos() {
+		return new DoubleDoubleReal(getReal().cos());
+	}
+
+	@Override
+	public Real tan() {
+		DoubleDouble[] sinCos = getReal().sinCos();
+		return new DoubleDoubleReal(sinCos[0].divide(sinCos[1]));
+	}
+
+	@Override
+	public Real atan() {
+		return new DoubleDoubleReal(getReal().atan());
+	}
+
+	@Override
+	public Real square() {
+		return new DoubleDoubleReal(getReal().square());
+	}
+
+	@Override
+	public Complex i() {
+		return new DoubleDoubleComplex(DoubleDouble.ZERO, getReal());
+	}
+}
@@ -0,0 +1,557 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+// Signed fixed-point number: sign plus an n-limb magnitude, see Limbs. The
+// integer part is limited to 32 bits, which is plenty for escape-time
+// fractals, and every limb below it is fraction. Results that do not fit
+// saturate to the largest magnitude, which any bailout test sees as escaped
+public final class FixedPoint implements Comparable<FixedPoint> {
+
+	// Extra limbs carried by the transcendental functions
+	private static final int GUARD_LIMBS = 2;
+	private static final int EXP_HALVINGS = 8;
+	private static final double LN2 = Math.log(2);
+
+	private static final ThreadLocal<Limbs.Scratch> SCRATCH = new ThreadLocal<>();
+	private static final ConcurrentMap<Integer, FixedPoint> PI_CACHE = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Integer, FixedPoint> LN2_CACHE = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Integer, FixedPoint> E_CACHE = new ConcurrentHashMap<>();
+
+	private final int signum;
+	private final int[] mag;
+
+	FixedPoint(int signum, int[] mag) {
+		assert mag.length >= 2;
+		this.signum = Limbs.isZero(mag) ? 0 : signum;
+		this.mag = mag;
+	}
+
+	public static FixedPoint zero(int limbs) {
+		return new FixedPoint(0, new int[limbs]);
+	}
+
+	public static FixedPoint valueOf(long v, int limbs) {
+		long abs = Math.abs(v);
+		if ((abs >>> 32) != 0)
+			return saturated(Long.signum(v), limbs);
+		int[] mag = new int[limbs];
+		mag[limbs - 1] = (int) abs;
+		return new FixedPoint(Long.signum(v), mag);
+	}
+
+	// Orbits reaching NaN or an infinity have escaped: they saturate too
+	public static FixedPoint valueOf(double v, int limbs) {
+		if (!Double.isFinite(v))
+			return saturated(Double.isNaN(v) ? 1 : (int) Math.signum(v), limbs);
+		return valueOf(new BigDecimal(v), limbs);
+	}
+
+	public static FixedPoint valueOf(String s, int limbs) {
+		return valueOf(new BigDecimal(s), limbs);
+	}
+
+	public static FixedPoint valueOf(BigDecimal v, int limbs) {
+		BigInteger scaled = v.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(fractionBits(limbs))))
+				.setScale(0, RoundingMode.HALF_EVEN)
+				.unscaledValue();
+		return fromBigInteger(scaled, limbs);
+	}
+
+	// Number of limbs giving at least the requested decimal digits after the point
+	public static int limbsFor(int digits) {
+		return 1 + Math.max(1, (int) Math.ceil(digits * Math.log(10) / LN2 / 32));
+	}
+
+	public static FixedPoint pi(int limbs) {
+		return PI_CACHE.computeIfAbsent(limbs, FixedPoint::computePi);
+	}
+
+	public static FixedPoint ln2(int limbs) {
+		return LN2_CACHE.computeIfAbsent(limbs, FixedPoint::computeLn2);
+	}
+
+	public static FixedPoint e(int limbs) {
+		return E_CACHE.computeIfAbsent(limbs, l -> valueOf(1, l).exp());
+	}
+
+	public int limbs() {
+		return mag.length;
+	}
+
+	public int signum() {
+		return signum;
+	}
+
+	int[] magnitude() {
+		return mag;
+	}
+
+	public FixedPoint resize(int limbs) {
+		int n = mag.length;
+		if (limbs == n)
+			return this;
+		int[] rv = new int[limbs];
+		if (limbs > n) {
+			System.arraycopy(mag, 0, rv, limbs - n, n);
+		} else {
+			long carry = mag[n - limbs - 1] >>> 31;
+			for (int i = 0; i < limbs; i++) {
+				carry += mag[n - limbs + i] & Limbs.MASK;
+				rv[i] = (int) carry;
+				carry >>>= 32;
+			}
+			if (carry != 0)
+				Limbs.saturate(rv);
+		}
+		return new FixedPoint(signum, rv);
+	}
+
+	public FixedPoint add(FixedPoint b) {
+		return add(b.signum, b.mag);
+	}
+
+	public FixedPoint subtract(FixedPoint b) {
+		return add(-b.signum, b.mag);
+	}
+
+	private FixedPoint add(int bSignum, int[] bMag) {
+		assert bMag.length == mag.length;
+		if (bSignum == 0)
+			return this;
+		if (signum == 0)
+			return new FixedPoint(bSignum, bMag);
+
+		int[] rv = new int[mag.length];
+		if (signum == bSignum) {
+			if (Limbs.add(mag, bMag, rv) != 0)
+				Limbs.saturate(rv);
+			return new FixedPoint(signum, rv);
+		}
+		int cmp = Limbs.compare(mag, bMag);
+		if (cmp >= 0) {
+			Limbs.subtract(mag, bMag, rv);
+			return new FixedPoint(signum, rv);
+		}
+		Limbs.subtract(bMag, mag, rv);
+		return new FixedPoint(bSignum, rv);
+	}
+
+	public FixedPoint multiply(FixedPoint b) {
+		assert b.mag.length == mag.length;
+		if (signum == 0 || b.signum == 0)
+			return zero(mag.length);
+		int[] rv = new int[mag.length];
+		scratch(mag.length).multiply(mag, b.mag, rv);
+		return new FixedPoint(signum * b.signum, rv);
+	}
+
+	public FixedPoint square() {
+		if (signum == 0)
+			return this;
+		int[] rv = new int[mag.length];
+		scratch(mag.length).square(mag, rv);
+		return new FixedPoint(1, rv);
+	}
+
+	public FixedPoint multiply(int k) {
+		if (signum == 0 || k == 0)
+			return zero(mag.length);
+		long factor = Math.abs((long) k);
+		int[] rv = new int[mag.length];
+		long carry = 0;
+		for (int i = 0; i < mag.length; i++) {
+			carry += (mag[i] & Limbs.MASK) * factor;
+			rv[i] = (int) carry;
+			carry >>>= 32;
+		}
+		if (carry != 0)
+			Limbs.saturate(rv);
+		return new FixedPoint(signum * Integer.signum(k), rv);
+	}
+
+	public FixedPoint divide(int k) {
+		if (k == 0)
+			throw new ArithmeticException("Division by zero");
+		long divisor = Math.abs((long) k);
+		int[] rv = new int[mag.length];
+		long remainder = 0;
+		for (int i = mag.length - 1; i >= 0; i--) {
+			long dividend = (remainder << 32) | (mag[i] & Limbs.MASK);
+			rv[i] = (int) (dividend / divisor);
+			remainder = dividend % divisor;
+		}
+		return new FixedPoint(signum * Integer.signum(k), rv);
+	}
+
+	// Division and square root are rare outside of initialization: BigInteger
+	// does them well enough
+	public FixedPoint divide(FixedPoint b) {
+		if (b.signum == 0)
+			throw new ArithmeticException("Division by zero");
+		BigInteger divisor = b.magnitudeValue();
+		BigInteger quotient = magnitudeValue().shiftLeft(fractionBits(mag.length))
+				.add(divisor.shiftRight(1))
+				.divide(divisor);
+		return fromBigInteger(signum * b.signum < 0 ? quotient.negate() : quotient, mag.length);
+	}
+
+	public FixedPoint reciprocal() {
+		return valueOf(1, mag.length).divide(this);
+	}
+
+	public FixedPoint sqrt() {
+		if (signum < 0)
+			throw new ArithmeticException("Square root of negative number");
+		return fromBigInteger(isqrt(magnitudeValue().shiftLeft(fractionBits(mag.length))), mag.length);
+	}
+
+	// Both operands are scaled so that the larger is in [1, 2): squaring tiny
+	// values would otherwise flush them to zero
+	public FixedPoint hypot(FixedPoint b) {
+		if (b.signum == 0)
+			return abs();
+		if (signum == 0)
+			return b.abs();
+
+		int n = mag.length;
+		int w = n + GUARD_LIMBS;
+		int e = Math.max(Limbs.bitLength(mag), Limbs.bitLength(b.mag)) - 1 - fractionBits(n);
+		FixedPoint x = resize(w).scalb(-e);
+		FixedPoint y = b.resize(w).scalb(-e);
+		return x.square().add(y.square()).sqrt().scalb(e).resize(n);
+	}
+
+	public FixedPoint negate() {
+		return new FixedPoint(-signum, mag);
+	}
+
+	public FixedPoint abs() {
+		return signum < 0 ? negate() : this;
+	}
+
+	// this * 2^n, truncating the bits shifted out
+	public FixedPoint scalb(int n) {
+		BigInteger v = magnitudeValue();
+		v = n >= 0 ? v.shiftLeft(n) : v.shiftRight(-n);
+		return fromBigInteger(signum < 0 ? v.negate() : v, mag.length);
+	}
+
+	public FixedPoint pow(int n) {
+		if (n < 0)
+			return reciprocal().pow(-n);
+		FixedPoint rv = valueOf(1, mag.length);
+		FixedPoint base = this;
+		while (n != 0) {
+			if ((n & 1) != 0)
+				rv = rv.multiply(base);
+			n >>>= 1;
+			if (n != 0)
+				base = base.square();
+		}
+		return rv;
+	}
+
+	public FixedPoint pow(FixedPoint r) {
+		if (signum == 0)
+			return this;
+		return ln().multiply(r).exp();
+	}
+
+	public FixedPoint exp() {
+		int n = mag.length;
+		if (signum == 0)
+			return valueOf(1, n);
+		double d = doubleValue();
+		if (d >= 32 * LN2)
+			return saturated(1, n);
+		if (d < -fractionBits(n) * LN2 - 1)
+			return zero(n);
+
+		// exp(x) = 2^k * exp(r)^(2^EXP_HALVINGS), with r = (x - k ln2) / 2^EXP_HALVINGS
+		int w = n + GUARD_LIMBS;
+		int k = (int) Math.round(d / LN2);
+		FixedPoint r = resize(w).subtract(ln2(w).multiply(k)).scalb(-EXP_HALVINGS);
+		FixedPoint sum = valueOf(1, w);
+		FixedPoint term = sum;
+		for (int i = 1; term.signum != 0; i++) {
+			term = term.multiply(r).divide(i);
+			sum = sum.add(term);
+		}
+		for (int i = 0; i < EXP_HALVINGS; i++) {
+			sum = sum.square();
+		}
+		return sum.scalb(k).resize(n);
+	}
+
+	public FixedPoint ln() {
+		if (signum <= 0)
+			throw new ArithmeticException("Logarithm of non-positive number");
+
+		// ln(x) = ln(m) + e ln2 with m in [1, 2). Halley's iteration on ln(m)
+		// triples the correct bits of the double estimate at each step
+		int n = mag.length;
+		int w = n + GUARD_LIMBS;
+		int e = Limbs.bitLength(mag) - 1 - fractionBits(n);
+		FixedPoint m = resize(w).scalb(-e);
+		FixedPoint y = valueOf(Math.log(m.doubleValue()), w);
+		for (int bits = 50; bits < 2 * 32 * w; bits *= 3) {
+			FixedPoint expY = y.exp();
+			y = y.add(m.subtract(expY).scalb(1).divide(m.add(expY)));
+		}
+		return y.add(ln2(w).multiply(e)).resize(n);
+	}
+
+	public FixedPoint sin() {
+		return sinCos()[0];
+	}
+
+	public FixedPoint cos() {
+		return sinCos()[1];
+	}
+
+	// { sin(this), cos(this) }
+	public FixedPoint[] sinCos() {
+		int n = mag.length;
+		int w = n + GUARD_LIMBS;
+		long k = Math.round(doubleValue() / (Math.PI / 2));
+		FixedPoint r = resize(w).subtract(pi(w).scalb(-1).multiply(valueOf(k, w)));
+		FixedPoint minusR2 = r.square().negate();
+		FixedPoint sin = r;
+		FixedPoint cos = valueOf(1, w);
+		FixedPoint sinTerm = sin;
+		FixedPoint cosTerm = cos;
+		for (int i = 1; sinTerm.signum != 0 || cosTerm.signum != 0; i++) {
+			cosTerm = cosTerm.multiply(minusR2).divide((2 * i - 1) * (2 * i));
+			sinTerm = sinTerm.multiply(minusR2).divide((2 * i) * (2 * i + 1));
+			cos = cos.add(cosTerm);
+			sin = sin.add(sinTerm);
+		}
+
+		sin = sin.resize(n);
+		cos = cos.resize(n);
+		switch ((int) (k & 3)) {
+		case 0: return new FixedPoint[] { sin, cos };
+		case 1: return new FixedPoint[] { cos, sin.negate() };
+		case 2: return new FixedPoint[] { sin.negate(), cos.negate() };
+		case 3: return new FixedPoint[] { cos.negate(), sin };
+		default: throw new AssertionError(k);
+		}
+	}
+
+	public FixedPoint atan() {
+		if (signum == 0)
+			return this;
+
+		// Two halvings of the angle, atan(x) = 2 atan(x / (1 + sqrt(1 + x^2))),
+		// bring |x| under tan(pi/16) where the series converges quickly
+		int n = mag.length;
+		int w = n + GUARD_LIMBS;
+		FixedPoint one = valueOf(1, w);
+		FixedPoint x = resize(w).abs();
+		boolean inverted = x.compareTo(one) > 0;
+		if (inverted)
+			x = x.reciprocal();
+		for (int i = 0; i < 2; i++) {
+			x = x.divide(one.add(one.add(x.square()).sqrt()));
+		}
+		FixedPoint sum = atanSeries(x).scalb(2);
+		if (inverted)
+			sum = pi(w).scalb(-1).subtract(sum);
+		return (signum < 0 ? sum.negate() : sum).resize(n);
+	}
+
+	public static FixedPoint atan2(FixedPoint y, FixedPoint x) {
+		int n = x.mag.length;
+		if (x.signum == 0 && y.signum == 0)
+			return zero(n);
+
+		FixedPoint pi = pi(n);
+		if (Limbs.compare(y.mag, x.mag) <= 0) {
+			FixedPoint a = y.divide(x).atan();
+			if (x.signum < 0)
+				a = y.signum >= 0 ? a.add(pi) : a.subtract(pi);
+			return a;
+		}
+		FixedPoint a = pi.scalb(-1).subtract(x.divide(y).atan());
+		return y.signum < 0 ? a.subtract(pi) : a;
+	}
+
+	// Rounded from the 63 bits below the leading one, wherever it is
+	public double doubleValue() {
+		int e = Limbs.bitLength(mag);
+		if (e == 0)
+			return 0;
+		double rv = Math.scalb((double) Limbs.leadingBits(mag, e), e - 63 - fractionBits(mag.length));
+		return signum < 0 ? -rv : rv;
+	}
+
+	// Exponent of the leading one, as Math.getExponent would give it
+	public int getExponent() {
+		int e = Limbs.bitLength(mag);
+		return e == 0 ? Double.MIN_EXPONENT - 1 : e - 1 - fractionBits(mag.length);
+	}
+
+	public int intValue() {
+		int integerPart = mag[mag.length - 1] & Integer.MAX_VALUE;
+		return signum < 0 ? -integerPart : integerPart;
+	}
+
+	public BigDecimal bigDecimalValue() {
+		int f = fractionBits(mag.length);
+		BigInteger v = magnitudeValue().multiply(BigInteger.valueOf(5).pow(f));
+		return new BigDecimal(signum < 0 ? v.negate() : v, f);
+	}
+
+	@Override
+	public int compareTo(FixedPoint b) {
+		if (signum != b.signum)
+			return Integer.compare(signum, b.signum);
+		int cmp = Limbs.compare(mag, b.mag);
+		return signum < 0 ? -cmp : cmp;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+
+		if (o instanceof FixedPoint) {
+			FixedPoint b = (FixedPoint) o;
+			return signum == b.signum && Arrays.equals(mag, b.mag);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * signum + Arrays.hashCode(mag);
+	}
+
+	// Rounded to the decimal digits the fraction actually carries
+	@Override
+	public String toString() {
+		int digits = (int) Math.ceil(fractionBits(mag.length) * LN2 / Math.log(10));
+		BigDecimal v = bigDecimalValue();
+		return v.setScale(digits, RoundingMode.HALF_EVEN).round(new MathContext(digits + 10)).stripTrailingZeros().toString();
+	}
+
+	private BigInteger magnitudeValue() {
+		int n = mag.length;
+		byte[] bytes = new byte[4 * n];
+		for (int i = 0; i < n; i++) {
+			int limb = mag[i];
+			int p = 4 * (n - 1 - i);
+			bytes[p] = (byte) (limb >>> 24);
+			bytes[p + 1] = (byte) (limb >>> 16);
+			bytes[p + 2] = (byte) (limb >>> 8);
+			bytes[p + 3] = (byte) limb;
+		}
+		return new BigInteger(1, bytes);
+	}
+
+	private static FixedPoint fromBigInteger(BigInteger v, int limbs) {
+		BigInteger abs = v.abs();
+		if (abs.bitLength() > 32 * limbs)
+			return saturated(v.signum(), limbs);
+		byte[] bytes = abs.toByteArray();
+		int[] mag = new int[limbs];
+		for (int i = 0; i < bytes.length; i++) {
+			int b = bytes[bytes.length - 1 - i] & 0xff;
+			if (b != 0)
+				mag[i / 4] |= b << (8 * (i % 4));
+		}
+		return new FixedPoint(v.signum(), mag);
+	}
+
+	private static FixedPoint saturated(int signum, int limbs) {
+		int[] mag = new int[limbs];
+		Limbs.saturate(mag);
+		return new FixedPoint(signum, mag);
+	}
+
+	private static BigInteger isqrt(BigInteger v) {
+		if (v.signum() == 0)
+			return v;
+		BigInteger x = BigInteger.ONE.shiftLeft((v.bitLength() + 1) / 2);
+		while (true) {
+			BigInteger y = x.add(v.divide(x)).shiftRight(1);
+			if (y.compareTo(x) >= 0)
+				return x;
+			x = y;
+		}
+	}
+
+	private static int fractionBits(int limbs) {
+		return 32 * (limbs - 1);
+	}
+
+	static Limbs.Scratch scratch(int limbs) {
+		Limbs.Scratch rv = SCRATCH.get();
+		if (rv == null || rv.capacity < limbs) {
+			rv = new Limbs.Scratch(limbs + GUARD_LIMBS);
+			SCRATCH.set(rv);
+		}
+		return rv;
+	}
+
+	// x - x^3/3 + x^5/5 - ...
+	private static FixedPoint atanSeries(FixedPoint x) {
+		FixedPoint minusX2 = x.square().negate();
+		FixedPoint sum = x;
+		FixedPoint power = x;
+		for (int i = 1; power.signum != 0; i++) {
+			power = power.multiply(minusX2);
+			sum = sum.add(power.divide(2 * i + 1));
+		}
+		return sum;
+	}
+
+	// Machin: pi = 16 atan(1/5) - 4 atan(1/239)
+	private static FixedPoint computePi(int limbs) {
+		int w = limbs + GUARD_LIMBS;
+		FixedPoint one = valueOf(1, w);
+		FixedPoint rv = atanSeries(one.divide(5)).multiply(16)
+				.subtract(atanSeries(one.divide(239)).multiply(4));
+		return rv.resize(limbs);
+	}
+
+	// ln2 = 2 atanh(1/3) = 2 (1/3 + 1/(3 * 3^3) + 1/(5 * 3^5) + ...)
+	private static FixedPoint computeLn2(int limbs) {
+		int w = limbs + GUARD_LIMBS;
+		FixedPoint power = valueOf(1, w).divide(3);
+		FixedPoint sum = power;
+		for (int i = 1; power.signum != 0; i++) {
+			power = power.divide(9);
+			sum = sum.add(power.divide(2 * i + 1));
+		}
+		return sum.scalb(1).resize(limbs);
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import java.util.Arrays;
+
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.MutableComplex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+// Iterates on its own limb arrays and scratch buffers. Producers each take
+// one from NumberFactory.newMutableComplex, so no state is shared between
+// threads and a squareAddInPlace step does not allocate
+final class FixedPointMutableComplex implements MutableComplex {
+
+	private final int[] re;
+	private final int[] im;
+	private int reSignum;
+	private int imSignum;
+
+	// re^2 and im^2 from the last bailout test, reused by the next squaring
+	private final int[] reSquared;
+	private final int[] imSquared;
+	private boolean squaresValid;
+
+	private final int[] t1;
+	private final int[] t2;
+	private final int[] t3;
+	private final int[] t4;
+	private final Limbs.Scratch scratch;
+
+	FixedPointMutableComplex(FixedPoint re, FixedPoint im) {
+		int n = re.limbs();
+		this.re = re.magnitude().clone();
+		this.im = im.magnitude().clone();
+		reSignum = re.signum();
+		imSignum = im.signum();
+		reSquared = new int[n];
+		imSquared = new int[n];
+		t1 = new int[n];
+		t2 = new int[n];
+		t3 = new int[n];
+		t4 = new int[n];
+		scratch = new Limbs.Scratch(n);
+	}
+
+	@Override
+	public MutableComplex set(Complex c) {
+		FixedPoint cRe = re(c), cIm = im(c);
+		squaresValid = false;
+		System.arraycopy(cRe.magnitude(), 0, re, 0, re.length);
+		System.arraycopy(cIm.magnitude(), 0, im, 0, im.length);
+		reSignum = cRe.signum();
+		imSignum = cIm.signum();
+		return this;
+	}
+
+	@Override
+	public MutableComplex set(MutableComplex c) {
+		if (c instanceof FixedPointMutableComplex) {
+			FixedPointMutableComplex m = (FixedPointMutableComplex) c;
+			squaresValid = false;
+			System.arraycopy(m.re, 0, re, 0, re.length);
+			System.arraycopy(m.im, 0, im, 0, im.length);
+			reSignum = m.reSignum;
+			imSignum = m.imSignum;
+			return this;
+		}
+		return set(c.toComplex());
+	}
+
+	@Override
+	public MutableComplex addInPlace(Complex c) {
+		FixedPoint cRe = re(c), cIm = im(c);
+		squaresValid = false;
+		reSignum = add(reSignum, re, cRe.signum(), cRe.magnitude(), re);
+		imSignum = add(imSignum, im, cIm.signum(), cIm.magnitude(), im);
+		return this;
+	}
+
+	@Override
+	public MutableComplex addInPlace(MutableComplex c) {
+		if (c instanceof FixedPointMutableComplex) {
+			FixedPointMutableComplex m = (FixedPointMutableComplex) c;
+			squaresValid = false;
+			reSignum = add(reSignum, re, m.reSignum, m.re, re);
+			imSignum = add(imSignum, im, m.imSignum, m.im, im);
+			return this;
+		}
+		return addInPlace(c.toComplex());
+	}
+
+	@Override
+	public MutableComplex subtractInPlace(Complex c) {
+		FixedPoint cRe = re(c), cIm = im(c);
+		squaresValid = false;
+		reSignum = add(reSignum, re, -cRe.signum(), cRe.magnitude(), re);
+		imSignum = add(imSignum, im, -cIm.signum(), cIm.magnitude(), im);
+		return this;
+	}
+
+	@Override
+	public MutableComplex subtractInPlace(MutableComplex c) {
+		if (c instanceof FixedPointMutableComplex) {
+			FixedPointMutableComplex m = (FixedPointMutableComplex) c;
+			squaresValid = false;
+			reSignum = add(reSignum, re, -m.reSignum, m.re, re);
+			imSignum = add(imSignum, im, -m.imSignum, m.im, im);
+			return this;
+		}
+		return subtractInPlace(c.toComplex());
+	}
+
+	@Override
+	public MutableComplex multiplyInPlace(Complex c) {
+		FixedPoint cRe = re(c), cIm = im(c);
+		return multiply(cRe.signum(), cRe.magnitude(), cIm.signum(), cIm.magnitude());
+	}
+
+	@Override
+	public MutableComplex multiplyInPlace(MutableComplex c) {
+		if (c instanceof FixedPointMutableComplex) {
+			FixedPointMutableComplex m = (FixedPointMutableComplex) c;
+			return multiply(m.reSignum, m.re, m.imSignum, m.im);
+		}
+		return multiplyInPlace(c.toComplex());
+	}
+
+	@Override
+	public MutableComplex squareInPlace() {
+		square();
+		return this;
+	}
+
+	@Override
+	public MutableComplex negateInPlace() {
+		reSignum = -reSignum;
+		imSignum = -imSignum;
+		return this;
+	}
+
+	@Override
+	public MutableComplex fma(Complex a, Complex b) {
+		multiplyInPlace(a);
+		return addInPlace(b);
+	}
+
+	@Override
+	public MutableComplex squareAddInPlace(Complex c) {
+		square();
+		return addInPlace(c);
+	}
+
+	@Override
+	public boolean absSquaredGreaterThan(Real r) {
+		FixedPoint bound = ((AbstractFixedPointComplex) r).getReal();
+		if (bound.signum() < 0)
+			return true;
+		scratch.square(re, reSquared);
+		scratch.square(im, imSquared);
+		squaresValid = true;
+		if (Limbs.add(reSquared, imSquared, t1) != 0)
+			return true;
+		return Limbs.compare(t1, bound.magnitude()) > 0;
+	}
+
+	@Override
+	public Complex toComplex() {
+		return new FixedPointComplex(new FixedPoint(reSignum, re.clone()), new FixedPoint(imSignum, im.clone()));
+	}
+
+	@Override
+	public MutableComplex copy() {
+		return new FixedPointMutableComplex(new FixedPoint(reSignum, re), new FixedPoint(imSignum, im));
+	}
+
+	@Override
+	public String toString() {
+		return toComplex().toString();
+	}
+
+	// (a + ib)(c + id) = (ac - bd) + i(ad + bc)
+	private MutableComplex multiply(int cReSignum, int[] cRe, int cImSignum, int[] cIm) {
+		squaresValid = false;
+		scratch.multiply(re, cRe, t1);
+		scratch.multiply(im, cIm, t2);
+		scratch.multiply(re, cIm, t3);
+		scratch.multiply(im, cRe, t4);
+		int s1 = reSignum * cReSignum;
+		int s2 = imSignum * cImSignum;
+		int s3 = reSignum * cImSignum;
+		int s4 = imSignum * cReSignum;
+		reSignum = add(s1, t1, -s2, t2, re);
+		imSignum = add(s3, t3, s4, t4, im);
+		return this;
+	}
+
+	// (a + ib)^2 = (a^2 - b^2) + i2ab
+	private void square() {
+		if (!squaresValid) {
+			scratch.square(re, reSquared);
+			scratch.square(im, imSquared);
+		}
+		squaresValid = false;
+		scratch.multiply(re, im, t3);
+		if (Limbs.shiftLeftOne(t3) != 0)
+			Limbs.saturate(t3);
+		int s3 = reSignum * imSignum;
+		reSignum = add(reSignum != 0 ? 1 : 0, reSquared, imSignum != 0 ? -1 : 0, imSquared, re);
+		imSignum = Limbs.isZero(t3) ? 0 : s3;
+		System.arraycopy(t3, 0, im, 0, im.length);
+	}
+
+	// (signum, out) = (aSignum, a) + (bSignum, b), out may alias a or b
+	private static int add(int aSignum, int[] a, int bSignum, int[] b, int[] out) {
+		if (bSignum == 0) {
+			if (out != a)
+				System.arraycopy(a, 0, out, 0, out.length);
+			return aSignum;
+		}
+		if (aSignum == 0) {
+			if (out != b)
+				System.arraycopy(b, 0, out, 0, out.length);
+			return bSignum;
+		}
+		if (aSignum == bSignum) {
+			if (Limbs.add(a, b, out) != 0)
+				Limbs.saturate(out);
+			return aSignum;
+		}
+		int cmp = Limbs.compare(a, b);
+		if (cmp > 0) {
+			Limbs.subtract(a, b, out);
+			return aSignum;
+		}
+		if (cmp < 0) {
+			Limbs.subtract(b, a, out);
+			return bSignum;
+		}
+		Arrays.fill(out, 0);
+		return 0;
+	}
+
+	private static FixedPoint re(Complex c) {
+		return ((AbstractFixedPointComplex) c).getReal();
+	}
+
+	private static FixedPoint im(Complex c) {
+		return ((AbstractFixedPointComplex) c).getImag();
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import java.math.BigDecimal;
+
+import org.altervista.mbilotta.julia.Decimal;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+// Arbitrary precision on fixed-point limb arrays: no scale normalization and
+// no allocation per step when iterating through a MutableComplex. Meant for
+// deep zooms that perturbation cannot handle and for reference orbits
+public final class FixedPointNumberFactory implements NumberFactory {
+
+	public static final int DEFAULT_PRECISION = 50;
+
+	// Digits kept beyond those needed to tell adjacent pixels apart
+	private static final int GUARD_DIGITS = 10;
+
+	private int precision;
+	private int limbs;
+
+	public FixedPointNumberFactory() {
+		setPrecision(DEFAULT_PRECISION);
+	}
+
+	public FixedPointNumberFactory(int precision) {
+		setPrecision(precision);
+	}
+
+	// Decimal digits after the point
+	public int getPrecision() {
+		return precision;
+	}
+
+	public void setPrecision(int precision) {
+		this.precision = precision;
+		this.limbs = FixedPoint.limbsFor(precision);
+	}
+
+	public static boolean validatePrecision(int precision) {
+		return precision > 0;
+	}
+
+	public int getLimbs() {
+		return limbs;
+	}
+
+	// Enough fraction digits to resolve pixels of the given size
+	public static int precisionFor(Decimal pixelSize) {
+		BigDecimal size = pixelSize.bigDecimalValue().abs();
+		if (size.signum() == 0)
+			return DEFAULT_PRECISION;
+		int digits = size.scale() - size.precision() + 1;
+		return Math.max(digits, 0) + GUARD_DIGITS;
+	}
+
+	@Override
+	public Real zero() {
+		return new FixedPointReal(FixedPoint.zero(limbs));
+	}
+
+	@Override
+	public Real one() {
+		return valueOf(1);
+	}
+
+	@Override
+	public Real pi() {
+		return new FixedPointReal(FixedPoint.pi(limbs));
+	}
+
+	@Override
+	public Real e() {
+		return new FixedPointReal(FixedPoint.e(limbs));
+	}
+
+	@Override
+	public Complex i() {
+		return valueOf(0, 1);
+	}
+
+	@Override
+	public Real valueOf(int i) {
+		return new FixedPointReal(FixedPoint.valueOf(i, limbs));
+	}
+
+	@Override
+	public Real valueOf(double d) {
+		return new FixedPointReal(FixedPoint.valueOf(d, limbs));
+	}
+
+	@Override
+	public Real valueOf(String s) {
+		return new FixedPointReal(FixedPoint.valueOf(s, limbs));
+	}
+
+	@Override
+	public Real valueOf(Decimal decimal) {
+		return new FixedPointReal(FixedPoint.valueOf(decimal.bigDecimalValue(), limbs));
+	}
+
+	@Override
+	public Complex valueOf(int real, int imag) {
+		return new FixedPointComplex(FixedPoint.valueOf(real, limbs), FixedPoint.valueOf(imag, limbs));
+	}
+
+	@Override
+	public Complex valueOf(Decimal real, Decimal imag) {
+		return new FixedPointComplex(
+				FixedPoint.valueOf(real.bigDecimalValue(), limbs),
+				FixedPoint.valueOf(imag.bigDecimalValue(), limbs));
+	}
+
+	@Override
+	public Complex valueOf(Real real, Real imag) {
+		return new FixedPointComplex(
+				((AbstractFixedPointComplex) real).getReal().resize(limbs),
+				((AbstractFixedPointComplex) imag).getReal().resize(limbs));
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+public final class FixedPointReal extends AbstractFixedPointComplex implements Real {
+
+	public FixedPointReal(FixedPoint v) {
+		super(v);
+	}
+
+	@Override
+	public Real plus(int i) {
+		return new FixedPointReal(getReal().add(re(i)));
+	}
+
+	@Override
+	public Real plus(Real r) {
+		return new FixedPointReal(getReal().add(re(r)));
+	}
+
+	@Override
+	public Real minus(int i) {
+		return new FixedPointReal(getReal().subtract(re(i)));
+	}
+
+	@Override
+	public Real minus(Real r) {
+		return new FixedPointReal(getReal().subtract(re(r)));
+	}
+
+	@Override
+	public Real times(int i) {
+		return new FixedPointReal(getReal().multiply(i));
+	}
+
+	@Override
+	public Real times(Real r) {
+		return new FixedPointReal(getReal().multiply(re(r)));
+	}
+
+	@Override
+	public Real dividedBy(int i) {
+		return new FixedPointReal(getReal().divide(i));
+	}
+
+	@Override
+	public Real dividedBy(Real r) {
+		return new FixedPointReal(getReal().divide(re(r)));
+	}
+
+	@Override
+	public Real toThe(int n) {
+		return new FixedPointReal(getReal().pow(n));
+	}
+
+	@Override
+	public Real scalb(int n) {
+		return new FixedPointReal(getReal().scalb(n));
+	}
+
+	@Override
+	public int getBinaryExponent() {
+		return getReal().getExponent();
+	}
+
+	@Override
+	public Real reciprocal() {
+		return new FixedPointReal(getReal().reciprocal());
+	}
+
+	@Override
+	public Real negate() {
+		return new FixedPointReal(getReal().negate());
+	}
+
+	@Override
+	public Real conj() {
+		return this;
+	}
+
+	@Override
+	public Real exp() {
+		return new FixedPointReal(getReal().exp());
+	}
+
+	@Override
+	public Real sin() {
+		return new FixedPointReal(getReal().sin());
+	}
+
+	@Override
+	public Real cos() {
+		return new FixedPointReal(getReal().cos());
+	}
+
+	@Override
+	public Real tan() {
+		FixedPoint[] sinCos = getReal().sinCos();
+		return new FixedPointReal(sinCos[0].divide(sinCos[1]));
+	}
+
+	@Override
+	public Real atan() {
+		return new FixedPointReal(getReal().atan());
+	}
+
+	@Override
+	public Real square() {
+		return new FixedPointReal(getReal().square());
+	}
+
+	@Override
+	public Complex i() {
+		return new FixedPointComplex(FixedPoint.zero(getLimbs()), getReal());
+	}
+}
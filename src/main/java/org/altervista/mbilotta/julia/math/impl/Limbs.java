@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import java.util.Arrays;
+
+
+// Kernels on unsigned little-endian int[] magnitudes. In an n-limb fixed-point
+// value the top limb holds the integer part and the other n - 1 the fraction
+final class Limbs {
+
+	static final long MASK = 0xffffffffL;
+
+	// Below this many limbs schoolbook beats Karatsuba's extra additions
+	static final int KARATSUBA_THRESHOLD = 32;
+
+	private Limbs() {
+	}
+
+	static boolean isZero(int[] a) {
+		for (int limb : a) {
+			if (limb != 0)
+				return false;
+		}
+		return true;
+	}
+
+	static int compare(int[] a, int[] b) {
+		assert a.length == b.length;
+		for (int i = a.length - 1; i >= 0; i--) {
+			if (a[i] != b[i])
+				return Integer.compareUnsigned(a[i], b[i]);
+		}
+		return 0;
+	}
+
+	// Largest magnitude, the value every overflow saturates to
+	static void saturate(int[] a) {
+		Arrays.fill(a, -1);
+	}
+
+	static int bitLength(int[] a) {
+		for (int i = a.length - 1; i >= 0; i--) {
+			if (a[i] != 0)
+				return 32 * i + 32 - Integer.numberOfLeadingZeros(a[i]);
+		}
+		return 0;
+	}
+
+	// The 63 bits of a below bit e, with any lower nonzero bit ORed into bit 0
+	// so that the conversion to double rounds correctly
+	static long leadingBits(int[] a, int e) {
+		int s = e - 63;
+		long rv = 0;
+		boolean sticky = false;
+		for (int i = a.length - 1; i >= 0; i--) {
+			long limb = a[i] & MASK;
+			int shift = 32 * i - s;
+			if (shift >= 0) {
+				if (shift < 64)
+					rv |= limb << shift;
+			} else if (shift > -32) {
+				rv |= limb >>> -shift;
+				sticky |= (limb & ((1L << -shift) - 1)) != 0;
+			} else {
+				sticky |= limb != 0;
+			}
+		}
+		return sticky ? rv | 1 : rv;
+	}
+
+	// out = a + b, out may alias a or b. Returns the carry out of the top limb
+	static int add(int[] a, int[] b, int[] out) {
+		long carry = 0;
+		for (int i = 0; i < out.length; i++) {
+			carry += (a[i] & MASK) + (b[i] & MASK);
+			out[i] = (int) carry;
+			carry >>>= 32;
+		}
+		return (int) carry;
+	}
+
+	// out = a - b with a >= b, out may alias a or b
+	static void subtract(int[] a, int[] b, int[] out) {
+		long borrow = 0;
+		for (int i = 0; i < out.length; i++) {
+			long d = (a[i] & MASK) - (b[i] & MASK) - borrow;
+			out[i] = (int) d;
+			borrow = d >>> 63;
+		}
+		assert borrow == 0;
+	}
+
+	// a <<= 1. Returns the bit shifted out
+	static int shiftLeftOne(int[] a) {
+		int carry = 0;
+		for (int i = 0; i < a.length; i++) {
+			int limb = a[i];
+			a[i] = (limb << 1) | carry;
+			carry = limb >>> 31;
+		}
+		return carry;
+	}
+
+	// out[o, o + 2n) = a[ao, ao + n) * b[bo, bo + n). The workspace must hold
+	// workspaceLength(n) limbs from wo on
+	static void multiply(int[] a, int ao, int[] b, int bo, int n, int[] out, int o, int[] ws, int wo) {
+		if (n < KARATSUBA_THRESHOLD) {
+			Arrays.fill(out, o, o + 2 * n, 0);
+			multiplySchoolbook(a, ao, b, bo, n, out, o);
+			return;
+		}
+
+		int h = (n + 1) / 2;
+		int l = n - h;
+		int sa = wo;
+		int sb = sa + h + 1;
+		int z1 = sb + h + 1;
+		int next = z1 + 2 * (h + 1);
+		addHalves(a, ao, h, l, ws, sa);
+		addHalves(b, bo, h, l, ws, sb);
+		multiply(a, ao, b, bo, h, out, o, ws, next);
+		multiply(a, ao + h, b, bo + h, l, out, o + 2 * h, ws, next);
+		multiply(ws, sa, ws, sb, h + 1, ws, z1, ws, next);
+		combine(out, o, h, l, ws, z1);
+	}
+
+	static void square(int[] a, int ao, int n, int[] out, int o, int[] ws, int wo) {
+		if (n < KARATSUBA_THRESHOLD) {
+			Arrays.fill(out, o, o + 2 * n, 0);
+			squareSchoolbook(a, ao, n, out, o);
+			return;
+		}
+
+		int h = (n + 1) / 2;
+		int l = n - h;
+		int sa = wo;
+		int z1 = sa + 2 * (h + 1);
+		int next = z1 + 2 * (h + 1);
+		addHalves(a, ao, h, l, ws, sa);
+		square(a, ao, h, out, o, ws, next);
+		square(a, ao + h, l, out, o + 2 * h, ws, next);
+		square(ws, sa, h + 1, ws, z1, ws, next);
+		combine(out, o, h, l, ws, z1);
+	}
+
+	static int workspaceLength(int n) {
+		if (n < KARATSUBA_THRESHOLD)
+			return 0;
+		int h = (n + 1) / 2;
+		return 4 * (h + 1) + workspaceLength(h + 1);
+	}
+
+	private static void multiplySchoolbook(int[] a, int ao, int[] b, int bo, int n, int[] out, int o) {
+		for (int i = 0; i < n; i++) {
+			long ai = a[ao + i] & MASK;
+			long carry = 0;
+			for (int j = 0; j < n; j++) {
+				long t = ai * (b[bo + j] & MASK) + (out[o + i + j] & MASK) + carry;
+				out[o + i + j] = (int) t;
+				carry = t >>> 32;
+			}
+			out[o + i + n] = (int) carry;
+		}
+	}
+
+	// Cross products once, doubled with a shift, then the squares on the diagonal
+	private static void squareSchoolbook(int[] a, int ao, int n, int[] out, int o) {
+		for (int i = 0; i < n; i++) {
+			long ai = a[ao + i] & MASK;
+			long carry = 0;
+			for (int j = i + 1; j < n; j++) {
+				long t = ai * (a[ao + j] & MASK) + (out[o + i + j] & MASK) + carry;
+				out[o + i + j] = (int) t;
+				carry = t >>> 32;
+			}
+			out[o + i + n] = (int) carry;
+		}
+
+		int shifted = 0;
+		for (int i = o; i < o + 2 * n; i++) {
+			int limb = out[i];
+			out[i] = (limb << 1) | shifted;
+			shifted = limb >>> 31;
+		}
+
+		long carry = 0;
+		for (int i = 0; i < n; i++) {
+			long ai = a[ao + i] & MASK;
+			long t = ai * ai + (out[o + 2 * i] & MASK) + carry;
+			out[o + 2 * i] = (int) t;
+			t = (t >>> 32) + (out[o + 2 * i + 1] & MASK);
+			out[o + 2 * i + 1] = (int) t;
+			carry = t >>> 32;
+		}
+		assert carry == 0;
+	}
+
+	// ws[s, s + h + 1) = a[ao, ao + h) + a[ao + h, ao + h + l)
+	private static void addHalves(int[] a, int ao, int h, int l, int[] ws, int s) {
+		long carry = 0;
+		for (int i = 0; i < h; i++) {
+			carry += a[ao + i] & MASK;
+			if (i < l)
+				carry += a[ao + h + i] & MASK;
+			ws[s + i] = (int) carry;
+			carry >>>= 32;
+		}
+		ws[s + h] = (int) carry;
+	}
+
+	// out holds z0 in its low 2h limbs and z2 in its high 2l. Adds
+	// (z1 - z0 - z2) * B^h, with z1 at ws[z1, z1 + 2h + 2)
+	private static void combine(int[] out, int o, int h, int l, int[] ws, int z1) {
+		int z1Length = 2 * (h + 1);
+		subtractFrom(ws, z1, z1Length, out, o, 2 * h);
+		subtractFrom(ws, z1, z1Length, out, o + 2 * h, 2 * l);
+
+		int end = o + 2 * (h + l);
+		long carry = 0;
+		int i = 0;
+		for (; i < z1Length && o + h + i < end; i++) {
+			carry += (out[o + h + i] & MASK) + (ws[z1 + i] & MASK);
+			out[o + h + i] = (int) carry;
+			carry >>>= 32;
+		}
+		for (; carry != 0 && o + h + i < end; i++) {
+			carry += out[o + h + i] & MASK;
+			out[o + h + i] = (int) carry;
+			carry >>>= 32;
+		}
+		assert carry == 0;
+	}
+
+	// ws[s, s + sLength) -= b[bo, bo + bLength)
+	private static void subtractFrom(int[] ws, int s, int sLength, int[] b, int bo, int bLength) {
+		long borrow = 0;
+		int i = 0;
+		for (; i < bLength; i++) {
+			long d = (ws[s + i] & MASK) - (b[bo + i] & MASK) - borrow;
+			ws[s + i] = (int) d;
+			borrow = d >>> 63;
+		}
+		for (; borrow != 0 && i < sLength; i++) {
+			long d = (ws[s + i] & MASK) - borrow;
+			ws[s + i] = (int) d;
+			borrow = d >>> 63;
+		}
+		assert borrow == 0;
+	}
+
+	// Product buffer and Karatsuba workspace for n-limb operands. Each
+	// producer thread keeps its own, so multiplications never allocate
+	static final class Scratch {
+
+		final int capacity;
+		final int[] product;
+		final int[] workspace;
+
+		Scratch(int capacity) {
+			this.capacity = capacity;
+			product = new int[2 * capacity];
+			workspace = new int[workspaceLength(capacity)];
+		}
+
+		// out = a * b rounded back to n limbs, out may alias a or b
+		void multiply(int[] a, int[] b, int[] out) {
+			int n = out.length;
+			assert n <= capacity;
+			Limbs.multiply(a, 0, b, 0, n, product, 0, workspace, 0);
+			round(n, out);
+		}
+
+		void square(int[] a, int[] out) {
+			int n = out.length;
+			assert n <= capacity;
+			Limbs.square(a, 0, n, product, 0, workspace, 0);
+			round(n, out);
+		}
+
+		private void round(int n, int[] out) {
+			long carry = product[n - 2] >>> 31;
+			for (int i = 0; i < n; i++) {
+				carry += product[n - 1 + i] & MASK;
+				out[i] = (int) carry;
+				carry >>>= 32;
+			}
+			if (carry != 0 || product[2 * n - 1] != 0)
+				saturate(out);
+		}
+	}
+}
@@ -34,13 +34,15 @@ import java.awt.Desktop;
 import java.awt.Dimension;
 import java.awt.Insets;
 import java.awt.KeyboardFocusManager;
+import java.awt.Point;
 import java.awt.Transparency;
 import java.awt.Window;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
-import java.awt.event.WindowEvent;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
@@ -109,7 +111,8 @@ import org.altervista.mbilotta.julia.Representation;
 import org.altervista.mbilotta.julia.Utilities;
 import org.altervista.mbilotta.julia.math.Complex;
 import org.altervista.mbilotta.julia.math.CoordinateTransform;
-import org.altervista.mbilotta.julia.math.Real;
+import org.altervista.mbilotta.julia.math.Real;
+import org.altervista.mbilotta.julia.program.JuliaExecutorService.Lane;
 import org.altervista.mbilotta.julia.program.cli.MainCli;
 import org.altervista.mbilotta.julia.program.gui.AboutPane;
 import org.altervista.mbilotta.julia.program.gui.ControlWindow;
@@ -234,6 +237,11 @@ public class Application {
 	private IntermediateImage iimg;
 
 	private boolean periodicRefreshEnabled = true;
+	private boolean autoPrecisionEnabled = false;
+	private boolean prefetchEnabled = false;
+	private boolean navigationEnabled = false;
+	private PrecisionSelector precisionSelector;
+	private PrecisionSelector.Choice precisionChoice;
 	private boolean halted = false;
 	private PreferencesPane preferencesPane;
 	private MainWindow mainWindow;
@@ -271,10 +279,31 @@ public class Application {
 	private final Profile profile;
 	private LockedFile preferencesFile;
 	private final JuliaExecutorService executorService;
+	private final Prefetcher prefetcher;
 	private List<Future<?>> futures;
 	private List<Runnable> resumables;
 	private Timer refreshTimer;
 
+	// Prefetching starts once the pointer and the selection have been still for this long
+	private static final int PREFETCH_DELAY = 400;
+	private Timer prefetchTimer;
+	private ImageSelection pointerSelection;
+
+	// The view being navigated to is committed once input has stopped for this long
+	private static final int NAVIGATION_DELAY = 300;
+	private Timer navigationTimer;
+	private final Navigator navigator;
+	// View being navigated to at the size of the current image, null when not navigating
+	private CoordinateTransform navigationTransform;
+	private NumberFactory navigationNumberFactory;
+	private boolean haltedForNavigation;
+	private long productionStart;
+
+	// Pointer and viewport moves reschedule the production at most this often
+	private static final int FOCUS_DELAY = 100;
+	private Timer focusTimer;
+	private Production production;
+
 	private class PeriodicRefreshPerformer implements ActionListener {
 		public void actionPerformed(ActionEvent e) {
 			refresh();
@@ -288,6 +317,9 @@ public class Application {
 	private ResumeAction resumeAction;
 	private RefreshAction refreshAction;
 	private RefreshPeriodicallyAction refreshPeriodicallyAction;
+	private AutoPrecisionAction autoPrecisionAction;
+	private PrefetchAction prefetchAction;
+	private NavigateAction navigateAction;
 	private EditPreferencesAction editPreferencesAction;
 	private EditSelectionColorAction editSelectionColorAction;
 	private HideAllAction hideAllAction;
@@ -420,6 +452,45 @@ public class Application {
 		}
 	}
 
+	private class AutoPrecisionAction extends AbstractAction {
+		public AutoPrecisionAction() {
+			putValue(NAME, "Automatic precision");
+			putValue(SHORT_DESCRIPTION, "Choose the number factory from the zoom level");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_P);
+			putValue(SELECTED_KEY, autoPrecisionEnabled);
+		}
+
+		public void actionPerformed(ActionEvent e) {
+			setAutoPrecisionEnabled((Boolean) getValue(SELECTED_KEY));
+		}
+	}
+
+	private class PrefetchAction extends AbstractAction {
+		public PrefetchAction() {
+			putValue(NAME, "Prefetch zoom targets");
+			putValue(SHORT_DESCRIPTION, "Render the areas under the selection and the pointer while idle");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_T);
+			putValue(SELECTED_KEY, prefetchEnabled);
+		}
+
+		public void actionPerformed(ActionEvent e) {
+			setPrefetchEnabled((Boolean) getValue(SELECTED_KEY));
+		}
+	}
+
+	private class NavigateAction extends AbstractAction {
+		public NavigateAction() {
+			putValue(NAME, "Navigate");
+			putValue(SHORT_DESCRIPTION, "Pan by dragging and zoom with the wheel, at reduced resolution until input stops");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_N);
+			putValue(SELECTED_KEY, navigationEnabled);
+		}
+
+		public void actionPerformed(ActionEvent e) {
+			setNavigationEnabled((Boolean) getValue(SELECTED_KEY));
+		}
+	}
+
 	private class EditSelectionColorAction extends AbstractAction implements ChangeListener {
 
 		private JDialog dialog;
@@ -622,7 +693,7 @@ public class Application {
 					}
 				};
 
-				executorService.execute(productionLoader);
+				executorService.execute(productionLoader, Lane.MAINTENANCE);
 				productionLoader.block(mainWindow, "Reading from " + file + ":", "number factory...");
 			}
 		}
@@ -649,7 +720,7 @@ public class Application {
 				File file = fc.getSelectedFile();
 				FileFilter selectedFilter = fc.getFileFilter();
 				JuliaImageWriter jimWriter = new JuliaImageWriter(file, currentImage, selectedFilter == jimWithoutIntermDataFilter ? null : iimg);
-				executorService.execute(jimWriter);
+				executorService.execute(jimWriter, Lane.MAINTENANCE);
 				jimWriter.block(mainWindow, "Writing to " + file + ":", "number factory...");
 			}
 		}
@@ -791,7 +862,7 @@ public class Application {
 							imageWriter,
 							imageWriteParam,
 							mainWindow);
-					executorService.execute(exportWorker);
+					executorService.execute(exportWorker, Lane.BACKGROUND);
 					exportWorker.block(mainWindow, "Writing to " + file + "...", null);
 		
 				} else if (e.getActionCommand() == JFileChooser.CANCEL_SELECTION) {
@@ -916,7 +987,7 @@ public class Application {
 
 			final Printer printer = createInstallationPrinter(parent);
 			Profile.PluginInstaller installer = profile.new GuiPluginInstaller(file, printer);
-			executorService.submitAndObserve(installer, new ExecutionObserver() {
+			executorService.submitAndObserve(Lane.MAINTENANCE, installer, new ExecutionObserver() {
 				@Override
 				public void executionCancelled(Runnable target) {
 					printer.close();
@@ -936,6 +1007,7 @@ public class Application {
 
 	Application(Loader loader) {
 		numberFactories = loader.getAvailableNumberFactories();
+		precisionSelector = new PrecisionSelector(numberFactories);
 		formulas = loader.getAvailableFormulas();
 		representations = loader.getAvailableRepresentations();
 		aliases = loader.getAvailableAliases();
@@ -943,6 +1015,8 @@ public class Application {
 		preferences = loader.getPreferences();
 		preferencesFile = loader.getPreferencesFile();
 		executorService = loader.getExecutorService();
+		prefetcher = new Prefetcher(executorService);
+		navigator = new Navigator(executorService);
 	}
 
 	public void preview(ControlWindow cw, Parameter<?> parameter, Object value) {
@@ -1241,6 +1315,287 @@ public class Application {
 		return periodicRefreshEnabled;
 	}
 
+	public void setAutoPrecisionEnabled(boolean flag) {
+		if (flag != autoPrecisionEnabled) {
+			autoPrecisionEnabled = flag;
+			if (currentImage != null) {
+				recompute(false);
+			}
+		}
+	}
+
+	public boolean isAutoPrecisionEnabled() {
+		return autoPrecisionEnabled;
+	}
+
+	public void setPrefetchEnabled(boolean flag) {
+		if (flag != prefetchEnabled) {
+			prefetchEnabled = flag;
+			if (flag) {
+				schedulePrefetch();
+			} else {
+				prefetchTimer.stop();
+				prefetcher.clear();
+			}
+		}
+	}
+
+	public boolean isPrefetchEnabled() {
+		return prefetchEnabled;
+	}
+
+	// The selection a click would create at the pointer, null when the pointer
+	// is outside the image
+	public void pointerMoved(ImageSelection selection) {
+		pointerSelection = selection;
+		schedulePrefetch();
+		scheduleFocusUpdate();
+	}
+
+	public void viewportChanged() {
+		scheduleFocusUpdate();
+	}
+
+	private void scheduleFocusUpdate() {
+		if (focusTimer != null && !focusTimer.isRunning()) {
+			focusTimer.start();
+		}
+	}
+
+	// The production in progress computes what is in view around the pointer
+	// first
+	private void updateFocus() {
+		if (production != null && productionObserver != null) {
+			production.setFocus(mainWindow.getVisibleRegion(), getFocus());
+		}
+	}
+
+	private Point getFocus() {
+		return pointerSelection != null ?
+				new Point(pointerSelection.getCenterX(), pointerSelection.getCenterY()) :
+				null;
+	}
+
+	public void selectionChanged() {
+		schedulePrefetch();
+	}
+
+	private void schedulePrefetch() {
+		if (prefetchEnabled) {
+			prefetchTimer.restart();
+		}
+	}
+
+	// Renders the images the selection and a click at the pointer would zoom
+	// into, at reduced resolution and on the background lane
+	private void prefetch() {
+		if (!prefetchEnabled || currentImage == null || finishedCount < futures.size())
+			return;
+
+		int imgWidth = iimg.getWidth();
+		int imgHeight = iimg.getHeight();
+		PluginInstance<NumberFactoryPlugin> numberFactoryInstance = getNumberFactoryInstance();
+		List<Image> images = new ArrayList<>(2);
+		try {
+			NumberFactory numberFactory = (NumberFactory) numberFactoryInstance.create();
+			if (autoPrecisionEnabled) {
+				numberFactory = selectPrecision(numberFactoryInstance, numberFactory, currentImage, imgWidth, imgHeight).getNumberFactory();
+			}
+			ImageSelection selection = mainWindow.getSelection();
+			for (ImageSelection target : new ImageSelection[] { selection, pointerSelection }) {
+				if (target != null && (target == selection || !target.equals(selection))) {
+					Image image = new Image(currentImage);
+					image.rectangle = createRectangle(
+							createZoomedCoordinateTransform(target, imgWidth, imgHeight, image.forceEqualScales, numberFactory),
+							imgWidth, imgHeight);
+					images.add(image);
+				}
+			}
+		} catch (ReflectiveOperationException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		prefetcher.cancelAllBut(images);
+		int prefetchWidth = Math.max(1, imgWidth / Prefetcher.REDUCTION);
+		int prefetchHeight = Math.max(1, imgHeight / Prefetcher.REDUCTION);
+		for (Image image : images) {
+			if (prefetcher.contains(image))
+				continue;
+
+			Representation[] representationRv = new Representation[1];
+			Production production = createProduction(image, prefetchWidth, prefetchHeight, 1, representationRv);
+			if (production == null)
+				return;
+
+			prefetcher.prefetch(image, representationRv[0], production);
+		}
+	}
+
+	// Production of image at any size, with plugins of its own. Null if they
+	// could not be instantiated
+	private Production createProduction(Image image, int imgWidth, int imgHeight, int numOfProducers,
+			Representation[] representationRv) {
+		PluginInstance<NumberFactoryPlugin> numberFactoryInstance = image.getNumberFactoryInstance();
+		NumberFactory numberFactory;
+		Formula formula;
+		Representation representation;
+		Object referenceOrbitKey = numberFactoryInstance;
+		try {
+			numberFactory = (NumberFactory) numberFactoryInstance.create();
+			if (autoPrecisionEnabled) {
+				PrecisionSelector.Choice choice = selectPrecision(numberFactoryInstance, numberFactory, image, imgWidth, imgHeight);
+				numberFactory = choice.getNumberFactory();
+				referenceOrbitKey = choice;
+			}
+			formula = (Formula) image.getFormulaInstance().create(numberFactory);
+			representation = (Representation) image.getRepresentationInstance().create(numberFactory);
+		} catch (ReflectiveOperationException e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		CoordinateTransform coordinateTransform = createCoordinateTransform(imgWidth, imgHeight, image, numberFactory);
+		JuliaSetPoint juliaSetPoint = image.getJuliaSetPoint();
+		Complex cJuliaSetPoint = juliaSetPoint != null ?
+				numberFactory.valueOf(juliaSetPoint.getRe(), juliaSetPoint.getIm()) : null;
+		IntermediateImage iimg = representation.createIntermediateImage(imgWidth, imgHeight, numOfProducers);
+		Production production = representation.createProduction(
+				iimg, numberFactory, formula, coordinateTransform, cJuliaSetPoint);
+		profile.useReferenceOrbitCache(production, referenceOrbitKey, image.getFormulaInstance());
+		representationRv[0] = representation;
+		return production;
+	}
+
+	public void setNavigationEnabled(boolean flag) {
+		if (flag != navigationEnabled) {
+			navigationEnabled = flag;
+			mainWindow.setNavigationEnabled(flag);
+			if (!flag) {
+				commitNavigation();
+			}
+		}
+	}
+
+	public boolean isNavigationEnabled() {
+		return navigationEnabled;
+	}
+
+	// Moves the view being navigated to by dx, dy pixels of the current image
+	public void pan(int dx, int dy) {
+		if (!beginNavigation())
+			return;
+
+		Real zero = navigationNumberFactory.zero();
+		navigationTransform = new CoordinateTransform(
+				navigationTransform.toRe(-dx), navigationTransform.toIm(-dy),
+				zero, zero,
+				navigationTransform.getScaleRe(), navigationTransform.getScaleIm());
+		renderNavigationFrame();
+	}
+
+	// Zooms the view being navigated to around pixel (x, y), by 5/4 per notch.
+	// In when rotation is negative
+	public void zoom(int rotation, int x, int y) {
+		if (rotation == 0 || !beginNavigation())
+			return;
+
+		Real re = navigationTransform.toRe(x);
+		Real im = navigationTransform.toIm(y);
+		Real scaleRe = navigationTransform.getScaleRe();
+		Real scaleIm = navigationTransform.getScaleIm();
+		for (int i = 0; i < Math.abs(rotation); i++) {
+			scaleRe = rotation < 0 ? scaleRe.times(4).dividedBy(5) : scaleRe.times(5).dividedBy(4);
+			scaleIm = rotation < 0 ? scaleIm.times(4).dividedBy(5) : scaleIm.times(5).dividedBy(4);
+		}
+		Real zero = navigationNumberFactory.zero();
+		navigationTransform = new CoordinateTransform(
+				re.minus(scaleRe.times(x)), im.minus(scaleIm.times(y)),
+				zero, zero,
+				scaleRe, scaleIm);
+		renderNavigationFrame();
+	}
+
+	private boolean beginNavigation() {
+		if (!navigationEnabled || currentImage == null)
+			return false;
+
+		if (navigationTransform == null) {
+			int imgWidth = iimg.getWidth();
+			int imgHeight = iimg.getHeight();
+			try {
+				PluginInstance<NumberFactoryPlugin> numberFactoryInstance = getNumberFactoryInstance();
+				NumberFactory numberFactory = (NumberFactory) numberFactoryInstance.create();
+				if (autoPrecisionEnabled) {
+					numberFactory = selectPrecision(numberFactoryInstance, numberFactory, currentImage, imgWidth, imgHeight).getNumberFactory();
+				}
+				navigationNumberFactory = numberFactory;
+			} catch (ReflectiveOperationException e) {
+				e.printStackTrace();
+				return false;
+			}
+			navigationTransform = createCoordinateTransform(imgWidth, imgHeight, currentImage, navigationNumberFactory);
+
+			// The current production computes a view that is being left
+			if (haltAction.isEnabled()) {
+				halt();
+				haltedForNavigation = true;
+			}
+		}
+		return true;
+	}
+
+	private void renderNavigationFrame() {
+		int imgWidth = iimg.getWidth();
+		int imgHeight = iimg.getHeight();
+		Image image = new Image(currentImage);
+		image.rectangle = createRectangle(navigationTransform, imgWidth, imgHeight);
+
+		int reduction = navigator.getReduction(imgWidth, imgHeight);
+		Representation[] representationRv = new Representation[1];
+		Production production = createProduction(image,
+				Math.max(1, imgWidth / reduction), Math.max(1, imgHeight / reduction),
+				Math.min(Runtime.getRuntime().availableProcessors(), preferences.getNumOfProducerThreads()),
+				representationRv);
+		if (production != null) {
+			navigator.render(image, representationRv[0], production, () -> mainWindow.showPreview(navigator.getFrame()));
+		}
+		navigationTimer.restart();
+	}
+
+	// Computes the view navigated to at full resolution
+	private void commitNavigation() {
+		navigationTimer.stop();
+		if (navigationTransform == null)
+			return;
+
+		Image image = new Image(currentImage);
+		image.rectangle = createRectangle(navigationTransform, iimg.getWidth(), iimg.getHeight());
+		boolean resume = haltedForNavigation;
+		navigator.cancel();
+
+		Image oldCurrentImage = currentImage;
+		apply(image, null, false);
+		if (currentImage == oldCurrentImage) {
+			// Back where it started: put the old view on screen again
+			endNavigation();
+			mainWindow.refresh(mainWindow.getConsumer());
+			if (resume) {
+				resume();
+			}
+		}
+	}
+
+	private void endNavigation() {
+		if (navigationTimer != null) {
+			navigationTimer.stop();
+		}
+		navigationTransform = null;
+		navigationNumberFactory = null;
+		haltedForNavigation = false;
+		navigator.clear();
+	}
+
 	public void setStatusMessage(String message, boolean highlight) {
 		mainWindow.setStatusMessage(message, highlight);
 	}
@@ -1276,6 +1631,10 @@ public class Application {
 			return;
 		}
 
+		apply(image, source, zoomIn);
+	}
+
+	private void apply(Image image, ControlWindow source, boolean zoomIn) {
 		Image oldCurrentImage = currentImage;
 		Image oldNextImage = currentImage.next;
 		image.previous = oldCurrentImage;
@@ -1321,7 +1680,18 @@ public class Application {
 		}
 	}
 	
+	private void showUnderlay(Reprojection reprojection, Consumer consumer) {
+		// Not the background lane: its threads give way to the producers this
+		// is meant to stand in for
+		executorService.execute(() -> {
+			BufferedImage underlay = reprojection.resample();
+			SwingUtilities.invokeLater(() -> mainWindow.showUnderlay(underlay, consumer));
+		}, Lane.MAINTENANCE);
+	}
+
 	private void cancelCurrentProduction() {
+		prefetcher.cancel();
+		endNavigation();
 		if (productionObserver != null) {
 			productionObserver.override();
 			for (int i = 0; i < futures.size(); i++) {
@@ -1341,6 +1711,58 @@ public class Application {
 		return header.getRectangle().createCoordinateTransform(imgWidth, imgHeight, header.getForceEqualScales(), nf);
 	}
 
+	// In auto mode the factory of the plugin instance only gives the scale the
+	// selector starts from: the one returned resolves every pixel of header
+	private NumberFactory createNumberFactory(PluginInstance<NumberFactoryPlugin> numberFactoryInstance,
+			Image header, int imgWidth, int imgHeight) throws ReflectiveOperationException {
+		NumberFactory rv = (NumberFactory) numberFactoryInstance.create();
+		precisionChoice = null;
+		if (autoPrecisionEnabled) {
+			precisionChoice = selectPrecision(numberFactoryInstance, rv, header, imgWidth, imgHeight);
+			rv = precisionChoice.getNumberFactory();
+		}
+		mainWindow.setPrecisionDescription(precisionChoice != null ? precisionChoice.toString() : null);
+		return rv;
+	}
+
+	private PrecisionSelector.Choice selectPrecision(PluginInstance<NumberFactoryPlugin> numberFactoryInstance,
+			NumberFactory fallback, Image header, int imgWidth, int imgHeight) {
+		return precisionSelector.select(numberFactoryInstance, fallback,
+				nf -> createCoordinateTransform(imgWidth, imgHeight, header, nf),
+				imgWidth, imgHeight);
+	}
+
+	// Transform of the area under selection, at the size of the current image
+	private CoordinateTransform createZoomedCoordinateTransform(ImageSelection selection,
+			int imgWidth, int imgHeight,
+			boolean forceEqualScales,
+			NumberFactory numberFactory) {
+		CoordinateTransform coordinateTransform = createCoordinateTransform(imgWidth, imgHeight, currentImage, numberFactory);
+		Real width = coordinateTransform.getScaleRe().times(selection.getWidth());
+		Real centerRe = coordinateTransform.toRe(selection.getCenterX());
+		Real centerIm = coordinateTransform.toIm(selection.getCenterY());
+		Real scaleRe = width.dividedBy(imgWidth);
+		Real scaleIm = forceEqualScales ?
+				scaleRe.negate() :
+				coordinateTransform.getScaleIm().times(selection.getWidth()).dividedBy(imgWidth);
+		Real re0 = centerRe.minus(scaleRe.times((imgWidth - 1) / 2));
+		Real im0 = centerIm.minus(scaleIm.times((imgHeight - 1) / 2));
+		Real zero = numberFactory.zero();
+		return new CoordinateTransform(re0, im0, zero, zero, scaleRe, scaleIm);
+	}
+
+	private static Rectangle createRectangle(CoordinateTransform coordinateTransform, int imgWidth, int imgHeight) {
+		Real re1 = coordinateTransform.toRe(imgWidth);
+		Real im1 = coordinateTransform.toIm(imgHeight);
+		return new Rectangle(coordinateTransform.getRe0().decimalValue(), coordinateTransform.getIm0().decimalValue(),
+				re1.decimalValue(), im1.decimalValue());
+	}
+
+	// Reference orbits computed at different precisions must not be mixed
+	private Object getReferenceOrbitKey(PluginInstance<NumberFactoryPlugin> numberFactoryInstance) {
+		return precisionChoice != null ? precisionChoice : numberFactoryInstance;
+	}
+
 	private void load(Image header, IntermediateImage iimg, boolean runProduction) {
 		Image oldCurrentImage = currentImage;
 		Image oldNextImage = currentImage != null ? currentImage.next : null;
@@ -1363,12 +1785,24 @@ public class Application {
 			}
 		}
 
+		int imgWidth, imgHeight;
+		if (iimg != null) {
+			imgWidth = iimg.getWidth();
+			imgHeight = iimg.getHeight();
+		} else if (this.iimg != null) {
+			imgWidth = this.iimg.getWidth();
+			imgHeight = this.iimg.getHeight();
+		} else {
+			imgWidth = preferences.getImageWidth();
+			imgHeight = preferences.getImageHeight();
+		}
+
 		NumberFactory numberFactory;
 		Formula formula;
 		Representation representation;
 		Representation representationPreview;
 		try {
-			numberFactory = (NumberFactory) header.getNumberFactoryInstance().create();
+			numberFactory = createNumberFactory(header.getNumberFactoryInstance(), header, imgWidth, imgHeight);
 			formula = (Formula) header.getFormulaInstance().create(numberFactory);
 			representation = (Representation) representationInstance.create(numberFactory);
 			representationPreview = (Representation) representationInstance.create();
@@ -1378,21 +1812,10 @@ public class Application {
 		}
 
 		if (iimg == null) {
-			IntermediateImage oldIntermediateImage = this.iimg;
-			int imgWidth, imgHeight;
-			if (oldIntermediateImage != null) {
-				imgWidth = oldIntermediateImage.getWidth();
-				imgHeight = oldIntermediateImage.getHeight();
-			} else {
-				imgWidth = preferences.getImageWidth();
-				imgHeight = preferences.getImageHeight();
-			}
 			iimg = representation.createIntermediateImage(imgWidth, imgHeight,
 					Math.min(Runtime.getRuntime().availableProcessors(), preferences.getNumOfProducerThreads()));
 		}
 
-		int imgWidth = iimg.getWidth();
-		int imgHeight = iimg.getHeight();
 		CoordinateTransform coordinateTransform = createCoordinateTransform(imgWidth, imgHeight, header, numberFactory);
 
 		JuliaSetPoint juliaSetPoint = header.getJuliaSetPoint();
@@ -1419,6 +1842,7 @@ public class Application {
 		} else {
 			Production production = representation.createProduction(
 					iimg, numberFactory, formula, coordinateTransform, cJuliaSetPoint);
+			profile.useReferenceOrbitCache(production, getReferenceOrbitKey(header.getNumberFactoryInstance()), header.getFormulaInstance());
 
 			if (preferences.isLoggingEnabled())
 				production.setMaxLogLength(preferences.getMaxLogLength());
@@ -1457,6 +1881,8 @@ public class Application {
 			cancelCurrentProduction();
 			mainWindow.resetTimer();
 
+			production.setFocus(mainWindow.getVisibleRegion(), getFocus());
+			this.production = production;
 			this.productionObserver = productionObserver;
 			this.futures = futures;
 			this.resumables = resumables;
@@ -1512,26 +1938,26 @@ public class Application {
 			}
 		}
 
+		int imgWidth, imgHeight;
+		if (resize) {
+			imgWidth = preferences.getImageWidth();
+			imgHeight = preferences.getImageHeight();
+		} else {
+			imgWidth = iimg.getWidth();
+			imgHeight = iimg.getHeight();
+		}
+
 		NumberFactory numberFactory;
 		Formula formula;
 		Representation representation;
 		try {
-			numberFactory = (NumberFactory) getNumberFactoryInstance().create();
+			numberFactory = createNumberFactory(getNumberFactoryInstance(), currentImage, imgWidth, imgHeight);
 			formula = (Formula) getFormulaInstance().create(numberFactory);
 			representation = (Representation) representationInstance.create(numberFactory);
 		} catch (ReflectiveOperationException e) {
 			e.printStackTrace();
 			return;
 		}
-
-		int imgWidth, imgHeight;
-		if (resize) {
-			imgWidth = preferences.getImageWidth();
-			imgHeight = preferences.getImageHeight();
-		} else {
-			imgWidth = iimg.getWidth();
-			imgHeight = iimg.getHeight();
-		}
 		CoordinateTransform coordinateTransform = createCoordinateTransform(imgWidth, imgHeight, currentImage, numberFactory);
 
 		JuliaSetPoint juliaSetPoint = getJuliaSetPoint();
@@ -1542,6 +1968,7 @@ public class Application {
 				Math.min(Runtime.getRuntime().availableProcessors(), preferences.getNumOfProducerThreads()));
 		Production production = representation.createProduction(
 				iimg, numberFactory, formula, coordinateTransform, cJuliaSetPoint);
+		profile.useReferenceOrbitCache(production, getReferenceOrbitKey(getNumberFactoryInstance()), getFormulaInstance());
 		Consumer consumer = representation.createConsumer(iimg, mainWindow.getConsumer(), false);
 
 		run(production);
@@ -1598,12 +2025,16 @@ public class Application {
 		if (numberFactoryChanged || formulaChanged || representationPluginChanged || rectangleChanged || juliaSetPointChanged || (zoomIn && mainWindow.hasSelection()) ||
 				(representationChanged && mustRecomputeRepresentation(representationInstance))) {
 
+			int imgWidth = iimg.getWidth();
+			int imgHeight = iimg.getHeight();
+			boolean zoomingIn = zoomIn && mainWindow.hasSelection();
+
 			NumberFactory numberFactory;
 			Formula formula;
 			Representation representation;
 			Representation representationPreview;
 			try {
-				numberFactory = (NumberFactory) numberFactoryInstance.create();
+				numberFactory = createNumberFactory(numberFactoryInstance, zoomingIn ? currentImage : image, imgWidth, imgHeight);
 				formula = (Formula) formulaInstance.create(numberFactory);
 				representation = (Representation) representationInstance.create(numberFactory);
 				representationPreview = (Representation) representationInstance.create();
@@ -1612,27 +2043,26 @@ public class Application {
 				return;
 			}
 
-			int imgWidth = iimg.getWidth();
-			int imgHeight = iimg.getHeight();
 			CoordinateTransform coordinateTransform;
-			if (zoomIn && mainWindow.hasSelection()) {
-				coordinateTransform = createCoordinateTransform(imgWidth, imgHeight, currentImage, numberFactory);
-				ImageSelection selection = mainWindow.getSelection();
-				Real width = coordinateTransform.getScaleRe().times(selection.getWidth());
-				Real centerRe = coordinateTransform.toRe(selection.getCenterX());
-				Real centerIm = coordinateTransform.toIm(selection.getCenterY());
-				Real scaleRe = width.dividedBy(imgWidth);
-				Real scaleIm = forceEqualScales ?
-						scaleRe.negate() :
-						coordinateTransform.getScaleIm().times(selection.getWidth()).dividedBy(imgWidth);
-				Real re0 = centerRe.minus(scaleRe.times((imgWidth - 1) / 2));
-				Real im0 = centerIm.minus(scaleIm.times((imgHeight - 1) / 2));
-				Real zero = numberFactory.zero();
-				coordinateTransform = new CoordinateTransform(re0, im0, zero, zero, scaleRe, scaleIm);
-				Real re1 = coordinateTransform.toRe(imgWidth);
-				Real im1 = coordinateTransform.toIm(imgHeight);
-				
-				image.rectangle = new Rectangle(re0.decimalValue(), im0.decimalValue(), re1.decimalValue(), im1.decimalValue());
+			if (zoomingIn) {
+				coordinateTransform = createZoomedCoordinateTransform(mainWindow.getSelection(),
+						imgWidth, imgHeight,
+						forceEqualScales,
+						numberFactory);
+				image.rectangle = createRectangle(coordinateTransform, imgWidth, imgHeight);
+
+				// The factory was chosen for the old rectangle: the new one may need more
+				if (autoPrecisionEnabled) {
+					try {
+						numberFactory = createNumberFactory(numberFactoryInstance, image, imgWidth, imgHeight);
+						formula = (Formula) formulaInstance.create(numberFactory);
+						representation = (Representation) representationInstance.create(numberFactory);
+					} catch (ReflectiveOperationException e) {
+						e.printStackTrace();
+						return;
+					}
+					coordinateTransform = createCoordinateTransform(imgWidth, imgHeight, image, numberFactory);
+				}
 			} else {
 				coordinateTransform = createCoordinateTransform(imgWidth, imgHeight, image, numberFactory);
 			}
@@ -1642,16 +2072,51 @@ public class Application {
 
 			IntermediateImage iimg = representation.createIntermediateImage(imgWidth, imgHeight,
 					Math.min(Runtime.getRuntime().availableProcessors(), preferences.getNumOfProducerThreads()));
-			Production production = representation.createProduction(
-					iimg, numberFactory, formula, coordinateTransform, cJuliaSetPoint);
+			Production production;
+			if (!numberFactoryChanged && !formulaChanged && !representationChanged && !juliaSetPointChanged
+					&& this.iimg.isComplete()) {
+				// Only the rectangle moved: the representation may take over the
+				// points the two pixel grids share
+				CoordinateTransform previousTransform = createCoordinateTransform(imgWidth, imgHeight, currentImage, numberFactory);
+				production = representation.createProduction(
+						iimg, numberFactory, formula, coordinateTransform, cJuliaSetPoint, this.iimg, previousTransform);
+			} else {
+				production = representation.createProduction(
+						iimg, numberFactory, formula, coordinateTransform, cJuliaSetPoint);
+			}
+			profile.useReferenceOrbitCache(production, getReferenceOrbitKey(numberFactoryInstance), formulaInstance);
 			Consumer consumer = representation.createConsumer(iimg, mainWindow.getConsumer(), false);
 
+			// While the new view is computed, show the prefetched rendering or
+			// else what the view on screen has in common with it. That is the
+			// last navigation frame, if any
+			BufferedImage prefetched = zoomingIn && prefetchEnabled ? prefetcher.get(image) : null;
+			Reprojection reprojection = null;
+			BufferedImage previousImage = navigator.getFrame();
+			Image previousHeader = navigator.getFrameImage();
+			if (previousImage == null) {
+				previousImage = mainWindow.getFinalImage();
+				previousHeader = currentImage;
+			}
+			if (prefetched == null && previousImage != null &&
+					!numberFactoryChanged && !formulaChanged && !representationChanged && !juliaSetPointChanged) {
+				reprojection = Reprojection.create(previousImage,
+						createCoordinateTransform(previousImage.getWidth(), previousImage.getHeight(), previousHeader, numberFactory),
+						coordinateTransform,
+						imgWidth, imgHeight);
+			}
+
 			run(production);
 
 			if (zoomIn) {
 				mainWindow.clearSelection();
 			}
 			mainWindow.reset(imgWidth, imgHeight, preferences.getTransparency(), consumer);
+			if (prefetched != null) {
+				mainWindow.showPreview(prefetched);
+			} else if (reprojection != null) {
+				showUnderlay(reprojection, consumer);
+			}
 			if (periodicRefreshEnabled) {
 				refreshTimer.restart();
 			}
@@ -1742,6 +2207,12 @@ public class Application {
 	private void initUi() {
 		removeFocusTraversalKeysWithCtrl();
 		refreshTimer = new Timer(preferences.getRefreshDelay(), new PeriodicRefreshPerformer());
+		prefetchTimer = new Timer(PREFETCH_DELAY, e -> prefetch());
+		prefetchTimer.setRepeats(false);
+		navigationTimer = new Timer(NAVIGATION_DELAY, e -> commitNavigation());
+		navigationTimer.setRepeats(false);
+		focusTimer = new Timer(FOCUS_DELAY, e -> updateFocus());
+		focusTimer.setRepeats(false);
 		cwPool = new LinkedList<>();
 		for (int i = 0; i < MAX_CW_POOL_SIZE; i++) {
 			cwPool.add(new ControlWindow(this));
@@ -1761,6 +2232,9 @@ public class Application {
 		resumeAction = new ResumeAction();
 		refreshAction = new RefreshAction();
 		refreshPeriodicallyAction = new RefreshPeriodicallyAction();
+		autoPrecisionAction = new AutoPrecisionAction();
+		prefetchAction = new PrefetchAction();
+		navigateAction = new NavigateAction();
 		editPreferencesAction = new EditPreferencesAction();
 		editSelectionColorAction = new EditSelectionColorAction();
 		hideAllAction = new HideAllAction();
@@ -1946,7 +2420,7 @@ public class Application {
 						}
 					}
 				};
-				executorService.execute(productionLoader);
+				executorService.execute(productionLoader, Lane.MAINTENANCE);
 				initUi();
 				productionLoader.block(splashScreen, "Reading from " + path + ":", "number factory...");
 
@@ -2014,7 +2488,7 @@ public class Application {
 				}
 			}
 		};
-		executorService.execute(saveWorker);
+		executorService.execute(saveWorker, Lane.MAINTENANCE);
 	}
 
 	public void loadImage(File src, final ControlWindow dst) {
@@ -2041,7 +2515,7 @@ public class Application {
 			}
 		};
 
-		executorService.execute(loadWorker);
+		executorService.execute(loadWorker, Lane.MAINTENANCE);
 		loadWorker.block(dst, "Reading from " + src + ":", "number factory...");
 	}
 
@@ -2195,6 +2669,18 @@ public class Application {
 		return refreshPeriodicallyAction;
 	}
 
+	public Action getAutoPrecisionAction() {
+		return autoPrecisionAction;
+	}
+
+	public Action getPrefetchAction() {
+		return prefetchAction;
+	}
+
+	public Action getNavigateAction() {
+		return navigateAction;
+	}
+
 	public Action getEditPreferencesAction() {
 		return editPreferencesAction;
 	}
@@ -2315,6 +2801,12 @@ public class Application {
 							mainWindow.stopTimer();
 							mainWindow.refresh();
 							haltAction.setEnabled(false);
+							if (resumableCount == 0) {
+								if (productionStart != 0) {
+									navigator.measure((long) iimg.getWidth() * iimg.getHeight(), System.nanoTime() - productionStart);
+								}
+								schedulePrefetch();
+							}
 						}
 
 						LogTab logTab = logPane.getLogTab(indexedProducer.getIndex());
@@ -2382,10 +2874,12 @@ public class Application {
 
 	public void resume() {
 		halted = false;
+		// Time spent halted would spoil the measurement
+		productionStart = 0;
 		for (int i = 0; i < resumables.size(); i++) {
 			Runnable resumable = resumables.get(i);
 			if (resumable != null) {
-				futures.set(i, executorService.submitAndObserve(resumable, productionObserver));
+				futures.set(i, executorService.submitProducer(Lane.INTERACTIVE, resumable, productionObserver));
 				resumables.set(i, null);
 			}
 		}
@@ -2429,6 +2923,7 @@ public class Application {
 	private void run(Production production) {
 		if (preferences.isLoggingEnabled())
 			production.setMaxLogLength(preferences.getMaxLogLength());
+		production.setFocus(mainWindow.getVisibleRegion(), getFocus());
 
 		IntermediateImage iimg = production.getIntermediateImage();
 		int numOfProducers = iimg.getNumOfProducers();
@@ -2440,10 +2935,13 @@ public class Application {
 		cancelCurrentProduction();
 		
 		mainWindow.resetTimer();
+		productionStart = System.nanoTime();
+		this.production = production;
 		List<Future<?>> futures = new ArrayList<>(numOfProducers); 
 		ProductionObserver productionObserver = new ProductionObserver();
+		production.setExecutor(executorService.getExecutor(Lane.INTERACTIVE));
 		for (int i = 0; i < numOfProducers; i++) {
-			futures.add(executorService.submitAndObserve(
+			futures.add(executorService.submitProducer(Lane.INTERACTIVE,
 					new IndexedProducer(producers.get(i), i),
 					productionObserver));
 		}
@@ -2518,7 +3016,7 @@ public class Application {
 			}
 		});
 		
-		JuliaExecutorService executorService = new JuliaExecutorService(0, 10l, TimeUnit.MINUTES);
+		JuliaExecutorService executorService = new JuliaExecutorService(10l, TimeUnit.MINUTES);
 		new Loader(cli, executorService).loadGui();
 	}
 }
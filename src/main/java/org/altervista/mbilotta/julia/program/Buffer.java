@@ -22,6 +22,7 @@ package org.altervista.mbilotta.julia.program;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.DigestInputStream;
@@ -85,4 +86,29 @@ public class Buffer {
 
 		return rv;
 	}
+
+	// Streams of unknown size, such as resources, are read in one go first
+	public static Buffer readFully(InputStream in, Buffer rv, MessageDigest md) throws IOException {
+		if (md != null) {
+			md.reset();
+			in = new DigestInputStream(in, md);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		int n;
+		while ( (n = in.read(chunk)) != -1 ) {
+			bytes.write(chunk, 0, n);
+		}
+
+		if (rv != null) {
+			rv.reset(bytes.size());
+		} else {
+			rv = new Buffer(bytes.size());
+		}
+		for (byte b : bytes.toByteArray()) {
+			rv.put(b);
+		}
+
+		return rv;
+	}
 }
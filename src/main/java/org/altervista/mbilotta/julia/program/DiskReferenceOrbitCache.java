@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.program;
+
+import static org.altervista.mbilotta.julia.Utilities.toHexString;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.altervista.mbilotta.julia.Decimal;
+import org.altervista.mbilotta.julia.Utilities;
+import org.altervista.mbilotta.julia.impl.ReferenceOrbitCache;
+import org.altervista.mbilotta.julia.math.Complex;
+
+
+public final class DiskReferenceOrbitCache implements ReferenceOrbitCache {
+
+	private static final String EXTENSION = ".orbit";
+
+	private final Path directory;
+	private final long maxSize;
+	private final String keyPrefix;
+
+	// Orbits from the same formula instance and number factory share the key
+	// prefix. The number factory is identified by its plugin instance or, in
+	// auto mode, by the precision chosen. Each orbit is a file named after the
+	// digest of its key
+	public DiskReferenceOrbitCache(Path directory, long maxSize, Object numberFactoryKey, PluginInstance<?> formulaInstance) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.keyPrefix = numberFactoryKey + "|" + formulaInstance;
+	}
+
+	@Override
+	public Orbit get(Complex point, Complex juliaSetPoint) {
+		String key = createKey(point, juliaSetPoint);
+		Path file = getFile(key);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+			if (in.readInt() != keyBytes.length) {
+				return null;
+			}
+			byte[] storedKeyBytes = new byte[keyBytes.length];
+			in.readFully(storedKeyBytes);
+			if (!Arrays.equals(storedKeyBytes, keyBytes)) {
+				return null;
+			}
+			boolean ended = in.readBoolean();
+			int length = in.readInt();
+			double[] re = new double[length];
+			double[] im = new double[length];
+			for (int i = 0; i < length; i++) {
+				re[i] = in.readDouble();
+				im[i] = in.readDouble();
+			}
+			Decimal lastRe = null;
+			Decimal lastIm = null;
+			if (!ended) {
+				lastRe = new Decimal(readString(in));
+				lastIm = new Decimal(readString(in));
+			}
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return new Orbit(re, im, ended, lastRe, lastIm);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException | RuntimeException e) {
+			Utilities.debug.print("Could not read reference orbit \"", file, "\". Cause: ");
+			Utilities.debug.printStackTrace(e);
+			return null;
+		}
+	}
+
+	@Override
+	public void put(Complex point, Complex juliaSetPoint, Orbit orbit) {
+		String key = createKey(point, juliaSetPoint);
+		Path file = getFile(key);
+		Path temporaryFile = null;
+		try {
+			Files.createDirectories(directory);
+			temporaryFile = Files.createTempFile(directory, null, ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+				writeString(out, key);
+				out.writeBoolean(orbit.hasEnded());
+				int length = orbit.getLength();
+				out.writeInt(length);
+				double[] re = orbit.getRe();
+				double[] im = orbit.getIm();
+				for (int i = 0; i < length; i++) {
+					out.writeDouble(re[i]);
+					out.writeDouble(im[i]);
+				}
+				if (!orbit.hasEnded()) {
+					writeString(out, orbit.getLastRe().toString());
+					writeString(out, orbit.getLastIm().toString());
+				}
+			}
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			temporaryFile = null;
+			evict();
+		} catch (IOException e) {
+			Utilities.debug.print("Could not write reference orbit \"", file, "\". Cause: ");
+			Utilities.debug.printStackTrace(e);
+		} finally {
+			if (temporaryFile != null) {
+				try {
+					Files.deleteIfExists(temporaryFile);
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	// Least recently used orbits go first: reading an orbit touches its file
+	private void evict() throws IOException {
+		List<Path> files = new ArrayList<>();
+		long size = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+			for (Path file : stream) {
+				files.add(file);
+				size += Files.size(file);
+			}
+		}
+		if (size <= maxSize) {
+			return;
+		}
+
+		files.sort(Comparator.comparing(DiskReferenceOrbitCache::getLastModifiedTime));
+		for (Path file : files) {
+			if (size <= maxSize) {
+				break;
+			}
+			long fileSize = Files.size(file);
+			if (Files.deleteIfExists(file)) {
+				size -= fileSize;
+			}
+		}
+	}
+
+	// Keys and full-precision values may well exceed the 64 KB of writeUTF
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new IOException("Negative string length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private String createKey(Complex point, Complex juliaSetPoint) {
+		return keyPrefix + "|" + point + "|" + juliaSetPoint;
+	}
+
+	private Path getFile(String key) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			return directory.resolve(toHexString(md.digest(key.getBytes(StandardCharsets.UTF_8))) + EXTENSION);
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static FileTime getLastModifiedTime(Path file) {
+		try {
+			return Files.getLastModifiedTime(file);
+		} catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+}
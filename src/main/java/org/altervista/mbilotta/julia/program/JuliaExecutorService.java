@@ -20,69 +20,318 @@
 
 package org.altervista.mbilotta.julia.program;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.altervista.mbilotta.julia.Preemptible;
 
-public class JuliaExecutorService extends ThreadPoolExecutor {
 
-	public JuliaExecutorService(int corePoolSize, long keepAliveTime, TimeUnit unit) {
-		super(corePoolSize, Integer.MAX_VALUE, keepAliveTime, unit, new SynchronousQueue<Runnable>());
+public class JuliaExecutorService extends AbstractExecutorService {
+
+	public enum Lane {
+		// Productions of the current view
+		INTERACTIVE(Thread.NORM_PRIORITY),
+		// Exports and speculative work, parked while interactive work is pending
+		BACKGROUND(Thread.MIN_PRIORITY),
+		// Loading, saving and installing
+		MAINTENANCE(Thread.NORM_PRIORITY);
+
+		private final int priority;
+
+		private Lane(int priority) {
+			this.priority = priority;
+		}
+
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
 	}
 
-	@Override
-	protected void beforeExecute(Thread t, Runnable r) {
-		super.beforeExecute(t, r);
-		if (r instanceof JuliaFuture) {
-			JuliaFuture future = (JuliaFuture) r;
-			Runnable target = future.getTarget();
-			for (ExecutionObserver o : future) {
-				o.executionStarting(target);
+	private static final int MAINTENANCE_THREADS = 2;
+
+	private final EnumMap<Lane, LaneExecutor> lanes = new EnumMap<>(Lane.class);
+
+	private final Object urgentWorkLock = new Object();
+	private volatile int urgentWorkCount;
+
+	public JuliaExecutorService(long keepAliveTime, TimeUnit unit) {
+		int processors = Runtime.getRuntime().availableProcessors();
+		lanes.put(Lane.INTERACTIVE, new LaneExecutor(Lane.INTERACTIVE, processors, keepAliveTime, unit));
+		lanes.put(Lane.BACKGROUND, new LaneExecutor(Lane.BACKGROUND, Math.max(1, processors / 2), keepAliveTime, unit));
+		lanes.put(Lane.MAINTENANCE, new LaneExecutor(Lane.MAINTENANCE, MAINTENANCE_THREADS, keepAliveTime, unit));
+	}
+
+	private final class LaneExecutor extends ThreadPoolExecutor {
+
+		private final Lane lane;
+		private final int threads;
+		// Producers queued or running, each holding a thread of its own
+		private int reserved;
+
+		public LaneExecutor(Lane lane, int threads, long keepAliveTime, TimeUnit unit) {
+			super(threads, threads, keepAliveTime, unit, new LinkedBlockingQueue<Runnable>(), new LaneThreadFactory(lane));
+			this.lane = lane;
+			this.threads = threads;
+			allowCoreThreadTimeOut(true);
+		}
+
+		// The lane grows past its size only while producers need it to, and
+		// shrinks back as they return
+		public synchronized void reserve() {
+			reserved++;
+			resize();
+		}
+
+		public synchronized void release() {
+			reserved--;
+			resize();
+		}
+
+		private void resize() {
+			int size = Math.max(threads, reserved);
+			if (size > getMaximumPoolSize()) {
+				setMaximumPoolSize(size);
+				setCorePoolSize(size);
+			} else if (size < getMaximumPoolSize()) {
+				setCorePoolSize(size);
+				setMaximumPoolSize(size);
 			}
 		}
-	}
 
-	@Override
-	protected void afterExecute(Runnable r, Throwable t) {
-		super.afterExecute(r, t);
-		if (r instanceof JuliaFuture) {
-			JuliaFuture future = (JuliaFuture) r;
-			Runnable target = future.getTarget();
-			try {
+		@Override
+		public void execute(Runnable command) {
+			if (lane == Lane.INTERACTIVE) {
+				urgentWorkSubmitted();
 				try {
-					future.get();
-					for (ExecutionObserver o : future) {
-						o.executionFinished(target);
-					}
-				} catch (CancellationException e) {
-					for (ExecutionObserver o : future) {
-						o.executionCancelled(target);
-					}
-				} catch (ExecutionException e) {
-					Throwable cause = e.getCause();
-					for (ExecutionObserver o : future) {
-						o.executionFinished(target, cause);
+					super.execute(command);
+				} catch (RejectedExecutionException e) {
+					urgentWorkDone();
+					throw e;
+				}
+			} else {
+				super.execute(command);
+			}
+		}
+
+		@Override
+		protected void beforeExecute(Thread t, Runnable r) {
+			super.beforeExecute(t, r);
+			if (r instanceof JuliaFuture) {
+				JuliaFuture future = (JuliaFuture) r;
+				Runnable target = future.getTarget();
+				for (ExecutionObserver o : future) {
+					o.executionStarting(target);
+				}
+			}
+		}
+
+		@Override
+		protected void afterExecute(Runnable r, Throwable t) {
+			try {
+				super.afterExecute(r, t);
+				if (r instanceof JuliaFuture) {
+					notifyObservers((JuliaFuture) r);
+				}
+			} finally {
+				if (r instanceof ProducerFuture) {
+					release();
+				}
+				if (lane == Lane.INTERACTIVE) {
+					urgentWorkDone();
+				}
+			}
+		}
+	}
+
+	private static final class ProducerFuture extends JuliaFuture {
+
+		public ProducerFuture(Runnable runnable, ExecutionObserver executionObserver) {
+			super(runnable, executionObserver);
+		}
+	}
+
+	private final class LaneThreadFactory implements ThreadFactory {
+
+		private final Lane lane;
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		public LaneThreadFactory(Lane lane) {
+			this.lane = lane;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread rv = lane == Lane.BACKGROUND ?
+					new PreemptibleThread(r) : new Thread(r);
+			rv.setName("julia-" + lane + "-" + threadNumber.getAndIncrement());
+			rv.setDaemon(true);
+			rv.setPriority(lane.priority);
+			return rv;
+		}
+	}
+
+	private final class PreemptibleThread extends Thread implements Preemptible {
+
+		public PreemptibleThread(Runnable r) {
+			super(r);
+		}
+
+		@Override
+		public void yieldToUrgentWork() throws InterruptedException {
+			if (urgentWorkCount > 0) {
+				synchronized (urgentWorkLock) {
+					while (urgentWorkCount > 0) {
+						urgentWorkLock.wait();
 					}
 				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
 			}
 		}
 	}
 
+	private void urgentWorkSubmitted() {
+		synchronized (urgentWorkLock) {
+			urgentWorkCount++;
+		}
+	}
+
+	private void urgentWorkDone() {
+		synchronized (urgentWorkLock) {
+			if (--urgentWorkCount == 0) {
+				urgentWorkLock.notifyAll();
+			}
+		}
+	}
+
+	private static void notifyObservers(JuliaFuture future) {
+		Runnable target = future.getTarget();
+		try {
+			try {
+				future.get();
+				for (ExecutionObserver o : future) {
+					o.executionFinished(target);
+				}
+			} catch (CancellationException e) {
+				for (ExecutionObserver o : future) {
+					o.executionCancelled(target);
+				}
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				for (ExecutionObserver o : future) {
+					o.executionFinished(target, cause);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void execute(Runnable command, Lane lane) {
+		lanes.get(lane).execute(command);
+	}
+
+	int getPoolSize(Lane lane) {
+		return lanes.get(lane).getMaximumPoolSize();
+	}
+
+	public Executor getExecutor(Lane lane) {
+		return command -> execute(command, lane);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		execute(command, Lane.INTERACTIVE);
+	}
+
 	public JuliaFuture submitAndObserve(Runnable runnable, ExecutionObserver executionObserver) {
-		return submitAndObserve(runnable, executionObserver, (ExecutionObserver[]) null);
+		return submitAndObserve(Lane.INTERACTIVE, runnable, executionObserver, (ExecutionObserver[]) null);
 	}
 
 	public JuliaFuture submitAndObserve(Runnable runnable,
 			ExecutionObserver executionObserver,
 			ExecutionObserver... executionObservers) {
+		return submitAndObserve(Lane.INTERACTIVE, runnable, executionObserver, executionObservers);
+	}
+
+	public JuliaFuture submitAndObserve(Lane lane, Runnable runnable, ExecutionObserver executionObserver) {
+		return submitAndObserve(lane, runnable, executionObserver, (ExecutionObserver[]) null);
+	}
+
+	public JuliaFuture submitAndObserve(Lane lane,
+			Runnable runnable,
+			ExecutionObserver executionObserver,
+			ExecutionObserver... executionObservers) {
 		if (runnable == null) throw new NullPointerException();
 		JuliaFuture rv = new JuliaFuture(runnable, executionObserver, executionObservers);
-		execute(rv);
+		execute(rv, lane);
 		return rv;
 	}
+
+	// Producers of a production may wait on each other, so they must all run at
+	// once: each one is given a thread, beyond the lane size if need be
+	public JuliaFuture submitProducer(Lane lane, Runnable producer, ExecutionObserver executionObserver) {
+		if (producer == null) throw new NullPointerException();
+		JuliaFuture rv = new ProducerFuture(producer, executionObserver);
+		LaneExecutor executor = lanes.get(lane);
+		executor.reserve();
+		try {
+			executor.execute(rv);
+		} catch (RejectedExecutionException e) {
+			executor.release();
+			throw e;
+		}
+		return rv;
+	}
+
+	@Override
+	public void shutdown() {
+		for (LaneExecutor executor : lanes.values()) {
+			executor.shutdown();
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		List<Runnable> rv = new ArrayList<>();
+		for (LaneExecutor executor : lanes.values()) {
+			rv.addAll(executor.shutdownNow());
+		}
+		return rv;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		for (LaneExecutor executor : lanes.values()) {
+			if (!executor.isShutdown()) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		for (LaneExecutor executor : lanes.values()) {
+			if (!executor.isTerminated()) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (LaneExecutor executor : lanes.values()) {
+			if (!executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) return false;
+		}
+		return true;
+	}
 }
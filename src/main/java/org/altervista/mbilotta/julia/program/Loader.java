@@ -28,6 +28,7 @@ import static org.altervista.mbilotta.julia.Utilities.toHexString;
 
 import java.awt.Color;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Writer;
@@ -53,6 +54,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.altervista.mbilotta.julia.Decimal;
 import org.altervista.mbilotta.julia.Gradient;
 import org.altervista.mbilotta.julia.Out;
+import org.altervista.mbilotta.julia.program.JuliaExecutorService.Lane;
 import org.altervista.mbilotta.julia.program.LockedFile.CloseableHider;
 import org.altervista.mbilotta.julia.program.cli.MainCli;
 import org.altervista.mbilotta.julia.program.gui.MessagePane;
@@ -83,6 +85,7 @@ public class Loader extends SwingWorker<Void, String> {
 	private List<FormulaPlugin> availableFormulas;
 	private List<RepresentationPlugin> availableRepresentations;
 	private List<AliasPlugin> availableAliases;
+	private List<Path> builtInDescriptors;
 	private DateFormat dateFormat;
 	private String parserOutput;
 	private int[] problemCount = new int[3];
@@ -111,7 +114,7 @@ public class Loader extends SwingWorker<Void, String> {
 	}
 
 	public void loadGui() {
-		executorService.execute(this);
+		executorService.execute(this, Lane.MAINTENANCE);
 	}
 
 	@Override
@@ -129,7 +132,8 @@ public class Loader extends SwingWorker<Void, String> {
 
 		Out<Boolean> failure = Out.newOut(false);
 		List<Path> descriptors = profile.scanForDescriptors(debug, failure);
-		if (descriptors.isEmpty()) {
+		builtInDescriptors = profile.getBuiltInDescriptors(descriptors, debug, failure);
+		if (descriptors.isEmpty() && builtInDescriptors.isEmpty()) {
 			if (failure.get()) {
 				debug.println("...failure. Some descriptors may got discarded.");
 			} else {
@@ -150,14 +154,18 @@ public class Loader extends SwingWorker<Void, String> {
 				readLegacyPreferencesFile();
 			}
 		} else {
-			List<Path> otherFiles = new ArrayList<>(2 + descriptors.size() * 3);
+			// Built-in descriptors come from the classpath: only their cache
+			// and documentation files get locked
+			List<Path> allDescriptors = new ArrayList<>(descriptors);
+			allDescriptors.addAll(builtInDescriptors);
+			List<Path> otherFiles = new ArrayList<>(2 + descriptors.size() + allDescriptors.size() * 2);
 			otherFiles.add(profile.getLocalizationPreferencesFile());
 			otherFiles.add(profile.getDescriptorParserOutputFile());
 			otherFiles.addAll(descriptors);
-			for (Path descriptor : descriptors) {
+			for (Path descriptor : allDescriptors) {
 				otherFiles.add(profile.getCacheFileFor(descriptor));
 			}
-			for (Path descriptor : descriptors) {
+			for (Path descriptor : allDescriptors) {
 				otherFiles.add(profile.getDocumentationFileFor(descriptor));
 			}
 
@@ -366,8 +374,10 @@ public class Loader extends SwingWorker<Void, String> {
 		preferencesFile = lockedProfile.get(offset++);
 		LockedFile localizationPreferencesFile = lockedProfile.get(offset++);
 		LockedFile parserOutputFile = lockedProfile.get(offset++);
-		final int numOfDescriptors = (lockedProfile.size() - offset) / 3;
-		List<LockedFile> descriptors = lockedProfile.subList(offset, offset += numOfDescriptors);
+		final int numOfBuiltInDescriptors = builtInDescriptors.size();
+		final int numOfProfileDescriptors = (lockedProfile.size() - offset - 2 * numOfBuiltInDescriptors) / 3;
+		final int numOfDescriptors = numOfProfileDescriptors + numOfBuiltInDescriptors;
+		List<LockedFile> descriptors = lockedProfile.subList(offset, offset += numOfProfileDescriptors);
 		List<LockedFile> cacheFiles = lockedProfile.subList(offset, offset += numOfDescriptors);
 		List<LockedFile> documentationFiles = lockedProfile.subList(offset, offset += numOfDescriptors);
 		assert offset == lockedProfile.size();
@@ -408,14 +418,23 @@ public class Loader extends SwingWorker<Void, String> {
 			int progress = (int) (k * 100f / numOfDescriptors);
 			setGuiProgress(progress > 100 ? 100 : progress);
 
-			LockedFile descriptor = descriptors.get(k);
+			boolean builtIn = k >= numOfProfileDescriptors;
+			Path descriptor = builtIn ?
+					builtInDescriptors.get(k - numOfProfileDescriptors) : descriptors.get(k).getPath();
 			LockedFile cacheFile = cacheFiles.get(k);
 			LockedFile documentationFile = documentationFiles.get(k);
 
 			publishToGui("Reading descriptor " + descriptor + "...");
 			try {
-				debug.println("Reading descriptor ", descriptor, "...");
-				buffer = Buffer.readFully(descriptor, buffer, md);
+				if (builtIn) {
+					debug.println("Reading built-in descriptor ", descriptor, "...");
+					try (InputStream in = profile.openBuiltInDescriptor(descriptor)) {
+						buffer = Buffer.readFully(in, buffer, md);
+					}
+				} else {
+					debug.println("Reading descriptor ", descriptor, "...");
+					buffer = Buffer.readFully(descriptors.get(k), buffer, md);
+				}
 			} catch (IOException e) {
 				debug.print("...failure. Cause: ");
 				debug.printStackTrace(e);
@@ -510,7 +529,7 @@ public class Loader extends SwingWorker<Void, String> {
 				boolean noExceptionsThrown = true;
 				try {
 					debug.println("Parsing descriptor ", descriptor, "...");
-					plugin = parser.parse(buffer, descriptor.getPath(), parserOutputBuilder);
+					plugin = parser.parse(buffer, descriptor, parserOutputBuilder);
 				} catch (SAXException | DomValidationException e) {
 					noExceptionsThrown = false;
 					debug.print("...failure. Cause: ");
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.program;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import org.altervista.mbilotta.julia.Consumer;
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.Production;
+import org.altervista.mbilotta.julia.Representation;
+import org.altervista.mbilotta.julia.program.Application.Image;
+import org.altervista.mbilotta.julia.program.JuliaExecutorService.Lane;
+
+
+// Renders the views the user pans and zooms through at whatever resolution
+// keeps each frame within the budget. Each frame supersedes the previous one.
+// Only used from the event dispatch thread
+public final class Navigator {
+
+	private static final long FRAME_BUDGET = TimeUnit.MILLISECONDS.toNanos(50);
+	// Frames are at most this many times smaller than the main image per side
+	public static final int MAX_REDUCTION = 16;
+	// Used until something has been measured
+	private static final int DEFAULT_REDUCTION = 8;
+
+	private final JuliaExecutorService executorService;
+	// Pixels per nanosecond, smoothed over the last measurements
+	private double throughput;
+
+	private List<Future<?>> frameFutures;
+	private int frameNumber;
+	private Image frameImage;
+	private BufferedImage frame;
+
+	public Navigator(JuliaExecutorService executorService) {
+		this.executorService = executorService;
+	}
+
+	// Accounts for pixels computed in nanos by a production, from start to end
+	public void measure(long pixels, long nanos) {
+		if (pixels <= 0 || nanos <= 0)
+			return;
+
+		double sample = (double) pixels / nanos;
+		throughput = throughput == 0 ? sample : (throughput + sample) / 2;
+	}
+
+	// By how much each side of a width by height image must be divided for a
+	// frame to fit the budget
+	public int getReduction(int width, int height) {
+		if (throughput == 0)
+			return DEFAULT_REDUCTION;
+
+		double affordable = throughput * FRAME_BUDGET;
+		int rv = (int) Math.ceil(Math.sqrt((double) width * height / affordable));
+		return Math.max(1, Math.min(rv, MAX_REDUCTION));
+	}
+
+	// Renders image with production, cancelling the frame in progress if any.
+	// onFrame is run on the event dispatch thread once it is complete
+	public void render(Image image, Representation representation, Production production,
+			Runnable onFrame) {
+		cancel();
+
+		IntermediateImage iimg = production.getIntermediateImage();
+		int numOfProducers = iimg.getNumOfProducers();
+		int number = ++frameNumber;
+		long start = System.nanoTime();
+		AtomicInteger running = new AtomicInteger(numOfProducers);
+		ExecutionObserver observer = new ExecutionObserver() {
+			public void executionFinished(Runnable target) {
+				if (running.decrementAndGet() == 0 && iimg.isComplete()) {
+					long nanos = System.nanoTime() - start;
+					SwingUtilities.invokeLater(() -> frameCompleted(number, image, representation, iimg, nanos, onFrame));
+				}
+			}
+		};
+
+		List<Future<?>> futures = new ArrayList<>(numOfProducers);
+		production.setExecutor(executorService.getExecutor(Lane.INTERACTIVE));
+		for (int i = 0; i < numOfProducers; i++) {
+			futures.add(executorService.submitProducer(Lane.INTERACTIVE,
+					production.createProducer(iimg.getProgressOf(i)),
+					observer));
+		}
+		frameFutures = futures;
+	}
+
+	// Header and rendering of the last completed frame, null if none
+	public Image getFrameImage() {
+		return frameImage;
+	}
+
+	public BufferedImage getFrame() {
+		return frame;
+	}
+
+	public void cancel() {
+		if (frameFutures != null) {
+			for (Future<?> future : frameFutures) {
+				future.cancel(true);
+			}
+			frameFutures = null;
+		}
+	}
+
+	// Also forgets the last frame
+	public void clear() {
+		cancel();
+		frameNumber++;
+		frameImage = null;
+		frame = null;
+	}
+
+	private void frameCompleted(int number, Image image, Representation representation, IntermediateImage iimg,
+			long nanos, Runnable onFrame) {
+		if (number != frameNumber)
+			return;
+
+		frameFutures = null;
+		measure((long) iimg.getWidth() * iimg.getHeight(), nanos);
+		Consumer consumer = representation.createConsumer(iimg);
+		BufferedImage rv = consumer.createFinalImage();
+		consumer.consume(rv);
+		frameImage = image;
+		frame = rv;
+		onFrame.run();
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.program;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Utilities;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.Real;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.altervista.mbilotta.julia.math.impl.FixedPointNumberFactory;
+import org.altervista.mbilotta.julia.program.parsers.NumberFactoryPlugin;
+
+
+// Picks the cheapest number factory under which no two adjacent pixels share
+// a coordinate. Factories backed by hardware doubles come first, then
+// double-double, fixed point and anything else. Within a tier the fewer bits
+// the cheaper. Bits are measured, so plugins need no extra metadata
+public final class PrecisionSelector {
+
+	public static final String AUTO_ID = "auto";
+
+	// Pixels are also split in 2^SUBPIXEL_BITS, to leave room for
+	// supersampling and for the rounding of the iterations
+	private static final int SUBPIXEL_BITS = 4;
+	private static final int MAX_PROBED_BITS = 1 << 16;
+	private static final int MAX_FIXED_POINT_PRECISION = 20000;
+
+	private static final int HARDWARE_TIER = 0;
+	private static final int DOUBLE_DOUBLE_TIER = 1;
+	private static final int FIXED_POINT_TIER = 2;
+	private static final int OTHER_TIER = 3;
+
+	public static final class Choice {
+
+		private final String name;
+		private final NumberFactory numberFactory;
+		private final int bits;
+		private final int tier;
+
+		Choice(String name, NumberFactory numberFactory, int tier) {
+			this.name = name;
+			this.numberFactory = numberFactory;
+			this.bits = probeBits(numberFactory);
+			this.tier = tier;
+		}
+
+		Choice(String name, NumberFactory numberFactory) {
+			this.name = name;
+			this.numberFactory = numberFactory;
+			this.bits = probeBits(numberFactory);
+			this.tier = tierOf(numberFactory, bits);
+		}
+
+		public NumberFactory getNumberFactory() {
+			return numberFactory;
+		}
+
+		public int getBits() {
+			return bits;
+		}
+
+		int getTier() {
+			return tier;
+		}
+
+		@Override
+		public String toString() {
+			return name + " (" + (bits >= MAX_PROBED_BITS ? "exact" : bits + " bits") + ")";
+		}
+	}
+
+	private final List<NumberFactoryPlugin> plugins;
+
+	// Probing the bits takes up to MAX_PROBED_BITS divisions per factory, so
+	// every choice is made once: only resolves runs for each image
+	private List<Choice> choices;
+	private final Map<PluginInstance<NumberFactoryPlugin>, Choice> fallbackChoices = new HashMap<>();
+	private final Map<Integer, Choice> fixedPointChoices = new HashMap<>();
+
+	public PrecisionSelector(List<NumberFactoryPlugin> plugins) {
+		this.plugins = plugins;
+	}
+
+	// fallback, created from fallbackInstance, gives the pixel scale and is
+	// itself a candidate. transforms builds the coordinate transform of the image
+	public synchronized Choice select(PluginInstance<NumberFactoryPlugin> fallbackInstance, NumberFactory fallback,
+			Function<NumberFactory, CoordinateTransform> transforms,
+			int width, int height) {
+		// Too deep a zoom for the fallback shows up as a zero pixel size
+		Real pixelSize = getPixelSize(transforms, fallback);
+		if (pixelSize == null) {
+			pixelSize = getPixelSize(transforms, new FixedPointNumberFactory(MAX_FIXED_POINT_PRECISION));
+		}
+		int precision = pixelSize != null ?
+				FixedPointNumberFactory.precisionFor(pixelSize.decimalValue()) :
+				FixedPointNumberFactory.DEFAULT_PRECISION;
+
+		Choice fallbackChoice = fallbackChoices.get(fallbackInstance);
+		if (fallbackChoice == null) {
+			fallbackChoice = new Choice(fallbackInstance.getPlugin().getId(), fallback);
+			fallbackChoices.put(fallbackInstance.clone(), fallbackChoice);
+		}
+
+		List<Choice> candidates = new ArrayList<>();
+		candidates.add(fallbackChoice);
+		for (Choice choice : getChoices()) {
+			if (choice.numberFactory.getClass() != fallbackChoice.numberFactory.getClass()) {
+				candidates.add(choice);
+			}
+		}
+		candidates.add(fixedPoint(precision));
+		candidates.sort(Comparator.comparingInt(Choice::getTier).thenComparingInt(Choice::getBits));
+
+		for (Choice candidate : candidates) {
+			if (resolves(transforms, candidate.numberFactory, width, height)) {
+				return candidate;
+			}
+		}
+
+		// Even the fixed-point guess collides somewhere: keep doubling it
+		while (precision < MAX_FIXED_POINT_PRECISION) {
+			precision *= 2;
+			Choice candidate = fixedPoint(precision);
+			if (resolves(transforms, candidate.numberFactory, width, height)) {
+				return candidate;
+			}
+		}
+		return fixedPoint(precision);
+	}
+
+	// Default instances of the plugins, and double-double if none is
+	private List<Choice> getChoices() {
+		if (choices == null) {
+			choices = new ArrayList<>();
+			for (NumberFactoryPlugin plugin : plugins) {
+				try {
+					NumberFactory numberFactory = (NumberFactory) new PluginInstance<>(plugin).create();
+					choices.add(new Choice(plugin.getId(), numberFactory));
+				} catch (ReflectiveOperationException | RuntimeException e) {
+					Utilities.debug.println("Number factory ", plugin.getId(), " cannot be probed: ", e);
+				}
+			}
+			if (choices.stream().noneMatch(c -> c.numberFactory instanceof DoubleDoubleNumberFactory)) {
+				choices.add(new Choice("double-double", new DoubleDoubleNumberFactory(), DOUBLE_DOUBLE_TIER));
+			}
+		}
+		return choices;
+	}
+
+	// Every pair of adjacent columns and rows must map to distinct coordinates.
+	// At the borders, where the coordinates are largest, subpixels must too
+	static boolean resolves(Function<NumberFactory, CoordinateTransform> transforms, NumberFactory numberFactory,
+			int width, int height) {
+		try {
+			return resolves(transforms.apply(numberFactory), width, height);
+		} catch (ArithmeticException e) {
+			// Rectangle too small to be represented at all
+			return false;
+		}
+	}
+
+	public static boolean resolves(CoordinateTransform transform, int width, int height) {
+		Real re = transform.toRe(0);
+		for (int x = 1; x < width; x++) {
+			Real next = transform.toRe(x);
+			if (next.eq(re))
+				return false;
+			re = next;
+		}
+		Real im = transform.toIm(0);
+		for (int y = 1; y < height; y++) {
+			Real next = transform.toIm(y);
+			if (next.eq(im))
+				return false;
+			im = next;
+		}
+
+		Real subpixel = transform.getScaleRe().abs().min(transform.getScaleIm().abs()).dividedBy(1 << SUBPIXEL_BITS);
+		Real[] borders = {
+				transform.toRe(0), transform.toRe(width - 1),
+				transform.toIm(0), transform.toIm(height - 1) };
+		for (Real border : borders) {
+			if (border.plus(subpixel).eq(border))
+				return false;
+		}
+		return true;
+	}
+
+	private static Real getPixelSize(Function<NumberFactory, CoordinateTransform> transforms, NumberFactory numberFactory) {
+		try {
+			CoordinateTransform transform = transforms.apply(numberFactory);
+			Real rv = transform.getScaleRe().abs().min(transform.getScaleIm().abs());
+			return rv.eq(0) ? null : rv;
+		} catch (ArithmeticException e) {
+			return null;
+		}
+	}
+
+	private Choice fixedPoint(int precision) {
+		return fixedPointChoices.computeIfAbsent(precision, p ->
+				new Choice("fixed point, " + p + " digits", new FixedPointNumberFactory(p), FIXED_POINT_TIER));
+	}
+
+	private static int tierOf(NumberFactory numberFactory, int bits) {
+		if (numberFactory instanceof DoubleDoubleNumberFactory)
+			return DOUBLE_DOUBLE_TIER;
+		if (numberFactory instanceof FixedPointNumberFactory)
+			return FIXED_POINT_TIER;
+		return bits <= 64 ? HARDWARE_TIER : OTHER_TIER;
+	}
+
+	// Number of bits 1/3 carries: its expansion fills any significand, unlike
+	// 1 + 2^-k that double-double keeps exactly down to the smallest double
+	static int probeBits(NumberFactory numberFactory) {
+		Real third = numberFactory.one().dividedBy(3);
+		Real h = numberFactory.one();
+		for (int k = 0; k < MAX_PROBED_BITS; k++) {
+			h = h.dividedBy(2);
+			if (third.plus(h).eq(third))
+				return k;
+		}
+		return MAX_PROBED_BITS;
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.program;
+
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Future;
+
+import org.altervista.mbilotta.julia.Consumer;
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.Production;
+import org.altervista.mbilotta.julia.Representation;
+import org.altervista.mbilotta.julia.program.Application.Image;
+import org.altervista.mbilotta.julia.program.JuliaExecutorService.Lane;
+
+
+// Bounded cache of reduced-resolution renderings of the images the user is
+// likely to zoom into next. Only used from the event dispatch thread
+public final class Prefetcher {
+
+	// Prefetched images are this many times smaller than the main one per side
+	public static final int REDUCTION = 4;
+	private static final int CAPACITY = 4;
+
+	private static final class Entry {
+		private final Image image;
+		private final Representation representation;
+		private final IntermediateImage iimg;
+		private Future<?> future;
+
+		public Entry(Image image, Representation representation, IntermediateImage iimg, Future<?> future) {
+			this.image = image;
+			this.representation = representation;
+			this.iimg = iimg;
+			this.future = future;
+		}
+
+		public void cancel() {
+			if (future != null) {
+				future.cancel(true);
+				future = null;
+			}
+		}
+	}
+
+	private final JuliaExecutorService executorService;
+	// Most recently used first
+	private final LinkedList<Entry> entries = new LinkedList<>();
+
+	public Prefetcher(JuliaExecutorService executorService) {
+		this.executorService = executorService;
+	}
+
+	public boolean contains(Image image) {
+		return find(image) != null;
+	}
+
+	// production must have a single producer
+	public void prefetch(Image image, Representation representation, Production production) {
+		assert production.getNumOfProducers() == 1;
+		if (find(image) != null)
+			return;
+
+		if (entries.size() == CAPACITY) {
+			entries.removeLast().cancel();
+		}
+		IntermediateImage iimg = production.getIntermediateImage();
+		production.setExecutor(executorService.getExecutor(Lane.BACKGROUND));
+		Future<?> future = executorService.submitAndObserve(Lane.BACKGROUND,
+				production.createProducer(0),
+				new ExecutionObserver() {});
+		entries.addFirst(new Entry(image, representation, iimg, future));
+	}
+
+	// Rendering of image if it was prefetched to completion, null otherwise
+	public BufferedImage get(Image image) {
+		Entry entry = find(image);
+		if (entry == null || !entry.iimg.isComplete())
+			return null;
+
+		entries.remove(entry);
+		entries.addFirst(entry);
+		Consumer consumer = entry.representation.createConsumer(entry.iimg);
+		BufferedImage rv = consumer.createFinalImage();
+		consumer.consume(rv);
+		return rv;
+	}
+
+	// Stops the renderings in progress, which would be stale by the time they
+	// were done. Completed ones are kept
+	public void cancel() {
+		for (Iterator<Entry> i = entries.iterator(); i.hasNext(); ) {
+			Entry entry = i.next();
+			if (!entry.iimg.isComplete()) {
+				entry.cancel();
+				i.remove();
+			}
+		}
+	}
+
+	// Stops the renderings in progress of anything but images
+	public void cancelAllBut(Collection<Image> images) {
+		for (Iterator<Entry> i = entries.iterator(); i.hasNext(); ) {
+			Entry entry = i.next();
+			if (!entry.iimg.isComplete() && !images.stream().anyMatch(image -> sameView(entry.image, image))) {
+				entry.cancel();
+				i.remove();
+			}
+		}
+	}
+
+	public void clear() {
+		for (Entry entry : entries) {
+			entry.cancel();
+		}
+		entries.clear();
+	}
+
+	private Entry find(Image image) {
+		for (Entry entry : entries) {
+			if (sameView(entry.image, image))
+				return entry;
+		}
+		return null;
+	}
+
+	private static boolean sameView(Image a, Image b) {
+		return a.getNumberFactoryInstance() == b.getNumberFactoryInstance() &&
+				a.getFormulaInstance() == b.getFormulaInstance() &&
+				a.getRepresentationInstance() == b.getRepresentationInstance() &&
+				a.getJuliaSetPoint() == b.getJuliaSetPoint() &&
+				a.getForceEqualScales() == b.getForceEqualScales() &&
+				a.getRectangle().equals(b.getRectangle());
+	}
+}
@@ -30,12 +30,14 @@ import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -57,17 +59,31 @@ import org.altervista.mbilotta.julia.Gradient;
 import org.altervista.mbilotta.julia.Gradient.Stop;
 import org.altervista.mbilotta.julia.Out;
 import org.altervista.mbilotta.julia.Printer;
+import org.altervista.mbilotta.julia.Production;
 import org.altervista.mbilotta.julia.StringPrinter;
 import org.altervista.mbilotta.julia.Utilities;
+import org.altervista.mbilotta.julia.impl.Perturbation;
 import org.altervista.mbilotta.julia.program.gui.MessagePane;
+import org.altervista.mbilotta.julia.program.parsers.FormulaPlugin;
 
 
 public class Profile {
 
+	private static final long REFERENCE_ORBIT_CACHE_SIZE = 256l << 20;
+
+	// Descriptors of the plugins shipped with the program, read from the
+	// classpath as if they were relative to the descriptor root. A profile
+	// descriptor with the same path takes the place of the built-in one
+	private static final String[] BUILT_IN_DESCRIPTORS = {
+		"julia/Expression.xml",
+		"julia/Mandelbrot.xml",
+	};
+
 	private final Path root;
 	private final Path descriptorRoot;
 	private final Path classesRoot;
 	private final Path cacheRoot;
+	private final Path referenceOrbitCacheRoot;
 	private final Path documentationRoot;
 	private final Path preferences;
 	private final Path legacyPreferences;
@@ -82,6 +98,7 @@ public class Profile {
 		descriptorRoot = rootDirectory.resolve("xml");
 		classesRoot = Paths.get("bin");
 		cacheRoot = rootDirectory.resolve("cache");
+		referenceOrbitCacheRoot = rootDirectory.resolve("orbits");
 		documentationRoot = rootDirectory.resolve("doc");
 		preferences = rootDirectory.resolve("preferences.properties");
 		legacyPreferences = rootDirectory.resolve("preferences");
@@ -164,6 +181,53 @@ public class Profile {
 		return fileVisitor.getDescriptors();
 	}
 
+	// Built-in descriptors not replaced by any of descriptors. Only their
+	// cache and documentation files live in the profile
+	public List<Path> getBuiltInDescriptors(List<Path> descriptors, Printer log, Out<Boolean> failureOut) {
+		if (log == null) {
+			log = Printer.nullPrinter();
+		}
+
+		List<Path> rv = new ArrayList<>(BUILT_IN_DESCRIPTORS.length);
+		for (String name : BUILT_IN_DESCRIPTORS) {
+			Path descriptor = descriptorRoot.resolve(name);
+			if (!descriptors.contains(descriptor) && createDirectoriesFor(descriptor, log, failureOut)) {
+				rv.add(descriptor);
+			}
+		}
+		return rv;
+	}
+
+	public InputStream openBuiltInDescriptor(Path descriptor) throws IOException {
+		String name = descriptorRoot.relativize(descriptor).toString().replace(File.separatorChar, '/');
+		InputStream rv = getClass().getResourceAsStream("xml/" + name);
+		if (rv == null) {
+			throw new NoSuchFileException(descriptor.toString());
+		}
+		return rv;
+	}
+
+	private boolean createDirectoriesFor(Path descriptor, Printer log, Out<Boolean> failureOut) {
+		Path relativeParent = descriptorRoot.relativize(descriptor.getParent());
+		Path created = null;
+		try {
+			created = Files.createDirectories(cacheRoot.resolve(relativeParent));
+			created = Files.createDirectories(documentationRoot.resolve(relativeParent));
+			return true;
+		} catch (IOException e) {
+			failureOut.set(true);
+			log.print("- could not create directory \"");
+			if (created == null) {
+				log.print(cacheRoot.resolve(relativeParent), "\". Cause: ");
+			} else {
+				log.print(documentationRoot.resolve(relativeParent), "\". Cause: ");
+			}
+			log.printStackTrace(e);
+			log.println("- descriptor \"", descriptor, "\" discarded.");
+			return false;
+		}
+	}
+
 	public Path getDescriptorParserOutputFile() {
 		return descriptorParserOutput;
 	}
@@ -179,6 +243,26 @@ public class Profile {
 		return cacheRoot.resolve(relativeParent).resolve(fileName.substring(0, fileName.length() - 4));
 	}
 
+	public Path getReferenceOrbitCacheDirectory() {
+		return referenceOrbitCacheRoot;
+	}
+
+	public DiskReferenceOrbitCache getReferenceOrbitCache(Object numberFactoryKey,
+			PluginInstance<FormulaPlugin> formulaInstance) {
+		return new DiskReferenceOrbitCache(referenceOrbitCacheRoot, REFERENCE_ORBIT_CACHE_SIZE,
+				numberFactoryKey, formulaInstance);
+	}
+
+	// Only perturbation computes reference orbits worth keeping
+	public void useReferenceOrbitCache(Production production,
+			Object numberFactoryKey,
+			PluginInstance<FormulaPlugin> formulaInstance) {
+		if (production instanceof Perturbation) {
+			((Perturbation) production).setReferenceOrbitCache(
+					getReferenceOrbitCache(numberFactoryKey, formulaInstance));
+		}
+	}
+
 	public Path getDocumentationFileFor(Path descriptor) {
 		Path relativeParent = descriptorRoot.relativize(descriptor.getParent());
 		String fileName = descriptor.getFileName().toString();
@@ -290,24 +374,8 @@ public class Profile {
 		public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
 				throws IOException {
 			String fileName = file.getFileName().toString();
-			if (fileName.endsWith(".xml")) {
-				Path relativeParent = descriptorRoot.relativize(file.getParent());
-				Path created = null;
-				try {
-					created = Files.createDirectories(cacheRoot.resolve(relativeParent));
-					created = Files.createDirectories(documentationRoot.resolve(relativeParent));
-					descriptors.add(file);
-				} catch (IOException e) {
-					failureOut.set(true);
-					log.print("- could not create directory \"");
-					if (created == null) {
-						log.print(cacheRoot.resolve(relativeParent), "\". Cause: ");
-					} else {
-						log.print(documentationRoot.resolve(relativeParent), "\". Cause: ");
-					}
-					log.printStackTrace(e);
-					log.println("- descriptor \"", file, "\" discarded.");
-				}
+			if (fileName.endsWith(".xml") && createDirectoriesFor(file, log, failureOut)) {
+				descriptors.add(file);
 			}
 			return FileVisitResult.CONTINUE;
 		}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.program;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+// Resamples the final image of a view onto the pixel grid of another view of
+// the same set, so that something sensible can be shown while the latter is
+// being computed
+final class Reprojection {
+
+	// Past this many old pixels per new pixel the old image is just a speck
+	private static final double MAX_STEP = 64;
+
+	private final BufferedImage source;
+	// Maps old pixel space onto new pixel space
+	private final AffineTransform transform;
+	private final int width;
+	private final int height;
+
+	private Reprojection(BufferedImage source, AffineTransform transform, int width, int height) {
+		this.source = source;
+		this.transform = transform;
+		this.width = width;
+		this.height = height;
+	}
+
+	// Null unless the two views overlap. The source is copied, so the caller
+	// may go on drawing on it
+	public static Reprojection create(BufferedImage source, CoordinateTransform sourceTransform,
+			CoordinateTransform targetTransform, int width, int height) {
+		// Done in the number factory's arithmetic: at deep zooms the
+		// coordinates themselves do not fit in a double, their differences do
+		Real scaleRe = sourceTransform.getScaleRe();
+		Real scaleIm = sourceTransform.getScaleIm();
+		double stepX = targetTransform.getScaleRe().dividedBy(scaleRe).doubleValue();
+		double stepY = targetTransform.getScaleIm().dividedBy(scaleIm).doubleValue();
+		if (!(stepX > 0 && stepX <= MAX_STEP && stepY > 0 && stepY <= MAX_STEP))
+			return null;
+
+		// Old pixel coordinates of the new pixel (0, 0)
+		double u = targetTransform.toRe(0).minus(sourceTransform.toRe(0)).dividedBy(scaleRe).doubleValue();
+		double v = targetTransform.toIm(0).minus(sourceTransform.toIm(0)).dividedBy(scaleIm).doubleValue();
+		if (!(Double.isFinite(u) && Double.isFinite(v)))
+			return null;
+
+		// Pixel (x, y) is sampled at the center of its unit square
+		AffineTransform transform = AffineTransform.getTranslateInstance(0.5, 0.5);
+		transform.scale(1 / stepX, 1 / stepY);
+		transform.translate(-u - 0.5, -v - 0.5);
+		Rectangle bounds = transform.createTransformedShape(
+				new Rectangle(0, 0, source.getWidth(), source.getHeight())).getBounds();
+		if (!bounds.intersects(0, 0, width, height))
+			return null;
+
+		return new Reprojection(copy(source), transform, width, height);
+	}
+
+	// Transparent wherever the old view does not reach
+	public BufferedImage resample() {
+		BufferedImage rv = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2D = rv.createGraphics();
+		g2D.setComposite(AlphaComposite.Src);
+		g2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g2D.drawImage(source, transform, null);
+		g2D.dispose();
+		return rv;
+	}
+
+	private static BufferedImage copy(BufferedImage image) {
+		ColorModel colorModel = image.getColorModel();
+		WritableRaster raster = colorModel.createCompatibleWritableRaster(image.getWidth(), image.getHeight());
+		image.copyData(raster);
+		return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+	}
+}
@@ -49,10 +49,12 @@ import org.altervista.mbilotta.julia.program.Application;
 import org.altervista.mbilotta.julia.program.Circle;
 import org.altervista.mbilotta.julia.program.ExecutionObserver;
 import org.altervista.mbilotta.julia.program.JuliaExecutorService;
+import org.altervista.mbilotta.julia.program.JuliaExecutorService.Lane;
 import org.altervista.mbilotta.julia.program.JuliaImageReader;
 import org.altervista.mbilotta.julia.program.JuliaSetPoint;
 import org.altervista.mbilotta.julia.program.Loader;
 import org.altervista.mbilotta.julia.program.PluginInstance;
+import org.altervista.mbilotta.julia.program.PrecisionSelector;
 import org.altervista.mbilotta.julia.program.Preferences;
 import org.altervista.mbilotta.julia.program.Rectangle;
 import org.altervista.mbilotta.julia.program.Timer;
@@ -92,7 +94,8 @@ public class ImageGenerationCli implements Runnable {
 	@Option(names = { "--force-equal-scales" }, negatable = true)
 	Boolean forceEqualScales;
 
-	@Option(names = { "-n", "--number-factory" })
+	@Option(names = { "-n", "--number-factory" },
+		description = "Number factory, or \"" + PrecisionSelector.AUTO_ID + "\" to pick the cheapest one resolving the image.")
 	String numberFactoryId;
 
 	@Option(names = { "-f", "--formula" })
@@ -119,6 +122,10 @@ public class ImageGenerationCli implements Runnable {
 	@Option(names = "--no-iimg-input")
 	boolean noIntermImgInput;
 
+	@Option(names = { "-a", "--antialiasing-threshold" }, paramLabel = "<threshold>",
+		description = "Take more samples at pixels differing from a neighbour by more than threshold (0-255) in some color channel.")
+	Integer antialiasingThreshold;
+
 	@Parameters
 	List<String> parameters;
 
@@ -176,6 +183,13 @@ public class ImageGenerationCli implements Runnable {
 				}
 			}
 
+			// In auto mode the number factory instance only provides a starting
+			// point and what gets written in the output file
+			boolean autoPrecision = PrecisionSelector.AUTO_ID.equalsIgnoreCase(numberFactoryId);
+			if (autoPrecision) {
+				numberFactoryId = null;
+			}
+
 			if (numberFactoryId != null || numberFactoryInstance == null) {
 				// Find matching number factory
 				List<NumberFactoryPlugin> matchingNumberFactories = findMatchingPlugins(loader.getAvailableNumberFactories(), numberFactoryId);
@@ -183,7 +197,7 @@ public class ImageGenerationCli implements Runnable {
 					warnOfMatchNotFound("number factory", numberFactoryId);
 					return;
 				}
-				if (matchingNumberFactories.size() > 1) {
+				if (matchingNumberFactories.size() > 1 && !autoPrecision) {
 					warnOfMultipleMatches(matchingNumberFactories, "number factories", numberFactoryId);
 					return;
 				}
@@ -296,6 +310,18 @@ public class ImageGenerationCli implements Runnable {
 
 			// Instantiate NumberFactory
 			NumberFactory numberFactory = (NumberFactory) numberFactoryInstance.create();
+			Object referenceOrbitKey = numberFactoryInstance;
+			if (autoPrecision) {
+				PrecisionSelector.Choice choice = new PrecisionSelector(loader.getAvailableNumberFactories()).select(
+					numberFactoryInstance, numberFactory,
+					nf -> rectangle != null ?
+						rectangle.createCoordinateTransform(width, height, forceEqualScales, nf) :
+						circle.createCoordinateTransform(width, height, nf),
+					width, height);
+				Utilities.println("Number factory: ", choice);
+				numberFactory = choice.getNumberFactory();
+				referenceOrbitKey = choice;
+			}
 			// Instantiate Formula
 			Formula formula = (Formula) formulaInstance.create(numberFactory);
 			// Instantiate Representation
@@ -313,19 +339,14 @@ public class ImageGenerationCli implements Runnable {
 				// Run computation
 				if (!intermediateImage.isComplete()) {
 					// Instantiate CoordinateTransform
-					CoordinateTransform coordinateTransform;
-					if (rectangle != null) {
-						coordinateTransform = rectangle.createCoordinateTransform(width, height, forceEqualScales, numberFactory);
-					} else {
-						coordinateTransform = circle.createCoordinateTransform(width, height, numberFactory);
-						rectangle = circle.createRectangle(width, height, numberFactory);
-					}
+					CoordinateTransform coordinateTransform = createCoordinateTransform(numberFactory);
 
 					// Instantiate Production
 					Production production = representation.createProduction(
 						intermediateImage, numberFactory, formula,
 						coordinateTransform,
 						juliaSetPoint != null ? juliaSetPoint.toComplex(numberFactory) : null);
+					loader.getProfile().useReferenceOrbitCache(production, referenceOrbitKey, formulaInstance);
 
 					// Pre-rendering output file check
 					if (!replaceExisting && outputFile.exists()) {
@@ -333,8 +354,7 @@ public class ImageGenerationCli implements Runnable {
 						return;
 					}
 
-					int numOfProducers = production.getNumOfProducers();
-					executorService = new JuliaExecutorService(0, 10l, TimeUnit.MINUTES);
+					executorService = new JuliaExecutorService(10l, TimeUnit.MINUTES);
 
 					// Register shutdown hook to save a partial rendering on CTRL+C
 					partialRenderingWriter = new PartialRenderingWriter(
@@ -352,37 +372,8 @@ public class ImageGenerationCli implements Runnable {
 
 					Utilities.print("Rendering intermediate image...");
 					Utilities.flush();
-					CountDownLatch done = new CountDownLatch(numOfProducers);
 					timer.start();
-					for (int i = 0; i < numOfProducers; i++) {
-						Production.Producer producer = production.createProducer(i);
-						executorService.submitAndObserve(producer, new ExecutionObserver() {
-							@Override
-							public void executionCancelled(Runnable target) {
-								done.countDown();
-							}
-
-							@Override
-							public void executionFinished(Runnable target) {
-								done.countDown();
-							}
-
-							@Override
-							public void executionFinished(Runnable target, Throwable cause) {
-								Utilities.err.print("Producer thread terminated with exception ")
-									.printStackTrace(cause)
-									.flush();
-								done.countDown();
-							}
-						});
-					}
-
-					boolean interrupted = false;
-					try {
-						done.await();
-					} catch (InterruptedException ie) {
-						interrupted = true;
-					}
+					boolean interrupted = runProducers(production);
 					timer.stop();
 					Utilities.print(" ", Utilities.formatDuration(timer.getElapsedTime()));
 					if (interrupted) {
@@ -408,13 +399,18 @@ public class ImageGenerationCli implements Runnable {
 						jimWriter.write();
 					}
 				} else {
+					IntermediateImage finalIntermediateImage = intermediateImage;
+					if (antialiasingThreshold != null) {
+						finalIntermediateImage = antialias(intermediateImage, numberFactory, formula, representation);
+					}
+
 					Utilities.print("Rendering final image...");
 					Utilities.flush();
 	
 					timer.start();
 	
 					// Instantiate Consumer
-					Consumer consumer = representation.createConsumer(intermediateImage);
+					Consumer consumer = representation.createConsumer(finalIntermediateImage);
 	
 					// Compute final image
 					BufferedImage finalImage = consumer.createFinalImage();
@@ -456,6 +452,86 @@ public class ImageGenerationCli implements Runnable {
 		}
 	}
 
+	private CoordinateTransform createCoordinateTransform(NumberFactory numberFactory) {
+		if (rectangle != null) {
+			return rectangle.createCoordinateTransform(width, height, forceEqualScales, numberFactory);
+		}
+		CoordinateTransform rv = circle.createCoordinateTransform(width, height, numberFactory);
+		rectangle = circle.createRectangle(width, height, numberFactory);
+		return rv;
+	}
+
+	// Returns true if interrupted before all producers were done
+	private boolean runProducers(Production production) {
+		int numOfProducers = production.getNumOfProducers();
+		// The rendering is the foreground job here
+		production.setExecutor(executorService.getExecutor(Lane.INTERACTIVE));
+		CountDownLatch done = new CountDownLatch(numOfProducers);
+		for (int i = 0; i < numOfProducers; i++) {
+			Production.Producer producer = production.createProducer(i);
+			executorService.submitProducer(Lane.INTERACTIVE, producer, new ExecutionObserver() {
+				@Override
+				public void executionCancelled(Runnable target) {
+					done.countDown();
+				}
+
+				@Override
+				public void executionFinished(Runnable target) {
+					done.countDown();
+				}
+
+				@Override
+				public void executionFinished(Runnable target, Throwable cause) {
+					Utilities.err.print("Producer thread terminated with exception ")
+						.printStackTrace(cause)
+						.flush();
+					done.countDown();
+				}
+			});
+		}
+
+		boolean interrupted = false;
+		try {
+			done.await();
+		} catch (InterruptedException ie) {
+			interrupted = true;
+		}
+		return interrupted;
+	}
+
+	// Returns iimg itself if the representation cannot refine it or the
+	// refinement is halted
+	private IntermediateImage antialias(IntermediateImage iimg,
+			NumberFactory numberFactory,
+			Formula formula,
+			Representation representation) {
+		Production supersampling = representation.createSupersampling(
+			iimg, numberFactory, formula,
+			createCoordinateTransform(numberFactory),
+			juliaSetPoint != null ? juliaSetPoint.toComplex(numberFactory) : null,
+			antialiasingThreshold);
+		if (supersampling == null) {
+			Utilities.println("Warning: representation does not support antialiasing");
+			return iimg;
+		}
+
+		if (executorService == null) {
+			executorService = new JuliaExecutorService(10l, TimeUnit.MINUTES);
+		}
+		Utilities.print("Antialiasing...");
+		Utilities.flush();
+		timer.start();
+		boolean interrupted = runProducers(supersampling);
+		timer.stop();
+		Utilities.print(" ", Utilities.formatDuration(timer.getElapsedTime()));
+		if (interrupted) {
+			Utilities.println(" (halted)");
+			return iimg;
+		}
+		Utilities.println();
+		return supersampling.getIntermediateImage();
+	}
+
 	@Override
 	public String toString() {
 		return "[" +
@@ -467,6 +543,7 @@ public class ImageGenerationCli implements Runnable {
 			", formulaId=" + formulaId +
 			", representationId=" + representationId +
 			", outputPath=" + outputPath +
+			", antialiasingThreshold=" + antialiasingThreshold +
 			", replaceExisting=" + replaceExisting +
 			", parameters=" + parameters +
 			"]";
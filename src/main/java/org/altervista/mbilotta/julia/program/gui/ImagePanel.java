@@ -28,7 +28,8 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
-import java.awt.Rectangle;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.Transparency;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -62,6 +63,9 @@ public class ImagePanel extends JPanel {
 
 	private final Application application;
 	private final MouseEventHandler mouseEventHandler;
+	// In navigation mode dragging pans and, with no selection, the wheel zooms
+	private boolean navigationEnabled;
+	private Point dragOrigin;
 
 	public ImagePanel(int imgWidth, int imgHeight, Color selectionColor, Application application) {
 		setOpaque(true);
@@ -73,6 +77,7 @@ public class ImagePanel extends JPanel {
 
 		mouseEventHandler = new MouseEventHandler();
 		addMouseListener(mouseEventHandler);
+		addMouseMotionListener(mouseEventHandler);
 	}
 
 	public ImagePanel(BufferedImage fimg, Color selectionColor, Consumer consumer) {
@@ -271,6 +276,35 @@ public class ImagePanel extends JPanel {
 		}
 	}
 
+	// Stretches image over the whole final image. The consumer paints over it
+	// as the actual pixels come in
+	public void showPreview(BufferedImage image) {
+		Graphics2D g2D = fimg.createGraphics();
+		g2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g2D.drawImage(image, 0, 0, fimg.getWidth(), fimg.getHeight(), null);
+		g2D.dispose();
+		repaint(0, 0, fimg.getWidth(), fimg.getHeight());
+	}
+
+	// Draws image wherever consumer has not painted yet. Ignored if the final
+	// image was reset or refreshed by another consumer in the meantime
+	public void showUnderlay(BufferedImage image, Consumer consumer) {
+		if (consumer != this.consumer ||
+				image.getWidth() != fimg.getWidth() || image.getHeight() != fimg.getHeight())
+			return;
+
+		Graphics2D g2D = fimg.createGraphics();
+		Rectangle bounds = new Rectangle(0, 0, fimg.getWidth(), fimg.getHeight());
+		for (Rectangle r : subtract(bounds, consumer.getAvailableRegions())) {
+			g2D.drawImage(image,
+					r.x, r.y, r.x + r.width, r.y + r.height,
+					r.x, r.y, r.x + r.width, r.y + r.height,
+					null);
+			repaint(r);
+		}
+		g2D.dispose();
+	}
+
 	private void setImageSize(int width, int height) {
 		Dimension newSize = new Dimension(width, height);
 		heightOverWidth = (double)height / width;
@@ -327,8 +361,25 @@ public class ImagePanel extends JPanel {
 		if (oldSelection != null) {
 			selection = null;
 			repaint(oldSelection);
-			if (application != null) application.setStatusMessage(null, false);
-			removeMouseWheelListener(mouseEventHandler);
+			if (application != null) {
+				application.setStatusMessage(null, false);
+				application.selectionChanged();
+			}
+			if (!navigationEnabled) removeMouseWheelListener(mouseEventHandler);
+		}
+	}
+
+	public void setNavigationEnabled(boolean flag) {
+		if (flag != navigationEnabled) {
+			navigationEnabled = flag;
+			dragOrigin = null;
+			if (selection == null) {
+				if (flag) {
+					addMouseWheelListener(mouseEventHandler);
+				} else {
+					removeMouseWheelListener(mouseEventHandler);
+				}
+			}
 		}
 	}
 
@@ -347,7 +398,7 @@ public class ImagePanel extends JPanel {
 					selection = addThickness(new Rectangle(x, y, selectionWidth, selectionHeight), SELECTION_THICKNESS);
 					repaint(selection);
 					if (application != null) application.setStatusMessage(null, false);
-					addMouseWheelListener(this);
+					if (!navigationEnabled) addMouseWheelListener(this);
 				} else {
 					Rectangle oldSelection = new Rectangle(selection);
 					selection.translate(e.getX() - selectionCenterX, e.getY() - selectionCenterY);
@@ -360,11 +411,48 @@ public class ImagePanel extends JPanel {
 						repaint(selection);
 					}
 				}
+				if (application != null) application.selectionChanged();
 			} else if (SwingUtilities.isRightMouseButton(e)) {
 				clearSelection();
 			}
 		}
 
+		@Override
+		public void mouseMoved(MouseEvent e) {
+			if (application != null) {
+				application.pointerMoved(new ImageSelection(e.getX(), e.getY(), SELECTION_INITIAL_WIDTH));
+			}
+		}
+
+		@Override
+		public void mouseExited(MouseEvent e) {
+			if (application != null) application.pointerMoved(null);
+		}
+
+		@Override
+		public void mousePressed(MouseEvent e) {
+			if (navigationEnabled && SwingUtilities.isLeftMouseButton(e)) {
+				dragOrigin = e.getPoint();
+			}
+		}
+
+		@Override
+		public void mouseDragged(MouseEvent e) {
+			if (dragOrigin != null) {
+				int dx = e.getX() - dragOrigin.x;
+				int dy = e.getY() - dragOrigin.y;
+				dragOrigin = e.getPoint();
+				if (application != null && (dx != 0 || dy != 0)) application.pan(dx, dy);
+			}
+		}
+
+		@Override
+		public void mouseReleased(MouseEvent e) {
+			if (SwingUtilities.isLeftMouseButton(e)) {
+				dragOrigin = null;
+			}
+		}
+
 		@Override
 		public void mouseWheelMoved(MouseWheelEvent e) {
 			if (selection != null) {
@@ -379,7 +467,10 @@ public class ImagePanel extends JPanel {
 					selection = addThickness(new Rectangle(x, y, newSelectionWidth, newSelectionHeight), SELECTION_THICKNESS);
 					selectionWidth = newSelectionWidth;
 					repaint(e.getWheelRotation() < 0 ? oldSelection : selection);
+					if (application != null) application.selectionChanged();
 				}
+			} else if (navigationEnabled && application != null) {
+				application.zoom(e.getWheelRotation(), e.getX(), e.getY());
 			}
 		}
 	}
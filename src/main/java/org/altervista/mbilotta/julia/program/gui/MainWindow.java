@@ -24,6 +24,7 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Container;
 import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 
@@ -58,6 +59,7 @@ public class MainWindow extends JFrame {
 	private final Application application;
 	private ImagePanel imagePanel;
 	private JLabel messageLabel;
+	private JLabel precisionLabel;
 	private JProgressBar progressBar;
 	private JMenu windowMenu;
 
@@ -79,6 +81,8 @@ public class MainWindow extends JFrame {
 				application);
 		messageLabel = new MessageLabel("Left-click on the image to select an area you want to zoom in.");
 		timerLabel = new JLabel();
+		precisionLabel = new JLabel();
+		precisionLabel.setVisible(false);
 		progressBar = new JProgressBar();
 		progressBar.setStringPainted(true);
 
@@ -88,6 +92,7 @@ public class MainWindow extends JFrame {
 	private JComponent buildStatusBar() {
 		JComponent statusBar = new Box(BoxLayout.X_AXIS);
 		timerLabel.setBorder(messageLabel.getBorder());
+		precisionLabel.setBorder(messageLabel.getBorder());
 		timerLabel.setIcon(application.getIcon("clock"));
 		timerLabel.setText(Utilities.formatMillisDuration(0));
 		progressBar.setBorder(BorderFactory.createCompoundBorder(
@@ -107,9 +112,11 @@ public class MainWindow extends JFrame {
 		messageLabel.setPreferredSize(new Dimension(0, heightMax));
 		messageLabel.setMaximumSize(messageLabelSize);
 		timerLabel.setMaximumSize(timerLabelSize);
+		precisionLabel.setMaximumSize(new Dimension(Short.MAX_VALUE, heightMax));
 		progressBar.setMaximumSize(progressBarSize);
 		
 		statusBar.add(messageLabel);
+		statusBar.add(precisionLabel);
 		statusBar.add(timerLabel);
 		statusBar.add(progressBar);
 		return statusBar;
@@ -201,6 +208,9 @@ public class MainWindow extends JFrame {
 		toolsMenu.addSeparator();
 		add(toolsMenu, application.getRefreshAction());
 		add(toolsMenu, new JCheckBoxMenuItem(application.getRefreshPeriodicallyAction()));
+		add(toolsMenu, new JCheckBoxMenuItem(application.getAutoPrecisionAction()));
+		add(toolsMenu, new JCheckBoxMenuItem(application.getPrefetchAction()));
+		add(toolsMenu, new JCheckBoxMenuItem(application.getNavigateAction()));
 		menuBar.add(toolsMenu);
 
 		windowMenu = new JMenu("Window");
@@ -222,6 +232,7 @@ public class MainWindow extends JFrame {
 	private void build() {
 		Container contentPane = getContentPane();
 		JScrollPane scrollPane = new JScrollPane(imagePanel);
+		scrollPane.getViewport().addChangeListener(e -> application.viewportChanged());
 		contentPane.add(scrollPane, BorderLayout.CENTER);
 		contentPane.add(buildStatusBar(), BorderLayout.SOUTH);
 		contentPane.add(buildToolBar(), BorderLayout.NORTH);
@@ -293,6 +304,18 @@ public class MainWindow extends JFrame {
 		percentages = new int[consumer.getNumOfProducers()];
 	}
 
+	public void showPreview(BufferedImage image) {
+		imagePanel.showPreview(image);
+	}
+
+	public void showUnderlay(BufferedImage image, Consumer consumer) {
+		imagePanel.showUnderlay(image, consumer);
+	}
+
+	public void setNavigationEnabled(boolean flag) {
+		imagePanel.setNavigationEnabled(flag);
+	}
+
 	public void setSelectionColor(Color color) {
 		imagePanel.setSelectionColor(color);
 	}
@@ -336,6 +359,11 @@ public class MainWindow extends JFrame {
 		return imagePanel.getPreferredSize();
 	}
 
+	// Part of the image in view, in image pixels
+	public Rectangle getVisibleRegion() {
+		return imagePanel.getVisibleRect();
+	}
+
 	public void addToWindowMenu(JMenuItem menuItem) {
 		windowMenu.add(menuItem, windowMenu.getMenuComponentCount() - 3);
 	}
@@ -347,6 +375,12 @@ public class MainWindow extends JFrame {
 	private boolean highlighting = false;
 	private Color labelForeground = null;
 
+	// Number factory picked in auto mode, or null to hide the label
+	public void setPrecisionDescription(String description) {
+		precisionLabel.setText(description);
+		precisionLabel.setVisible(description != null);
+	}
+
 	public void setStatusMessage(String message, boolean highlight) {
 		if (message == null) {
 			if (imagePanel.hasSelection()) {
@@ -29,12 +29,15 @@ import java.io.File;
 import java.lang.reflect.Modifier;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
@@ -64,6 +67,9 @@ public class DescriptorParser extends Parser<Plugin> {
 	
 	public static final String DESCRIPTOR_NS_URI = "http://mbilotta.altervista.org/julia/descriptor";
 
+	private static final Set<String> FORMULA_PROPERTIES = new HashSet<>(
+			Arrays.asList("c", "z", "conjugationSymmetric", "pointSymmetric"));
+
 	private final Profile profile;
 	private final ClassLoader classLoader;
 	private final BinaryRelation<String> localizationPreferences;
@@ -572,7 +578,7 @@ public class DescriptorParser extends Parser<Plugin> {
 				continue;
 			}
 
-			if (isFormula && (propertyDescriptor.getName().equals("c") || propertyDescriptor.getName().equals("z"))) {
+			if (isFormula && FORMULA_PROPERTIES.contains(propertyDescriptor.getName())) {
 				// Property required by interface Formula
 				continue;
 			}
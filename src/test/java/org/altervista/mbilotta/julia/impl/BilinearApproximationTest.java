@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+
+public class BilinearApproximationTest {
+
+	private static final int LENGTH = 50000;
+
+	// Tables built by helpers must be the very same built by the caller
+	// alone, including those of the merge levels
+	@Test
+	public void executorBuildsTheSameTable() {
+		double[] re = new double[LENGTH];
+		double[] im = new double[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			re[i] = 0.5 * Math.sin(i);
+			im[i] = 0.5 * Math.cos(0.7 * i);
+		}
+
+		MandelbrotFormula formula = new MandelbrotFormula();
+		double dcMax = 0x1p-120;
+		BilinearApproximation expected = new BilinearApproximation(formula, re, im, 0, LENGTH - 1, dcMax, null);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		BilinearApproximation actual;
+		try {
+			actual = new BilinearApproximation(formula, re, im, 0, LENGTH - 1, dcMax, executor);
+		} finally {
+			executor.shutdown();
+		}
+
+		// Deltas of the order of 2^-100, scaled by 2^100
+		int applied = 0;
+		for (int n = 0; n < LENGTH - 1; n += 64) {
+			double[] expectedDelta = { 1e-6, -2e-6, 1e-8, 1e-8 };
+			double[] actualDelta = expectedDelta.clone();
+			int skipped = expected.apply(n, LENGTH, expectedDelta, -100);
+			assertEquals(skipped, actual.apply(n, LENGTH, actualDelta, -100));
+			assertArrayEquals(expectedDelta, actualDelta, 0);
+			if (skipped > 1) {
+				applied++;
+			}
+		}
+		assertTrue(applied > 0);
+	}
+
+	// A rejecting executor leaves all the work to the caller
+	@Test
+	public void rejectingExecutorIsHarmless() {
+		double[] re = new double[LENGTH];
+		double[] im = new double[LENGTH];
+		Arrays.fill(re, 0.5);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.shutdown();
+		BilinearApproximation approximation = new BilinearApproximation(new MandelbrotFormula(), re, im, 0, LENGTH - 1, 0, executor);
+		double[] delta = { 1e-6, 0, 0, 0 };
+		assertTrue(approximation.apply(0, LENGTH, delta, -100) > 1);
+	}
+}
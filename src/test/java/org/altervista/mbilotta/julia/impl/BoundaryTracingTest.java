@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertTrue;
+
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.junit.Test;
+
+
+public class BoundaryTracingTest {
+
+	private static final int WIDTH = 96;
+	private static final int HEIGHT = 72;
+	private static final int MAX_ITERATIONS = 256;
+	private static final int RUNS = 10;
+
+	// Producers meet along shared contours: whatever the interleaving, each
+	// point is written by one of them only. Islands thinner than the probe
+	// spacing may still be filled over, a few pixels at most
+	@Test
+	public void concurrentProducersMatchFullRecompute() throws InterruptedException {
+		NumberFactory numberFactory = new DoubleDoubleNumberFactory();
+		CoordinateTransform coordinateTransform = EscapeTimeRepresentation.createCoordinateTransform(
+				numberFactory, "-0.75", "0.1", "0.03125", WIDTH, HEIGHT);
+		int[] expected = EscapeTimeRepresentation.render(
+				new EscapeTimeRepresentation(MAX_ITERATIONS, 1, ProductionMode.TILED_SCAN),
+				numberFactory, new MandelbrotFormula(), coordinateTransform, null, WIDTH, HEIGHT, 1);
+		for (int run = 0; run < RUNS; run++) {
+			int[] actual = EscapeTimeRepresentation.render(
+					new EscapeTimeRepresentation(MAX_ITERATIONS, 1, ProductionMode.BOUNDARY_TRACING),
+					numberFactory, new MandelbrotFormula(), coordinateTransform, null, WIDTH, HEIGHT, 8);
+			int differences = 0;
+			for (int i = 0; i < expected.length; i++) {
+				if (expected[i] != actual[i]) {
+					differences++;
+				}
+			}
+			assertTrue(differences + " points differ", differences <= expected.length / 1000);
+		}
+	}
+}
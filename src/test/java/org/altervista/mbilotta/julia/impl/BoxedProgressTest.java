@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.altervista.mbilotta.julia.Consumer;
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Progress;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.junit.Test;
+
+
+public class BoxedProgressTest {
+
+	private static final int WIDTH = 40;
+	private static final int HEIGHT = 30;
+	private static final int MAX_ITERATIONS = 100;
+	private static final int NUM_OF_PRODUCERS = 4;
+
+	@Test
+	public void rasterScanRunsOnPlainProgress() throws InterruptedException {
+		assertRunsOnPlainProgress(new EscapeTimeRepresentation(MAX_ITERATIONS, 1, ProductionMode.RASTER_SCAN));
+	}
+
+	@Test
+	public void progressiveRefinementRunsOnPlainProgress() throws InterruptedException {
+		assertRunsOnPlainProgress(new EscapeTimeRepresentation(MAX_ITERATIONS, 3, ProductionMode.RASTER_SCAN));
+	}
+
+	// Images built on plain Progress objects, holding the same values boxed,
+	// are produced and consumed like those built on counters
+	private static void assertRunsOnPlainProgress(EscapeTimeRepresentation representation) throws InterruptedException {
+		NumberFactory numberFactory = new DoubleDoubleNumberFactory();
+		CoordinateTransform coordinateTransform = EscapeTimeRepresentation.createCoordinateTransform(
+				numberFactory, "-0.75", "0", "0.08", WIDTH, HEIGHT);
+		int[] expected = EscapeTimeRepresentation.render(representation,
+				numberFactory, new MandelbrotFormula(), coordinateTransform, null, WIDTH, HEIGHT, NUM_OF_PRODUCERS);
+
+		IntermediateImage counters = representation.createIntermediateImage(WIDTH, HEIGHT, NUM_OF_PRODUCERS);
+		Progress[] progress = new Progress[NUM_OF_PRODUCERS];
+		for (int i = 0; i < NUM_OF_PRODUCERS; i++) {
+			Progress p = counters.getProgressOf(i);
+			progress[i] = new Progress(p.getInitialValue(), p.getFinalValue());
+		}
+		IntermediateImage iimg = representation.createIntermediateImage(WIDTH, HEIGHT, progress);
+		EscapeTimeRepresentation.run(representation.createProduction(
+				iimg, numberFactory, new MandelbrotFormula(), coordinateTransform, null));
+		assertTrue(iimg.isComplete());
+		assertArrayEquals(expected, EscapeTimeRepresentation.getPoints((IntegerImage) iimg));
+
+		Consumer consumer = representation.createConsumer(iimg);
+		int[] percentages = new int[NUM_OF_PRODUCERS];
+		consumer.consume(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB), percentages);
+		for (int percentage : percentages) {
+			assertEquals(100, percentage);
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Production;
+import org.altervista.mbilotta.julia.Progress;
+import org.altervista.mbilotta.julia.Representation;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.Real;
+
+
+// Raw escape times: enough of a representation to run every production
+// mode and compare the points they compute
+final class EscapeTimeRepresentation extends AbstractSimpleRepresentation {
+
+	private final int maxIterations;
+	// Points computed so far. Past the budget, producers are interrupted
+	private final AtomicInteger computed = new AtomicInteger();
+	private volatile int budget = Integer.MAX_VALUE;
+	// Computing this point throws, every time it is tried
+	private volatile int failingX = -1;
+	private volatile int failingY = -1;
+	private final AtomicInteger failures = new AtomicInteger();
+
+	EscapeTimeRepresentation(int maxIterations, int numOfSteps, ProductionMode productionMode) {
+		super(numOfSteps, productionMode);
+		this.maxIterations = maxIterations;
+	}
+
+	final class EscapeTime implements PointCalculator {
+
+		private final IntegerImage iimg;
+		private final int maxIterations;
+		private final boolean isJuliaSet;
+
+		EscapeTime(IntegerImage iimg, int maxIterations, boolean isJuliaSet) {
+			this.iimg = iimg;
+			this.maxIterations = maxIterations;
+			this.isJuliaSet = isJuliaSet;
+		}
+
+		@Override
+		public void computePoint(int x, int y, CoordinateTransform coordinateTransform, Formula formula) {
+			if (x == failingX && y == failingY) {
+				failures.incrementAndGet();
+				throw new ArithmeticException("Failing at (" + x + ", " + y + ")");
+			}
+			Complex point = coordinateTransform.toComplex(x, y);
+			if (isJuliaSet) {
+				formula.initJuliaIteration(point);
+			} else {
+				formula.initMandelbrotIteration(point);
+			}
+			int iterations = formula.iterate(maxIterations);
+			iimg.setPoint(x, y, formula.bailoutOccured() ? iterations : maxIterations);
+			if (computed.incrementAndGet() >= budget) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public IntegerImage getIntermediateImage() {
+			return iimg;
+		}
+
+		@Override
+		public EscapeTime newInstance() {
+			return new EscapeTime(iimg, maxIterations, isJuliaSet);
+		}
+
+		@Override
+		public boolean hasSymmetricPoints() {
+			return true;
+		}
+	}
+
+	int getComputed() {
+		return computed.get();
+	}
+
+	// Producers stop soon after that many more points are computed
+	void setBudget(int points) {
+		computed.set(0);
+		budget = points;
+	}
+
+	void setFailingPoint(int x, int y) {
+		failingX = x;
+		failingY = y;
+	}
+
+	int getFailures() {
+		return failures.get();
+	}
+
+	@Override
+	protected RasterImage createIntermediateImage(int width, int height, Progress[] progress) {
+		return isProgressivelyRefined() ? new ProgressivelyRefinedImage(width, height, progress) : new IntegerImage(width, height, progress);
+	}
+
+	@Override
+	protected EscapeTime createPointCalculator(IntermediateImage iimg, NumberFactory numberFactory,
+			CoordinateTransform coordinateTransform, boolean isJuliaSet) {
+		return new EscapeTime((IntegerImage) iimg, maxIterations, isJuliaSet);
+	}
+
+	@Override
+	protected PixelCalculator createPixelCalculator() {
+		return new PixelCalculator() {
+			@Override
+			public int computePixel(int x, int y, IntermediateImage iimg) {
+				return ((IntegerImage) iimg).getPoint(x, y);
+			}
+
+			@Override
+			public int getTransparency() {
+				return OPAQUE;
+			}
+		};
+	}
+
+	// The width x height image centered at center, with pixels scale wide
+	static CoordinateTransform createCoordinateTransform(NumberFactory numberFactory,
+			String centerRe, String centerIm, String scale, int width, int height) {
+		Real pixel = numberFactory.valueOf(scale);
+		return new CoordinateTransform(numberFactory.valueOf(centerRe), numberFactory.valueOf(centerIm),
+				numberFactory.valueOf(width).dividedBy(2), numberFactory.valueOf(height).dividedBy(2),
+				pixel, pixel.negate());
+	}
+
+	static int[] render(Representation representation, NumberFactory numberFactory, Formula formula,
+			CoordinateTransform coordinateTransform, Complex juliaSetPoint, int width, int height, int numOfProducers)
+			throws InterruptedException {
+		IntermediateImage iimg = representation.createIntermediateImage(width, height, numOfProducers);
+		run(representation.createProduction(iimg, numberFactory, formula, coordinateTransform, juliaSetPoint));
+		return getPoints((IntegerImage) iimg);
+	}
+
+	static void run(Production production) throws InterruptedException {
+		int numOfProducers = production.getNumOfProducers();
+		Thread[] threads = new Thread[numOfProducers];
+		for (int i = 0; i < numOfProducers; i++) {
+			threads[i] = new Thread(production.createProducer(i));
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	// Producers that throw are handed the exception and resumed, as the
+	// application does, until they finish
+	static void runResuming(Production production) throws InterruptedException {
+		int numOfProducers = production.getNumOfProducers();
+		Thread[] threads = new Thread[numOfProducers];
+		for (int i = 0; i < numOfProducers; i++) {
+			Production.Producer producer = production.createProducer(i);
+			threads[i] = new Thread(() -> {
+				while (true) {
+					try {
+						producer.run();
+						return;
+					} catch (RuntimeException e) {
+						producer.handleException(e);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	static int[] getPoints(IntegerImage iimg) {
+		int width = iimg.getWidth();
+		int height = iimg.getHeight();
+		int[] rv = new int[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				rv[y * width + x] = iimg.getPoint(x, y);
+			}
+		}
+		return rv;
+	}
+
+	static IntermediateImage copy(Representation representation, IntermediateImage iimg)
+			throws IOException, ClassNotFoundException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			representation.writeIntermediateImage(iimg, out);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return representation.readIntermediateImage(in);
+		}
+	}
+}
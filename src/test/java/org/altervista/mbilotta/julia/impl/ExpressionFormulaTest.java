@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.altervista.mbilotta.julia.math.impl.FixedPointNumberFactory;
+import org.junit.Test;
+
+
+public class ExpressionFormulaTest {
+
+	private static final int MAX_ITERATIONS = 500;
+	private static final double TOLERANCE = 1e-9;
+
+	// Escaping, periodic and slowly escaping orbits alike
+	private static final double[][] POINTS = {
+		{ 0.25, 0.5 },
+		{ -0.75, 0.1 },
+		{ -1.25, 0 },
+		{ 0.3, -0.02 },
+		{ -0.1, 0.9 },
+		{ 0.4, 0.3 },
+		{ -1.9, 0.001 },
+	};
+
+	@Test
+	public void compiledRecurrenceMatchesMandelbrotOnDoubleDoubles() {
+		assertMatchesMandelbrot(new DoubleDoubleNumberFactory());
+	}
+
+	@Test
+	public void compiledRecurrenceMatchesMandelbrotOnFixedPoint() {
+		assertMatchesMandelbrot(new FixedPointNumberFactory(40));
+	}
+
+	@Test
+	public void compiledDoubleRecurrenceMatchesMandelbrot() {
+		ExpressionFormula expression = new ExpressionFormula();
+		expression.setExpression("z^2 + c");
+		MandelbrotFormula mandelbrot = new MandelbrotFormula();
+		for (double[] point : POINTS) {
+			double[] expected = { 0, 0, point[0], point[1] };
+			double[] actual = expected.clone();
+			mandelbrot.initMandelbrotIteration(expected);
+			expression.initMandelbrotIteration(actual);
+			for (int i = 0; i < MAX_ITERATIONS && !mandelbrot.bailoutOccured(expected); i++) {
+				assertEquals(false, expression.bailoutOccured(actual));
+				mandelbrot.iterate(expected);
+				expression.iterate(actual);
+				assertEquals(expected[0], actual[0], TOLERANCE * Math.abs(expected[0]));
+				assertEquals(expected[1], actual[1], TOLERANCE * Math.abs(expected[1]));
+			}
+			assertEquals(mandelbrot.bailoutOccured(expected), expression.bailoutOccured(actual));
+		}
+	}
+
+	// Both Mandelbrot and Julia iterations, compared step by step
+	private static void assertMatchesMandelbrot(NumberFactory numberFactory) {
+		for (double[] point : POINTS) {
+			Complex c = numberFactory.valueOf(numberFactory.valueOf(point[0]), numberFactory.valueOf(point[1]));
+			ExpressionFormula expression = newExpressionFormula(numberFactory);
+			MandelbrotFormula mandelbrot = newMandelbrotFormula(numberFactory);
+			expression.initMandelbrotIteration(c);
+			mandelbrot.initMandelbrotIteration(c);
+			assertSameOrbit(mandelbrot, expression);
+
+			expression = newExpressionFormula(numberFactory);
+			mandelbrot = newMandelbrotFormula(numberFactory);
+			Complex juliaSetPoint = numberFactory.valueOf(numberFactory.valueOf(-0.8), numberFactory.valueOf(0.156));
+			expression.setC(juliaSetPoint);
+			mandelbrot.setC(juliaSetPoint);
+			expression.initJuliaIteration(c);
+			mandelbrot.initJuliaIteration(c);
+			assertSameOrbit(mandelbrot, expression);
+		}
+	}
+
+	private static void assertSameOrbit(Formula expected, Formula actual) {
+		for (int i = 0; i < MAX_ITERATIONS && !expected.bailoutOccured(); i++) {
+			assertEquals(false, actual.bailoutOccured());
+			expected.iterate();
+			actual.iterate();
+			double re = expected.getZ().re().doubleValue();
+			double im = expected.getZ().im().doubleValue();
+			assertEquals(re, actual.getZ().re().doubleValue(), TOLERANCE * Math.abs(re));
+			assertEquals(im, actual.getZ().im().doubleValue(), TOLERANCE * Math.abs(im));
+		}
+		assertEquals(expected.bailoutOccured(), actual.bailoutOccured());
+	}
+
+	private static ExpressionFormula newExpressionFormula(NumberFactory numberFactory) {
+		ExpressionFormula rv = new ExpressionFormula();
+		rv.setExpression("z^2 + c");
+		rv.cacheConstants(numberFactory);
+		return rv;
+	}
+
+	private static MandelbrotFormula newMandelbrotFormula(NumberFactory numberFactory) {
+		MandelbrotFormula rv = new MandelbrotFormula();
+		rv.cacheConstants(numberFactory);
+		return rv;
+	}
+}
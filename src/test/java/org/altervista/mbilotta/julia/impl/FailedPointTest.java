@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.junit.Test;
+
+
+public class FailedPointTest {
+
+	private static final int WIDTH = 96;
+	private static final int HEIGHT = 72;
+	private static final int MAX_ITERATIONS = 256;
+	// On a tile edge, which every production computes
+	private static final int FAILING_X = 64;
+	private static final int FAILING_Y = 32;
+
+	// A point that throws is tried once. Resuming computes the rest of its
+	// tile, and the only point left out is the failed one
+	@Test
+	public void marianiSilverSkipsFailedPoint() throws InterruptedException {
+		assertSkipsFailedPoint(ProductionMode.MARIANI_SILVER, 0);
+	}
+
+	// The failed point keeps a wrong value that contours may meet, as they
+	// may meet thin islands: a few pixels at most
+	@Test
+	public void boundaryTracingSkipsFailedPoint() throws InterruptedException {
+		assertSkipsFailedPoint(ProductionMode.BOUNDARY_TRACING, WIDTH * HEIGHT / 1000);
+	}
+
+	@Test
+	public void perturbationSkipsFailedPoint() throws InterruptedException {
+		assertSkipsFailedPoint(ProductionMode.PERTURBATION, 0);
+	}
+
+	// Against the same production without the failing point
+	private static void assertSkipsFailedPoint(ProductionMode productionMode, int tolerance)
+			throws InterruptedException {
+		NumberFactory numberFactory = new DoubleDoubleNumberFactory();
+		CoordinateTransform coordinateTransform = EscapeTimeRepresentation.createCoordinateTransform(
+				numberFactory, "-0.75", "0.5", "0.005", WIDTH, HEIGHT);
+		int[] expected = EscapeTimeRepresentation.render(
+				new EscapeTimeRepresentation(MAX_ITERATIONS, 1, productionMode),
+				numberFactory, new MandelbrotFormula(), coordinateTransform, null, WIDTH, HEIGHT, 4);
+
+		EscapeTimeRepresentation representation = new EscapeTimeRepresentation(MAX_ITERATIONS, 1, productionMode);
+		representation.setFailingPoint(FAILING_X, FAILING_Y);
+		IntermediateImage iimg = representation.createIntermediateImage(WIDTH, HEIGHT, 4);
+		EscapeTimeRepresentation.runResuming(representation.createProduction(
+				iimg, numberFactory, new MandelbrotFormula(), coordinateTransform, null));
+		assertTrue(iimg.isComplete());
+		assertEquals(1, representation.getFailures());
+
+		int[] actual = EscapeTimeRepresentation.getPoints((IntegerImage) iimg);
+		int differences = 0;
+		for (int i = 0; i < expected.length; i++) {
+			if (i != FAILING_Y * WIDTH + FAILING_X && expected[i] != actual[i]) {
+				differences++;
+			}
+		}
+		assertTrue(differences + " points differ", differences <= tolerance);
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.junit.Test;
+
+
+public class PeriodicityCheckingFormulaTest {
+
+	private static final int WIDTH = 50;
+	private static final int HEIGHT = 40;
+	private static final int MAX_ITERATIONS = 1000;
+	private static final String SCALE = "0.05";
+
+	private final NumberFactory numberFactory = new DoubleDoubleNumberFactory();
+
+	// Escaping orbits escape at the same iteration, the others never escape.
+	// Most of the latter are captured well before the maximum
+	@Test
+	public void agreesWithUnwrappedFormula() {
+		int captured = 0;
+		int inside = 0;
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				Complex c = numberFactory.valueOf(
+						numberFactory.valueOf(-2 + 2.5 * x / WIDTH),
+						numberFactory.valueOf(-1 + 2.0 * y / HEIGHT));
+				Formula expected = newFormula();
+				PeriodicityCheckingFormula actual = new PeriodicityCheckingFormula(newFormula(),
+						numberFactory.valueOf(SCALE).dividedBy(1024));
+				expected.initMandelbrotIteration(c);
+				actual.initMandelbrotIteration(c);
+				int expectedIterations = expected.iterate(MAX_ITERATIONS);
+				int actualIterations = actual.iterate(MAX_ITERATIONS);
+				assertEquals(c.toString(), expected.bailoutOccured(), actual.bailoutOccured());
+				if (expected.bailoutOccured()) {
+					assertEquals(c.toString(), expectedIterations, actualIterations);
+				} else {
+					inside++;
+					if (actual.orbitCaptured()) {
+						captured++;
+						assertTrue(actualIterations < MAX_ITERATIONS);
+					}
+				}
+			}
+		}
+		assertTrue(inside > 0);
+		assertTrue(captured + " of " + inside + " captured", 2 * captured > inside);
+	}
+
+	@Test
+	public void imageMatchesImageWithoutChecking() throws InterruptedException {
+		CoordinateTransform coordinateTransform = EscapeTimeRepresentation.createCoordinateTransform(
+				numberFactory, "-0.75", "0", SCALE, WIDTH, HEIGHT);
+		EscapeTimeRepresentation representation = new EscapeTimeRepresentation(MAX_ITERATIONS, 1, ProductionMode.TILED_SCAN);
+		int[] expected = EscapeTimeRepresentation.render(representation,
+				numberFactory, new MandelbrotFormula(), coordinateTransform, null, WIDTH, HEIGHT, 4);
+		representation.setPeriodicityChecking(true);
+		int[] actual = EscapeTimeRepresentation.render(representation,
+				numberFactory, new MandelbrotFormula(), coordinateTransform, null, WIDTH, HEIGHT, 4);
+		assertArrayEquals(expected, actual);
+	}
+
+	private Formula newFormula() {
+		Formula rv = new MandelbrotFormula();
+		rv.cacheConstants(numberFactory);
+		return rv;
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Production;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.altervista.mbilotta.julia.math.impl.FixedPointNumberFactory;
+import org.junit.Test;
+
+
+public class PerturbationTest {
+
+	private static final int WIDTH = 40;
+	private static final int HEIGHT = 30;
+	private static final int MAX_ITERATIONS = 2000;
+
+	@Test
+	public void fixedPointMatchesFullPrecision() throws InterruptedException {
+		assertMatchesFullPrecision(new FixedPointNumberFactory(50), "1e-35");
+	}
+
+	// Deltas no longer fit in doubles without their separate exponent
+	@Test
+	public void fixedPointMatchesFullPrecisionBeyondDoubles() throws InterruptedException {
+		assertMatchesFullPrecision(new FixedPointNumberFactory(340), "1e-330");
+	}
+
+	@Test
+	public void doubleDoubleMatchesFullPrecision() throws InterruptedException {
+		assertMatchesFullPrecision(new DoubleDoubleNumberFactory(), "1e-22");
+	}
+
+	// Every producer extends the orbit, yet a complete image stores it once
+	@Test
+	public void completeProductionStoresOrbitOnce() throws InterruptedException {
+		AtomicInteger puts = new AtomicInteger();
+		Production production = createProduction(puts);
+		EscapeTimeRepresentation.run(production);
+		assertTrue(production.getIntermediateImage().isComplete());
+		assertEquals(1, puts.get());
+	}
+
+	@Test
+	public void interruptedProductionStoresNothing() throws InterruptedException {
+		AtomicInteger puts = new AtomicInteger();
+		Production production = createProduction(puts);
+		Thread[] threads = new Thread[production.getNumOfProducers()];
+		for (int i = 0; i < threads.length; i++) {
+			Production.Producer producer = production.createProducer(i);
+			threads[i] = new Thread(() -> {
+				Thread.currentThread().interrupt();
+				producer.run();
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, puts.get());
+	}
+
+	private static Production createProduction(AtomicInteger puts) {
+		NumberFactory numberFactory = new DoubleDoubleNumberFactory();
+		CoordinateTransform coordinateTransform = EscapeTimeRepresentation.createCoordinateTransform(
+				numberFactory, "-0.75", "0.1", "1e-3", WIDTH, HEIGHT);
+		EscapeTimeRepresentation representation = new EscapeTimeRepresentation(MAX_ITERATIONS, 1, ProductionMode.PERTURBATION);
+		IntermediateImage iimg = representation.createIntermediateImage(WIDTH, HEIGHT, 4);
+		Perturbation production = (Perturbation) representation.createProduction(
+				iimg, numberFactory, new MandelbrotFormula(), coordinateTransform, null);
+		production.setReferenceOrbitCache(new ReferenceOrbitCache() {
+			@Override
+			public Orbit get(Complex point, Complex juliaSetPoint) {
+				return null;
+			}
+
+			@Override
+			public void put(Complex point, Complex juliaSetPoint, Orbit orbit) {
+				puts.incrementAndGet();
+			}
+		});
+		return production;
+	}
+
+	// Glitch correction and the approximation tables may move an escape by
+	// an iteration here and there, never more than a few pixels
+	private static void assertMatchesFullPrecision(NumberFactory numberFactory, String scale) throws InterruptedException {
+		// A few pixels off the Misiurewicz point i, where escape times grow
+		// slowly with the depth: no more than a few hundred iterations
+		BigDecimal pixel = new BigDecimal(scale);
+		CoordinateTransform coordinateTransform = EscapeTimeRepresentation.createCoordinateTransform(
+				numberFactory,
+				pixel.multiply(new BigDecimal("5.5")).toString(),
+				BigDecimal.ONE.add(pixel.multiply(new BigDecimal("3.25"))).toString(),
+				scale, WIDTH, HEIGHT);
+		int[] expected = EscapeTimeRepresentation.render(
+				new EscapeTimeRepresentation(MAX_ITERATIONS, 1, ProductionMode.TILED_SCAN),
+				numberFactory, new MandelbrotFormula(), coordinateTransform, null, WIDTH, HEIGHT, 4);
+		int[] actual = EscapeTimeRepresentation.render(
+				new EscapeTimeRepresentation(MAX_ITERATIONS, 1, ProductionMode.PERTURBATION),
+				numberFactory, new MandelbrotFormula(), coordinateTransform, null, WIDTH, HEIGHT, 4);
+
+		int differences = 0;
+		boolean escaped = false;
+		for (int i = 0; i < expected.length; i++) {
+			if (Math.abs(expected[i] - actual[i]) > 1) {
+				differences++;
+			}
+			escaped |= expected[i] < MAX_ITERATIONS;
+		}
+		assertTrue(escaped);
+		assertTrue(differences + " points differ", differences <= expected.length / 100);
+	}
+}
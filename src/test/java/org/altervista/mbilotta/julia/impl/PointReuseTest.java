@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.altervista.mbilotta.julia.math.impl.FixedPointNumberFactory;
+import org.junit.Test;
+
+
+public class PointReuseTest {
+
+	private static final int WIDTH = 64;
+	private static final int HEIGHT = 48;
+	private static final int MAX_ITERATIONS = 256;
+	private static final int NUM_OF_PRODUCERS = 4;
+
+	// Pixels are 2^-7 wide: every grid below is exact, so a copied point is
+	// the very point a full recompute gives
+	private final NumberFactory numberFactory = new DoubleDoubleNumberFactory();
+	private final CoordinateTransform previousTransform = EscapeTimeRepresentation.createCoordinateTransform(
+			numberFactory, "-0.75", "0.5", "0.0078125", WIDTH, HEIGHT);
+
+	@Test
+	public void panMatchesFullRecompute() throws InterruptedException {
+		// 7 pixels right, 5 pixels down
+		check("-0.6953125", "0.4609375", "0.0078125", ProductionMode.RASTER_SCAN);
+		check("-0.6953125", "0.4609375", "0.0078125", ProductionMode.TILED_SCAN);
+	}
+
+	@Test
+	public void zoomInMatchesFullRecompute() throws InterruptedException {
+		check("-0.75", "0.5", "0.00390625", ProductionMode.RASTER_SCAN);
+		check("-0.75", "0.5", "0.00390625", ProductionMode.TILED_SCAN);
+	}
+
+	@Test
+	public void zoomOutMatchesFullRecompute() throws InterruptedException {
+		check("-0.75", "0.5", "0.015625", ProductionMode.RASTER_SCAN);
+		check("-0.75", "0.5", "0.015625", ProductionMode.TILED_SCAN);
+	}
+
+	// Pixels 1/10000 wide, on a coarse fixed-point grid: columns and rows line
+	// up only where their rounded coordinates happen to be equal. Near the
+	// boundary an ulp is enough to move an escape, so the others are computed
+	@Test
+	public void roundedGridsMatchFullRecompute() throws InterruptedException {
+		NumberFactory numberFactory = new FixedPointNumberFactory(9);
+		CoordinateTransform previousTransform = EscapeTimeRepresentation.createCoordinateTransform(
+				numberFactory, "-0.7435", "0.1314", "0.0001", WIDTH, HEIGHT);
+		for (ProductionMode productionMode : new ProductionMode[] { ProductionMode.RASTER_SCAN, ProductionMode.TILED_SCAN }) {
+			check(numberFactory, previousTransform, "-0.7428", "0.1309", "0.0001", productionMode);
+			check(numberFactory, previousTransform, "-0.7435", "0.1314", "0.00005", productionMode);
+			check(numberFactory, previousTransform, "-0.7435", "0.1314", "0.0002", productionMode);
+		}
+	}
+
+	private void check(String centerRe, String centerIm, String scale, ProductionMode productionMode)
+			throws InterruptedException {
+		int computed = check(numberFactory, previousTransform, centerRe, centerIm, scale, productionMode);
+		assertTrue(computed + " points computed", computed < WIDTH * HEIGHT);
+	}
+
+	// Returns how many points were computed rather than reused
+	private static int check(NumberFactory numberFactory, CoordinateTransform previousTransform,
+			String centerRe, String centerIm, String scale, ProductionMode productionMode)
+			throws InterruptedException {
+		EscapeTimeRepresentation representation = new EscapeTimeRepresentation(MAX_ITERATIONS, 1, productionMode);
+		IntermediateImage previous = representation.createIntermediateImage(WIDTH, HEIGHT, NUM_OF_PRODUCERS);
+		EscapeTimeRepresentation.run(representation.createProduction(previous,
+				numberFactory, new MandelbrotFormula(), previousTransform, null));
+
+		CoordinateTransform coordinateTransform = EscapeTimeRepresentation.createCoordinateTransform(
+				numberFactory, centerRe, centerIm, scale, WIDTH, HEIGHT);
+		int[] expected = EscapeTimeRepresentation.render(representation,
+				numberFactory, new MandelbrotFormula(), coordinateTransform, null, WIDTH, HEIGHT, NUM_OF_PRODUCERS);
+
+		IntermediateImage iimg = representation.createIntermediateImage(WIDTH, HEIGHT, NUM_OF_PRODUCERS);
+		representation.setBudget(Integer.MAX_VALUE);
+		EscapeTimeRepresentation.run(representation.createProduction(iimg,
+				numberFactory, new MandelbrotFormula(), coordinateTransform, null, previous, previousTransform));
+		assertArrayEquals(expected, EscapeTimeRepresentation.getPoints((IntegerImage) iimg));
+		return representation.getComputed();
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.altervista.mbilotta.julia.math.impl.FixedPointNumberFactory;
+import org.junit.Test;
+
+
+public class ReferenceOrbitTest {
+
+	private static final int CACHED_LENGTH = 300;
+	private static final int LENGTH = 3000;
+
+	@Test
+	public void doubleDoubleOrbitExtendsFromCache() {
+		assertExtendsFromCache(new DoubleDoubleNumberFactory());
+	}
+
+	@Test
+	public void fixedPointOrbitExtendsFromCache() {
+		assertExtendsFromCache(new FixedPointNumberFactory(40));
+	}
+
+	// An orbit resumed from its cached last point goes on as one computed in
+	// one go. Near the cusp the orbit creeps towards its fixed point, so the
+	// last point cannot be made up, nor can its rounding grow
+	private static void assertExtendsFromCache(NumberFactory numberFactory) {
+		Complex point = numberFactory.valueOf(numberFactory.valueOf("0.2499"), numberFactory.valueOf("0.0001"));
+		AtomicReference<ReferenceOrbitCache.Orbit> stored = new AtomicReference<>();
+		ReferenceOrbitCache cache = new ReferenceOrbitCache() {
+			@Override
+			public Orbit get(Complex point, Complex juliaSetPoint) {
+				return stored.get();
+			}
+
+			@Override
+			public void put(Complex point, Complex juliaSetPoint, Orbit orbit) {
+				stored.set(orbit);
+			}
+		};
+
+		ReferenceOrbit cached = new ReferenceOrbit(new MandelbrotFormula(), numberFactory, point, null, 0);
+		cached.setCache(cache);
+		int cachedLength = cached.extend(CACHED_LENGTH);
+		cached.store();
+		assertEquals(cachedLength, stored.get().getLength());
+
+		ReferenceOrbit extended = new ReferenceOrbit(new MandelbrotFormula(), numberFactory, point, null, 0);
+		extended.setCache(cache);
+		int extendedLength = extended.extend(LENGTH);
+		ReferenceOrbit expected = new ReferenceOrbit(new MandelbrotFormula(), numberFactory, point, null, 0);
+		int expectedLength = expected.extend(LENGTH);
+		assertTrue(Math.min(extendedLength, expectedLength) >= LENGTH);
+
+		for (int i = 0; i < LENGTH; i++) {
+			assertEquals("re at " + i, expected.getRe()[i], extended.getRe()[i], 1e-15);
+			assertEquals("im at " + i, expected.getIm()[i], extended.getIm()[i], 1e-15);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.altervista.mbilotta.julia.Formula;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.junit.Test;
+
+
+public class SymmetryTest {
+
+	private static final int WIDTH = 64;
+	private static final int HEIGHT = 48;
+	private static final int MAX_ITERATIONS = 256;
+	private static final int NUM_OF_PRODUCERS = 4;
+	private static final String SCALE = "0.03125";
+
+	private final NumberFactory numberFactory = new DoubleDoubleNumberFactory();
+
+	@Test
+	public void realAxisMatchesFullRecompute() throws InterruptedException {
+		check("-0.5", "0", null);
+	}
+
+	@Test
+	public void originMatchesFullRecompute() throws InterruptedException {
+		check("0", "0", numberFactory.valueOf(numberFactory.valueOf(-0.75), numberFactory.valueOf(0.125)));
+	}
+
+	@Test
+	public void bothMatchFullRecompute() throws InterruptedException {
+		check("0", "0", numberFactory.valueOf(numberFactory.valueOf(-0.75), numberFactory.valueOf(0)));
+	}
+
+	private void check(String centerRe, String centerIm, Complex juliaSetPoint) throws InterruptedException {
+		CoordinateTransform coordinateTransform = EscapeTimeRepresentation.createCoordinateTransform(
+				numberFactory, centerRe, centerIm, SCALE, WIDTH, HEIGHT);
+		int[] expected = computeEachPoint(coordinateTransform, juliaSetPoint);
+		for (ProductionMode productionMode : new ProductionMode[] { ProductionMode.RASTER_SCAN, ProductionMode.TILED_SCAN }) {
+			EscapeTimeRepresentation representation = new EscapeTimeRepresentation(MAX_ITERATIONS, 1, productionMode);
+			int[] actual = EscapeTimeRepresentation.render(representation,
+					numberFactory, new MandelbrotFormula(), coordinateTransform, juliaSetPoint, WIDTH, HEIGHT, NUM_OF_PRODUCERS);
+			int computed = representation.getComputed();
+			// Every paired pixel but a few computed by two producers at once is copied
+			assertTrue(productionMode + ": " + computed + " points computed", computed <= WIDTH * HEIGHT / 2 + WIDTH + HEIGHT);
+			assertArrayEquals(productionMode.toString(), expected, actual);
+		}
+	}
+
+	// One pixel after the other, no production involved
+	private int[] computeEachPoint(CoordinateTransform coordinateTransform, Complex juliaSetPoint) {
+		coordinateTransform = coordinateTransform.withGrid(numberFactory, WIDTH, HEIGHT);
+		Formula formula = new MandelbrotFormula();
+		formula.cacheConstants(numberFactory);
+		if (juliaSetPoint != null) {
+			formula.setC(juliaSetPoint);
+		}
+		int[] rv = new int[WIDTH * HEIGHT];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				Complex point = coordinateTransform.toComplex(x, y);
+				if (juliaSetPoint != null) {
+					formula.initJuliaIteration(point);
+				} else {
+					formula.initMandelbrotIteration(point);
+				}
+				int iterations = formula.iterate(MAX_ITERATIONS);
+				rv[y * WIDTH + x] = formula.bailoutOccured() ? iterations : MAX_ITERATIONS;
+			}
+		}
+		return rv;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import org.altervista.mbilotta.julia.IntermediateImage;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.Production;
+import org.altervista.mbilotta.julia.math.CoordinateTransform;
+import org.altervista.mbilotta.julia.math.impl.DoubleDoubleNumberFactory;
+import org.junit.Test;
+
+
+public class TiledProgressTest {
+
+	private static final int WIDTH = 100;
+	private static final int HEIGHT = 75;
+	private static final int MAX_ITERATIONS = 100;
+	private static final int NUM_OF_PRODUCERS = 4;
+
+	private final NumberFactory numberFactory = new DoubleDoubleNumberFactory();
+	// Off the real axis: no point is copied across the symmetry
+	private final CoordinateTransform coordinateTransform = EscapeTimeRepresentation.createCoordinateTransform(
+			numberFactory, "-0.75", "0.5", "0.01", WIDTH, HEIGHT);
+
+	@Test
+	public void tiledScanResumesFromSavedProgress() throws Exception {
+		assertResumesFromSavedProgress(new EscapeTimeRepresentation(MAX_ITERATIONS, 1, ProductionMode.TILED_SCAN), null, null);
+	}
+
+	@Test
+	public void tiledRefinementResumesFromSavedProgress() throws Exception {
+		assertResumesFromSavedProgress(new EscapeTimeRepresentation(MAX_ITERATIONS, 3, ProductionMode.TILED_SCAN), null, null);
+	}
+
+	// The saved schedule starts from the bottom right corner, the resumed
+	// production reschedules what is left around the top left one
+	@Test
+	public void focusedTiledScanResumesFromSavedProgress() throws Exception {
+		assertResumesFromSavedProgress(new EscapeTimeRepresentation(MAX_ITERATIONS, 1, ProductionMode.TILED_SCAN),
+				new Point(WIDTH - 1, HEIGHT - 1), new Point(0, 0));
+	}
+
+	// Producers are interrupted a third of the way, their progress written
+	// and read back. The production resumed on the copy computes little more
+	// than what is left and ends up with the image of an uninterrupted one
+	private void assertResumesFromSavedProgress(EscapeTimeRepresentation representation,
+			Point focus, Point resumedFocus) throws Exception {
+		int[] expected = EscapeTimeRepresentation.render(representation,
+				numberFactory, new MandelbrotFormula(), coordinateTransform, null, WIDTH, HEIGHT, NUM_OF_PRODUCERS);
+		int total = representation.getComputed();
+
+		IntermediateImage iimg = representation.createIntermediateImage(WIDTH, HEIGHT, NUM_OF_PRODUCERS);
+		representation.setBudget(total / 3);
+		EscapeTimeRepresentation.run(createProduction(representation, iimg, focus));
+		assertFalse(iimg.isComplete());
+
+		IntermediateImage copy = EscapeTimeRepresentation.copy(representation, iimg);
+		assertFalse(copy.isComplete());
+		representation.setBudget(Integer.MAX_VALUE);
+		EscapeTimeRepresentation.run(createProduction(representation, copy, resumedFocus));
+		assertTrue(copy.isComplete());
+		assertTrue(representation.getComputed() + " computed", representation.getComputed() <= total - total / 4);
+		assertArrayEquals(expected, EscapeTimeRepresentation.getPoints((IntegerImage) copy));
+	}
+
+	private Production createProduction(EscapeTimeRepresentation representation, IntermediateImage iimg, Point focus) {
+		Production rv = representation.createProduction(iimg, numberFactory, new MandelbrotFormula(), coordinateTransform, null);
+		if (focus != null) {
+			rv.setFocus(new Rectangle(0, 0, WIDTH, HEIGHT), focus);
+		}
+		return rv;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+import org.altervista.mbilotta.julia.math.Real;
+import org.junit.Test;
+
+
+public class DoubleDoubleTest {
+
+	private static final double TOLERANCE = 1e-30;
+	private static final MathContext EXACT = new MathContext(100);
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void arithmeticMatchesBigDecimal() {
+		for (int i = 0; i < 1000; i++) {
+			DoubleDouble a = randomValue();
+			DoubleDouble b = randomValue();
+			BigDecimal x = exact(a);
+			BigDecimal y = exact(b);
+			assertClose(x.add(y), a.add(b), x.abs().max(y.abs()));
+			assertClose(x.subtract(y), a.subtract(b), x.abs().max(y.abs()));
+			assertClose(x.multiply(y), a.multiply(b));
+			assertClose(x.multiply(x), a.square());
+			assertClose(x.divide(y, EXACT), a.divide(b));
+			assertClose(x.abs().sqrt(EXACT), a.abs().sqrt());
+		}
+	}
+
+	@Test
+	public void valueOfKeepsBothHalves() {
+		BigDecimal v = new BigDecimal("0.1234567890123456789012345678901");
+		assertClose(v, DoubleDouble.valueOf(v));
+		assertClose(v, DoubleDouble.valueOf(v.toString()));
+	}
+
+	@Test
+	public void constantsMatchDecimalExpansions() {
+		assertClose(new BigDecimal("3.14159265358979323846264338327950288"), DoubleDouble.PI);
+		assertClose(new BigDecimal("2.71828182845904523536028747135266250"), DoubleDouble.E);
+		assertClose(new BigDecimal("0.69314718055994530941723212145817657"), DoubleDouble.LN2);
+	}
+
+	@Test
+	public void transcendentalIdentities() {
+		for (int i = 0; i < 100; i++) {
+			DoubleDouble a = randomValue();
+			assertClose(exact(a), a.exp().ln(), BigDecimal.ONE);
+			DoubleDouble[] sinCos = a.sinCos();
+			assertClose(BigDecimal.ONE, sinCos[0].square().add(sinCos[1].square()));
+		}
+	}
+
+	@Test
+	public void powMatchesRepeatedMultiplication() {
+		DoubleDouble a = randomValue();
+		DoubleDouble product = DoubleDouble.ONE;
+		for (int n = 0; n <= 10; n++) {
+			assertClose(exact(product), a.pow(n));
+			assertClose(exact(DoubleDouble.ONE.divide(product)), a.pow(-n));
+			product = product.multiply(a);
+		}
+	}
+
+	@Test
+	public void exponentOfSubnormals() {
+		Real tiny = new DoubleDoubleReal(new DoubleDouble(3 * Double.MIN_VALUE));
+		assertEquals(Double.MIN_EXPONENT - 51, tiny.getBinaryExponent());
+		assertEquals(Double.MIN_EXPONENT - 49, tiny.times(5).getBinaryExponent());
+		assertEquals(-3, new DoubleDoubleReal(new DoubleDouble(0.2)).getBinaryExponent());
+		assertEquals(Double.MIN_VALUE, new DoubleDoubleReal(DoubleDouble.ONE).scalb(-1074).doubleValue(), 0);
+	}
+
+	private DoubleDouble randomValue() {
+		double hi = random.nextDouble() * 8 - 4;
+		double lo = hi * Math.ulp(1.0) * (random.nextDouble() - 0.5);
+		return new DoubleDouble(hi, lo);
+	}
+
+	private static BigDecimal exact(DoubleDouble a) {
+		return new BigDecimal(a.hi()).add(new BigDecimal(a.lo()));
+	}
+
+	private static void assertClose(BigDecimal expected, DoubleDouble actual) {
+		assertClose(expected, actual, expected.abs());
+	}
+
+	private static void assertClose(BigDecimal expected, DoubleDouble actual, BigDecimal scale) {
+		BigDecimal error = expected.subtract(exact(actual)).abs();
+		BigDecimal bound = scale.max(BigDecimal.ONE.movePointLeft(3)).multiply(new BigDecimal(TOLERANCE));
+		assertTrue(expected + " vs " + actual, error.compareTo(bound) <= 0);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.math.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.altervista.mbilotta.julia.math.Real;
+import org.junit.Test;
+
+
+public class FixedPointTest {
+
+	private static final int LIMBS = 4;
+	private static final BigDecimal ULP = BigDecimal.ONE.divide(new BigDecimal(BigInteger.ONE.shiftLeft(32 * (LIMBS - 1))));
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void arithmeticMatchesBigDecimal() {
+		for (int i = 0; i < 1000; i++) {
+			FixedPoint a = randomValue();
+			FixedPoint b = randomValue();
+			BigDecimal x = a.bigDecimalValue();
+			BigDecimal y = b.bigDecimalValue();
+			assertClose(x.add(y), a.add(b));
+			assertClose(x.subtract(y), a.subtract(b));
+			assertClose(x.multiply(y), a.multiply(b));
+			assertClose(x.multiply(x), a.square());
+			assertClose(x.multiply(BigDecimal.valueOf(-7)), a.multiply(-7));
+			if (b.signum() != 0)
+				assertClose(x.divide(y, 200, RoundingMode.HALF_EVEN), a.divide(b));
+		}
+	}
+
+	@Test
+	public void karatsubaMatchesBigInteger() {
+		int n = 3 * Limbs.KARATSUBA_THRESHOLD + 1;
+		int[] a = new int[n];
+		int[] b = new int[n];
+		for (int i = 0; i < n; i++) {
+			a[i] = random.nextInt();
+			b[i] = random.nextInt();
+		}
+		int[] product = new int[2 * n];
+		int[] square = new int[2 * n];
+		int[] workspace = new int[Limbs.workspaceLength(n)];
+		Limbs.multiply(a, 0, b, 0, n, product, 0, workspace, 0);
+		Limbs.square(a, 0, n, square, 0, workspace, 0);
+		BigInteger x = toBigInteger(a);
+		BigInteger y = toBigInteger(b);
+		assertEquals(x.multiply(y), toBigInteger(product));
+		assertEquals(x.multiply(x), toBigInteger(square));
+	}
+
+	@Test
+	public void doubleValueUsesLeadingLimbs() {
+		int limbs = 8;
+		double[] values = { 1e-25, 1.234567890123456e-15, -3.5, 0.1, Math.PI, 4294967295.0, Math.scalb(1.0, -200) };
+		for (double v : values) {
+			assertEquals(v, FixedPoint.valueOf(v, limbs).doubleValue(), 0);
+		}
+		assertEquals(0, FixedPoint.zero(limbs).doubleValue(), 0);
+	}
+
+	@Test
+	public void doubleValueRoundsToNearest() {
+		for (int i = 0; i < 1000; i++) {
+			FixedPoint a = randomValue().scalb(-random.nextInt(64));
+			assertEquals(a.bigDecimalValue().doubleValue(), a.doubleValue(), 0);
+		}
+	}
+
+	@Test
+	public void overflowSaturates() {
+		FixedPoint two = FixedPoint.valueOf(2, LIMBS);
+		FixedPoint max = two.pow(40);
+		assertTrue(max.compareTo(FixedPoint.valueOf(4294967295L, LIMBS)) > 0);
+		assertEquals(max, max.add(two));
+		assertEquals(max, max.multiply(max));
+		assertEquals(max, FixedPoint.valueOf(1e20, LIMBS));
+		assertEquals(max, FixedPoint.valueOf(Double.POSITIVE_INFINITY, LIMBS));
+		assertEquals(max.negate(), FixedPoint.valueOf(Double.NEGATIVE_INFINITY, LIMBS));
+		assertEquals(max, FixedPoint.valueOf(Double.NaN, LIMBS));
+		assertEquals(max.negate(), FixedPoint.valueOf(-1L << 40, LIMBS));
+		assertEquals(max, FixedPoint.valueOf(100, LIMBS).exp());
+		assertEquals(Math.scalb(1.0, -40), two.pow(-40).doubleValue(), 0);
+
+		int[] mag = new int[LIMBS];
+		Limbs.saturate(mag);
+		assertArrayEquals(mag, max.magnitude());
+	}
+
+	@Test
+	public void exponentBeyondDoubles() {
+		int limbs = 40;
+		Real tiny = new FixedPointReal(FixedPoint.valueOf(3, limbs)).scalb(-1100);
+		assertEquals(-1099, tiny.getBinaryExponent());
+		assertEquals(0, tiny.doubleValue(), 0);
+		assertEquals(3, tiny.scalb(1100).doubleValue(), 0);
+		assertEquals(5, new FixedPointReal(FixedPoint.valueOf(40, limbs)).getBinaryExponent());
+	}
+
+	@Test
+	public void intValueTruncates() {
+		assertEquals(3, FixedPoint.valueOf(3.75, LIMBS).intValue());
+		assertEquals(-3, FixedPoint.valueOf(-3.75, LIMBS).intValue());
+	}
+
+	private FixedPoint randomValue() {
+		int[] mag = new int[LIMBS];
+		for (int i = 0; i < LIMBS - 1; i++) {
+			mag[i] = random.nextInt();
+		}
+		mag[LIMBS - 1] = random.nextInt(16);
+		return new FixedPoint(random.nextBoolean() ? 1 : -1, mag);
+	}
+
+	private static void assertClose(BigDecimal expected, FixedPoint actual) {
+		BigDecimal error = expected.subtract(actual.bigDecimalValue()).abs();
+		assertTrue(expected + " vs " + actual, error.compareTo(ULP) <= 0);
+	}
+
+	private static BigInteger toBigInteger(int[] a) {
+		BigInteger rv = BigInteger.ZERO;
+		for (int i = a.length - 1; i >= 0; i--) {
+			rv = rv.shiftLeft(32).or(BigInteger.valueOf(a[i] & Limbs.MASK));
+		}
+		return rv;
+	}
+}
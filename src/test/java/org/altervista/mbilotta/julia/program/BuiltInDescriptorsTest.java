@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.program;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.altervista.mbilotta.julia.Out;
+import org.altervista.mbilotta.julia.program.parsers.BinaryRelation;
+import org.altervista.mbilotta.julia.program.parsers.DescriptorParser;
+import org.altervista.mbilotta.julia.program.parsers.Plugin;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class BuiltInDescriptorsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// Nothing gets written into the descriptor root
+	@Test
+	public void readFromTheClasspath() throws Exception {
+		Profile profile = new Profile(folder.getRoot().toPath());
+		Out<Boolean> failure = Out.newOut(false);
+		List<Path> builtInDescriptors = profile.getBuiltInDescriptors(Collections.emptyList(), null, failure);
+		assertFalse(failure.get());
+		assertFalse(builtInDescriptors.isEmpty());
+		assertTrue(profile.scanForDescriptors(null, failure).isEmpty());
+	}
+
+	@Test
+	public void replacedByProfileCopies() throws Exception {
+		Profile profile = new Profile(folder.getRoot().toPath());
+		List<Path> builtInDescriptors = profile.getBuiltInDescriptors(Collections.emptyList(), null, Out.newOut(false));
+		Path copy = builtInDescriptors.get(0);
+		Files.createDirectories(copy.getParent());
+		try (InputStream in = profile.openBuiltInDescriptor(copy)) {
+			Files.copy(in, copy);
+		}
+
+		List<Path> descriptors = profile.scanForDescriptors(null, Out.newOut(false));
+		assertEquals(Collections.singletonList(copy), descriptors);
+		List<Path> remaining = profile.getBuiltInDescriptors(descriptors, null, Out.newOut(false));
+		assertEquals(builtInDescriptors.subList(1, builtInDescriptors.size()), remaining);
+	}
+
+	@Test
+	public void parsedWithoutProblems() throws Exception {
+		Profile profile = new Profile(folder.getRoot().toPath());
+		List<Path> descriptors = profile.getBuiltInDescriptors(Collections.emptyList(), null, Out.newOut(false));
+		DescriptorParser parser = new DescriptorParser(profile, getClass().getClassLoader(),
+				new BinaryRelation<>(), null, null, null, null, false);
+		for (Path descriptor : descriptors) {
+			Buffer buffer;
+			try (InputStream in = profile.openBuiltInDescriptor(descriptor)) {
+				buffer = Buffer.readFully(in, null, null);
+			}
+			StringBuilder output = new StringBuilder();
+			Plugin plugin = parser.parse(buffer, descriptor, output);
+			assertNotNull(output.toString(), plugin);
+			assertEquals(output.toString(), 0, parser.getWarningCount() + parser.getErrorCount());
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.program;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+
+import org.altervista.mbilotta.julia.Decimal;
+import org.altervista.mbilotta.julia.NumberFactory;
+import org.altervista.mbilotta.julia.impl.ReferenceOrbitCache.Orbit;
+import org.altervista.mbilotta.julia.math.Complex;
+import org.altervista.mbilotta.julia.math.impl.FixedPointNumberFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class DiskReferenceOrbitCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// Deep zooms take points, and full-precision values, well past 64 KB
+	@Test
+	public void longKeysAndValuesRoundTrip() throws Exception {
+		NumberFactory numberFactory = new FixedPointNumberFactory(70000);
+		char[] digits = new char[70000];
+		Arrays.fill(digits, '3');
+		String value = "0." + new String(digits);
+		Complex point = numberFactory.valueOf(numberFactory.valueOf(value), numberFactory.valueOf(value));
+		DiskReferenceOrbitCache cache = new DiskReferenceOrbitCache(folder.getRoot().toPath(), Long.MAX_VALUE, 70000, null);
+
+		double[] re = { 0, 0.25, -0.5 };
+		double[] im = { 0, 0.125, 0.75 };
+		cache.put(point, null, new Orbit(re, im, false, new Decimal(value), new Decimal("-" + value)));
+		Orbit orbit = cache.get(point, null);
+
+		assertArrayEquals(re, orbit.getRe(), 0);
+		assertArrayEquals(im, orbit.getIm(), 0);
+		assertFalse(orbit.hasEnded());
+		assertEquals(new Decimal(value), orbit.getLastRe());
+		assertEquals(new Decimal("-" + value), orbit.getLastIm());
+	}
+}
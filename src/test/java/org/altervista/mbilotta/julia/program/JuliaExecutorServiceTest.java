@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.program;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.altervista.mbilotta.julia.program.JuliaExecutorService.Lane;
+import org.junit.Test;
+
+
+public class JuliaExecutorServiceTest {
+
+	// More producers than the lane has threads, all waiting on each other: the
+	// lane grows for as long as they run, then shrinks back to its size
+	@Test(timeout = 10000)
+	public void producersRunAtOnceAndReleaseTheirThreads() throws Exception {
+		JuliaExecutorService executorService = new JuliaExecutorService(1, TimeUnit.SECONDS);
+		try {
+			int size = executorService.getPoolSize(Lane.INTERACTIVE);
+			int numOfProducers = 2 * size + 1;
+			CyclicBarrier barrier = new CyclicBarrier(numOfProducers);
+			CountDownLatch done = new CountDownLatch(numOfProducers);
+			for (int i = 0; i < numOfProducers; i++) {
+				executorService.submitProducer(Lane.INTERACTIVE, () -> {
+					try {
+						barrier.await();
+					} catch (Exception e) {
+						throw new AssertionError(e);
+					}
+				}, new ExecutionObserver() {
+					@Override
+					public void executionFinished(Runnable target) {
+						done.countDown();
+					}
+				});
+			}
+			done.await();
+			// Observers are notified just before the thread is released
+			while (executorService.getPoolSize(Lane.INTERACTIVE) > size) {
+				Thread.sleep(10);
+			}
+			assertEquals(size, executorService.getPoolSize(Lane.INTERACTIVE));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+}
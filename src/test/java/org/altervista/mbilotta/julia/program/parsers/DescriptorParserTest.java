@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2015 Maurizio Bilotta.
+ * 
+ * This file is part of Julia. See <http://mbilotta.altervista.org/>.
+ * 
+ * Julia is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Julia is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Julia. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.altervista.mbilotta.julia.program.parsers;
+
+import static org.junit.Assert.assertTrue;
+
+import java.beans.PropertyDescriptor;
+import java.util.Map;
+
+import org.altervista.mbilotta.julia.impl.AbstractRasterRepresentation;
+import org.junit.Test;
+
+
+public class DescriptorParserTest {
+
+	// Raster representations need not declare it: their descriptors get it anyway
+	@Test
+	public void productionModeIsARepresentationParameter() throws Exception {
+		Map<String, PropertyDescriptor> properties = DescriptorParser.inspectProperties(AbstractRasterRepresentation.class);
+		assertTrue(properties.keySet().toString(), properties.containsKey("productionMode"));
+		assertTrue(DescriptorParser.createParameter(properties.get("productionMode")) instanceof EnumParameter);
+	}
+}